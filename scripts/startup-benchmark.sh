@@ -0,0 +1,58 @@
+#!/usr/bin/env bash
+#
+# 起動時間ベンチマーク
+#
+# 各起動モードでアプリケーションを複数回起動し、StartupReporter が出力する
+# STARTUP_REPORT 行から起動完了までの時間 (ready_ms) と起動直後のヒープ使用量 (heap_used_mb) の平均を集計する。
+#
+# 事前準備:
+#   ./mvnw -Pfast-startup -DskipTests package
+#
+# 使い方:
+#   scripts/startup-benchmark.sh [実行回数 (既定: 5)]
+#
+set -euo pipefail
+
+RUNS="${1:-5}"
+PROJECT_DIR="$(cd "$(dirname "$0")/.." && pwd)"
+TARGET_DIR="${PROJECT_DIR}/target"
+CDS_DIR="${TARGET_DIR}/cds"
+JAVA="${JAVA_HOME:+${JAVA_HOME}/bin/}java"
+
+JAR_NAME="$(cd "${TARGET_DIR}" && ls *.jar | grep -v -- '-plain.jar' | head -n 1)"
+if [[ -z "${JAR_NAME}" || ! -f "${CDS_DIR}/${JAR_NAME}" || ! -f "${CDS_DIR}/application.jsa" ]]; then
+    echo "fast-startup プロファイルでビルドしてください: ./mvnw -Pfast-startup -DskipTests package" >&2
+    exit 1
+fi
+
+APP_ARGS=(--server.port=0 --app.startup-report.gc-before-heap=true --app.startup-report.exit-after-ready=true)
+
+# モード名、作業ディレクトリ、JVMオプションの組み合わせ
+# CDSアーカイブはトレーニング実行時と同じクラスパスを要求するため、展開済みJARは CDS_DIR から相対パスで起動する
+run_mode() {
+    local mode="$1" workdir="$2" jar="$3"
+    shift 3
+    local total_ms=0 total_heap=0
+    for ((i = 1; i <= RUNS; i++)); do
+        local line
+        line="$(cd "${workdir}" && "${JAVA}" "$@" -jar "${jar}" "${APP_ARGS[@]}" 2>&1 | grep 'STARTUP_REPORT' | tail -n 1)"
+        if [[ -z "${line}" ]]; then
+            echo "${mode}: 起動レポートが出力されませんでした" >&2
+            return 1
+        fi
+        local ready heap
+        ready="$(sed -E 's/.*ready_ms=([0-9]+).*/\1/' <<< "${line}")"
+        heap="$(sed -E 's/.*heap_used_mb=([0-9]+).*/\1/' <<< "${line}")"
+        total_ms=$((total_ms + ready))
+        total_heap=$((total_heap + heap))
+    done
+    printf '%-16s ready_ms(avg)=%6d  heap_used_mb(avg)=%4d\n' \
+        "${mode}" $((total_ms / RUNS)) $((total_heap / RUNS))
+}
+
+echo "起動時間ベンチマーク (${RUNS} 回平均)"
+run_mode "jar"           "${TARGET_DIR}" "${JAR_NAME}"
+run_mode "extracted"     "${CDS_DIR}"    "${JAR_NAME}"
+run_mode "extracted+aot" "${CDS_DIR}"    "${JAR_NAME}" -Dspring.aot.enabled=true
+run_mode "cds"           "${CDS_DIR}"    "${JAR_NAME}" -XX:SharedArchiveFile=application.jsa
+run_mode "aot+cds"       "${CDS_DIR}"    "${JAR_NAME}" -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true
@@ -0,0 +1,152 @@
+package com.example.javase17learningproject;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.javase17learningproject.diagnostics.ProfilingService;
+import com.example.javase17learningproject.diagnostics.VirtualThreadPinningMonitor;
+import com.example.javase17learningproject.diagnostics.VirtualThreadPinningMonitor.PinningSite;
+import com.example.javase17learningproject.tracing.Trace;
+import com.example.javase17learningproject.tracing.TraceFormatter;
+import com.example.javase17learningproject.tracing.Tracer;
+
+/**
+ * 管理者向けの診断コントローラー。
+ * 管理者 (ROLE_ADMIN) のみ参照できます。
+ */
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Autowired
+    private Tracer tracer;
+
+    @Autowired
+    private ProfilingService profilingService;
+
+    // 仮想スレッドが有効な場合だけ登録される
+    @Autowired(required = false)
+    private VirtualThreadPinningMonitor pinningMonitor;
+
+    /**
+     * 直近の遅いリクエストのトレースを新しい順に表示します。
+     *
+     * @param format {@code tree} (区間の木) または {@code folded} (flamegraph.pl 用の折り畳み形式)
+     * @param limit 表示するトレースの最大件数
+     * @return トレースのテキスト
+     */
+    @GetMapping(value = "/traces", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String traces(@RequestParam(defaultValue = "tree") String format,
+                         @RequestParam(defaultValue = "10") int limit) {
+        List<Trace> traces = tracer.getSlowTraces();
+        traces = traces.subList(0, Math.min(Math.max(0, limit), traces.size()));
+        if (format.equals("folded")) {
+            return TraceFormatter.folded(traces);
+        }
+        if (traces.isEmpty()) {
+            return "遅いトレースはありません\n";
+        }
+        StringBuilder text = new StringBuilder();
+        for (Trace trace : traces) {
+            text.append(TraceFormatter.tree(trace)).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * JFRの記録の状態を表示します。
+     *
+     * @return 記録の状態
+     */
+    @GetMapping(value = "/profiling", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String profilingStatus() {
+        return profilingService.status()
+            .map(status -> status + "\n")
+            .orElse("記録していません\n");
+    }
+
+    /**
+     * JFRの記録を開始します。
+     *
+     * @param duration 記録する時間 (ISO-8601、{@code app.profiling.max-duration} まで)
+     * @return 開始した記録の状態。既に記録中の場合は409 Conflict
+     */
+    @PostMapping(value = "/profiling/start", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> startProfiling(@RequestParam(defaultValue = "PT1M") Duration duration) {
+        try {
+            return ResponseEntity.ok(profilingService.start(duration) + "\n");
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage() + "\n");
+        }
+    }
+
+    /**
+     * JFRの記録を終了し、記録ファイル ({@code .jfr}) を返します。
+     * 一時ファイルは送信後に閉じると削除されます。
+     *
+     * @return 記録ファイル。記録していない場合は409 Conflict
+     * @throws IOException 記録ファイルを読み込めない場合
+     */
+    @PostMapping("/profiling/stop")
+    public ResponseEntity<Resource> stopProfiling() throws IOException {
+        Path file;
+        try {
+            file = profilingService.stop();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        long size = Files.size(file);
+        Resource body = new InputStreamResource(Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE));
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .contentLength(size)
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("profiling-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".jfr").build().toString())
+            .body(body);
+    }
+
+    /**
+     * 仮想スレッドのピン留めを、発生箇所ごとに回数の多い順に表示します。
+     *
+     * @return ピン留めの集計のテキスト
+     */
+    @GetMapping(value = "/pinning", produces = MediaType.TEXT_PLAIN_VALUE)
+    public String pinning() {
+        if (pinningMonitor == null) {
+            return "仮想スレッドは有効ではありません (spring.threads.virtual.enabled=true、Java 21以降で有効)\n";
+        }
+        List<PinningSite> sites = pinningMonitor.getSites();
+        StringBuilder text = new StringBuilder(String.format("仮想スレッドのピン留め: %d回 (しきい値 %d ms)%n",
+            pinningMonitor.getPinnedCount(), pinningMonitor.getThreshold().toMillis()));
+        for (PinningSite site : sites) {
+            text.append(String.format("%n%d回 合計 %d ms 最大 %d ms  %s%n",
+                site.count(), site.total().toMillis(), site.max().toMillis(), site.frame()));
+            for (String frame : site.stack()) {
+                text.append("    at ").append(frame).append('\n');
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.javase17learningproject;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.javase17learningproject.security.TokenRevocationTracker;
+import com.example.javase17learningproject.security.TokenService;
+import com.example.javase17learningproject.security.TokenService.IssuedToken;
+import com.example.javase17learningproject.security.UserPrincipal;
+import com.example.javase17learningproject.service.UserCommandService;
+
+/**
+ * APIトークンのコントローラー。
+ * ステートレス認証モード ({@code app.token-auth.enabled=true}) でのみ有効です。
+ */
+@RestController
+@RequestMapping("/api/tokens")
+@ConditionalOnProperty(name = "app.token-auth.enabled", havingValue = "true")
+public class ApiTokenController {
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserCommandService userCommandService;
+
+    @Autowired
+    private TokenRevocationTracker tokenRevocationTracker;
+
+    /**
+     * 認証されたユーザーのトークンを発行します。
+     * HTTP Basic認証（メールアドレスとパスワード）で呼び出します。
+     * トークンでの発行を許すと、漏洩したトークンから失効まで使い続けられるトークンを作れるため拒否します。
+     *
+     * @param principal 認証されたユーザー
+     * @return 発行したトークン。トークンで認証した場合は403 Forbidden、ユーザーが存在しない場合は401 Unauthorized
+     */
+    @PostMapping
+    public ResponseEntity<IssuedToken> issueToken(@AuthenticationPrincipal UserPrincipal principal) {
+        if (principal.isTokenAuthenticated()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return userRepository.findById(principal.id())
+            .map(user -> ResponseEntity.ok(tokenService.issue(user)))
+            .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+    }
+
+    /**
+     * 認証されたユーザーの発行済みのトークンを全て失効させます。
+     * 応答した時点で失効したトークンが拒否されるよう、コミット後に変更イベントを待たずに失効を記録します。
+     *
+     * @param principal 認証されたユーザー
+     * @return 204 No Content。ユーザーが存在しない場合は401 Unauthorized
+     */
+    @PostMapping("/revoke")
+    public ResponseEntity<Void> revokeTokens(@AuthenticationPrincipal UserPrincipal principal) {
+        return userCommandService.revokeTokens(principal.id())
+            .map(user -> {
+                tokenRevocationTracker.recordRevocation(user.getId(), user.getTokenVersion());
+                return ResponseEntity.noContent().<Void>build();
+            })
+            .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.javase17learningproject;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.javase17learningproject.directory.UserSummary;
+import com.example.javase17learningproject.service.UserQueryService;
+
+/**
+ * ユーザー参照APIのコントローラー。
+ * ステートレス認証モード ({@code app.token-auth.enabled=true}) でのみ有効で、APIトークンで認証します。
+ */
+@RestController
+@RequestMapping("/api/users")
+@ConditionalOnProperty(name = "app.token-auth.enabled", havingValue = "true")
+public class ApiUserController {
+
+    @Autowired
+    private UserQueryService userQueryService;
+
+    /**
+     * 全てのユーザーをID順に取得します。
+     *
+     * @return 全てのユーザー
+     */
+    @GetMapping
+    public List<UserSummary> getAllUsers() {
+        return userQueryService.getAllUsers();
+    }
+
+    /**
+     * ユーザーを検索します。
+     *
+     * @param name ユーザー名
+     * @param email メールアドレス
+     * @param role 役割名
+     * @return 該当するユーザー
+     */
+    @GetMapping("/search")
+    public List<UserSummary> searchUsers(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String role) {
+        return userQueryService.searchUsers(name, email, role);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.javase17learningproject;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.example.javase17learningproject.directory.UserSummary;
+import com.example.javase17learningproject.service.UserQueryService;
+import com.example.javase17learningproject.view.UserListReturnValueHandler;
+import com.example.javase17learningproject.view.UserListView;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * ユーザー一覧・検索の非同期モードのコントローラー ({@code app.async-users.enabled=true})。
+ * 検索を専用のスレッドプール ({@code userQueryExecutor}) で実行し、その間はTomcatのワーカースレッドを解放します。
+ * 検索のスレッドは検索結果を {@code DeferredResult} に設定するだけで、一覧画面のモデルは非同期ディスパッチで
+ * ({@link UserListReturnValueHandler}) 組み立てます。タイムアウトと競合しても、モデルとレスポンスは検索のスレッドから変更されません。
+ *
+ * <p>検索を実行するスレッドには、リクエストの {@code SecurityContext} を引き継ぎます。
+ * 待ち行列があふれた場合と、{@code app.async-users.timeout} までに検索が終わらない場合は 503 Service Unavailable を返します。
+ */
+@Controller
+@RequestMapping("/users")
+@ConditionalOnProperty(name = "app.async-users.enabled", havingValue = "true")
+public class AsyncUserListController {
+
+  private static final Logger logger = LoggerFactory.getLogger(AsyncUserListController.class);
+
+  @Autowired private UserQueryService userQueryService;
+
+  @Autowired
+  @Qualifier("userQueryExecutor")
+  private AsyncTaskExecutor userQueryExecutor;
+
+  @Value("${app.async-users.timeout:PT10S}")
+  private Duration timeout;
+
+  /**
+   * 全てのユーザーを取得し、ユーザー一覧画面を表示します。
+   *
+   * @param request リクエスト
+   * @return 一覧画面に表示するユーザー（検索の完了後に設定される）
+   */
+  @GetMapping
+  public DeferredResult<UserListView.Users> getAllUsers(HttpServletRequest request) {
+    return submit(userQueryService::getAllUsers, request);
+  }
+
+  /**
+   * ユーザーを検索し、検索結果をユーザー一覧画面に表示します。
+   *
+   * @param name ユーザー名
+   * @param email ユーザーのメールアドレス
+   * @param role ユーザーの役割
+   * @param fuzzy あいまい検索の編集距離（1以上の場合は名前・メールアドレスを編集距離以内で検索し、近い順に表示する）
+   * @param request リクエスト
+   * @return 一覧画面に表示するユーザー（検索の完了後に設定される）
+   */
+  @GetMapping("/search")
+  public DeferredResult<UserListView.Users> searchUsers(
+      @RequestParam(required = false) String name,
+      @RequestParam(required = false) String email,
+      @RequestParam(required = false) String role,
+      @RequestParam(required = false) Integer fuzzy,
+      HttpServletRequest request) {
+    return submit(() -> fuzzy != null && fuzzy > 0
+        ? userQueryService.fuzzySearchUsers(name, email, role, fuzzy)
+        : userQueryService.searchUsers(name, email, role), request);
+  }
+
+  /**
+   * 検索をスレッドプールに登録します。
+   * タイムアウトした場合は検索のスレッドに割り込み、結果は破棄します
+   * (タイムアウトの後に設定した結果は {@code DeferredResult} が受け付けない)。
+   */
+  private DeferredResult<UserListView.Users> submit(Supplier<List<UserSummary>> query, HttpServletRequest request) {
+    DeferredResult<UserListView.Users> result = new DeferredResult<>(timeout.toMillis());
+    Future<?> task;
+    try {
+      task = userQueryExecutor.submit(() -> {
+        try {
+          result.setResult(new UserListView.Users(query.get()));
+        } catch (RuntimeException e) {
+          result.setErrorResult(e);
+        }
+      });
+    } catch (TaskRejectedException e) {
+      logger.warn("検索の待ち行列があふれたため、検索を受け付けません: {}", request.getRequestURI());
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "検索が混み合っています", e);
+    }
+    result.onTimeout(() -> {
+      logger.warn("検索がタイムアウトしました: {} ({})", request.getRequestURI(), timeout);
+      task.cancel(true);
+      result.setErrorResult(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "検索がタイムアウトしました"));
+    });
+    return result;
+  }
+}
@@ -0,0 +1,110 @@
+package com.example.javase17learningproject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+/**
+ * 役割の組み合わせごとの権限リスト。
+ * 同じ役割の組み合わせを持つユーザーは、同じ不変の権限リストと権限のインスタンスを共有します。
+ *
+ * <p>定義済みの役割だけの組み合わせは {@link RoleMask#knownAuthorities(int)} の表を使用します。
+ * 定義済み以外の役割を含む組み合わせは、最初に要求されたときに役割名の集合ごとに作成して保持します。
+ * 定義済み以外の役割は追加できるため、保持する組み合わせと権限の数は {@link #MAX_INTERNED} までとし、
+ * 超えた分は保持せずにその都度作成します。
+ */
+public final class AuthoritySets {
+
+    /** 保持する組み合わせと権限の数の上限。 */
+    static final int MAX_INTERNED = 1024;
+
+    // 定義済み以外の役割名 -> 権限
+    private static final ConcurrentMap<String, GrantedAuthority> AUTHORITIES = new ConcurrentHashMap<>();
+
+    // 役割名の集合 -> 権限リスト
+    private static final ConcurrentMap<Set<String>, List<GrantedAuthority>> SETS = new ConcurrentHashMap<>();
+
+    // 定義済みの役割を優先度の順に、その後に定義済み以外の役割を名前の順に並べる
+    private static final Comparator<String> ORDER =
+        Comparator.comparingInt(RoleMask::bitOf).thenComparing(Comparator.naturalOrder());
+
+    private AuthoritySets() {}
+
+    /**
+     * 役割の組み合わせの権限リストを返します。
+     *
+     * @param mask 役割のビットマスク
+     * @param roles 役割の集合（ビットマスクが定義済み以外の役割を含む場合だけ参照する）
+     * @return 権限の不変リスト
+     */
+    public static List<GrantedAuthority> of(int mask, Collection<Role> roles) {
+        List<GrantedAuthority> known = RoleMask.knownAuthorities(mask);
+        if (known != null) {
+            return known;
+        }
+        Set<String> names = new HashSet<>();
+        for (Role role : roles) {
+            if (role != null && role.getName() != null) {
+                names.add(role.getName());
+            }
+        }
+        List<GrantedAuthority> interned = SETS.get(names);
+        if (interned != null) {
+            return interned;
+        }
+        List<GrantedAuthority> authorities = build(names);
+        if (SETS.size() >= MAX_INTERNED) {
+            return authorities;
+        }
+        List<GrantedAuthority> previous = SETS.putIfAbsent(Set.copyOf(names), authorities);
+        return previous != null ? previous : authorities;
+    }
+
+    /**
+     * 役割名の権限を返します。
+     *
+     * @param roleName 役割名
+     * @return 権限
+     */
+    public static GrantedAuthority authority(String roleName) {
+        int bit = RoleMask.bitOf(roleName);
+        if (bit != RoleMask.OTHER) {
+            return RoleMask.knownAuthorities(bit).get(0);
+        }
+        GrantedAuthority interned = AUTHORITIES.get(roleName);
+        if (interned != null) {
+            return interned;
+        }
+        if (AUTHORITIES.size() >= MAX_INTERNED) {
+            return new SimpleGrantedAuthority(RoleMask.authorityOf(roleName));
+        }
+        return AUTHORITIES.computeIfAbsent(roleName, name -> new SimpleGrantedAuthority(RoleMask.authorityOf(name)));
+    }
+
+    /**
+     * 保持している定義済み以外の役割を含む組み合わせの数を返します。
+     *
+     * @return 組み合わせの数
+     */
+    static int internedCount() {
+        return SETS.size();
+    }
+
+    private static List<GrantedAuthority> build(Set<String> names) {
+        List<String> sorted = new ArrayList<>(names);
+        sorted.sort(ORDER);
+        List<GrantedAuthority> authorities = new ArrayList<>(sorted.size());
+        for (String name : sorted) {
+            authorities.add(authority(name));
+        }
+        return List.copyOf(authorities);
+    }
+}
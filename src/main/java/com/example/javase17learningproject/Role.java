@@ -1,10 +1,14 @@
 package com.example.javase17learningproject;
 
+import com.example.javase17learningproject.event.UserChangePublisher;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 
 /**
@@ -12,14 +16,15 @@ import jakarta.persistence.Table;
  * 役割の情報を表します。
  */
 @Entity
-@Table(name = "roles")
+@EntityListeners(UserChangePublisher.class)
+@Table(name = "roles", indexes = @Index(name = "idx_role_name", columnList = "name", unique = true))
 public class Role {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(unique = true)
+    @Column
     private String name;
 
     public Role() {}
@@ -0,0 +1,163 @@
+package com.example.javase17learningproject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+/**
+ * 役割のビットマスク。
+ * ユーザーの役割を {@code users.role_mask} に非正規化して保持するためのビットの定義と操作を提供します。
+ *
+ * <p>役割の正は {@code user_roles} テーブルであり、ビットマスクは役割の変更時に再計算されます。
+ * 定義済みの役割 (ADMIN, MODERATOR, USER) 以外の役割は全て {@link #OTHER} のビットで表します。
+ * ビットの値が小さいほど優先度の高い役割です。
+ */
+public final class RoleMask {
+
+    /** 管理者 */
+    public static final int ADMIN = 1;
+
+    /** 管理補助者 */
+    public static final int MODERATOR = 1 << 1;
+
+    /** 一般ユーザー */
+    public static final int USER = 1 << 2;
+
+    /** 定義済み以外の役割。役割名での判定には {@code user_roles} の参照が必要です。 */
+    public static final int OTHER = 1 << 3;
+
+    /** 定義済みの役割のビットの和 */
+    public static final int KNOWN = ADMIN | MODERATOR | USER;
+
+    private static final int ALL = KNOWN | OTHER;
+
+    private static final String[] KNOWN_NAMES = {"ADMIN", "MODERATOR", "USER"};
+
+    private static final String AUTHORITY_PREFIX = "ROLE_";
+
+    // 定義済みの役割だけからなるマスクごとの権限リスト（添字はマスク）
+    private static final List<List<GrantedAuthority>> KNOWN_AUTHORITIES = buildKnownAuthorities();
+
+    private RoleMask() {}
+
+    /**
+     * 役割名に対応するビットを返します。
+     *
+     * @param roleName 役割名
+     * @return 定義済みの役割の場合はそのビット、それ以外は {@link #OTHER}
+     */
+    public static int bitOf(String roleName) {
+        if (roleName != null) {
+            for (int i = 0; i < KNOWN_NAMES.length; i++) {
+                if (KNOWN_NAMES[i].equals(roleName)) {
+                    return 1 << i;
+                }
+            }
+        }
+        return OTHER;
+    }
+
+    /**
+     * 定義済みの役割の場合に役割名を返します。
+     *
+     * @param bit 役割のビット（1ビットのみ）
+     * @return 役割名。定義済みの役割でない場合はnull
+     */
+    public static String nameOf(int bit) {
+        int index = Integer.numberOfTrailingZeros(bit);
+        return bit != 0 && (bit & KNOWN) == bit && index < KNOWN_NAMES.length ? KNOWN_NAMES[index] : null;
+    }
+
+    /**
+     * 役割の集合からビットマスクを計算します。
+     *
+     * @param roles 役割の集合
+     * @return ビットマスク
+     */
+    public static int of(Collection<Role> roles) {
+        int mask = 0;
+        if (roles != null) {
+            for (Role role : roles) {
+                if (role != null) {
+                    mask |= bitOf(role.getName());
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * ビットマスクが指定された役割のビットを含むかを返します。
+     *
+     * @param mask ビットマスク
+     * @param bit 役割のビット
+     * @return 含む場合はtrue
+     */
+    public static boolean contains(int mask, int bit) {
+        return (mask & bit) != 0;
+    }
+
+    /**
+     * 最も優先度の高い役割のビットを返します。
+     *
+     * @param mask ビットマスク
+     * @return 役割のビット。役割がない場合は0
+     */
+    public static int primary(int mask) {
+        return Integer.lowestOneBit(mask);
+    }
+
+    /**
+     * 指定されたビットを含む全てのビットマスクを返します。
+     * {@code role_mask IN (...)} の条件に使用し、{@code idx_user_role_mask} による検索を可能にします。
+     *
+     * @param bit 役割のビット
+     * @return ビットを含むビットマスクの一覧
+     */
+    public static List<Integer> masksContaining(int bit) {
+        List<Integer> masks = new ArrayList<>();
+        for (int mask = 1; mask <= ALL; mask++) {
+            if (contains(mask, bit)) {
+                masks.add(mask);
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * 定義済みの役割だけからなるビットマスクの権限リストを返します。
+     *
+     * @param mask ビットマスク
+     * @return 権限の不変リスト。{@link #OTHER} を含む場合はnull
+     */
+    public static List<GrantedAuthority> knownAuthorities(int mask) {
+        return contains(mask, OTHER) || mask < 0 || mask > KNOWN ? null : KNOWN_AUTHORITIES.get(mask);
+    }
+
+    /**
+     * 役割名の権限名を返します。
+     *
+     * @param roleName 役割名
+     * @return 権限名
+     */
+    public static String authorityOf(String roleName) {
+        return AUTHORITY_PREFIX + roleName;
+    }
+
+    private static List<List<GrantedAuthority>> buildKnownAuthorities() {
+        List<List<GrantedAuthority>> table = new ArrayList<>();
+        for (int mask = 0; mask <= KNOWN; mask++) {
+            List<GrantedAuthority> authorities = new ArrayList<>();
+            for (int i = 0; i < KNOWN_NAMES.length; i++) {
+                if (contains(mask, 1 << i)) {
+                    authorities.add(new SimpleGrantedAuthority(authorityOf(KNOWN_NAMES[i])));
+                }
+            }
+            table.add(List.copyOf(authorities));
+        }
+        return List.copyOf(table);
+    }
+}
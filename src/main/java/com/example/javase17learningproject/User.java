@@ -4,16 +4,23 @@ import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.SQLRestriction;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.example.javase17learningproject.diagnostics.PasswordHashEvent;
+import com.example.javase17learningproject.event.UserChangePublisher;
+import com.example.javase17learningproject.search.SearchNormalizer;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -21,10 +28,18 @@ import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.JoinTable;
 import jakarta.persistence.ManyToMany;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -33,12 +48,26 @@ import jakarta.validation.constraints.Size;
 /**
  * ユーザーエンティティ。
  * ユーザーの情報を表します。
+ *
+ * <p>削除は論理削除です ({@link #markDeleted(LocalDateTime)})。
+ * 削除済みのユーザーは全てのクエリとIDによる読み込みから除外され、{@code UserPurger} が後で物理削除します。
+ * 削除済みのユーザーは正規化したメールアドレスを持たず、同じメールアドレスのユーザーを物理削除の前に登録できます。
  */
 @Entity
-@Table(name = "users")
-@EntityListeners(AuditingEntityListener.class)
+@Table(name = "users", indexes = {
+    @Index(name = "idx_user_name", columnList = "name"),
+    @Index(name = "idx_user_name_normalized", columnList = "name_normalized"),
+    @Index(name = "idx_user_email", columnList = "email_normalized", unique = true),
+    @Index(name = "idx_user_role_mask", columnList = "role_mask"),
+    @Index(name = "idx_user_deleted_at", columnList = "deleted_at")
+})
+@SQLRestriction("deleted_at IS NULL")
+@EntityListeners({AuditingEntityListener.class, UserChangePublisher.class})
 public class User implements UserDetails {
 
+    // ハッシュ化はJFRの記録中に PasswordHashEvent として記録する。エンコーダーはスレッドセーフのため共有する
+    private static final PasswordEncoder PASSWORD_ENCODER = PasswordHashEvent.recording(new BCryptPasswordEncoder());
+
     // Getter methods
     public Long getId() {
         return id;
@@ -61,6 +90,124 @@ public class User implements UserDetails {
         return roles;
     }
 
+    /**
+     * 検索用に正規化した名前を取得します。
+     *
+     * @return 正規化した名前
+     * @see SearchNormalizer#normalizeName(String)
+     */
+    public String getNameNormalized() {
+        return nameNormalized;
+    }
+
+    /**
+     * 検索用に正規化したメールアドレスを取得します。
+     *
+     * @return 正規化したメールアドレス
+     * @see SearchNormalizer#normalizeEmail(String)
+     */
+    public String getEmailNormalized() {
+        return emailNormalized;
+    }
+
+    /**
+     * 役割のビットマスクを取得します。
+     *
+     * @return 役割のビットマスク
+     * @see RoleMask
+     */
+    public int getRoleMask() {
+        return roleMask;
+    }
+
+    /**
+     * 直近に読み込み・保存した時点の役割のビットマスクを取得します。
+     *
+     * @return 永続化済みの役割のビットマスク
+     */
+    public int getPersistedRoleMask() {
+        return persistedRoleMask;
+    }
+
+    /**
+     * 直近に読み込み・保存した後で役割が変更されたかを判定します。
+     * ビットマスクが同じでも、定義済み以外の役割が入れ替わった場合のために {@link #setRoles(Set)} の呼び出しも変更として扱います。
+     *
+     * @return 役割が変更された場合はtrue
+     */
+    public boolean isRolesChanged() {
+        return rolesReplaced || roleMask != persistedRoleMask;
+    }
+
+    /**
+     * 指定された役割を持つかを判定します。
+     * 定義済みの役割はビットマスクで判定し、役割の集合は参照しません。
+     *
+     * @param roleName 役割名
+     * @return 役割を持つ場合はtrue
+     */
+    public boolean hasRole(String roleName) {
+        int bit = RoleMask.bitOf(roleName);
+        if (bit != RoleMask.OTHER) {
+            return RoleMask.contains(roleMask, bit);
+        }
+        return RoleMask.contains(roleMask, RoleMask.OTHER)
+            && roles.stream().anyMatch(role -> role.getName().equals(roleName));
+    }
+
+    /**
+     * 楽観的ロックのバージョンを取得します。
+     *
+     * @return バージョン（更新のたびに1増える）
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * APIトークンの失効用のカウンターを取得します。
+     *
+     * @return 発行するトークンに含める値
+     */
+    public int getTokenVersion() {
+        return tokenVersion;
+    }
+
+    /**
+     * 発行済みのAPIトークンを全て失効させます。
+     */
+    public void revokeTokens() {
+        this.tokenVersion++;
+    }
+
+    /**
+     * 論理削除した日時を取得します。
+     *
+     * @return 削除した日時。削除されていない場合はnull
+     */
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    /**
+     * 論理削除されているかを判定します。
+     *
+     * @return 削除されている場合はtrue
+     */
+    public boolean isDeleted() {
+        return deletedAt != null;
+    }
+
+    /**
+     * 論理削除します。保存すると、以降のクエリと読み込みから除外されます。
+     * 役割の関連 ({@code user_roles}) は物理削除まで残します。
+     *
+     * @param deletedAt 削除した日時
+     */
+    public void markDeleted(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -76,13 +223,20 @@ public class User implements UserDetails {
 
     public void setName(String name) {
         this.name = name;
+        this.nameNormalized = SearchNormalizer.normalizeName(name);
     }
 
     public void setEmail(String email) {
         this.email = email;
+        this.emailNormalized = SearchNormalizer.normalizeEmail(email);
     }
 public void setRoles(Set<Role> roles) {
     this.roles = roles;
+    this.roleMask = RoleMask.of(roles);
+    this.rolesReplaced = true;
+    this.authorities = null;
+    // 役割のみの変更でもユーザーの更新として扱い、更新日時と@PostUpdateのリスナーに反映させる
+    this.updatedAt = LocalDateTime.now();
 }
 
 public void setCreatedAt(LocalDateTime createdAt) {
@@ -95,12 +249,25 @@ public void setCreatedAt(LocalDateTime createdAt) {
 
     /**
      * ユーザーの主要な役割を取得します。
-     * 複数の役割がある場合は最初の役割を返します。
+     * 複数の役割がある場合は最も優先度の高い役割 ({@link RoleMask#primary(int)}) を返します。
      *
      * @return ユーザーの主要な役割
      */
     public Role getRole() {
-        return roles.isEmpty() ? null : roles.iterator().next();
+        if (roles.size() <= 1) {
+            return roles.isEmpty() ? null : roles.iterator().next();
+        }
+        int primary = RoleMask.primary(roleMask);
+        Role fallback = null;
+        for (Role role : roles) {
+            if (RoleMask.bitOf(role.getName()) == primary) {
+                return role;
+            }
+            if (fallback == null) {
+                fallback = role;
+            }
+        }
+        return fallback;
     }
 
     public void setAccountNonExpired(boolean accountNonExpired) {
@@ -131,6 +298,13 @@ public void setCreatedAt(LocalDateTime createdAt) {
     @Email(message = "有効なメールアドレスを入力してください")
     private String email;
 
+    // 検索用の正規化カラム。name・emailの変更時と保存前に更新する
+    @Column(name = "name_normalized")
+    private String nameNormalized;
+
+    @Column(name = "email_normalized")
+    private String emailNormalized;
+
     @NotBlank(message = "パスワードは必須です")
     @Size(min = 8, message = "パスワードは8文字以上で入力してください")
     private String password;
@@ -139,11 +313,41 @@ public void setCreatedAt(LocalDateTime createdAt) {
     @JoinTable(
         name = "user_roles",
         joinColumns = @JoinColumn(name = "user_id"),
-        inverseJoinColumns = @JoinColumn(name = "role_id")
+        inverseJoinColumns = @JoinColumn(name = "role_id"),
+        // 主キー (role_id, user_id) は役割からの検索に使われるため、ユーザーからの結合用に逆順のインデックスを持つ
+        indexes = @Index(name = "idx_user_role", columnList = "user_id, role_id")
     )
     @NotNull(message = "役割は必須です")
     private Set<Role> roles = new HashSet<>();
 
+    // 役割の非正規化カラム。役割の正はuser_rolesで、setRolesと保存前に更新する
+    @Column(name = "role_mask", nullable = false)
+    private int roleMask;
+
+    // 変更イベントで変更前の役割を伝えるため、直近に読み込み・保存した時点の値を保持する
+    @Transient
+    private int persistedRoleMask;
+
+    @Transient
+    private boolean rolesReplaced;
+
+    // 解決済みの権限リスト (AuthoritySets)。役割の変更と読み込み・保存時に破棄する
+    @Transient
+    private List<GrantedAuthority> authorities;
+
+    // 楽観的ロック用。同じユーザーへの同時更新は後からコミットした側が失敗する
+    @Version
+    @Column(nullable = false)
+    private long version;
+
+    // APIトークンの失効用。トークンは発行時点の値を含み、値を増やすと発行済みのトークンが全て無効になる
+    @Column(name = "token_version", nullable = false)
+    private int tokenVersion;
+
+    // 論理削除した日時。削除されていない場合はnull
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -166,11 +370,45 @@ public void setCreatedAt(LocalDateTime createdAt) {
         this.email = email;
         this.roles = roles;
         setPassword(password); // パスワードのハッシュ化を確実に行う
+        updateDerivedColumns();
+    }
+
+    /**
+     * 保存前に検索用の正規化カラムと役割のビットマスクを更新します。
+     * コンストラクタやフィールドへの直接代入で設定された値も反映されます。
+     * 論理削除したユーザーは正規化したメールアドレスを空にし、一意インデックス ({@code idx_user_email}) から外します。
+     * 役割の集合が未初期化の場合は読み込み後に変更されていないため、ビットマスクはそのまま使用します。
+     */
+    @PrePersist
+    @PreUpdate
+    void updateDerivedColumns() {
+        this.nameNormalized = SearchNormalizer.normalizeName(name);
+        // 一意インデックスはNULLを重複として扱わない
+        this.emailNormalized = deletedAt == null ? SearchNormalizer.normalizeEmail(email) : null;
+        if (Hibernate.isInitialized(roles)) {
+            this.roleMask = RoleMask.of(roles);
+            // getRoles() の集合を直接変更した場合も、保存時に権限リストを解決し直す
+            this.authorities = null;
+        }
+    }
+
+    /**
+     * 読み込み・保存後に、永続化済みの役割のビットマスクを記録します。
+     * エンティティリスナーの後に呼ばれるため、変更イベントの発行時には変更前の値が残っています。
+     * 解決済みの権限リストは破棄し、次の {@link #getAuthorities()} で読み込んだ役割から解決します。
+     */
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    void markPersisted() {
+        this.persistedRoleMask = roleMask;
+        this.rolesReplaced = false;
+        this.authorities = null;
     }
 
     public void setPassword(String password) {
         if (password != null) {
-            this.password = new BCryptPasswordEncoder().encode(password);
+            this.password = PASSWORD_ENCODER.encode(password);
         }
     }
 
@@ -207,9 +445,13 @@ public void setCreatedAt(LocalDateTime createdAt) {
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return roles.stream()
-            .map(role -> new SimpleGrantedAuthority("ROLE_" + role.getName()))
-            .collect(Collectors.toList());
+        // 役割の組み合わせごとに共有する不変の権限リストを、役割が変わるまで保持する
+        List<GrantedAuthority> resolved = authorities;
+        if (resolved == null) {
+            resolved = AuthoritySets.of(roleMask, roles);
+            authorities = resolved;
+        }
+        return resolved;
     }
 
     @Override
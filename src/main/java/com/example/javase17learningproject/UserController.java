@@ -1,11 +1,10 @@
 package com.example.javase17learningproject;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -13,9 +12,19 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.example.javase17learningproject.search.UserSuggestIndex;
+import com.example.javase17learningproject.search.UserSuggestIndex.Suggestion;
+import com.example.javase17learningproject.service.UserCommandService;
+import com.example.javase17learningproject.service.UserResolver;
+import com.example.javase17learningproject.service.UserUpdateConflictException;
+
+import jakarta.servlet.http.HttpServletResponse;
 
 /**
  * ユーザーコントローラー。 ユーザー関連のAPIエンドポイントを提供します。
+ * 一覧と検索は {@link UserListController}（非同期モードでは {@link AsyncUserListController}）が提供します。
  */
 @Controller
 @RequestMapping("/users")
@@ -23,19 +32,9 @@ public class UserController {
 
   @Autowired private UserRepository userRepository;
   @Autowired private RoleRepository roleRepository;
-
-  /**
-   * 全てのユーザーを取得し、ユーザー一覧画面を表示します。
-   *
-   * @param model モデル
-   * @return ユーザー一覧画面のテンプレート名
-   */
-  @GetMapping
-  public String getAllUsers(Model model) {
-    List<User> users = userRepository.findAll();
-    model.addAttribute("users", users);
-    return "users";
-  }
+  @Autowired private UserCommandService userCommandService;
+  @Autowired private UserResolver userResolver;
+  @Autowired private UserSuggestIndex userSuggestIndex;
 
   /**
    * 指定されたIDのユーザーを取得し、ユーザー詳細画面を表示します。
@@ -46,7 +45,7 @@ public class UserController {
    */
   @GetMapping("/{id}")
   public String getUserById(@PathVariable Long id, Model model) {
-    Optional<User> user = userRepository.findById(id);
+    Optional<User> user = userResolver.findById(id);
     if (user.isPresent()) {
       model.addAttribute("user", user.get());
       return "user_detail";
@@ -64,7 +63,7 @@ public class UserController {
    */
   @GetMapping("/{id}/edit")
   public String editUser(@PathVariable Long id, Model model) {
-    Optional<User> user = userRepository.findById(id);
+    Optional<User> user = userResolver.findById(id);
     if (user.isPresent()) {
       model.addAttribute("user", user.get());
       model.addAttribute("roles", roleRepository.findAll());
@@ -76,28 +75,32 @@ public class UserController {
 
   /**
    * ユーザーを更新します。
+   * 編集画面で表示したバージョンが最新でない場合は上書きせず、409 Conflictで最新の内容の編集画面を表示します。
    *
    * @param id ユーザーID
-   * @param userDetails 更新するユーザー情報
-   * @return ユーザー一覧画面にリダイレクト
+   * @param version 編集画面で表示したバージョン（省略時は競合を検査せず、同時更新の失敗時に再試行する）
+   * @param model モデル
+   * @param response レスポンス
+   * @return ユーザー一覧画面にリダイレクト。競合した場合はユーザー編集画面、見つからない場合は404 Not Found。
    */
   @PostMapping("/{id}")
-  public String updateUser(@PathVariable Long id, @RequestParam String name, @RequestParam String email, @RequestParam("role") String role) {
-    Optional<User> user = userRepository.findById(id);
-    if (user.isPresent()) {
-      User existingUser = user.get();
-      existingUser.setName(name);
-      existingUser.setEmail(email);
-      Optional<Role> newRole = roleRepository.findByName(role);
-      newRole.ifPresent(r -> {
-          Set<Role> roles = new HashSet<>();
-          roles.add(r);
-          existingUser.setRoles(roles);
-      });
-      userRepository.save(existingUser);
-      return "redirect:/users";
-    } else {
+  public String updateUser(@PathVariable Long id, @RequestParam String name, @RequestParam String email, @RequestParam("role") String role,
+      @RequestParam(required = false) Long version, Model model, HttpServletResponse response) {
+    try {
+      if (userCommandService.updateUser(id, version, name, email, role).isPresent()) {
+        return "redirect:/users";
+      }
       return "error/404"; // 404エラー画面を表示
+    } catch (UserUpdateConflictException e) {
+      response.setStatus(HttpStatus.CONFLICT.value());
+      Optional<User> user = userRepository.findById(id);
+      if (user.isEmpty()) {
+        return "error/404";
+      }
+      model.addAttribute("user", user.get());
+      model.addAttribute("roles", roleRepository.findAll());
+      model.addAttribute("conflict", true);
+      return "user_edit";
     }
   }
 
@@ -110,7 +113,7 @@ public class UserController {
    */
   @GetMapping("/{id}/delete")
   public String deleteUserConfirmation(@PathVariable Long id, Model model) {
-    Optional<User> user = userRepository.findById(id);
+    Optional<User> user = userResolver.findById(id);
     if (user.isPresent()) {
       model.addAttribute("user", user.get());
       return "user_delete"; // ユーザー削除確認画面のテンプレート
@@ -121,14 +124,16 @@ public class UserController {
 
   /**
    * ユーザーを削除します。
+   * 認可の判定で読み込んだユーザーを削除するため、存在の確認のための読み込みは行いません。
    *
    * @param id ユーザーID
    * @return ユーザー一覧画面にリダイレクト
    */
   @PostMapping("/{id}/delete")
   public String deleteUser(@PathVariable Long id) {
-    if (userRepository.existsById(id)) {
-      userRepository.deleteById(id);
+    Optional<User> user = userResolver.findById(id);
+    if (user.isPresent()) {
+      userResolver.delete(user.get());
       return "redirect:/users";
     } else {
       return "error/404"; // 404エラー画面を表示
@@ -167,22 +172,21 @@ public class UserController {
   }
 
   /**
-   * ユーザーを検索し、検索結果をユーザー一覧画面に表示します。
+   * 検索フォームの入力補完の候補を返します。 データベースを参照せず、メモリ上の索引から前方一致で検索します。
    *
-   * @param name ユーザー名
-   * @param email ユーザーのメールアドレス
-   * @param role ユーザーの役割
-   * @param model モデル
-   * @return ユーザー一覧画面のテンプレート名
+   * @param q 入力途中の文字列
+   * @param field 補完する項目 ({@code name} または {@code email})
+   * @param limit 返す件数の上限
+   * @return 補完の候補（JSON）
    */
-  @GetMapping("/search")
-  public String searchUsers(
-      @RequestParam(required = false) String name,
-      @RequestParam(required = false) String email,
-      @RequestParam(required = false) String role,
-      Model model) {
-    List<User> users = userRepository.searchUsers(name, email, role);
-    model.addAttribute("users", users);
-    return "users";
+  @GetMapping("/suggest")
+  @ResponseBody
+  public List<Suggestion> suggestUsers(
+      @RequestParam(defaultValue = "") String q,
+      @RequestParam(defaultValue = "name") String field,
+      @RequestParam(defaultValue = "10") int limit) {
+    UserSuggestIndex.Field target =
+        "email".equalsIgnoreCase(field) ? UserSuggestIndex.Field.EMAIL : UserSuggestIndex.Field.NAME;
+    return userSuggestIndex.suggest(target, q, limit);
   }
 }
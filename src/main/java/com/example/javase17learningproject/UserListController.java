@@ -0,0 +1,71 @@
+package com.example.javase17learningproject;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import com.example.javase17learningproject.directory.UserSummary;
+import com.example.javase17learningproject.service.UserQueryService;
+import com.example.javase17learningproject.view.UserListView;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * ユーザー一覧・検索のコントローラー。 検索はリクエストを処理するスレッドで実行します。
+ * 非同期モード ({@code app.async-users.enabled=true}) では、代わりに {@link AsyncUserListController} が有効になります。
+ */
+@Controller
+@RequestMapping("/users")
+@ConditionalOnProperty(name = "app.async-users.enabled", havingValue = "false", matchIfMissing = true)
+public class UserListController {
+
+  @Autowired private UserQueryService userQueryService;
+  @Autowired private UserListView userListView;
+
+  /**
+   * 全てのユーザーを取得し、ユーザー一覧画面を表示します。
+   *
+   * @param model モデル
+   * @param request リクエスト
+   * @param response レスポンス
+   * @return ユーザー一覧画面のテンプレート名
+   */
+  @GetMapping
+  public String getAllUsers(Model model, HttpServletRequest request, HttpServletResponse response) {
+    return userListView.render(userQueryService.getAllUsers(), model, request, response);
+  }
+
+  /**
+   * ユーザーを検索し、検索結果をユーザー一覧画面に表示します。
+   *
+   * @param name ユーザー名
+   * @param email ユーザーのメールアドレス
+   * @param role ユーザーの役割
+   * @param fuzzy あいまい検索の編集距離（1以上の場合は名前・メールアドレスを編集距離以内で検索し、近い順に表示する）
+   * @param model モデル
+   * @param request リクエスト
+   * @param response レスポンス
+   * @return ユーザー一覧画面のテンプレート名
+   */
+  @GetMapping("/search")
+  public String searchUsers(
+      @RequestParam(required = false) String name,
+      @RequestParam(required = false) String email,
+      @RequestParam(required = false) String role,
+      @RequestParam(required = false) Integer fuzzy,
+      Model model,
+      HttpServletRequest request,
+      HttpServletResponse response) {
+    List<UserSummary> users = fuzzy != null && fuzzy > 0
+        ? userQueryService.fuzzySearchUsers(name, email, role, fuzzy)
+        : userQueryService.searchUsers(name, email, role);
+    return userListView.render(users, model, request, response);
+  }
+}
@@ -1,5 +1,6 @@
 package com.example.javase17learningproject;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -7,23 +8,92 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import com.example.javase17learningproject.search.SearchNormalizer;
+import com.example.javase17learningproject.search.UserSearchCriteria;
+
 /**
  * ユーザーリポジトリ。
  * ユーザーエンティティのデータベース操作を提供します。
+ *
+ * <p>メールアドレスと名前の検索は正規化カラム ({@code email_normalized}, {@code name_normalized}) を使用します。
+ * 完全一致・前方一致の検索はインデックスで処理されます。
  */
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserSearchRepository {
     @Query("SELECT u FROM User u JOIN u.roles r WHERE r IN :role")
-    List<User> findByRoles(@Param("role") Role role);
+    List<User> findByRolesJoin(@Param("role") Role role);
+
+    List<User> findByRoleMaskIn(Collection<Integer> roleMasks);
+
+    /**
+     * 指定された役割を持つユーザーを検索します。
+     * 定義済みの役割は {@code role_mask} の {@code IN} 条件 ({@code idx_user_role_mask}) で検索し、
+     * それ以外の役割は {@code user_roles} と結合して検索します。
+     *
+     * @param role 役割
+     * @return 該当するユーザー
+     * @see RoleMask
+     */
+    default List<User> findByRoles(Role role) {
+        int bit = RoleMask.bitOf(role.getName());
+        if (bit == RoleMask.OTHER) {
+            return findByRolesJoin(role);
+        }
+        return findByRoleMaskIn(RoleMask.masksContaining(bit));
+    }
 
     List<User> findByNameContaining(String name);
-    
-    Optional<User> findByEmail(String email);
-
-    @Query("SELECT DISTINCT u FROM User u LEFT JOIN u.roles r WHERE " +
-            "(:name is null or u.name LIKE %:name%) AND " +
-            "(:email is null or u.email LIKE %:email%) AND " +
-            "(:role is null or r.name LIKE %:role%)")
-    List<User> searchUsers(@Param("name") String name,
-                         @Param("email") String email,
-                         @Param("role") String role);
+
+    Optional<User> findByEmailNormalized(String emailNormalized);
+
+    List<User> findByNameNormalizedStartingWith(String namePrefix);
+
+    List<User> findByEmailNormalizedStartingWith(String emailPrefix);
+
+    /**
+     * メールアドレスでユーザーを検索します。
+     * 大文字・小文字を区別せず、{@code idx_user_email} による完全一致で検索します。
+     *
+     * @param email メールアドレス
+     * @return 該当するユーザー
+     */
+    default Optional<User> findByEmail(String email) {
+        return findByEmailNormalized(SearchNormalizer.normalizeEmail(email));
+    }
+
+    /**
+     * 名前の前方一致でユーザーを検索します。
+     * 全角・半角、カタカナ・ひらがな、大文字・小文字の違いを区別しません。
+     *
+     * @param prefix 名前の先頭部分
+     * @return 該当するユーザー
+     */
+    default List<User> findByNamePrefix(String prefix) {
+        return findByNameNormalizedStartingWith(SearchNormalizer.normalizeName(prefix));
+    }
+
+    /**
+     * メールアドレスの前方一致でユーザーを検索します。
+     * 大文字・小文字を区別しません。
+     *
+     * @param prefix メールアドレスの先頭部分
+     * @return 該当するユーザー
+     */
+    default List<User> findByEmailPrefix(String prefix) {
+        return findByEmailNormalizedStartingWith(SearchNormalizer.normalizeEmail(prefix));
+    }
+
+    /**
+     * 条件に一致するユーザーをID順に検索します。
+     * 名前とメールアドレスは正規化して比較し、末尾に {@code *} を付けた場合は前方一致、それ以外は部分一致で検索します。
+     * 役割は役割名の完全一致で検索します。
+     *
+     * @param name ユーザー名（nullまたは空の場合は条件なし）
+     * @param email メールアドレス（nullまたは空の場合は条件なし）
+     * @param role 役割名（nullまたは空の場合は条件なし）
+     * @return 該当するユーザー
+     * @see UserSearchCriteria
+     */
+    default List<User> searchUsers(String name, String email, String role) {
+        return search(UserSearchCriteria.of(name, email, role));
+    }
 }
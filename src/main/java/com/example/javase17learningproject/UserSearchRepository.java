@@ -0,0 +1,30 @@
+package com.example.javase17learningproject;
+
+import java.util.List;
+
+import com.example.javase17learningproject.search.UserSearchCriteria;
+
+/**
+ * ユーザー検索のリポジトリフラグメント。
+ * 指定された条件だけを含むクエリを組み立てて検索します。
+ */
+public interface UserSearchRepository {
+
+    /**
+     * 条件に一致するユーザーをID順に検索します。
+     *
+     * @param criteria 検索条件
+     * @return 該当するユーザー
+     */
+    List<User> search(UserSearchCriteria criteria);
+
+    /**
+     * 指定されたIDのユーザーを、IDの順序どおりに取得します。
+     * 永続化コンテキストに読み込み済みのユーザーはデータベースから再取得しません。
+     * 存在しないIDは結果に含まれません。
+     *
+     * @param ids ユーザーID
+     * @return 該当するユーザー
+     */
+    List<User> findAllByIdInOrder(List<Long> ids);
+}
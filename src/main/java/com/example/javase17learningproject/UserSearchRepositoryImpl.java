@@ -0,0 +1,165 @@
+package com.example.javase17learningproject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.javase17learningproject.search.UserSearchCriteria;
+import com.example.javase17learningproject.search.UserSearchCriteria.MatchMode;
+import com.example.javase17learningproject.search.UserSearchCriteria.RoleFilter;
+import com.example.javase17learningproject.search.UserSearchCriteria.Shape;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+/**
+ * ユーザー検索のリポジトリフラグメントの実装。
+ *
+ * <p>指定された条件だけを述語として出力し、条件がない項目の {@code (:x is null or ...)} や、
+ * 役割の条件がない場合の役割テーブルとの結合は行いません。
+ * 定義済みの役割は {@code role_mask} の {@code IN} 条件で絞り込み、役割テーブルとは結合しません。
+ * それ以外の役割は名前の完全一致で結合して絞り込むため、1ユーザーが複数行になることはなく {@code DISTINCT} も不要です。
+ * 前方一致はインデックスの範囲検索 ({@code >= :lo AND < :hi}) で処理します。
+ *
+ * <p>クエリ文字列は検索条件の形 ({@link Shape}) ごとに1度だけ組み立ててキャッシュします。
+ * 同じ形の検索は同じJPQLになるため、Hibernateのクエリ解釈キャッシュとJDBCの文キャッシュが再利用されます。
+ */
+public class UserSearchRepositoryImpl implements UserSearchRepository {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private static final int MULTI_LOAD_BATCH_SIZE = 500;
+
+    private static final Map<Shape, String> QUERY_CACHE = new ConcurrentHashMap<>();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<User> search(UserSearchCriteria criteria) {
+        Shape shape = criteria.shape();
+        String jpql = QUERY_CACHE.computeIfAbsent(shape, UserSearchRepositoryImpl::buildQuery);
+        TypedQuery<User> query = entityManager.createQuery(jpql, User.class);
+        bindMatch(query, "name", criteria.name(), criteria.nameMode());
+        bindMatch(query, "email", criteria.email(), criteria.emailMode());
+        if (shape.roleFilter() == RoleFilter.MASK) {
+            query.setParameter("roleMasks", RoleMask.masksContaining(RoleMask.bitOf(criteria.role())));
+        } else if (shape.roleFilter() == RoleFilter.JOIN) {
+            query.setParameter("role", criteria.role());
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> findAllByIdInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<User> users = entityManager.unwrap(Session.class)
+            .byMultipleIds(User.class)
+            .withBatchSize(MULTI_LOAD_BATCH_SIZE)
+            .multiLoad(ids);
+        // 削除済みのIDはnullになるため取り除く
+        users.removeIf(Objects::isNull);
+        return users;
+    }
+
+    /**
+     * 検索条件の形に対応するJPQLを組み立てます。
+     *
+     * @param shape 検索条件の形
+     * @return JPQL
+     */
+    static String buildQuery(Shape shape) {
+        StringBuilder jpql = new StringBuilder("SELECT u FROM User u");
+        if (shape.roleFilter() == RoleFilter.JOIN) {
+            jpql.append(" JOIN u.roles r");
+        }
+        StringBuilder where = new StringBuilder();
+        appendMatch(where, "u.nameNormalized", "name", shape.nameMode());
+        appendMatch(where, "u.emailNormalized", "email", shape.emailMode());
+        if (shape.roleFilter() == RoleFilter.MASK) {
+            appendCondition(where, "u.roleMask IN :roleMasks");
+        } else if (shape.roleFilter() == RoleFilter.JOIN) {
+            appendCondition(where, "r.name = :role");
+        }
+        if (where.length() > 0) {
+            jpql.append(" WHERE ").append(where);
+        }
+        return jpql.append(" ORDER BY u.id").toString();
+    }
+
+    private static void appendMatch(StringBuilder where, String path, String parameter, MatchMode mode) {
+        if (mode == null) {
+            return;
+        }
+        if (mode == MatchMode.PREFIX) {
+            appendCondition(where, path + " >= :" + parameter + "Lo AND " + path + " < :" + parameter + "Hi");
+        } else {
+            appendCondition(where, path + " LIKE :" + parameter + " ESCAPE '" + LIKE_ESCAPE + "'");
+        }
+    }
+
+    private static void appendCondition(StringBuilder where, String condition) {
+        if (where.length() > 0) {
+            where.append(" AND ");
+        }
+        where.append(condition);
+    }
+
+    private static void bindMatch(TypedQuery<User> query, String parameter, String value, MatchMode mode) {
+        if (mode == null) {
+            return;
+        }
+        if (mode == MatchMode.PREFIX) {
+            query.setParameter(parameter + "Lo", value);
+            query.setParameter(parameter + "Hi", prefixUpperBound(value));
+        } else {
+            query.setParameter(parameter, "%" + escapeLike(value) + "%");
+        }
+    }
+
+    /**
+     * 前方一致の上限値（この値未満が前方一致に該当する）を返します。
+     * 最後の文字を1つ進めた文字列です。
+     *
+     * @param prefix 前方一致の文字列
+     * @return 上限値
+     */
+    public static String prefixUpperBound(String prefix) {
+        int last = prefix.length() - 1;
+        while (last >= 0 && prefix.charAt(last) == Character.MAX_VALUE) {
+            last--;
+        }
+        if (last < 0) {
+            // 全て最大値の文字で構成される場合は実質的に上限なし
+            return prefix + Character.MAX_VALUE;
+        }
+        return prefix.substring(0, last) + (char) (prefix.charAt(last) + 1);
+    }
+
+    /**
+     * LIKEの特殊文字 ({@code %}、{@code _}、エスケープ文字) をエスケープします。
+     * エスケープ文字は {@code \} です。
+     *
+     * @param value 検索する文字列
+     * @return エスケープした文字列
+     */
+    public static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 4);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
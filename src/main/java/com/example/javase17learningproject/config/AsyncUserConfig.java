@@ -0,0 +1,80 @@
+package com.example.javase17learningproject.config;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.task.DelegatingSecurityContextAsyncTaskExecutor;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.example.javase17learningproject.AsyncUserListController;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+import com.example.javase17learningproject.view.UserListReturnValueHandler;
+import com.example.javase17learningproject.view.UserListView;
+
+/**
+ * 非同期モードのユーザー一覧・検索 ({@link AsyncUserListController}) の設定クラス。
+ * 検索を実行する専用のスレッドプールと、検索結果から非同期ディスパッチで一覧画面を組み立てる戻り値のハンドラーを登録します。
+ * {@code app.async-users.enabled=true} の場合だけ有効です。
+ *
+ * <p>検索のスレッドには、検索を登録したリクエストが発行した変更イベントの通し番号を引き継ぎ、
+ * 読み取りモデルが自身の書き込みの反映を待てるようにします。
+ *
+ * <p>スレッド数と待ち行列の長さに上限を設け、待ち行列があふれた場合は検索を受け付けません (503 Service Unavailable)。
+ * スレッドプールは {@code executor.*} のメトリクス (タグ {@code name=userQueryThreadPool}) で監視できます。
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.async-users.enabled", havingValue = "true")
+public class AsyncUserConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private UserListView userListView;
+
+    /**
+     * 検索を実行するスレッドプール。
+     *
+     * @param poolSize スレッド数
+     * @param queueCapacity 実行を待つ検索の数の上限
+     * @param userChangeEventBus 変更イベントのバス（自身の書き込みの通し番号の引き継ぎ）
+     * @return スレッドプール
+     */
+    @Bean
+    public ThreadPoolTaskExecutor userQueryThreadPool(
+            @Value("${app.async-users.pool-size:16}") int poolSize,
+            @Value("${app.async-users.queue-capacity:200}") int queueCapacity,
+            UserChangeEventBus userChangeEventBus) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("user-query-");
+        // デコレーターは検索を登録したスレッドで呼ばれる
+        executor.setTaskDecorator(userChangeEventBus::propagateOwnWrites);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+    /**
+     * 検索を実行するエグゼキュータ。
+     * 検索を登録したスレッド（リクエストを処理するスレッド）の {@code SecurityContext} を、実行するスレッドに引き継ぎます。
+     * 引き継いだ認証情報は、実行後にスレッドから取り除かれます。
+     *
+     * @param userQueryThreadPool 検索を実行するスレッドプール
+     * @return エグゼキュータ
+     */
+    @Bean
+    public AsyncTaskExecutor userQueryExecutor(ThreadPoolTaskExecutor userQueryThreadPool) {
+        return new DelegatingSecurityContextAsyncTaskExecutor(userQueryThreadPool);
+    }
+
+    @Override
+    public void addReturnValueHandlers(List<HandlerMethodReturnValueHandler> handlers) {
+        handlers.add(new UserListReturnValueHandler(userListView));
+    }
+}
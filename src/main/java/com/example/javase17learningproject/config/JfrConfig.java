@@ -0,0 +1,47 @@
+package com.example.javase17learningproject.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.example.javase17learningproject.diagnostics.RepositoryQueryEvent;
+import com.example.javase17learningproject.diagnostics.TemplateRenderEvent;
+
+/**
+ * JFRイベントの設定クラス。
+ * リポジトリのクエリ ({@link RepositoryQueryEvent}) とテンプレートの描画 ({@link TemplateRenderEvent}) を記録するように登録します。
+ * イベントはJFRの記録中だけ作成されるため、記録していない間の負荷はイベントの有効判定だけです。
+ * 認可の判定とパスワードのハッシュ計算は、それぞれのクラスで記録します。
+ */
+@Configuration
+public class JfrConfig implements WebMvcConfigurer {
+
+    /**
+     * Spring Dataのリポジトリのメソッドの呼び出しを記録するポストプロセッサ。
+     * リポジトリはファクトリの初期化時に作成されるため、初期化の前にプロキシへの追加を登録します。
+     *
+     * @return ポストプロセッサ
+     */
+    @Bean
+    public static BeanPostProcessor repositoryQueryEventPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                        (proxyFactory, information) -> proxyFactory.addAdvice(RepositoryQueryEvent.interceptor(
+                            information.getRepositoryInterface().getSimpleName()))));
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(TemplateRenderEvent.interceptor());
+    }
+}
@@ -1,7 +1,11 @@
 package com.example.javase17learningproject.config;
 
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewFilter;
 
 /**
  * JPAの設定クラス。
@@ -10,4 +14,21 @@ import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 @Configuration
 @EnableJpaAuditing
 public class JpaConfig {
-}
\ No newline at end of file
+
+    /**
+     * ユーザー画面のリクエストで、セキュリティのフィルタより前からエンティティマネージャを共有します。
+     * 認可の判定で読み込んだユーザーをコントローラーでも管理状態のまま使用でき、
+     * 削除のための再読み込みが永続化コンテキストから解決されます。
+     * Spring MVCのインターセプタ ({@code spring.jpa.open-in-view}) は、このフィルタが開いたものをそのまま使用します。
+     *
+     * @return フィルタの登録
+     */
+    @Bean
+    public FilterRegistrationBean<OpenEntityManagerInViewFilter> openEntityManagerInViewFilter() {
+        FilterRegistrationBean<OpenEntityManagerInViewFilter> registration =
+            new FilterRegistrationBean<>(new OpenEntityManagerInViewFilter());
+        registration.addUrlPatterns("/users/*");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+}
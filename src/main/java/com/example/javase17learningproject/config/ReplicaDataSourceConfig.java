@@ -0,0 +1,102 @@
+package com.example.javase17learningproject.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.example.javase17learningproject.datasource.ReplicaRoutingDataSource;
+import com.example.javase17learningproject.datasource.ReplicaSet;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * 読み取りレプリカの設定クラス。
+ * {@code app.datasource.replica.urls} が設定されている場合だけ有効になり、
+ * アプリケーションのデータソースを読み取り専用のトランザクションをレプリカに振り分けるデータソースに置き換えます。
+ * プライマリは {@code spring.datasource.*} で設定し、レプリカの接続にはプライマリと同じユーザーを使用します。
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replica.urls")
+public class ReplicaDataSourceConfig {
+
+    @Value("${app.datasource.replica.urls}")
+    private String replicaUrls;
+
+    @Value("${app.datasource.replica.max-lag:PT5S}")
+    private Duration maxLag;
+
+    /**
+     * プライマリとレプリカのデータソースの集合を作成します。
+     *
+     * @param properties プライマリのデータソースの設定
+     * @return データソースの集合
+     */
+    @Bean(initMethod = "start")
+    public ReplicaSet replicaSet(DataSourceProperties properties) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : replicaUrls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            String name = "replica-" + (replicas.size() + 1);
+            HikariDataSource replica = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName())
+                .url(url.trim())
+                .username(properties.determineUsername())
+                .password(properties.determinePassword())
+                .build();
+            replica.setPoolName(name);
+            replica.setReadOnly(true);
+            replicas.put(name, replica);
+        }
+        if (replicas.isEmpty()) {
+            throw new IllegalStateException("app.datasource.replica.urls にレプリカのURLが指定されていません");
+        }
+        return new ReplicaSet(primary, replicas, maxLag);
+    }
+
+    /**
+     * アプリケーションのデータソース。
+     * トランザクションが読み取り専用かどうかが確定してから振り分けるよう、接続の取得を最初のSQLの実行まで遅らせます。
+     *
+     * @param replicaSet データソースの集合
+     * @return データソース
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaSet replicaSet) {
+        ReplicaRoutingDataSource routingDataSource = new ReplicaRoutingDataSource(replicaSet);
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * Hibernateがトランザクションごとに接続を取得・返却するようにします。
+     * 既定ではセッションの間（Open EntityManager in Viewのリクエスト全体）同じ接続を保持するため、
+     * 最初のトランザクションで選択したレプリカの接続で、後の書き込みが実行されてしまいます。
+     *
+     * @return Hibernateの設定のカスタマイザ
+     */
+    @Bean
+    public HibernatePropertiesCustomizer replicaConnectionHandlingCustomizer() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+            PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+}
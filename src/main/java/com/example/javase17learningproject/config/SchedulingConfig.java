@@ -0,0 +1,13 @@
+package com.example.javase17learningproject.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * スケジューリングの設定クラス。
+ * 定期実行する保守処理（役割のビットマスクの整合性検証など）を有効にします。
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -2,14 +2,29 @@ package com.example.javase17learningproject.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextHolderFilter;
 
+import com.example.javase17learningproject.diagnostics.PasswordHashEvent;
+import com.example.javase17learningproject.security.PrincipalRefreshFilter;
+import com.example.javase17learningproject.security.PrincipalVersionTracker;
+import com.example.javase17learningproject.security.TokenAuthenticationFilter;
+import com.example.javase17learningproject.security.TokenService;
+import com.example.javase17learningproject.security.UserAccountService;
+import com.example.javase17learningproject.security.UserPrincipalAuthenticationProvider;
 import com.example.javase17learningproject.service.AccessControlService;
 
 /**
@@ -24,15 +39,70 @@ public class SecurityConfig {
     @Autowired
     private AccessControlService accessControlService;
 
+    @Autowired
+    private UserAccountService userAccountService;
+
+    @Autowired
+    private PrincipalVersionTracker principalVersionTracker;
+
     /**
      * パスワードエンコーダーのBeanを定義します。
      * BCryptアルゴリズムを使用してパスワードをハッシュ化します。
+     * ハッシュ計算はJFRの記録中に {@link PasswordHashEvent} として記録されます。
      *
-     * @return BCryptPasswordEncoderのインスタンス
+     * @return BCryptPasswordEncoderに委譲するパスワードエンコーダー
      */
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        return PasswordHashEvent.recording(new BCryptPasswordEncoder());
+    }
+
+    /**
+     * ログインの認証プロバイダーのBeanを定義します。
+     * 認証に成功すると、セッションにはエンティティではなく {@link com.example.javase17learningproject.security.UserPrincipal} を保持します。
+     *
+     * @param passwordEncoder パスワードエンコーダー
+     * @return 認証プロバイダー
+     */
+    @Bean
+    public UserPrincipalAuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
+        return new UserPrincipalAuthenticationProvider(userAccountService, passwordEncoder);
+    }
+
+    /**
+     * APIのセキュリティフィルターチェーンの設定を行います（ステートレス認証モード）。
+     * {@code /api/**} はセッションとCSRFトークンを使用せず、APIトークン ({@code Authorization: Bearer}) で認証します。
+     * トークンの発行 ({@code POST /api/tokens}) はHTTP Basic認証で行います。
+     * 画面 (フォームログイン) のフィルターチェーンより先に評価します。
+     *
+     * @param http HttpSecurityオブジェクト
+     * @param tokenService トークンの発行・検証サービス
+     * @return 設定されたSecurityFilterChain
+     * @throws Exception 設定中にエラーが発生した場合
+     */
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(name = "app.token-auth.enabled", havingValue = "true")
+    public SecurityFilterChain apiFilterChain(HttpSecurity http, TokenService tokenService) throws Exception {
+        http
+            .securityMatcher("/api/**")
+            .authorizeHttpRequests(authz -> authz
+                .requestMatchers(HttpMethod.GET, "/api/users/**")
+                    .hasAnyAuthority("ROLE_ADMIN", "ROLE_MODERATOR", "ROLE_USER")
+                .anyRequest().authenticated()
+            )
+            .httpBasic(Customizer.withDefaults())
+            .csrf(csrf -> csrf.disable()) // Cookieを使用しないためCSRFの対象外
+            .sessionManagement(session -> session
+                .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+            )
+            .securityContext(context -> context
+                .securityContextRepository(new RequestAttributeSecurityContextRepository())
+            )
+            .requestCache(cache -> cache.disable())
+            .addFilterBefore(new TokenAuthenticationFilter(tokenService), BasicAuthenticationFilter.class);
+
+        return http.build();
     }
 
     /**
@@ -50,8 +120,12 @@ public class SecurityConfig {
                 .requestMatchers("/css/**", "/js/**", "/images/**").permitAll()
                 .requestMatchers("/h2-console/**").permitAll() // 開発環境用
                 .requestMatchers("/").permitAll() // トップページを許可
+                .requestMatchers("/actuator/health/**").permitAll() // liveness/readinessプローブ用
+                .requestMatchers("/actuator/**").hasAuthority("ROLE_ADMIN")
+                .requestMatchers("/admin/**").hasAuthority("ROLE_ADMIN")
                 .requestMatchers("/users").permitAll()
                 .requestMatchers("/users/search").hasAnyAuthority("ROLE_ADMIN", "ROLE_MODERATOR", "ROLE_USER")
+                .requestMatchers("/users/suggest").hasAnyAuthority("ROLE_ADMIN", "ROLE_MODERATOR", "ROLE_USER")
                 .requestMatchers("/users/new").hasAnyAuthority("ROLE_ADMIN", "ROLE_MODERATOR")
                 .requestMatchers("/users/{id}").hasAnyAuthority("ROLE_ADMIN", "ROLE_MODERATOR", "ROLE_USER")
                 .requestMatchers("/users/{id}/edit").access((authentication, context) ->
@@ -74,7 +148,10 @@ public class SecurityConfig {
                 .frameOptions(frame -> frame
                     .sameOrigin() // H2コンソール用
                 )
-            );
+            )
+            // 更新されたユーザーのセッションのプリンシパルを、認可の前に作り直す
+            .addFilterAfter(new PrincipalRefreshFilter(principalVersionTracker, userAccountService),
+                SecurityContextHolderFilter.class);
 
         return http.build();
     }
@@ -0,0 +1,77 @@
+package com.example.javase17learningproject.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.function.SingletonSupplier;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.example.javase17learningproject.tracing.Tracer;
+import com.example.javase17learningproject.tracing.TracingBeanPostProcessor;
+import com.example.javase17learningproject.tracing.TracingFilter;
+import com.example.javase17learningproject.tracing.TracingInterceptor;
+
+import jakarta.servlet.Filter;
+
+/**
+ * リクエストのトレースの設定クラス。
+ * トレースの開始・終了のフィルタ、コントローラーと描画のインターセプタ、データソース・リポジトリ・認可の判定の
+ * 区間を記録するポストプロセッサを登録します。{@code app.tracing.enabled=false} の場合は何も登録しません。
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.tracing.enabled", havingValue = "true", matchIfMissing = true)
+public class TracingConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private Tracer tracer;
+
+    /**
+     * データソース・リポジトリ・認可の判定を包むポストプロセッサ。
+     * ポストプロセッサは設定クラスより先に作成されるため、staticメソッドで定義します。
+     *
+     * @param tracer トレーサー（最初に使用するときに取得する）
+     * @return ポストプロセッサ
+     */
+    @Bean
+    public static TracingBeanPostProcessor tracingBeanPostProcessor(ObjectProvider<Tracer> tracer) {
+        return new TracingBeanPostProcessor(SingletonSupplier.of(tracer::getObject));
+    }
+
+    /**
+     * トレースを開始するフィルタ。フィルタチェーンの区間に含めるため、
+     * {@link JpaConfig#openEntityManagerInViewFilter()} とセキュリティのフィルタより前に登録します。
+     *
+     * @return フィルタの登録
+     */
+    @Bean
+    public FilterRegistrationBean<TracingFilter> tracingFilter() {
+        FilterRegistrationBean<TracingFilter> registration = new FilterRegistrationBean<>(new TracingFilter(tracer));
+        registration.setName("tracingFilter");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 10);
+        return registration;
+    }
+
+    /**
+     * セキュリティのフィルタの直後に、そこまでを {@code security} の区間として記録するフィルタ。
+     *
+     * @return フィルタの登録
+     */
+    @Bean
+    public FilterRegistrationBean<Filter> tracingSecurityBoundaryFilter() {
+        FilterRegistrationBean<Filter> registration =
+            new FilterRegistrationBean<>(TracingFilter.securityBoundary(tracer));
+        registration.setName("tracingSecurityBoundaryFilter");
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new TracingInterceptor(tracer));
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.javase17learningproject.config;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.service.AccessControlService;
+
+/**
+ * 起動時のウォームアップを行うクラス。
+ * 初期データ登録 ({@link DataInitializer}) の後に実行され、デプロイ直後のリクエストが遅くならないよう
+ * Hibernateのクエリプラン、BCrypt、アクセス制御、セキュリティフィルターチェーン、Thymeleafを事前に実行します。
+ *
+ * <p>合成データを使う処理はロールバックされるトランザクション内で行うため、データベースには何も残りません。
+ * ウォームアップが完了するまで {@code warmup} ヘルスインジケーターはUPを返さず、readinessグループもUPになりません。
+ */
+@Component
+@Order(3)
+public class WarmupRunner implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmupRunner.class);
+
+    private static final String[] ROLE_NAMES = {"ADMIN", "MODERATOR", "USER"};
+
+    /**
+     * ユーザー一覧 ({@code /users}) へのリクエストの上限。
+     * 一覧はページングせずに全てのユーザーを表示するため、テンプレートのコンパイルに必要な回数だけ送ります。
+     */
+    static final int MAX_LIST_REQUESTS = 2;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private AccessControlService accessControlService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${app.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.warmup.iterations:50}")
+    private int iterations;
+
+    @Value("${app.warmup.synthetic-users:3}")
+    private int syntheticUsers;
+
+    @Value("${app.warmup.http-requests:20}")
+    private int httpRequests;
+
+    private volatile boolean completed;
+    private volatile long durationMillis = -1;
+
+    @Override
+    public void run(String... args) {
+        if (!enabled) {
+            completed = true;
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            warmUpDataAccess();
+            warmUpHttpEndpoints();
+        } catch (RuntimeException e) {
+            // ウォームアップの失敗で起動を止めない
+            logger.warn("ウォームアップ中にエラーが発生しました", e);
+        } finally {
+            durationMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            completed = true;
+            logger.info("ウォームアップ完了: iterations={}, duration={}ms", iterations, durationMillis);
+        }
+    }
+
+    /**
+     * ウォームアップが完了したかどうかを返します。
+     *
+     * @return 完了している場合（無効化されている場合を含む）はtrue
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * ウォームアップに要した時間を返します。
+     *
+     * @return 所要時間（ミリ秒）。未完了または無効の場合は-1
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * 合成データを使ってリポジトリ、BCrypt、アクセス制御を実行します。
+     * トランザクションは必ずロールバックします。
+     */
+    private void warmUpDataAccess() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.executeWithoutResult(status -> {
+            status.setRollbackOnly();
+
+            // BCryptは1回の計算でハッシュループがコンパイルされるため、合成ユーザーの作成と1回の照合のみ行う
+            List<User> users = createSyntheticUsers();
+            passwordEncoder.matches("warmup-password", users.get(0).getPassword());
+            SecurityContext originalContext = SecurityContextHolder.getContext();
+            try {
+                for (int i = 0; i < iterations; i++) {
+                    User target = users.get(i % users.size());
+                    // 大規模なテーブルでも負荷にならないよう、一覧系のクエリは件数を絞って実行する
+                    userRepository.findAll(PageRequest.of(0, 20));
+                    userRepository.findById(target.getId());
+                    userRepository.findByEmail(target.getEmail());
+                    userRepository.searchUsers("warmup", null, null);
+                    userRepository.searchUsers("warmup", null, target.getRole().getName());
+                    warmUpAccessControl(users, target);
+                }
+            } finally {
+                SecurityContextHolder.setContext(originalContext);
+            }
+        });
+    }
+
+    /**
+     * 役割ごとの合成ユーザーを作成します。
+     *
+     * @return 作成したユーザー
+     */
+    private List<User> createSyntheticUsers() {
+        List<User> users = new ArrayList<>();
+        int count = Math.max(syntheticUsers, ROLE_NAMES.length);
+        for (int i = 0; i < count; i++) {
+            String roleName = ROLE_NAMES[i % ROLE_NAMES.length];
+            Role role = roleRepository.findByName(roleName)
+                .orElseGet(() -> roleRepository.save(new Role(roleName)));
+            users.add(userRepository.save(new User("warmup" + i, "warmup" + i + "@warmup.invalid",
+                role, "warmup-password")));
+        }
+        return users;
+    }
+
+    /**
+     * 許可される組み合わせでアクセス制御の判定を実行します。
+     * 拒否される組み合わせは警告ログを出力するため実行しません。
+     *
+     * @param users 合成ユーザー
+     * @param target 判定対象のユーザー
+     */
+    private void warmUpAccessControl(List<User> users, User target) {
+        User admin = users.get(0);
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(new UsernamePasswordAuthenticationToken(admin, null, admin.getAuthorities()));
+        SecurityContextHolder.setContext(context);
+        accessControlService.canEditUser(target);
+        accessControlService.canViewUsersByRole(target.getRole().getName());
+        accessControlService.canEditUser(target.getId());
+    }
+
+    /**
+     * 起動済みの組み込みサーバーにループバックでリクエストを送り、
+     * セキュリティフィルターチェーン、コントローラー、Thymeleafのテンプレートを実行します。
+     * 組み込みサーバーが起動していない場合（テストなど）は何もしません。
+     *
+     * <p>リクエストは認証しないため、認証が必要な検索 ({@code /users/search}) や詳細 ({@code /users/{id}}) は送りません
+     * (ログイン画面へのリダイレクトしか実行されない)。ログイン画面 ({@code /login}) はコントローラーがなく
+     * 404の処理しか実行されないため、認証なしで表示できるトップページ ({@code /}) を送ります。
+     */
+    private void warmUpHttpEndpoints() {
+        if (!(applicationContext instanceof WebServerApplicationContext webContext)
+                || webContext.getWebServer() == null || webContext.getWebServer().getPort() <= 0) {
+            return;
+        }
+        String contextPath = applicationContext.getEnvironment().getProperty("server.servlet.context-path", "");
+        String baseUrl = "http://localhost:" + webContext.getWebServer().getPort() + contextPath;
+        HttpClient client = HttpClient.newBuilder()
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+        for (String path : requestPaths(httpRequests)) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(5))
+                .GET()
+                .build();
+            try {
+                client.send(request, HttpResponse.BodyHandlers.discarding());
+            } catch (IOException e) {
+                logger.debug("ウォームアップリクエストに失敗しました: path={}", path, e);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * ウォームアップで送るリクエストのパスを送る順に返します。
+     *
+     * @param httpRequests パスごとのリクエスト数
+     * @return リクエストのパス
+     */
+    static List<String> requestPaths(int httpRequests) {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < httpRequests; i++) {
+            if (i < MAX_LIST_REQUESTS) {
+                paths.add("/users");
+            }
+            paths.add("/");
+        }
+        return paths;
+    }
+}
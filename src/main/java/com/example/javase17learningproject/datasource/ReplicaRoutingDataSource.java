@@ -0,0 +1,108 @@
+package com.example.javase17learningproject.datasource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * 読み取り専用のトランザクションをレプリカに振り分けるデータソース。
+ * {@code @Transactional(readOnly = true)} のトランザクションは {@link ReplicaSet} が選択したレプリカで処理し、
+ * それ以外（書き込み、トランザクション外）はプライマリで処理します。
+ *
+ * <p>読み取り専用かどうかは接続を取得する時点で判定するため、
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} で包んで使用します
+ * （トランザクションの開始時ではなく、最初のSQLの実行時に接続を取得させるため）。
+ *
+ * <p><b>自身の書き込みの読み取り</b>: 書き込みのトランザクションがコミットされると、その時刻をリクエストとセッションに記録します。
+ * 同じセッションの読み取りは、その時刻までの更新が複製されたレプリカだけで処理します（該当するレプリカがなければプライマリ）。
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    /** プライマリの参照キー */
+    public static final String PRIMARY = "primary";
+
+    private static final String LAST_WRITE_ATTRIBUTE = ReplicaRoutingDataSource.class.getName() + ".LAST_WRITE";
+
+    private static final Object WRITE_TRACKED_KEY = ReplicaRoutingDataSource.class.getName() + ".WRITE_TRACKED";
+
+    private final ReplicaSet replicaSet;
+
+    public ReplicaRoutingDataSource(ReplicaSet replicaSet) {
+        this.replicaSet = replicaSet;
+        Map<Object, Object> targets = new HashMap<>(replicaSet.getReplicas());
+        targets.put(PRIMARY, replicaSet.getPrimary());
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(replicaSet.getPrimary());
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            trackWrite();
+            return PRIMARY;
+        }
+        String replica = replicaSet.selectReplica(lastWriteMillis());
+        return replica != null ? replica : PRIMARY;
+    }
+
+    /**
+     * 書き込みのトランザクションのコミット後に、書き込んだ時刻を記録します。
+     */
+    private static void trackWrite() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+            || TransactionSynchronizationManager.hasResource(WRITE_TRACKED_KEY)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(WRITE_TRACKED_KEY, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recordWrite(System.currentTimeMillis());
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WRITE_TRACKED_KEY);
+            }
+        });
+    }
+
+    private static void recordWrite(long now) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return;
+        }
+        attributes.setAttribute(LAST_WRITE_ATTRIBUTE, now, RequestAttributes.SCOPE_REQUEST);
+        // セッションは作成しない（ステートレスなAPIはリクエストの中だけで自身の書き込みを読む）
+        if (attributes instanceof ServletRequestAttributes servletAttributes) {
+            HttpSession session = servletAttributes.getRequest().getSession(false);
+            if (session != null) {
+                session.setAttribute(LAST_WRITE_ATTRIBUTE, now);
+            }
+        }
+    }
+
+    private static long lastWriteMillis() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return Long.MIN_VALUE;
+        }
+        Object lastWrite = attributes.getAttribute(LAST_WRITE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (lastWrite == null && attributes instanceof ServletRequestAttributes servletAttributes) {
+            HttpSession session = servletAttributes.getRequest().getSession(false);
+            lastWrite = session == null ? null : session.getAttribute(LAST_WRITE_ATTRIBUTE);
+        }
+        return lastWrite instanceof Long millis ? millis : Long.MIN_VALUE;
+    }
+}
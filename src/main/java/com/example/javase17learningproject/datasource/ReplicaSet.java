@@ -0,0 +1,176 @@
+package com.example.javase17learningproject.datasource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * プライマリと読み取りレプリカのデータソースの集合。
+ * レプリカの遅延をハートビートで計測し、読み取り専用の処理に使用できるレプリカを選択します。
+ *
+ * <p>一定間隔でプライマリの {@code replica_heartbeat} に現在時刻を書き込み、各レプリカに複製された値を読み取ります。
+ * レプリカの値がT以上であれば、そのレプリカにはT以前にコミットされた更新が全て複製されています。
+ * 次の場合、そのレプリカは選択しません。
+ * <ul>
+ *   <li>遅延（現在時刻と複製された値の差）が上限を超えている</li>
+ *   <li>ハートビートを読み取れない</li>
+ *   <li>呼び出し元が最後に書き込んだ時刻より前の値しか複製されていない（自身の書き込みを読めない）</li>
+ * </ul>
+ *
+ * <p>データソースの接続プールは、このクラスが破棄されるときに閉じます。
+ */
+public class ReplicaSet implements MeterBinder, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaSet.class);
+
+    private static final String CREATE_HEARTBEAT_TABLE =
+        "CREATE TABLE IF NOT EXISTS replica_heartbeat (id INT PRIMARY KEY, beat_at BIGINT NOT NULL)";
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final List<String> replicaNames;
+    private final long maxLagMillis;
+
+    private final JdbcTemplate primaryJdbcTemplate;
+    private final Map<String, JdbcTemplate> replicaJdbcTemplates = new LinkedHashMap<>();
+
+    // レプリカ名 -> 最後に読み取った複製済みのハートビート (エポックミリ秒)。読み取れないレプリカは含まない
+    private final Map<String, Long> heartbeats = new ConcurrentHashMap<>();
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * @param primary プライマリのデータソース
+     * @param replicas レプリカ名とレプリカのデータソース
+     * @param maxLag 読み取りに使用するレプリカの遅延の上限
+     */
+    public ReplicaSet(DataSource primary, Map<String, DataSource> replicas, Duration maxLag) {
+        this.primary = primary;
+        this.replicas = new LinkedHashMap<>(replicas);
+        this.replicaNames = List.copyOf(replicas.keySet());
+        this.maxLagMillis = maxLag.toMillis();
+        this.primaryJdbcTemplate = new JdbcTemplate(primary);
+        replicas.forEach((name, dataSource) -> replicaJdbcTemplates.put(name, new JdbcTemplate(dataSource)));
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public Map<String, DataSource> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * ハートビートの表をプライマリに作成し（存在しない場合）、レプリカの状態を取得します。
+     */
+    public void start() {
+        primaryJdbcTemplate.execute(CREATE_HEARTBEAT_TABLE);
+        refresh();
+        logger.info("読み取りレプリカを有効にしました: replicas={}, available={}", replicaNames, heartbeats.keySet());
+    }
+
+    /**
+     * プライマリにハートビートを書き込み、各レプリカに複製されたハートビートを読み取ります。
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.replica.heartbeat-interval:PT1S}")
+    public void refresh() {
+        long now = System.currentTimeMillis();
+        try {
+            if (primaryJdbcTemplate.update("UPDATE replica_heartbeat SET beat_at = ? WHERE id = 1", now) == 0) {
+                primaryJdbcTemplate.update("INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, ?)", now);
+            }
+        } catch (DataAccessException e) {
+            logger.warn("プライマリへのハートビートの書き込みに失敗しました: {}", e.getMessage());
+        }
+        replicaJdbcTemplates.forEach((name, jdbcTemplate) -> {
+            try {
+                Long heartbeat = jdbcTemplate.queryForObject(
+                    "SELECT beat_at FROM replica_heartbeat WHERE id = 1", Long.class);
+                if (heartbeats.put(name, heartbeat) == null) {
+                    logger.info("読み取りレプリカを使用します: replica={}", name);
+                }
+            } catch (DataAccessException e) {
+                if (heartbeats.remove(name) != null) {
+                    logger.warn("読み取りレプリカのハートビートを読み取れません: replica={}, cause={}", name, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * 読み取りに使用するレプリカを選択します。
+     * 使用できるレプリカが複数ある場合は順番に選択します。
+     *
+     * @param lastWriteMillis 呼び出し元が最後に書き込んだ時刻 (エポックミリ秒)。書き込んでいない場合は {@link Long#MIN_VALUE}
+     * @return レプリカ名。使用できるレプリカがない場合はnull（プライマリで読み取る）
+     */
+    public String selectReplica(long lastWriteMillis) {
+        long now = System.currentTimeMillis();
+        int start = Math.floorMod(next.getAndIncrement(), replicaNames.size());
+        for (int i = 0; i < replicaNames.size(); i++) {
+            String name = replicaNames.get((start + i) % replicaNames.size());
+            Long heartbeat = heartbeats.get(name);
+            if (heartbeat != null && now - heartbeat <= maxLagMillis && heartbeat >= lastWriteMillis) {
+                return name;
+            }
+        }
+        fallbacks.increment();
+        return null;
+    }
+
+    /**
+     * レプリカの遅延を返します。
+     *
+     * @param name レプリカ名
+     * @return 遅延（ミリ秒）。ハートビートを読み取れない場合は-1
+     */
+    public long getLagMillis(String name) {
+        Long heartbeat = heartbeats.get(name);
+        return heartbeat == null ? -1 : Math.max(0, System.currentTimeMillis() - heartbeat);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String name : replicaNames) {
+            Gauge.builder("datasource.replica.lag", this, replicaSet -> replicaSet.getLagMillis(name) / 1000.0)
+                .description("読み取りレプリカの遅延（秒）。ハートビートを読み取れない場合は負の値")
+                .baseUnit("seconds")
+                .tag("replica", name)
+                .register(registry);
+        }
+        FunctionCounter.builder("datasource.replica.fallbacks", fallbacks, LongAdder::sum)
+            .description("使用できるレプリカがないためプライマリで処理した読み取り専用のトランザクションの数")
+            .register(registry);
+    }
+
+    @Override
+    public void close() throws Exception {
+        List<DataSource> dataSources = new ArrayList<>(replicas.values());
+        dataSources.add(primary);
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
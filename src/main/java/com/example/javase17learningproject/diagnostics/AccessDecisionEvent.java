@@ -0,0 +1,60 @@
+package com.example.javase17learningproject.diagnostics;
+
+import java.util.function.BooleanSupplier;
+
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.security.UserPrincipal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 認可の判定のJFRイベント。
+ * {@code AccessControlService} の判定ごとに、操作者の役割・操作・結果・判定にかかった時間を記録します。
+ */
+@Name("javase17learningproject.AccessDecision")
+@Label("Access Decision")
+@Category({"javase17learningproject", "Security"})
+@Description("AccessControlServiceによる認可の判定")
+@StackTrace(false)
+public class AccessDecisionEvent extends Event {
+
+    @Label("Actor Role")
+    String actorRole;
+
+    @Label("Action")
+    String action;
+
+    @Label("Allowed")
+    boolean allowed;
+
+    /**
+     * 認可の判定を実行し、記録が有効な場合はイベントを記録します。
+     *
+     * @param actor 操作者
+     * @param action 操作 ({@code edit}, {@code delete} など)
+     * @param decision 判定
+     * @return 判定の結果
+     */
+    public static boolean record(UserPrincipal actor, String action, BooleanSupplier decision) {
+        AccessDecisionEvent event = new AccessDecisionEvent();
+        if (!event.isEnabled()) {
+            return decision.getAsBoolean();
+        }
+        event.begin();
+        boolean allowed = decision.getAsBoolean();
+        event.end();
+        if (event.shouldCommit()) {
+            String role = RoleMask.nameOf(RoleMask.primary(actor.roleMask()));
+            event.actorRole = role != null ? role : "OTHER";
+            event.action = action;
+            event.allowed = allowed;
+            event.commit();
+        }
+        return allowed;
+    }
+}
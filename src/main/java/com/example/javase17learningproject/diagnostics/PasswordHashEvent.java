@@ -0,0 +1,65 @@
+package com.example.javase17learningproject.diagnostics;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * パスワードのハッシュ計算のJFRイベント。
+ * ハッシュ化 ({@code encode}) と照合 ({@code matches}) ごとに、かかった時間を記録します。
+ */
+@Name("javase17learningproject.PasswordHash")
+@Label("Password Hash")
+@Category({"javase17learningproject", "Security"})
+@Description("パスワードのハッシュ化と照合")
+@StackTrace(false)
+public class PasswordHashEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Matched")
+    @Description("照合の結果。ハッシュ化の場合はfalse")
+    boolean matched;
+
+    /**
+     * ハッシュ計算を記録するパスワードエンコーダーを返します。
+     *
+     * @param delegate 委譲先のパスワードエンコーダー
+     * @return パスワードエンコーダー
+     */
+    public static PasswordEncoder recording(PasswordEncoder delegate) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                PasswordHashEvent event = new PasswordHashEvent();
+                event.begin();
+                String encoded = delegate.encode(rawPassword);
+                event.operation = "encode";
+                event.commit();
+                return encoded;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                PasswordHashEvent event = new PasswordHashEvent();
+                event.begin();
+                boolean matched = delegate.matches(rawPassword, encodedPassword);
+                event.operation = "matches";
+                event.matched = matched;
+                event.commit();
+                return matched;
+            }
+
+            @Override
+            public boolean upgradeEncoding(String encodedPassword) {
+                return delegate.upgradeEncoding(encodedPassword);
+            }
+        };
+    }
+}
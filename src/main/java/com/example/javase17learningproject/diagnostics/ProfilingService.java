@@ -0,0 +1,175 @@
+package com.example.javase17learningproject.diagnostics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * オンデマンドのJFR記録のサービス。
+ * 管理画面 ({@code /admin/profiling}) から、再起動せずに時間とサイズを制限した記録を開始・終了します。
+ * 同時に実行できる記録は1つだけです。
+ *
+ * <p>記録にはJDKの設定 ({@code app.profiling.settings}、既定は {@code profile}) のイベントと、
+ * アプリケーションのイベント ({@link AccessDecisionEvent} など) を含めます。
+ *
+ * <p>排他には {@code synchronized} ではなく {@link ReentrantLock} を使用し、記録の書き出し（ファイルの入出力）は
+ * ロックの外で行います。仮想スレッドで実行した場合に、キャリアスレッドを占有しない (pinning) ためです。
+ */
+@Service
+public class ProfilingService implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProfilingService.class);
+
+    /** 記録に含めるアプリケーションのイベント。 */
+    static final List<Class<? extends Event>> APPLICATION_EVENTS = List.of(
+        AccessDecisionEvent.class, RepositoryQueryEvent.class, PasswordHashEvent.class, TemplateRenderEvent.class);
+
+    @Value("${app.profiling.settings:profile}")
+    private String settings;
+
+    @Value("${app.profiling.max-duration:PT5M}")
+    private Duration maxDuration;
+
+    @Value("${app.profiling.max-size:100MB}")
+    private DataSize maxSize;
+
+    // 実行中の記録と開始日時 (lockで保護)
+    private final ReentrantLock lock = new ReentrantLock();
+    private Recording recording;
+    private Instant startedAt;
+
+    /**
+     * 記録の状態。
+     *
+     * @param name 記録の名前
+     * @param state 記録の状態 (RUNNINGまたはSTOPPED)
+     * @param startedAt 開始日時
+     * @param duration 記録する時間（経過すると自動的に停止する）
+     * @param maxSizeBytes 記録の最大サイズ（バイト）
+     */
+    public record Status(String name, RecordingState state, Instant startedAt, Duration duration, long maxSizeBytes) {}
+
+    /**
+     * 記録を開始します。
+     * 記録する時間は {@code app.profiling.max-duration} までに制限します。
+     *
+     * @param duration 記録する時間
+     * @return 開始した記録の状態
+     * @throws IllegalStateException 既に記録中の場合
+     */
+    public Status start(Duration duration) {
+        lock.lock();
+        try {
+            if (recording != null) {
+                throw new IllegalStateException("既に記録しています: " + recording.getName());
+            }
+            Recording started;
+            try {
+                started = new Recording(Configuration.getConfiguration(settings));
+            } catch (IOException | ParseException e) {
+                throw new IllegalStateException("JFRの設定を読み込めません: " + settings, e);
+            }
+            for (Class<? extends Event> eventClass : APPLICATION_EVENTS) {
+                started.enable(eventClass).withoutThreshold();
+            }
+            Duration bounded = duration.isNegative() || duration.isZero() || duration.compareTo(maxDuration) > 0
+                ? maxDuration : duration;
+            started.setName("admin-profiling");
+            started.setDuration(bounded);
+            started.setMaxSize(maxSize.toBytes());
+            started.setToDisk(true);
+            started.start();
+            recording = started;
+            startedAt = Instant.now();
+            logger.info("JFRの記録を開始しました: duration={}, maxSize={}", bounded, maxSize);
+            return status().orElseThrow();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 記録を停止し、一時ファイルに書き出します。
+     * 書き出したファイルは呼び出し元で削除してください。
+     *
+     * @return 記録を書き出したファイル
+     * @throws IllegalStateException 記録していない場合
+     */
+    public Path stop() {
+        Recording stopped;
+        lock.lock();
+        try {
+            if (recording == null) {
+                throw new IllegalStateException("記録していません");
+            }
+            stopped = recording;
+            recording = null;
+        } finally {
+            lock.unlock();
+        }
+        // 書き出しはロックの外で行い、その間も状態の参照や次の記録の開始を待たせない
+        try {
+            if (stopped.getState() == RecordingState.RUNNING) {
+                stopped.stop();
+            }
+            Path file = Files.createTempFile("profiling-", ".jfr");
+            stopped.dump(file);
+            logger.info("JFRの記録を終了しました: size={}", Files.size(file));
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            stopped.close();
+        }
+    }
+
+    /**
+     * 記録の状態を返します。
+     *
+     * @return 記録の状態。記録していない場合は空
+     */
+    public Optional<Status> status() {
+        lock.lock();
+        try {
+            if (recording == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new Status(recording.getName(), recording.getState(), startedAt,
+                recording.getDuration(), recording.getMaxSize()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        lock.lock();
+        try {
+            if (recording != null) {
+                recording.close();
+                recording = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.javase17learningproject.diagnostics;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.stream.BaseStream;
+
+import org.aopalliance.intercept.MethodInterceptor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * リポジトリのクエリのJFRイベント。
+ * Spring Dataのリポジトリのメソッドの呼び出しごとに、メソッド・結果の行数・かかった時間を記録します。
+ */
+@Name("javase17learningproject.RepositoryQuery")
+@Label("Repository Query")
+@Category({"javase17learningproject", "Persistence"})
+@Description("Spring Dataのリポジトリのメソッドの呼び出し")
+@StackTrace(false)
+public class RepositoryQueryEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Rows")
+    @Description("結果の行数。コレクションは要素数、Optionalは0または1、件数を数えられない結果は-1")
+    int rows;
+
+    /**
+     * リポジトリのメソッドの呼び出しを記録するインターセプタを返します。
+     *
+     * @param repository リポジトリのインターフェース名
+     * @return インターセプタ
+     */
+    public static MethodInterceptor interceptor(String repository) {
+        return invocation -> {
+            RepositoryQueryEvent event = new RepositoryQueryEvent();
+            if (!event.isEnabled()) {
+                return invocation.proceed();
+            }
+            event.begin();
+            Object result = invocation.proceed();
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = repository + "." + invocation.getMethod().getName();
+                event.rows = rowsOf(result, invocation.getMethod().getReturnType());
+                event.commit();
+            }
+            return result;
+        };
+    }
+
+    static int rowsOf(Object result, Class<?> returnType) {
+        if (returnType == void.class || result == null) {
+            return 0;
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Optional<?> optional) {
+            return optional.isPresent() ? 1 : 0;
+        }
+        if (result instanceof Iterable<?> || result instanceof BaseStream<?, ?>) {
+            return -1;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.javase17learningproject.diagnostics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.RuntimeMXBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 起動レポーター。
+ * アプリケーションの起動完了時に、起動モード・起動完了までの時間・ヒープ使用量を記録します。
+ *
+ * <p>起動時間ベンチマーク ({@code scripts/startup-benchmark.sh}) はこのレポートの
+ * {@code STARTUP_REPORT} 行を集計します。
+ */
+@Component
+public class StartupReporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupReporter.class);
+
+    private static final long MB = 1024 * 1024;
+
+    @Value("${app.startup-report.gc-before-heap:false}")
+    private boolean gcBeforeHeap;
+
+    @Value("${app.startup-report.exit-after-ready:false}")
+    private boolean exitAfterReady;
+
+    /**
+     * 起動完了イベントを受け取り、起動レポートを出力します。
+     *
+     * @param event 起動完了イベント
+     */
+    @EventListener
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        long timeToReadyMillis = runtime.getUptime();
+        long contextMillis = event.getTimeTaken() != null ? event.getTimeTaken().toMillis() : -1;
+
+        if (gcBeforeHeap) {
+            // 起動直後に残っている一時オブジェクトを除いた定常的なヒープ量を測定する
+            System.gc();
+        }
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapUsed = memory.getHeapMemoryUsage().getUsed();
+
+        logger.info("STARTUP_REPORT mode={} ready_ms={} context_ms={} heap_used_mb={}",
+                startupMode(runtime), timeToReadyMillis, contextMillis, heapUsed / MB);
+
+        if (exitAfterReady) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    /**
+     * 起動モードを判定します。
+     * AOTで生成されたコードとCDSアーカイブの利用有無を組み合わせた文字列を返します。
+     *
+     * @param runtime ランタイム情報
+     * @return 起動モード (例: {@code aot+cds})
+     */
+    private String startupMode(RuntimeMXBean runtime) {
+        boolean aot = AotDetector.useGeneratedArtifacts();
+        boolean cds = runtime.getInputArguments().stream()
+                .anyMatch(arg -> arg.startsWith("-XX:SharedArchiveFile"));
+        if (aot && cds) {
+            return "aot+cds";
+        }
+        if (aot) {
+            return "aot";
+        }
+        return cds ? "cds" : "jit";
+    }
+}
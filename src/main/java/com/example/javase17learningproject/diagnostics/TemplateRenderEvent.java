@@ -0,0 +1,63 @@
+package com.example.javase17learningproject.diagnostics;
+
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * テンプレートの描画のJFRイベント。
+ * コントローラーが返したビューの描画ごとに、ビュー名とかかった時間を記録します。
+ */
+@Name("javase17learningproject.TemplateRender")
+@Label("Template Render")
+@Category({"javase17learningproject", "Web"})
+@Description("Thymeleafによるビューの描画")
+@StackTrace(false)
+public class TemplateRenderEvent extends Event {
+
+    private static final String EVENT_ATTRIBUTE = TemplateRenderEvent.class.getName();
+
+    @Label("View")
+    String view;
+
+    /**
+     * ビューの描画の前後でイベントを記録するインターセプタを返します。
+     *
+     * @return インターセプタ
+     */
+    public static HandlerInterceptor interceptor() {
+        return new HandlerInterceptor() {
+            @Override
+            public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                   ModelAndView modelAndView) {
+                if (modelAndView == null || modelAndView.getViewName() == null) {
+                    return;
+                }
+                TemplateRenderEvent event = new TemplateRenderEvent();
+                if (event.isEnabled()) {
+                    event.view = modelAndView.getViewName();
+                    event.begin();
+                    request.setAttribute(EVENT_ATTRIBUTE, event);
+                }
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                        Exception ex) {
+                if (request.getAttribute(EVENT_ATTRIBUTE) instanceof TemplateRenderEvent event) {
+                    request.removeAttribute(EVENT_ATTRIBUTE);
+                    event.commit();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.javase17learningproject.diagnostics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * 仮想スレッドのピン留め (pinning) の監視。
+ * 仮想スレッドが {@code synchronized} のブロックやネイティブメソッドの中でブロックすると、キャリアスレッドから外れられず
+ * (ピン留め)、その間は同時に実行できる仮想スレッドが減ります。データアクセスの経路 (JDBCドライバー、コネクションプールなど)
+ * でピン留めが起きると、仮想スレッドで実行しても同時に待てるクエリの数がキャリアスレッドの数に制限されます。
+ *
+ * <p>JFRの {@code jdk.VirtualThreadPinned} イベント (Java 21以降) を {@link RecordingStream} で購読し、
+ * しきい値 ({@code app.virtual-threads.pinning.threshold}) 以上のピン留めを発生箇所ごとに集計します。
+ * 発生箇所は、スタックの先頭から見て最初のJDK以外のフレームです。初めて検出した箇所はスタックとともにログに出力し、
+ * 集計は管理画面 ({@code /admin/pinning}) で参照できます。
+ *
+ * <p>仮想スレッドが有効な場合 ({@code spring.threads.virtual.enabled=true}、Java 21以降) だけ登録します。
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@ConditionalOnProperty(name = "app.virtual-threads.pinning.enabled", havingValue = "true", matchIfMissing = true)
+public class VirtualThreadPinningMonitor implements MeterBinder {
+
+    /** ピン留めのJFRイベントの名前。 */
+    static final String EVENT_NAME = "jdk.VirtualThreadPinned";
+
+    /** 発生箇所の上限を超えた場合の集計先。 */
+    static final String OTHER_SITES = "(その他)";
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    // ログと管理画面に表示するスタックの深さ
+    private static final int STACK_DEPTH = 16;
+
+    private final Duration threshold;
+    private final int maxSites;
+
+    // 発生箇所 -> 集計 (lockで保護)
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Site> sites = new HashMap<>();
+
+    private final LongAdder pinned = new LongAdder();
+
+    private RecordingStream stream;
+
+    /**
+     * 発生箇所ごとのピン留めの集計。
+     *
+     * @param frame 発生箇所のフレーム
+     * @param count 回数
+     * @param total 合計時間
+     * @param max 最大時間
+     * @param stack 最初に検出したときのスタック（先頭から）
+     */
+    public record PinningSite(String frame, long count, Duration total, Duration max, List<String> stack) {}
+
+    private static final class Site {
+        private final List<String> stack;
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        private Site(List<String> stack) {
+            this.stack = stack;
+        }
+    }
+
+    public VirtualThreadPinningMonitor(
+            @Value("${app.virtual-threads.pinning.threshold:PT0.02S}") Duration threshold,
+            @Value("${app.virtual-threads.pinning.max-sites:100}") int maxSites) {
+        this.threshold = threshold;
+        this.maxSites = Math.max(1, maxSites);
+    }
+
+    @PostConstruct
+    void start() {
+        stream = new RecordingStream();
+        stream.enable(EVENT_NAME).withThreshold(threshold).withStackTrace();
+        stream.onEvent(EVENT_NAME, this::onEvent);
+        stream.startAsync();
+        logger.info("仮想スレッドのピン留めの監視を開始しました: threshold={}", threshold);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void onEvent(RecordedEvent event) {
+        List<String> stack = new ArrayList<>();
+        if (event.getStackTrace() != null) {
+            for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+                if (stack.size() >= STACK_DEPTH) {
+                    break;
+                }
+                stack.add(frame.getMethod().getType().getName() + "." + frame.getMethod().getName()
+                    + ":" + frame.getLineNumber());
+            }
+        }
+        record(event.getDuration(), stack);
+    }
+
+    /**
+     * ピン留めを集計します。
+     *
+     * @param duration ピン留めの時間
+     * @param stack スタック（先頭から）
+     */
+    void record(Duration duration, List<String> stack) {
+        pinned.increment();
+        String frame = siteOf(stack);
+        boolean first = false;
+        lock.lock();
+        try {
+            Site site = sites.get(frame);
+            if (site == null) {
+                if (sites.size() >= maxSites) {
+                    frame = OTHER_SITES;
+                    site = sites.computeIfAbsent(frame, key -> new Site(List.of()));
+                } else {
+                    site = new Site(List.copyOf(stack));
+                    sites.put(frame, site);
+                    first = true;
+                }
+            }
+            long nanos = duration.toNanos();
+            site.count++;
+            site.totalNanos += nanos;
+            site.maxNanos = Math.max(site.maxNanos, nanos);
+        } finally {
+            lock.unlock();
+        }
+        if (first) {
+            logger.warn("仮想スレッドのピン留めを検出しました: {} ({} ms)\n\tat {}",
+                frame, duration.toMillis(), String.join("\n\tat ", stack));
+        } else {
+            logger.debug("仮想スレッドのピン留め: {} ({} ms)", frame, duration.toMillis());
+        }
+    }
+
+    /**
+     * 発生箇所として、スタックの先頭から見て最初のJDK以外のフレームを返します。
+     * JDKのフレーム (待機の実装など) しかない場合は先頭のフレームを返します。
+     */
+    static String siteOf(List<String> stack) {
+        if (stack.isEmpty()) {
+            return "(スタックなし)";
+        }
+        for (String frame : stack) {
+            if (!frame.startsWith("java.") && !frame.startsWith("jdk.") && !frame.startsWith("sun.")) {
+                return frame;
+            }
+        }
+        return stack.get(0);
+    }
+
+    /**
+     * 発生箇所ごとの集計を、回数の多い順に返します。
+     *
+     * @return 発生箇所ごとの集計
+     */
+    public List<PinningSite> getSites() {
+        List<PinningSite> result = new ArrayList<>();
+        lock.lock();
+        try {
+            sites.forEach((frame, site) -> result.add(new PinningSite(frame, site.count,
+                Duration.ofNanos(site.totalNanos), Duration.ofNanos(site.maxNanos), site.stack)));
+        } finally {
+            lock.unlock();
+        }
+        result.sort(Comparator.comparingLong(PinningSite::count).reversed()
+            .thenComparing(PinningSite::frame));
+        return result;
+    }
+
+    /**
+     * 検出したピン留めの回数を返します。
+     *
+     * @return 回数
+     */
+    public long getPinnedCount() {
+        return pinned.sum();
+    }
+
+    /**
+     * 集計するピン留めの時間のしきい値を返します。
+     *
+     * @return しきい値
+     */
+    public Duration getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("virtual.threads.pinned", pinned, LongAdder::sum)
+            .description("しきい値以上の時間、キャリアスレッドにピン留めされた仮想スレッドの数")
+            .register(registry);
+        Gauge.builder("virtual.threads.pinned.sites", this, monitor -> monitor.getSites().size())
+            .description("ピン留めの発生箇所の数")
+            .register(registry);
+    }
+}
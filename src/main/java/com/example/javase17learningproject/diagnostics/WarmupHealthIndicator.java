@@ -0,0 +1,27 @@
+package com.example.javase17learningproject.diagnostics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import com.example.javase17learningproject.config.WarmupRunner;
+
+/**
+ * ウォームアップのヘルスインジケーター。
+ * ウォームアップが完了するまでOUT_OF_SERVICEを返し、readinessグループがUPにならないようにします。
+ */
+@Component
+public class WarmupHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private WarmupRunner warmupRunner;
+
+    @Override
+    public Health health() {
+        if (!warmupRunner.isCompleted()) {
+            return Health.outOfService().withDetail("warmup", "running").build();
+        }
+        return Health.up().withDetail("durationMillis", warmupRunner.getDurationMillis()).build();
+    }
+}
@@ -0,0 +1,454 @@
+package com.example.javase17learningproject.directory;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.event.UserState;
+
+/**
+ * 読み取りモデルの不変のスナップショット。
+ *
+ * <p>ユーザーは列ごとの配列（ID順）に保持します。役割は辞書 ({@link #roleDictionary}) の添字のビット集合として
+ * {@code long} 1つに符号化するため、辞書に登録できる役割は64個までです。
+ * 文字列は {@link String#intern()} で共有し、正規化前後で同じ文字列（小文字のメールアドレスなど）は1つのインスタンスになります。
+ *
+ * <p>起動後の変更は、ベースの列を書き換えずにID順のオーバーレイに保持します（値がnullの場合は削除）。
+ * オーバーレイが閾値を超えた時点でベースの列に統合します。
+ */
+final class DirectorySnapshot {
+
+    /** 辞書に登録できる役割の最大数 */
+    static final int MAX_ROLES = Long.SIZE;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final long version;
+
+    // 役割の辞書
+    private final Role[] roleDictionary;
+    private final int[] roleBits;
+    private final Map<Long, Integer> roleIndexById;
+    private final Map<String, Integer> roleIndexByName;
+
+    // ベースの列（ID順）
+    private final int baseSize;
+    private final long[] ids;
+    private final String[] names;
+    private final String[] emails;
+    private final String[] namesNormalized;
+    private final String[] emailsNormalized;
+    private final int[] roleMasks;
+    private final long[] roleSets;
+    private final long[] updatedAtMicros;
+
+    // 起動後の変更（ID順、値がnullの場合は削除）
+    private final NavigableMap<Long, Row> overlay;
+
+    private final int size;
+
+    /**
+     * オーバーレイの1行。
+     */
+    record Row(long id, String name, String email, String nameNormalized, String emailNormalized,
+               int roleMask, long roleSet, long updatedAtMicros) {}
+
+    /**
+     * 行の条件。列の値で評価し、条件に一致しない行はオブジェクトを作成しません。
+     */
+    @FunctionalInterface
+    interface RowMatcher {
+        boolean matches(String nameNormalized, String emailNormalized, int roleMask, long roleSet);
+    }
+
+    private DirectorySnapshot(long version, Role[] roleDictionary, int baseSize, long[] ids, String[] names,
+                              String[] emails, String[] namesNormalized, String[] emailsNormalized,
+                              int[] roleMasks, long[] roleSets, long[] updatedAtMicros,
+                              NavigableMap<Long, Row> overlay) {
+        this.version = version;
+        this.roleDictionary = roleDictionary;
+        this.roleBits = new int[roleDictionary.length];
+        this.roleIndexById = new HashMap<>();
+        this.roleIndexByName = new HashMap<>();
+        for (int i = 0; i < roleDictionary.length; i++) {
+            roleBits[i] = RoleMask.bitOf(roleDictionary[i].getName());
+            roleIndexById.put(roleDictionary[i].getId(), i);
+            roleIndexByName.put(roleDictionary[i].getName(), i);
+        }
+        this.baseSize = baseSize;
+        this.ids = ids;
+        this.names = names;
+        this.emails = emails;
+        this.namesNormalized = namesNormalized;
+        this.emailsNormalized = emailsNormalized;
+        this.roleMasks = roleMasks;
+        this.roleSets = roleSets;
+        this.updatedAtMicros = updatedAtMicros;
+        this.overlay = overlay;
+        this.size = computeSize();
+    }
+
+    long version() {
+        return version;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int overlaySize() {
+        return overlay.size();
+    }
+
+    /**
+     * 役割名に対応する辞書の添字を返します。
+     *
+     * @param roleName 役割名
+     * @return 添字。辞書にない場合は-1
+     */
+    int roleIndex(String roleName) {
+        Integer index = roleIndexByName.get(roleName);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * 条件に一致するユーザーをID順に返します。
+     *
+     * @param matcher 行の条件
+     * @return 該当するユーザー
+     */
+    List<UserSummary> collect(RowMatcher matcher) {
+        List<UserSummary> result = new ArrayList<>();
+        Iterator<Map.Entry<Long, Row>> changes = overlay.entrySet().iterator();
+        Map.Entry<Long, Row> change = changes.hasNext() ? changes.next() : null;
+        for (int i = 0; i < baseSize; i++) {
+            long id = ids[i];
+            while (change != null && change.getKey() < id) {
+                addIfMatches(result, change.getValue(), matcher);
+                change = changes.hasNext() ? changes.next() : null;
+            }
+            if (change != null && change.getKey() == id) {
+                // 変更・削除された行はオーバーレイの値を使う
+                addIfMatches(result, change.getValue(), matcher);
+                change = changes.hasNext() ? changes.next() : null;
+                continue;
+            }
+            if (matcher.matches(namesNormalized[i], emailsNormalized[i], roleMasks[i], roleSets[i])) {
+                result.add(summary(id, names[i], emails[i], roleMasks[i], roleSets[i], updatedAtMicros[i]));
+            }
+        }
+        while (change != null) {
+            addIfMatches(result, change.getValue(), matcher);
+            change = changes.hasNext() ? changes.next() : null;
+        }
+        return result;
+    }
+
+    /**
+     * IDでユーザーを返します。
+     *
+     * @param id ユーザーID
+     * @return ユーザー。存在しない場合はnull
+     */
+    UserSummary find(long id) {
+        Row row = findRow(id);
+        return row == null ? null : summary(row);
+    }
+
+    /**
+     * 変更を適用した新しいスナップショットを返します。
+     * このスナップショットは変更しません。
+     *
+     * @param changes 変更
+     * @param compactionThreshold オーバーレイをベースに統合する行数
+     * @return 新しいスナップショット
+     * @throws IllegalStateException 役割が辞書の上限を超えた場合
+     */
+    DirectorySnapshot withChanges(List<UserChange> changes, int compactionThreshold) {
+        List<Role> dictionary = new ArrayList<>(Arrays.asList(roleDictionary));
+        Map<Long, Integer> indexById = new HashMap<>(roleIndexById);
+        NavigableMap<Long, Row> newOverlay = new TreeMap<>(overlay);
+        for (UserChange change : changes) {
+            Row current = newOverlay.containsKey(change.id()) ? newOverlay.get(change.id()) : findRow(change.id());
+            switch (change.type()) {
+                case DELETE -> newOverlay.put(change.id(), null);
+                case ROLE_MASK -> {
+                    // 役割の関連はそのままで、ビットマスクのみ修復された場合
+                    if (current != null) {
+                        newOverlay.put(change.id(), new Row(current.id(), current.name(), current.email(),
+                            current.nameNormalized(), current.emailNormalized(), change.roleMask(), current.roleSet(),
+                            current.updatedAtMicros()));
+                    }
+                }
+                case UPSERT -> {
+                    UserState state = change.state();
+                    long roleSet = 0;
+                    if (state.roles() == null) {
+                        // 役割の集合が読み込まれていない変更は、既存の役割を引き継ぐ
+                        roleSet = current == null ? 0 : current.roleSet();
+                    } else {
+                        for (UserState.RoleRef role : state.roles()) {
+                            Integer index = indexById.get(role.id());
+                            if (index == null) {
+                                index = addRole(dictionary, toRole(role));
+                                indexById.put(role.id(), index);
+                            }
+                            roleSet |= 1L << index;
+                        }
+                    }
+                    newOverlay.put(change.id(), new Row(change.id(), intern(state.name()), intern(state.email()),
+                        intern(state.nameNormalized()), intern(state.emailNormalized()), state.roleMask(), roleSet,
+                        toMicros(state.updatedAt())));
+                }
+            }
+        }
+        DirectorySnapshot snapshot = new DirectorySnapshot(version + 1, dictionary.toArray(Role[]::new), baseSize,
+            ids, names, emails, namesNormalized, emailsNormalized, roleMasks, roleSets, updatedAtMicros,
+            Collections.unmodifiableNavigableMap(newOverlay));
+        return newOverlay.size() > compactionThreshold ? snapshot.compact() : snapshot;
+    }
+
+    /**
+     * オーバーレイをベースの列に統合したスナップショットを返します。
+     *
+     * @return 統合したスナップショット
+     */
+    DirectorySnapshot compact() {
+        Builder builder = new Builder(version, size);
+        for (Role role : roleDictionary) {
+            builder.addRole(role.getId(), role.getName());
+        }
+        Iterator<Map.Entry<Long, Row>> changes = overlay.entrySet().iterator();
+        Map.Entry<Long, Row> change = changes.hasNext() ? changes.next() : null;
+        for (int i = 0; i < baseSize; i++) {
+            while (change != null && change.getKey() < ids[i]) {
+                builder.addRow(change.getValue());
+                change = changes.hasNext() ? changes.next() : null;
+            }
+            if (change != null && change.getKey() == ids[i]) {
+                builder.addRow(change.getValue());
+                change = changes.hasNext() ? changes.next() : null;
+                continue;
+            }
+            builder.addUser(ids[i], names[i], emails[i], namesNormalized[i], emailsNormalized[i], roleMasks[i],
+                updatedAtMicros[i]);
+            builder.roleSets[builder.size - 1] = roleSets[i];
+        }
+        while (change != null) {
+            builder.addRow(change.getValue());
+            change = changes.hasNext() ? changes.next() : null;
+        }
+        return builder.build();
+    }
+
+    private Row findRow(long id) {
+        if (overlay.containsKey(id)) {
+            return overlay.get(id);
+        }
+        int i = Arrays.binarySearch(ids, 0, baseSize, id);
+        if (i < 0) {
+            return null;
+        }
+        return new Row(id, names[i], emails[i], namesNormalized[i], emailsNormalized[i], roleMasks[i], roleSets[i],
+            updatedAtMicros[i]);
+    }
+
+    private void addIfMatches(List<UserSummary> result, Row row, RowMatcher matcher) {
+        if (row != null && matcher.matches(row.nameNormalized(), row.emailNormalized(), row.roleMask(), row.roleSet())) {
+            result.add(summary(row));
+        }
+    }
+
+    private UserSummary summary(Row row) {
+        return summary(row.id(), row.name(), row.email(), row.roleMask(), row.roleSet(), row.updatedAtMicros());
+    }
+
+    private UserSummary summary(long id, String name, String email, int roleMask, long roleSet, long updatedAt) {
+        return new UserSummary(id, name, email, primaryRole(roleMask, roleSet), roleMask, fromMicros(updatedAt));
+    }
+
+    /**
+     * 役割の集合から主要な役割 ({@link RoleMask#primary(int)}) を返します。
+     */
+    private Role primaryRole(int roleMask, long roleSet) {
+        if (roleSet == 0) {
+            return null;
+        }
+        int primary = RoleMask.primary(roleMask);
+        for (long bits = roleSet; bits != 0; bits &= bits - 1) {
+            int index = Long.numberOfTrailingZeros(bits);
+            if (roleBits[index] == primary) {
+                return roleDictionary[index];
+            }
+        }
+        return roleDictionary[Long.numberOfTrailingZeros(roleSet)];
+    }
+
+    private int computeSize() {
+        int count = baseSize;
+        for (Map.Entry<Long, Row> change : overlay.entrySet()) {
+            boolean inBase = Arrays.binarySearch(ids, 0, baseSize, change.getKey()) >= 0;
+            if (inBase && change.getValue() == null) {
+                count--;
+            } else if (!inBase && change.getValue() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int addRole(List<Role> dictionary, Role role) {
+        if (dictionary.size() >= MAX_ROLES) {
+            throw new IllegalStateException("役割の数が読み取りモデルの上限を超えました: max=" + MAX_ROLES);
+        }
+        dictionary.add(role);
+        return dictionary.size() - 1;
+    }
+
+    private static Role toRole(UserState.RoleRef ref) {
+        Role role = new Role(intern(ref.name()));
+        role.setId(ref.id());
+        return role;
+    }
+
+    static String intern(String value) {
+        return value == null ? null : value.intern();
+    }
+
+    static long toMicros(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return Long.MIN_VALUE;
+        }
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + dateTime.getNano() / 1_000;
+    }
+
+    static LocalDateTime fromMicros(long micros) {
+        if (micros == Long.MIN_VALUE) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+            (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * スナップショットを列ごとに組み立てるビルダー。
+     * ユーザーはIDの昇順に追加してください。
+     */
+    static final class Builder {
+
+        private final long version;
+        private final List<Role> roles = new ArrayList<>();
+        private final Map<Long, Integer> roleIndexById = new HashMap<>();
+
+        private int size;
+        private long[] ids;
+        private String[] names;
+        private String[] emails;
+        private String[] namesNormalized;
+        private String[] emailsNormalized;
+        private int[] roleMasks;
+        private long[] roleSets;
+        private long[] updatedAtMicros;
+
+        Builder(long version) {
+            this(version, INITIAL_CAPACITY);
+        }
+
+        private Builder(long version, int capacity) {
+            this.version = version;
+            int initial = Math.max(capacity, 16);
+            ids = new long[initial];
+            names = new String[initial];
+            emails = new String[initial];
+            namesNormalized = new String[initial];
+            emailsNormalized = new String[initial];
+            roleMasks = new int[initial];
+            roleSets = new long[initial];
+            updatedAtMicros = new long[initial];
+        }
+
+        /**
+         * 役割を辞書に追加します。
+         *
+         * @throws IllegalStateException 役割が辞書の上限を超えた場合
+         */
+        void addRole(long id, String name) {
+            Role role = new Role(intern(name));
+            role.setId(id);
+            roleIndexById.put(id, DirectorySnapshot.addRole(roles, role));
+        }
+
+        /**
+         * ユーザーを追加します。役割は {@link #addUserRole(long, long)} で追加します。
+         */
+        void addUser(long id, String name, String email, String nameNormalized, String emailNormalized,
+                     int roleMask, long updatedAt) {
+            if (size > 0 && ids[size - 1] >= id) {
+                throw new IllegalArgumentException("ユーザーはIDの昇順に追加してください: id=" + id);
+            }
+            ensureCapacity(size + 1);
+            ids[size] = id;
+            names[size] = intern(name);
+            emails[size] = intern(email);
+            namesNormalized[size] = intern(nameNormalized);
+            emailsNormalized[size] = intern(emailNormalized);
+            roleMasks[size] = roleMask;
+            roleSets[size] = 0;
+            updatedAtMicros[size] = updatedAt;
+            size++;
+        }
+
+        /**
+         * ユーザーに役割を追加します。辞書にない役割、存在しないユーザーは無視します。
+         */
+        void addUserRole(long userId, long roleId) {
+            Integer index = roleIndexById.get(roleId);
+            int i = Arrays.binarySearch(ids, 0, size, userId);
+            if (index != null && i >= 0) {
+                roleSets[i] |= 1L << index;
+            }
+        }
+
+        private void addRow(Row row) {
+            if (row == null) {
+                return;
+            }
+            addUser(row.id(), row.name(), row.email(), row.nameNormalized(), row.emailNormalized(), row.roleMask(),
+                row.updatedAtMicros());
+            roleSets[size - 1] = row.roleSet();
+        }
+
+        DirectorySnapshot build() {
+            return new DirectorySnapshot(version, roles.toArray(Role[]::new), size,
+                Arrays.copyOf(ids, size), Arrays.copyOf(names, size), Arrays.copyOf(emails, size),
+                Arrays.copyOf(namesNormalized, size), Arrays.copyOf(emailsNormalized, size),
+                Arrays.copyOf(roleMasks, size), Arrays.copyOf(roleSets, size), Arrays.copyOf(updatedAtMicros, size),
+                Collections.emptyNavigableMap());
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= ids.length) {
+                return;
+            }
+            int newCapacity = Math.max(capacity, ids.length + (ids.length >> 1));
+            ids = Arrays.copyOf(ids, newCapacity);
+            names = Arrays.copyOf(names, newCapacity);
+            emails = Arrays.copyOf(emails, newCapacity);
+            namesNormalized = Arrays.copyOf(namesNormalized, newCapacity);
+            emailsNormalized = Arrays.copyOf(emailsNormalized, newCapacity);
+            roleMasks = Arrays.copyOf(roleMasks, newCapacity);
+            roleSets = Arrays.copyOf(roleSets, newCapacity);
+            updatedAtMicros = Arrays.copyOf(updatedAtMicros, newCapacity);
+        }
+    }
+}
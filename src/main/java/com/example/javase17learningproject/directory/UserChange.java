@@ -0,0 +1,66 @@
+package com.example.javase17learningproject.directory;
+
+import com.example.javase17learningproject.event.UserChangeEvent;
+import com.example.javase17learningproject.event.UserChangeEvent.RolesChanged;
+import com.example.javase17learningproject.event.UserChangeEvent.UserCreated;
+import com.example.javase17learningproject.event.UserChangeEvent.UserDeleted;
+import com.example.javase17learningproject.event.UserChangeEvent.UserUpdated;
+import com.example.javase17learningproject.event.UserState;
+
+/**
+ * 読み取りモデルに反映するユーザーの変更。
+ * 変更後の状態をそのまま保持するため、同じ変更を複数回適用しても結果は変わりません。
+ *
+ * @param id ユーザーID
+ * @param type 変更の種類
+ * @param state 変更後の状態（{@link Type#UPSERT} の場合）
+ * @param roleMask 変更後の役割のビットマスク（{@link Type#ROLE_MASK} の場合）
+ */
+record UserChange(long id, Type type, UserState state, int roleMask) {
+
+    /**
+     * 変更の種類。
+     */
+    enum Type {
+        /** 作成・更新 */
+        UPSERT,
+        /** 削除 */
+        DELETE,
+        /** 役割のビットマスクのみの変更 */
+        ROLE_MASK
+    }
+
+    static UserChange upsert(UserState state) {
+        return new UserChange(state.id(), Type.UPSERT, state, state.roleMask());
+    }
+
+    static UserChange delete(long id) {
+        return new UserChange(id, Type.DELETE, null, 0);
+    }
+
+    static UserChange roleMask(long id, int roleMask) {
+        return new UserChange(id, Type.ROLE_MASK, null, roleMask);
+    }
+
+    /**
+     * 変更イベントを読み取りモデルの変更に変換します。
+     *
+     * @param event 変更イベント
+     * @return 変更。読み取りモデルの行に影響しないイベントの場合はnull
+     */
+    static UserChange of(UserChangeEvent event) {
+        if (event instanceof UserCreated created) {
+            return upsert(created.user());
+        }
+        if (event instanceof UserUpdated updated) {
+            return upsert(updated.user());
+        }
+        if (event instanceof UserDeleted deleted) {
+            return delete(deleted.userId());
+        }
+        if (event instanceof RolesChanged rolesChanged) {
+            return roleMask(rolesChanged.userId(), rolesChanged.newMask());
+        }
+        return null;
+    }
+}
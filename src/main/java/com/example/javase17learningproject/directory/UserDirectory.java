@@ -0,0 +1,373 @@
+package com.example.javase17learningproject.directory;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.event.UserChangeConsumer;
+import com.example.javase17learningproject.event.UserChangeEvent;
+import com.example.javase17learningproject.event.UserChangeEvent.RoleChanged;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+import com.example.javase17learningproject.search.UserSearchCache;
+import com.example.javase17learningproject.search.UserSearchCriteria;
+import com.example.javase17learningproject.search.UserSearchCriteria.MatchMode;
+import com.example.javase17learningproject.search.UserSearchCriteria.RoleFilter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * ユーザーの読み取りモデル。
+ * 全ユーザーを列指向のスナップショット ({@link DirectorySnapshot}) としてメモリに保持し、
+ * ユーザー一覧と検索をJPAを経由せずに処理します。
+ *
+ * <p>起動時にデータベースをストリーミングで走査して構築し、その後は変更イベント ({@link UserChangeEventBus}) を適用します。
+ * 読み取りはロックを取らず、不変のスナップショットを {@link AtomicReference} で差し替えます。
+ * 読み取りの前に、それまでに発行された変更イベントの適用を待つため、コミットした変更は直後の読み取りに反映されます。
+ * 待機がタイムアウトした場合は、参照メソッドはnullを返します。
+ *
+ * <p>JPAを経由しない更新（SQLでの一括更新など）は反映されないため、その場合は {@link #rebuild()} を呼び出してください。
+ * スナップショットが利用できない間（構築前、役割数の上限超過時）は、参照メソッドはnullを返します。
+ */
+@Component
+public class UserDirectory implements UserChangeConsumer, MeterBinder {
+
+    /** 変更イベントの購読者名 */
+    public static final String CONSUMER_NAME = "user-directory";
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDirectory.class);
+
+    private static final int FETCH_SIZE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserSearchCache userSearchCache;
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    @Value("${app.user-directory.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.user-directory.compaction-threshold:1024}")
+    private int compactionThreshold;
+
+    @Value("${app.change-bus.read-your-writes-timeout:PT0.5S}")
+    private Duration readYourWritesTimeout;
+
+    private final AtomicReference<DirectorySnapshot> snapshot = new AtomicReference<>();
+
+    // 書き込み（変更の適用、再構築の開始・終了）の排他
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    // 再構築中に適用された変更。再構築後のスナップショットに再適用する (writeLockで保護)
+    private List<UserChange> changesDuringRebuild;
+
+    private volatile long lastRebuildMillis = -1;
+
+    @PostConstruct
+    void subscribe() {
+        if (enabled) {
+            userChangeEventBus.subscribe(CONSUMER_NAME, this);
+        }
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    void onContextRefreshed() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Override
+    public void onEvents(List<UserChangeEvent> events) {
+        List<UserChange> changes = new ArrayList<>(events.size());
+        boolean rolesRedefined = false;
+        for (UserChangeEvent event : events) {
+            UserChange change = UserChange.of(event);
+            if (change != null) {
+                changes.add(change);
+            }
+            rolesRedefined |= event instanceof RoleChanged;
+        }
+        apply(changes);
+        if (rolesRedefined) {
+            // 役割の名前の変更・削除は辞書を共有する全ユーザーに影響するため再構築する
+            rebuild();
+        }
+    }
+
+    @Override
+    public void onOverflow() {
+        rebuild();
+    }
+
+    /**
+     * 読み取りモデルが利用できるかを返します。
+     *
+     * @return 利用できる場合はtrue
+     */
+    public boolean isReady() {
+        return snapshot.get() != null;
+    }
+
+    /**
+     * 全てのユーザーをID順に返します。
+     *
+     * @return 全てのユーザー。読み取りモデルが利用できない場合はnull
+     */
+    public List<UserSummary> findAll() {
+        DirectorySnapshot current = readableSnapshot();
+        return current == null ? null : current.collect((name, email, roleMask, roleSet) -> true);
+    }
+
+    /**
+     * 条件に一致するユーザーをID順に返します。
+     * {@link com.example.javase17learningproject.UserRepository#search(UserSearchCriteria)} と同じ条件で比較します。
+     *
+     * @param criteria 検索条件
+     * @return 該当するユーザー。読み取りモデルが利用できない場合はnull
+     */
+    public List<UserSummary> search(UserSearchCriteria criteria) {
+        DirectorySnapshot current = readableSnapshot();
+        if (current == null) {
+            return null;
+        }
+        RoleFilter roleFilter = criteria.shape().roleFilter();
+        int roleBit = roleFilter == RoleFilter.MASK ? RoleMask.bitOf(criteria.role()) : 0;
+        long roleSetBit = 0;
+        if (roleFilter == RoleFilter.JOIN) {
+            int index = current.roleIndex(criteria.role());
+            if (index < 0) {
+                return List.of();
+            }
+            roleSetBit = 1L << index;
+        }
+        long joinBit = roleSetBit;
+        return current.collect((name, email, roleMask, roleSet) ->
+            matches(name, criteria.name(), criteria.nameMode())
+                && matches(email, criteria.email(), criteria.emailMode())
+                && (roleFilter == null
+                    || (roleFilter == RoleFilter.MASK ? (roleMask & roleBit) != 0 : (roleSet & joinBit) != 0)));
+    }
+
+    /**
+     * 指定されたIDのユーザーを、IDの並び順で返します。存在しないIDは無視します。
+     *
+     * @param ids ユーザーID
+     * @return 該当するユーザー。読み取りモデルが利用できない場合はnull
+     */
+    public List<UserSummary> findAllById(List<Long> ids) {
+        DirectorySnapshot current = readableSnapshot();
+        if (current == null) {
+            return null;
+        }
+        List<UserSummary> users = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            UserSummary user = current.find(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * IDでユーザーを返します。
+     *
+     * @param id ユーザーID
+     * @return 該当するユーザー。存在しない場合や読み取りモデルが利用できない場合は空
+     */
+    public Optional<UserSummary> findById(long id) {
+        DirectorySnapshot current = readableSnapshot();
+        return current == null ? Optional.empty() : Optional.ofNullable(current.find(id));
+    }
+
+    /**
+     * 呼び出し元が発行した変更イベントの適用を待ってから、現在のスナップショットを返します。
+     *
+     * @return スナップショット。利用できない場合や待機がタイムアウトした場合はnull
+     */
+    private DirectorySnapshot readableSnapshot() {
+        if (!userChangeEventBus.awaitOwnWrites(CONSUMER_NAME, readYourWritesTimeout)) {
+            return null;
+        }
+        return snapshot.get();
+    }
+
+    /**
+     * 読み取りモデルのユーザー数を返します。
+     *
+     * @return ユーザー数。読み取りモデルが利用できない場合は0
+     */
+    public int size() {
+        DirectorySnapshot current = snapshot.get();
+        return current == null ? 0 : current.size();
+    }
+
+    /**
+     * 直近の再構築に要した時間を返します。
+     *
+     * @return 所要時間（ミリ秒）。未実行の場合は-1
+     */
+    public long getLastRebuildMillis() {
+        return lastRebuildMillis;
+    }
+
+    /**
+     * データベースを走査して読み取りモデルを再構築します。
+     * 再構築中も既存のスナップショットで読み取りを処理し、再構築中に適用された変更は新しいスナップショットに再適用します。
+     */
+    public void rebuild() {
+        writeLock.lock();
+        try {
+            if (changesDuringRebuild != null) {
+                logger.debug("読み取りモデルは再構築中です");
+                return;
+            }
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            writeLock.unlock();
+        }
+
+        long start = System.nanoTime();
+        DirectorySnapshot rebuilt = null;
+        try {
+            DirectorySnapshot current = snapshot.get();
+            rebuilt = scan(current == null ? 0 : current.version() + 1);
+        } catch (RuntimeException e) {
+            logger.error("読み取りモデルの構築に失敗しました", e);
+        } finally {
+            writeLock.lock();
+            try {
+                if (rebuilt != null) {
+                    snapshot.set(withChanges(rebuilt, changesDuringRebuild));
+                }
+                changesDuringRebuild = null;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        if (rebuilt != null) {
+            lastRebuildMillis = (System.nanoTime() - start) / 1_000_000;
+            userSearchCache.invalidateAll();
+            logger.info("読み取りモデルを構築しました: users={}, duration={}ms", size(), lastRebuildMillis);
+        }
+    }
+
+    /**
+     * 変更を適用します。
+     *
+     * @param changes 変更
+     */
+    void apply(List<UserChange> changes) {
+        if (!enabled || changes.isEmpty()) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.addAll(changes);
+            }
+            DirectorySnapshot current = snapshot.get();
+            if (current != null) {
+                snapshot.set(withChanges(current, changes));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        // スナップショットの差し替え後に世代を進め、古いスナップショットの検索結果がキャッシュに残らないようにする
+        userSearchCache.invalidateAll();
+    }
+
+    /**
+     * 変更を適用したスナップショットを返します。
+     * 役割数が上限を超えた場合は読み取りモデルを利用できない状態 (null) にします。
+     */
+    private DirectorySnapshot withChanges(DirectorySnapshot current, List<UserChange> changes) {
+        if (changes.isEmpty()) {
+            return current;
+        }
+        try {
+            return current.withChanges(changes, compactionThreshold);
+        } catch (IllegalStateException e) {
+            logger.warn("読み取りモデルを無効にします: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * データベースをストリーミングで走査し、スナップショットを構築します。
+     * ユーザーと役割の関連はいずれもユーザーIDの昇順に読み込みます。
+     *
+     * @param version スナップショットのバージョン
+     * @return 構築したスナップショット
+     */
+    private DirectorySnapshot scan(long version) {
+        DirectorySnapshot.Builder builder = new DirectorySnapshot.Builder(version);
+        stream("SELECT id, name FROM roles ORDER BY id",
+            resultSet -> builder.addRole(resultSet.getLong(1), resultSet.getString(2)));
+        stream("SELECT id, name, email, name_normalized, email_normalized, role_mask, updated_at "
+                + "FROM users WHERE deleted_at IS NULL ORDER BY id",
+            resultSet -> {
+                Timestamp updatedAt = resultSet.getTimestamp(7);
+                builder.addUser(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3),
+                    resultSet.getString(4), resultSet.getString(5), resultSet.getInt(6),
+                    DirectorySnapshot.toMicros(updatedAt == null ? null : updatedAt.toLocalDateTime()));
+            });
+        stream("SELECT user_id, role_id FROM user_roles ORDER BY user_id",
+            resultSet -> builder.addUserRole(resultSet.getLong(1), resultSet.getLong(2)));
+        return builder.build();
+    }
+
+    private void stream(String sql, RowCallbackHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, handler);
+    }
+
+    private static boolean matches(String value, String pattern, MatchMode mode) {
+        if (mode == null) {
+            return true;
+        }
+        if (value == null) {
+            return false;
+        }
+        return mode == MatchMode.PREFIX ? value.startsWith(pattern) : value.contains(pattern);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.directory.size", this, UserDirectory::size)
+            .description("読み取りモデルのユーザー数")
+            .register(registry);
+        Gauge.builder("user.directory.overlay.size", snapshot,
+                reference -> reference.get() == null ? 0 : reference.get().overlaySize())
+            .description("ベースの列に統合されていない変更の行数")
+            .register(registry);
+    }
+}
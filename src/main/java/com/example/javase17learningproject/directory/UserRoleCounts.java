@@ -0,0 +1,302 @@
+package com.example.javase17learningproject.directory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.event.UserChangeConsumer;
+import com.example.javase17learningproject.event.UserChangeEvent;
+import com.example.javase17learningproject.event.UserChangeEvent.RolesChanged;
+import com.example.javase17learningproject.event.UserChangeEvent.UserCreated;
+import com.example.javase17learningproject.event.UserChangeEvent.UserDeleted;
+import com.example.javase17learningproject.event.UserChangeEvent.UserUpdated;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 役割ごとのユーザー数の集計。
+ * ユーザー一覧画面の絞り込みボタンに表示する件数を、表示のたびに {@code COUNT}/{@code GROUP BY} で数えずに
+ * 変更イベント ({@link UserChangeEventBus}) から増減させて保持します。
+ *
+ * <p>件数は {@link LongAdder} で保持し、画面やメトリクスからはロックを取らずに読み取ります。
+ * 変更イベントはユーザーごとの役割のビットマスクを設定・削除する操作として適用するため、同じイベントを
+ * 重ねて適用しても（再読み込みの前後や、論理削除後の物理削除など）件数はずれません。
+ *
+ * <p>エンティティを経由しない更新による件数のずれは、定期的な突き合わせ ({@link #reconcile()}) で
+ * データベースの件数と比較して検出し、データベースから読み込み直して修正します。
+ */
+@Component
+public class UserRoleCounts implements UserChangeConsumer, MeterBinder {
+
+    /** 変更イベントの購読者名 */
+    public static final String CONSUMER_NAME = "role-counts";
+
+    private static final Logger logger = LoggerFactory.getLogger(UserRoleCounts.class);
+
+    // 集計する役割のビット (ADMIN, MODERATOR, USER, 定義済み以外)
+    private static final int[] BITS = {RoleMask.ADMIN, RoleMask.MODERATOR, RoleMask.USER, RoleMask.OTHER};
+    private static final String[] BIT_NAMES = {"ADMIN", "MODERATOR", "USER", "OTHER"};
+
+    /**
+     * 役割ごとのユーザー数。複数の役割を持つユーザーは、それぞれの役割で数えます。
+     *
+     * @param total ユーザー数
+     * @param admin ADMINの役割を持つユーザー数
+     * @param moderator MODERATORの役割を持つユーザー数
+     * @param user USERの役割を持つユーザー数
+     * @param other 定義済み以外の役割を持つユーザー数
+     */
+    public record Counts(long total, long admin, long moderator, long user, long other) {}
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    @Value("${app.role-counts.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.change-bus.read-your-writes-timeout:PT0.5S}")
+    private Duration readYourWritesTimeout;
+
+    private final LongAdder total = new LongAdder();
+    private final LongAdder[] byRole = {new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()};
+    private final LongAdder corrections = new LongAdder();
+
+    // ユーザーごとの役割のビットマスク、変更の適用回数 (lockで保護)
+    private final ReentrantLock lock = new ReentrantLock();
+    private Map<Long, Integer> masks;
+    private long appliedBatches;
+
+    private volatile boolean loaded;
+
+    @PostConstruct
+    void subscribe() {
+        if (enabled) {
+            userChangeEventBus.subscribe(CONSUMER_NAME, this);
+        }
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    void onContextRefreshed() {
+        if (enabled) {
+            reload();
+        }
+    }
+
+    @Override
+    public void onEvents(List<UserChangeEvent> events) {
+        lock.lock();
+        try {
+            if (masks == null) {
+                return;
+            }
+            for (UserChangeEvent event : events) {
+                if (event instanceof UserCreated created) {
+                    set(created.user().id(), created.user().roleMask());
+                } else if (event instanceof UserUpdated updated) {
+                    set(updated.user().id(), updated.user().roleMask());
+                } else if (event instanceof RolesChanged changed) {
+                    set(changed.userId(), changed.newMask());
+                } else if (event instanceof UserDeleted deleted) {
+                    remove(deleted.userId());
+                }
+            }
+            appliedBatches++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onOverflow() {
+        reload();
+    }
+
+    private void set(long userId, int mask) {
+        Integer previous = masks.put(userId, mask);
+        if (previous == null) {
+            total.increment();
+        } else if (previous == mask) {
+            return;
+        } else {
+            add(previous, -1);
+        }
+        add(mask, 1);
+    }
+
+    private void remove(long userId) {
+        Integer previous = masks.remove(userId);
+        if (previous != null) {
+            total.decrement();
+            add(previous, -1);
+        }
+    }
+
+    private void add(int mask, long delta) {
+        for (int i = 0; i < BITS.length; i++) {
+            if (RoleMask.contains(mask, BITS[i])) {
+                byRole[i].add(delta);
+            }
+        }
+    }
+
+    /**
+     * 役割ごとのユーザー数を返します。
+     *
+     * @return ユーザー数。読み込み前や無効な場合はnull
+     */
+    public Counts getCounts() {
+        if (!loaded) {
+            return null;
+        }
+        return new Counts(total.sum(), byRole[0].sum(), byRole[1].sum(), byRole[2].sum(), byRole[3].sum());
+    }
+
+    /**
+     * 定期的にデータベースの件数と突き合わせます。
+     */
+    @Scheduled(initialDelayString = "${app.role-counts.reconcile.initial-delay:PT5M}",
+               fixedDelayString = "${app.role-counts.reconcile.interval:PT10M}")
+    public void scheduledReconcile() {
+        if (enabled) {
+            reconcile();
+        }
+    }
+
+    /**
+     * データベースの件数 ({@code role_mask} ごとの {@code COUNT}) と比較し、ずれている場合は読み込み直します。
+     * 比較の間に変更イベントが適用された場合は、ずれを判定できないため次回に持ち越します。
+     *
+     * @return 読み込み直した場合はtrue
+     */
+    public boolean reconcile() {
+        if (!loaded || !userChangeEventBus.awaitProcessed(CONSUMER_NAME, readYourWritesTimeout)) {
+            return false;
+        }
+        long batches;
+        lock.lock();
+        try {
+            batches = appliedBatches;
+        } finally {
+            lock.unlock();
+        }
+        long[] expected = countInDatabase();
+        if (!userChangeEventBus.awaitProcessed(CONSUMER_NAME, readYourWritesTimeout)) {
+            return false;
+        }
+        lock.lock();
+        try {
+            if (batches != appliedBatches) {
+                logger.debug("集計中に変更されたため、役割ごとのユーザー数の突き合わせを見送ります");
+                return false;
+            }
+            long[] actual = current();
+            if (Arrays.equals(expected, actual)) {
+                logger.debug("役割ごとのユーザー数は整合しています: {}", Arrays.toString(actual));
+                return false;
+            }
+            logger.warn("役割ごとのユーザー数のずれを検出しました: expected={}, actual={}",
+                Arrays.toString(expected), Arrays.toString(actual));
+            load();
+            corrections.increment();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * データベースからユーザーごとの役割のビットマスクを読み込み直します。
+     */
+    public void reload() {
+        lock.lock();
+        try {
+            load();
+        } finally {
+            lock.unlock();
+        }
+        logger.info("役割ごとのユーザー数を読み込みました: {}", getCounts());
+    }
+
+    // lockを取得して呼び出す
+    private void load() {
+        Map<Long, Integer> loadedMasks = new HashMap<>();
+        jdbcTemplate.query("SELECT id, role_mask FROM users WHERE deleted_at IS NULL",
+            resultSet -> {
+                loadedMasks.put(resultSet.getLong(1), resultSet.getInt(2));
+            });
+        total.reset();
+        for (LongAdder counter : byRole) {
+            counter.reset();
+        }
+        masks = new HashMap<>();
+        loadedMasks.forEach(this::set);
+        loaded = true;
+    }
+
+    /**
+     * 合計と役割ごとの件数を {@link #BITS} の順に返します。
+     */
+    private long[] current() {
+        long[] counts = new long[BITS.length + 1];
+        counts[0] = total.sum();
+        for (int i = 0; i < BITS.length; i++) {
+            counts[i + 1] = byRole[i].sum();
+        }
+        return counts;
+    }
+
+    private long[] countInDatabase() {
+        long[] counts = new long[BITS.length + 1];
+        jdbcTemplate.query("SELECT role_mask, COUNT(*) FROM users WHERE deleted_at IS NULL GROUP BY role_mask",
+            resultSet -> {
+                int mask = resultSet.getInt(1);
+                long count = resultSet.getLong(2);
+                counts[0] += count;
+                for (int i = 0; i < BITS.length; i++) {
+                    if (RoleMask.contains(mask, BITS[i])) {
+                        counts[i + 1] += count;
+                    }
+                }
+            });
+        return counts;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.count", total, LongAdder::sum)
+            .description("ユーザー数")
+            .register(registry);
+        for (int i = 0; i < BITS.length; i++) {
+            Gauge.builder("user.role.count", byRole[i], LongAdder::sum)
+                .description("役割ごとのユーザー数")
+                .tag("role", BIT_NAMES[i])
+                .register(registry);
+        }
+        FunctionCounter.builder("user.role.count.corrections", corrections, LongAdder::sum)
+            .description("データベースとの突き合わせで件数を修正した回数")
+            .register(registry);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.javase17learningproject.directory;
+
+import java.time.LocalDateTime;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.User;
+
+/**
+ * ユーザー一覧・検索結果の1行。
+ * 読み取りモデル ({@link UserDirectory}) の列から組み立てる参照専用の値で、エンティティではありません。
+ * 一覧画面のテンプレートが参照するプロパティ ({@code id}, {@code name}, {@code email}, {@code role.name}) を提供します。
+ */
+public final class UserSummary {
+
+    private final long id;
+    private final String name;
+    private final String email;
+    private final Role role;
+    private final int roleMask;
+    private final LocalDateTime updatedAt;
+
+    UserSummary(long id, String name, String email, Role role, int roleMask, LocalDateTime updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.email = email;
+        this.role = role;
+        this.roleMask = roleMask;
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * エンティティから作成します。
+     * 読み取りモデルが利用できない場合に使用します。
+     *
+     * @param user ユーザー
+     * @return ユーザーの1行
+     */
+    public static UserSummary of(User user) {
+        Role primary = user.getRole();
+        Role role = null;
+        if (primary != null) {
+            role = new Role(primary.getName());
+            role.setId(primary.getId());
+        }
+        return new UserSummary(user.getId(), user.getName(), user.getEmail(), role,
+            user.getRoleMask(), user.getUpdatedAt());
+    }
+
+    /**
+     * 列の値から作成します。
+     * 読み取りモデル以外でJPAを経由せずに読み込んだ行 (シャーディングしたリポジトリなど) に使用します。
+     *
+     * @param id ユーザーID
+     * @param name ユーザー名
+     * @param email メールアドレス
+     * @param role 主要な役割（参照専用）。役割がない場合はnull
+     * @param roleMask 役割のビットマスク
+     * @param updatedAt 更新日時
+     * @return ユーザーの1行
+     */
+    public static UserSummary of(long id, String name, String email, Role role, int roleMask, LocalDateTime updatedAt) {
+        return new UserSummary(id, name, email, role, roleMask, updatedAt);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * 主要な役割を取得します。
+     * 返される役割は読み取りモデルの辞書が共有する参照専用のインスタンスです。変更しないでください。
+     *
+     * @return 主要な役割。役割がない場合はnull
+     */
+    public Role getRole() {
+        return role;
+    }
+
+    /**
+     * 役割のビットマスクを取得します。
+     *
+     * @return 役割のビットマスク
+     * @see RoleMask
+     */
+    public int getRoleMask() {
+        return roleMask;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("UserSummary[id=%d, name='%s', email='%s', role=%s]",
+            id, name, email, role == null ? null : role.getName());
+    }
+}
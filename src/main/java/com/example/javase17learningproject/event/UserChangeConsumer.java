@@ -0,0 +1,24 @@
+package com.example.javase17learningproject.event;
+
+import java.util.List;
+
+/**
+ * 変更イベントの購読者。
+ * 購読者ごとの専用スレッドから、発行順にまとめて呼び出されます。
+ */
+public interface UserChangeConsumer {
+
+    /**
+     * 変更イベントを処理します。
+     *
+     * @param events 発行順の変更イベント
+     */
+    void onEvents(List<UserChangeEvent> events);
+
+    /**
+     * キューが満杯になりイベントを破棄した後に呼び出されます。
+     * 破棄されたイベントは配信されないため、購読者はデータベースなどの正から状態を再構築してください。
+     */
+    default void onOverflow() {
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.javase17learningproject.event;
+
+/**
+ * ユーザーと役割の変更イベント。
+ * トランザクションのコミット後に {@link UserChangeEventBus} から購読者に配信されます。
+ */
+public sealed interface UserChangeEvent {
+
+    /**
+     * ユーザーが作成された。
+     *
+     * @param user 作成時の状態
+     */
+    record UserCreated(UserState user) implements UserChangeEvent {}
+
+    /**
+     * ユーザーが更新された。役割が変更された場合は、続けて {@link RolesChanged} が配信されます。
+     *
+     * @param user 更新後の状態
+     */
+    record UserUpdated(UserState user) implements UserChangeEvent {}
+
+    /**
+     * ユーザーが削除された。
+     *
+     * @param userId ユーザーID
+     * @param version 削除時のユーザーのバージョン
+     */
+    record UserDeleted(long userId, long version) implements UserChangeEvent {}
+
+    /**
+     * ユーザーの役割が変更された。
+     * 定義済み以外の役割同士の入れ替えでは、ビットマスクが変わらない場合があります。
+     *
+     * @param userId ユーザーID
+     * @param previousMask 変更前の役割のビットマスク
+     * @param newMask 変更後の役割のビットマスク
+     * @param version 変更後のユーザーのバージョン
+     */
+    record RolesChanged(long userId, int previousMask, int newMask, long version) implements UserChangeEvent {}
+
+    /**
+     * 役割の定義（名前）が変更または削除された。
+     *
+     * @param roleId 役割ID
+     * @param deleted 削除された場合はtrue
+     */
+    record RoleChanged(long roleId, boolean deleted) implements UserChangeEvent {}
+}
@@ -0,0 +1,544 @@
+package com.example.javase17learningproject.event;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * ユーザーと役割の変更イベントのバス。
+ * トランザクションのコミット後に変更イベントを発行し、購読者ごとの上限付きキューと専用スレッドで配信します。
+ *
+ * <p>イベントには発行順の通し番号を付け、各購読者には発行順に配信します。
+ * 発行はコミットの後のため、同じユーザーを更新した2つのトランザクションのイベントが、コミットと逆の順に発行されることがあります。
+ * ユーザーのイベントはユーザーのバージョンを持つため、発行済みのイベントより古いバージョンのイベントは配信せずに破棄し、
+ * 購読者が新しい状態を古い状態で上書きしないようにします（削除の後は、同じバージョンの更新も古いものとして扱う）。
+ * 発行はキューへの追加のみでブロックしないため、遅い購読者がコミットしたトランザクションを待たせることはありません。
+ * キューが満杯の場合はイベントを破棄し、購読者の {@link UserChangeConsumer#onOverflow()} で再同期させます。
+ *
+ * <p>{@link #awaitProcessed(String, Duration)} で、それまでに発行されたイベントを購読者が処理し終えるまで待機できます。
+ *
+ * <p><b>自身の書き込みの読み取り</b>: イベントを発行すると、その通し番号をリクエストとセッション
+ * （リクエスト外の場合はスレッド）に記録します。読み取りモデルは {@link #awaitOwnWrites(String, Duration)} で
+ * 呼び出し元が発行したイベントの処理だけを待ち、自身の書き込みを直後の読み取りに反映します。
+ */
+@Component
+public class UserChangeEventBus implements MeterBinder, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserChangeEventBus.class);
+
+    private static final Object PENDING_EVENTS_KEY = UserChangeEventBus.class.getName() + ".PENDING_EVENTS";
+
+    private static final String LAST_PUBLISHED_ATTRIBUTE = UserChangeEventBus.class.getName() + ".LAST_PUBLISHED";
+
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private static final long POLL_TIMEOUT_MILLIS = 500;
+
+    // ユーザーごとの発行済みのバージョンを保持する時間。コミットと発行の順序の逆転は、先にコミットした
+    // トランザクションのコミット後の処理が終わるまでの間（通常はミリ秒単位）にだけ起きる。
+    // 長く保持すると、スキーマを作り直した後に再利用されたIDのイベントを古いものとして破棄してしまう
+    private static final long PUBLISHED_VERSION_RETENTION_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Value("${app.change-bus.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private final AtomicLong publishedSequence = new AtomicLong();
+
+    // 通し番号の採番とキューへの追加を一体にし、全ての購読者のキューを通し番号の順に保つ
+    private final ReentrantLock publishLock = new ReentrantLock();
+
+    private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    // ユーザーID -> 発行済みの最新のバージョン (publishLockで保護)
+    private final Map<Long, PublishedVersion> publishedVersions = new HashMap<>();
+    private long lastVersionSweepNanos = System.nanoTime();
+
+    private final LongAdder stale = new LongAdder();
+
+    // リクエスト外の呼び出し元（バッチ処理など）が最後に発行したイベントの通し番号
+    private final ThreadLocal<Long> lastPublishedByThread = new ThreadLocal<>();
+
+    private volatile MeterRegistry meterRegistry;
+
+    /**
+     * キューに入れるイベント。
+     *
+     * @param sequence 通し番号
+     * @param event 変更イベント
+     * @param publishedNanos 発行時刻 ({@link System#nanoTime()})
+     */
+    private record Envelope(long sequence, UserChangeEvent event, long publishedNanos) {}
+
+    /**
+     * ユーザーの発行済みの最新のバージョン。
+     *
+     * @param version バージョン
+     * @param deleted 削除のイベントの場合はtrue
+     * @param publishedNanos 発行時刻 ({@link System#nanoTime()})
+     */
+    private record PublishedVersion(long version, boolean deleted, long publishedNanos) {}
+
+    /**
+     * 購読者を登録し、配信スレッドを開始します。
+     *
+     * @param name 購読者名（メトリクスのタグ、スレッド名に使用）
+     * @param consumer 購読者
+     * @throws IllegalArgumentException 同じ名前の購読者が登録済みの場合
+     */
+    public void subscribe(String name, UserChangeConsumer consumer) {
+        Subscription subscription = new Subscription(name, consumer, queueCapacity);
+        if (subscriptions.putIfAbsent(name, subscription) != null) {
+            throw new IllegalArgumentException("購読者は登録済みです: " + name);
+        }
+        MeterRegistry registry = meterRegistry;
+        if (registry != null) {
+            subscription.bindTo(registry);
+        }
+        subscription.start();
+    }
+
+    /**
+     * 変更イベントをトランザクションのコミット後に発行します。
+     * 1つのトランザクションのイベントはコミット時にまとめて発行し、ロールバックされた場合は破棄します。
+     * トランザクション外の場合は即座に発行します。
+     *
+     * @param event 変更イベント
+     */
+    @SuppressWarnings("unchecked")
+    public void publishAfterCommit(UserChangeEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(List.of(event));
+            return;
+        }
+        List<UserChangeEvent> pending =
+            (List<UserChangeEvent>) TransactionSynchronizationManager.getResource(PENDING_EVENTS_KEY);
+        if (pending == null) {
+            List<UserChangeEvent> events = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(PENDING_EVENTS_KEY, events);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_EVENTS_KEY);
+                    if (status == STATUS_COMMITTED) {
+                        publish(events);
+                    }
+                }
+            });
+            pending = events;
+        }
+        pending.add(event);
+    }
+
+    /**
+     * 変更イベントを即座に発行します。
+     * 全ての購読者のキューに追加して戻り、購読者の処理は待ちません。
+     * 発行済みのイベントより古いバージョンのユーザーのイベントは破棄します。
+     * 最後のイベントの通し番号を、呼び出し元が発行したイベントとして記録します。
+     *
+     * @param events 発行順の変更イベント
+     */
+    public void publish(List<UserChangeEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        long last;
+        publishLock.lock();
+        try {
+            last = 0;
+            long now = System.nanoTime();
+            sweepPublishedVersions(now);
+            for (UserChangeEvent event : events) {
+                if (isStale(event, now)) {
+                    stale.increment();
+                    logger.debug("古いバージョンの変更イベントを破棄しました: {}", event);
+                    continue;
+                }
+                last = publishedSequence.incrementAndGet();
+                Envelope envelope = new Envelope(last, event, now);
+                for (Subscription subscription : subscriptions.values()) {
+                    subscription.offer(envelope);
+                }
+            }
+        } finally {
+            publishLock.unlock();
+        }
+        if (last > 0) {
+            recordPublished(last);
+        }
+    }
+
+    /**
+     * イベントが発行済みのイベントより古いかを判定し、古くない場合はバージョンを記録します。
+     * 呼び出し元は publishLock を保持していること。
+     */
+    private boolean isStale(UserChangeEvent event, long now) {
+        long userId;
+        long version;
+        boolean deleted = false;
+        if (event instanceof UserChangeEvent.UserCreated created) {
+            userId = created.user().id();
+            version = created.user().version();
+        } else if (event instanceof UserChangeEvent.UserUpdated updated) {
+            userId = updated.user().id();
+            version = updated.user().version();
+        } else if (event instanceof UserChangeEvent.RolesChanged changed) {
+            userId = changed.userId();
+            version = changed.version();
+        } else if (event instanceof UserChangeEvent.UserDeleted removed) {
+            userId = removed.userId();
+            version = removed.version();
+            deleted = true;
+        } else {
+            return false;
+        }
+        PublishedVersion published = publishedVersions.get(userId);
+        if (published != null && now - published.publishedNanos() <= PUBLISHED_VERSION_RETENTION_NANOS
+                && (version < published.version()
+                || (published.deleted() && !deleted && version == published.version()))) {
+            return true;
+        }
+        publishedVersions.put(userId, new PublishedVersion(version, deleted, now));
+        return false;
+    }
+
+    private void sweepPublishedVersions(long now) {
+        if (now - lastVersionSweepNanos < PUBLISHED_VERSION_RETENTION_NANOS) {
+            return;
+        }
+        publishedVersions.values()
+            .removeIf(published -> now - published.publishedNanos() > PUBLISHED_VERSION_RETENTION_NANOS);
+        lastVersionSweepNanos = now;
+    }
+
+    /**
+     * 呼び出し時点までに発行されたイベントを、購読者が処理し終えるまで待機します。
+     * 購読者の配信スレッドから呼び出された場合は待機しません。
+     *
+     * @param name 購読者名
+     * @param timeout 最大待機時間
+     * @return 処理し終えた場合（または購読者が登録されていない場合）はtrue、タイムアウトした場合はfalse
+     */
+    public boolean awaitProcessed(String name, Duration timeout) {
+        Subscription subscription = subscriptions.get(name);
+        if (subscription == null || Thread.currentThread() == subscription.thread) {
+            return true;
+        }
+        return subscription.awaitProcessed(publishedSequence.get(), timeout.toNanos());
+    }
+
+    /**
+     * 呼び出し元が発行したイベントを、購読者が処理し終えるまで待機します。
+     * 呼び出し元がイベントを発行していない場合は待機しません。他の呼び出し元のイベントは待たないため、
+     * 他のユーザーの更新が読み取りに反映されるのは購読者が処理した後です。
+     *
+     * @param name 購読者名
+     * @param timeout 最大待機時間
+     * @return 処理し終えた場合（または待機が不要な場合）はtrue、タイムアウトした場合はfalse
+     */
+    public boolean awaitOwnWrites(String name, Duration timeout) {
+        long sequence = lastPublished();
+        Subscription subscription = subscriptions.get(name);
+        if (sequence <= 0 || subscription == null || Thread.currentThread() == subscription.thread) {
+            return true;
+        }
+        // 再起動前のセッションに記録された通し番号は、現在の通し番号を超えることがある
+        return subscription.awaitProcessed(Math.min(sequence, publishedSequence.get()), timeout.toNanos());
+    }
+
+    /**
+     * 別のスレッドで実行する処理に、呼び出し元が発行したイベントの通し番号を引き継ぎます。
+     * 処理の中の {@link #awaitOwnWrites(String, Duration)} は、呼び出し元の書き込みを待ちます。
+     * 処理を登録するスレッド（リクエストを処理するスレッド）で呼び出してください。
+     *
+     * @param task 別のスレッドで実行する処理
+     * @return 通し番号を引き継いで実行する処理。呼び出し元がイベントを発行していない場合は {@code task}
+     */
+    public Runnable propagateOwnWrites(Runnable task) {
+        long sequence = lastPublished();
+        if (sequence <= 0) {
+            return task;
+        }
+        return () -> {
+            Long previous = lastPublishedByThread.get();
+            lastPublishedByThread.set(sequence);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    lastPublishedByThread.remove();
+                } else {
+                    lastPublishedByThread.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * 購読者の遅れ（発行済みで未処理のイベント数）を返します。
+     *
+     * @param name 購読者名
+     * @return 未処理のイベント数。購読者が登録されていない場合は0
+     */
+    public long getLag(String name) {
+        Subscription subscription = subscriptions.get(name);
+        return subscription == null ? 0 : subscription.lag();
+    }
+
+    /**
+     * 購読者が破棄したイベント数を返します。
+     *
+     * @param name 購読者名
+     * @return 破棄したイベント数。購読者が登録されていない場合は0
+     */
+    public long getDroppedCount(String name) {
+        Subscription subscription = subscriptions.get(name);
+        return subscription == null ? 0 : subscription.dropped.sum();
+    }
+
+    /**
+     * 呼び出し元が発行したイベントの通し番号を記録します。
+     * リクエストの中ではリクエストとセッション（作成済みの場合）に、それ以外ではスレッドに記録します。
+     */
+    private void recordPublished(long sequence) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            lastPublishedByThread.set(sequence);
+            return;
+        }
+        attributes.setAttribute(LAST_PUBLISHED_ATTRIBUTE, sequence, RequestAttributes.SCOPE_REQUEST);
+        // セッションは作成しない（ステートレスなAPIはリクエストの中だけで自身の書き込みを読む）
+        if (attributes instanceof ServletRequestAttributes servletAttributes) {
+            HttpSession session = servletAttributes.getRequest().getSession(false);
+            if (session != null) {
+                session.setAttribute(LAST_PUBLISHED_ATTRIBUTE, sequence);
+            }
+        }
+    }
+
+    private long lastPublished() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            Long sequence = lastPublishedByThread.get();
+            return sequence == null ? 0 : sequence;
+        }
+        Object sequence = attributes.getAttribute(LAST_PUBLISHED_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (sequence == null && attributes instanceof ServletRequestAttributes servletAttributes) {
+            HttpSession session = servletAttributes.getRequest().getSession(false);
+            sequence = session == null ? null : session.getAttribute(LAST_PUBLISHED_ATTRIBUTE);
+        }
+        return sequence instanceof Long value ? value : 0;
+    }
+
+    /**
+     * 古いバージョンのため破棄したイベント数を返します。
+     *
+     * @return 破棄したイベント数
+     */
+    public long getStaleCount() {
+        return stale.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.change.bus.stale", stale, LongAdder::sum)
+            .description("コミットと逆の順に発行されたため破棄した古いバージョンの変更イベント数")
+            .register(registry);
+        meterRegistry = registry;
+        subscriptions.values().forEach(subscription -> subscription.bindTo(registry));
+    }
+
+    @Override
+    public void destroy() {
+        subscriptions.values().forEach(Subscription::stop);
+    }
+
+    /**
+     * 購読者ごとのキューと配信スレッド。
+     */
+    private final class Subscription implements Runnable {
+
+        private final String name;
+        private final UserChangeConsumer consumer;
+        private final BlockingQueue<Envelope> queue;
+        private final Thread thread;
+
+        private final AtomicBoolean overflowed = new AtomicBoolean();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder delivered = new LongAdder();
+
+        private final ReentrantLock progressLock = new ReentrantLock();
+        private final Condition progressed = progressLock.newCondition();
+        private volatile long processedSequence;
+        private volatile boolean running = true;
+
+        Subscription(String name, UserChangeConsumer consumer, int capacity) {
+            this.name = name;
+            this.consumer = consumer;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this, "user-change-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            // 登録前に発行されたイベントは配信しない
+            markProcessed(publishedSequence.get());
+            thread.start();
+        }
+
+        void stop() {
+            running = false;
+            thread.interrupt();
+        }
+
+        void offer(Envelope envelope) {
+            if (!queue.offer(envelope)) {
+                dropped.increment();
+                if (overflowed.compareAndSet(false, true)) {
+                    logger.warn("変更イベントのキューが満杯のため破棄しました: consumer={}, sequence={}",
+                        name, envelope.sequence());
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Envelope> batch = new ArrayList<>(MAX_BATCH_SIZE);
+            while (running) {
+                try {
+                    Envelope first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                        deliver(batch);
+                        batch.clear();
+                    }
+                    if (overflowed.getAndSet(false)) {
+                        resynchronize();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private void deliver(List<Envelope> batch) {
+            try {
+                consumer.onEvents(batch.stream().map(Envelope::event).toList());
+                delivered.add(batch.size());
+            } catch (RuntimeException e) {
+                // 処理できなかったイベントは破棄と同様に扱い、再同期させる
+                logger.error("変更イベントの処理に失敗しました: consumer={}", name, e);
+                overflowed.set(true);
+            }
+            markProcessed(batch.get(batch.size() - 1).sequence());
+        }
+
+        private void resynchronize() {
+            // 再同期の開始時点までに発行されたイベントは、再同期で反映されたものとして扱う
+            long through = publishedSequence.get();
+            try {
+                consumer.onOverflow();
+                logger.info("変更イベントの購読者を再同期しました: consumer={}", name);
+            } catch (RuntimeException e) {
+                logger.error("変更イベントの購読者の再同期に失敗しました: consumer={}", name, e);
+            }
+            markProcessed(through);
+        }
+
+        private void markProcessed(long sequence) {
+            progressLock.lock();
+            try {
+                if (sequence > processedSequence) {
+                    processedSequence = sequence;
+                }
+                progressed.signalAll();
+            } finally {
+                progressLock.unlock();
+            }
+        }
+
+        boolean awaitProcessed(long sequence, long timeoutNanos) {
+            if (processedSequence >= sequence) {
+                return true;
+            }
+            long remaining = timeoutNanos;
+            progressLock.lock();
+            try {
+                while (processedSequence < sequence) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = progressed.awaitNanos(remaining);
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                progressLock.unlock();
+            }
+        }
+
+        long lag() {
+            return Math.max(0, publishedSequence.get() - processedSequence);
+        }
+
+        double oldestPendingSeconds() {
+            Envelope head = queue.peek();
+            return head == null ? 0.0 : (System.nanoTime() - head.publishedNanos()) / 1_000_000_000.0;
+        }
+
+        void bindTo(MeterRegistry registry) {
+            Gauge.builder("user.change.bus.lag", this, Subscription::lag)
+                .tag("consumer", name)
+                .description("発行済みで未処理の変更イベント数")
+                .register(registry);
+            Gauge.builder("user.change.bus.oldest.pending", this, Subscription::oldestPendingSeconds)
+                .tag("consumer", name)
+                .baseUnit("seconds")
+                .description("キューの先頭の変更イベントの待ち時間")
+                .register(registry);
+            Gauge.builder("user.change.bus.queue.size", queue, BlockingQueue::size)
+                .tag("consumer", name)
+                .description("キューの変更イベント数")
+                .register(registry);
+            FunctionCounter.builder("user.change.bus.delivered", delivered, LongAdder::sum)
+                .tag("consumer", name)
+                .description("配信した変更イベント数")
+                .register(registry);
+            FunctionCounter.builder("user.change.bus.dropped", dropped, LongAdder::sum)
+                .tag("consumer", name)
+                .description("キューが満杯のため破棄した変更イベント数")
+                .register(registry);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.javase17learningproject.event;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.event.UserChangeEvent.RoleChanged;
+import com.example.javase17learningproject.event.UserChangeEvent.RolesChanged;
+import com.example.javase17learningproject.event.UserChangeEvent.UserCreated;
+import com.example.javase17learningproject.event.UserChangeEvent.UserDeleted;
+import com.example.javase17learningproject.event.UserChangeEvent.UserUpdated;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * 変更イベントを発行するエンティティリスナー。
+ * {@link User} と {@link Role} のライフサイクルイベントを変更イベントに変換し、
+ * コミット後に {@link UserChangeEventBus} から配信します。
+ */
+@Component
+public class UserChangePublisher {
+
+    // JPAのスライステストなど、バスが登録されていないコンテキストではnull（イベントは発行しない）
+    @Autowired(required = false)
+    private UserChangeEventBus userChangeEventBus;
+
+    @PostPersist
+    void onPersisted(Object entity) {
+        // 追加された役割は、その役割を持つユーザーの変更イベントで購読者に伝わる
+        if (entity instanceof User user) {
+            publish(new UserCreated(UserState.of(user)));
+        }
+    }
+
+    @PostUpdate
+    void onUpdated(Object entity) {
+        if (entity instanceof User user) {
+            // 論理削除は購読者には削除として伝える
+            if (user.isDeleted()) {
+                publish(new UserDeleted(user.getId(), user.getVersion()));
+                return;
+            }
+            publish(new UserUpdated(UserState.of(user)));
+            if (user.isRolesChanged()) {
+                publish(new RolesChanged(user.getId(), user.getPersistedRoleMask(), user.getRoleMask(),
+                    user.getVersion()));
+            }
+        } else if (entity instanceof Role role) {
+            publish(new RoleChanged(role.getId(), false));
+        }
+    }
+
+    @PostRemove
+    void onRemoved(Object entity) {
+        if (entity instanceof User user) {
+            publish(new UserDeleted(user.getId(), user.getVersion()));
+        } else if (entity instanceof Role role) {
+            publish(new RoleChanged(role.getId(), true));
+        }
+    }
+
+    private void publish(UserChangeEvent event) {
+        if (userChangeEventBus != null) {
+            userChangeEventBus.publishAfterCommit(event);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.javase17learningproject.event;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.hibernate.Hibernate;
+
+import com.example.javase17learningproject.User;
+
+/**
+ * 変更イベントに含めるユーザーの状態。
+ * イベントの発行時点のエンティティの値を保持する不変の値で、購読者はエンティティやデータベースを参照せずに処理できます。
+ *
+ * @param id ユーザーID
+ * @param name 名前
+ * @param email メールアドレス
+ * @param nameNormalized 正規化した名前
+ * @param emailNormalized 正規化したメールアドレス
+ * @param roleMask 役割のビットマスク
+ * @param roles 役割（役割の集合が読み込まれていない＝変更されていない場合はnull）
+ * @param updatedAt 更新日時
+ * @param version 楽観的ロックのバージョン
+ * @param tokenVersion APIトークンの失効用のカウンター
+ */
+public record UserState(long id, String name, String email, String nameNormalized, String emailNormalized,
+                        int roleMask, List<RoleRef> roles, LocalDateTime updatedAt, long version,
+                        int tokenVersion) {
+
+    /**
+     * 役割の参照。
+     *
+     * @param id 役割ID
+     * @param name 役割名
+     */
+    public record RoleRef(long id, String name) {}
+
+    /**
+     * エンティティから状態を作成します。
+     * 未初期化の役割の集合は読み込みません（フラッシュ中の遅延読み込みを避けるため）。
+     *
+     * @param user ユーザー
+     * @return ユーザーの状態
+     */
+    public static UserState of(User user) {
+        List<RoleRef> roles = null;
+        if (user.getRoles() != null && Hibernate.isInitialized(user.getRoles())) {
+            roles = user.getRoles().stream()
+                .map(role -> new RoleRef(role.getId(), role.getName()))
+                .toList();
+        }
+        return new UserState(user.getId(), user.getName(), user.getEmail(), user.getNameNormalized(),
+            user.getEmailNormalized(), user.getRoleMask(), roles, user.getUpdatedAt(), user.getVersion(),
+            user.getTokenVersion());
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.javase17learningproject.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 編集距離による近似検索のためのBK木。
+ * 各ノードは語を持ち、子を親の語との編集距離ごとに分けて保持します。三角不等式により、
+ * 検索語との距離が d のノードでは、距離 [d - k, d + k] の辺の子だけを辿れば距離 k 以内の語を全て見つけられます。
+ *
+ * <p>1つの語に複数の値を登録できます。BK木は語の削除に対応しないため、値がなくなった語はノードを残したまま
+ * 空の語として扱い（{@link #emptyTermCount()}）、多くなった場合は呼び出し元で構築し直してください。
+ *
+ * <p>スレッドセーフではありません。呼び出し元で排他してください。
+ *
+ * @param <V> 値の型
+ */
+public final class BkTree<V> {
+
+    private static final int[] NO_DISTANCES = new int[0];
+
+    private static final class Node<V> {
+
+        private final String term;
+        // 子の辺の距離と子ノード（追加順）
+        private int[] distances = NO_DISTANCES;
+        private Node<V>[] children = newArray(0);
+        // 語の値。値がなくなった場合はnull
+        private List<V> values;
+
+        Node(String term) {
+            this.term = term;
+        }
+
+        Node<V> child(int distance) {
+            for (int i = 0; i < distances.length; i++) {
+                if (distances[i] == distance) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void addChild(int distance, Node<V> child) {
+            int length = distances.length;
+            int[] newDistances = new int[length + 1];
+            Node<V>[] newChildren = newArray(length + 1);
+            System.arraycopy(distances, 0, newDistances, 0, length);
+            System.arraycopy(children, 0, newChildren, 0, length);
+            newDistances[length] = distance;
+            newChildren[length] = child;
+            distances = newDistances;
+            children = newChildren;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> Node<V>[] newArray(int length) {
+            return (Node<V>[]) new Node<?>[length];
+        }
+    }
+
+    /**
+     * 検索で見つかった値。
+     *
+     * @param value 値
+     * @param term 値を登録した語
+     * @param distance 検索語との編集距離
+     * @param <V> 値の型
+     */
+    public record Match<V>(V value, String term, int distance) {}
+
+    /**
+     * 検索結果。
+     *
+     * @param matches 見つかった値（編集距離の昇順）
+     * @param visited 編集距離を計算したノードの数
+     * @param truncated 走査するノードの上限に達して打ち切った場合はtrue
+     * @param <V> 値の型
+     */
+    public record Result<V>(List<Match<V>> matches, int visited, boolean truncated) {}
+
+    private Node<V> root;
+    private final Map<String, Node<V>> nodes = new HashMap<>();
+    private int size;
+    private int emptyTerms;
+
+    /**
+     * 語に値を登録します。
+     *
+     * @param term 語
+     * @param value 値
+     */
+    public void put(String term, V value) {
+        Node<V> node = nodes.get(term);
+        if (node == null) {
+            node = insert(term);
+        } else if (node.values == null) {
+            emptyTerms--;
+        }
+        if (node.values == null) {
+            node.values = new ArrayList<>(1);
+        }
+        node.values.add(value);
+        size++;
+    }
+
+    private Node<V> insert(String term) {
+        Node<V> node = new Node<>(term);
+        nodes.put(term, node);
+        if (root == null) {
+            root = node;
+            return node;
+        }
+        // 新しい語をパターンにして、根からの経路上の語との距離を計算する
+        Levenshtein levenshtein = new Levenshtein(term);
+        Node<V> current = root;
+        while (true) {
+            int distance = levenshtein.distance(current.term);
+            Node<V> child = current.child(distance);
+            if (child == null) {
+                current.addChild(distance, node);
+                return node;
+            }
+            current = child;
+        }
+    }
+
+    /**
+     * 語から値の登録を解除します。値がなくなった語のノードは空の語として残します。
+     *
+     * @param term 語
+     * @param value 値
+     * @return 登録されていた場合はtrue
+     */
+    public boolean remove(String term, V value) {
+        Node<V> node = nodes.get(term);
+        if (node == null || node.values == null || !node.values.remove(value)) {
+            return false;
+        }
+        if (node.values.isEmpty()) {
+            node.values = null;
+            emptyTerms++;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * 検索語から編集距離 k 以内の語の値を、距離の昇順に返します。
+     * 距離を計算するノードが上限に達した場合は、それまでに見つかった値を返します。
+     *
+     * @param query 検索語
+     * @param maxDistance 編集距離の上限 k
+     * @param maxVisits 距離を計算するノードの数の上限
+     * @return 検索結果
+     */
+    public Result<V> search(String query, int maxDistance, int maxVisits) {
+        List<Match<V>> matches = new ArrayList<>();
+        if (root == null) {
+            return new Result<>(matches, 0, false);
+        }
+        Levenshtein levenshtein = new Levenshtein(query);
+        Deque<Node<V>> pending = new ArrayDeque<>();
+        pending.push(root);
+        int visited = 0;
+        boolean truncated = false;
+        while (!pending.isEmpty()) {
+            if (visited >= maxVisits) {
+                truncated = true;
+                break;
+            }
+            Node<V> node = pending.pop();
+            visited++;
+            int distance = levenshtein.distance(node.term);
+            if (distance <= maxDistance && node.values != null) {
+                for (V value : node.values) {
+                    matches.add(new Match<>(value, node.term, distance));
+                }
+            }
+            for (int i = 0; i < node.distances.length; i++) {
+                if (Math.abs(node.distances[i] - distance) <= maxDistance) {
+                    pending.push(node.children[i]);
+                }
+            }
+        }
+        matches.sort(Comparator.comparingInt(Match::distance));
+        return new Result<>(matches, visited, truncated);
+    }
+
+    /**
+     * 登録されている値の数を返します。
+     *
+     * @return 値の数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 語（ノード）の数を返します。空の語を含みます。
+     *
+     * @return 語の数
+     */
+    public int termCount() {
+        return nodes.size();
+    }
+
+    /**
+     * 値がなくなった語の数を返します。
+     *
+     * @return 空の語の数
+     */
+    public int emptyTermCount() {
+        return emptyTerms;
+    }
+}
@@ -0,0 +1,366 @@
+package com.example.javase17learningproject.search;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.event.UserChangeConsumer;
+import com.example.javase17learningproject.event.UserChangeEvent;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+import com.example.javase17learningproject.search.RebuildableIndex.UserRow;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * あいまい検索（編集距離による検索）の索引。
+ * 正規化した名前とメールアドレスの語をそれぞれBK木 ({@link BkTree}) に保持し、
+ * 入力から編集距離 k 以内の語を持つユーザーを、全件を走査せずに距離の近い順に返します。
+ *
+ * <p>名前は全体と空白で区切った各語を、メールアドレスは全体と {@code @} より前の部分を語として登録します。
+ * ユーザーの距離は、登録した語のうち最も近い語との距離です。
+ * 役割で絞り込む場合は、件数の上限で切り詰める前に各ユーザーの役割のビットマスクで絞り込みます。
+ *
+ * <p>コンテキストの初期化完了時にデータベースを走査して構築し、その後は変更イベント ({@link UserChangeEventBus}) を適用します。
+ * 変更により値のなくなった語が多くなると、メモリ上の登録内容から木を構築し直します。
+ * 1回の検索で距離を計算する語の数は {@code app.fuzzy-search.max-visits} までに制限し、上限に達した場合は
+ * それまでに見つかった結果を返します。
+ */
+@Component
+public class FuzzyUserIndex implements UserChangeConsumer, MeterBinder {
+
+    /** 変更イベントの購読者名 */
+    public static final String CONSUMER_NAME = "fuzzy-search";
+
+    private static final Logger logger = LoggerFactory.getLogger(FuzzyUserIndex.class);
+
+    // 空の語がこの数と語の数の半分の両方を超えたら木を構築し直す
+    private static final int MIN_EMPTY_TERMS_TO_COMPACT = 1024;
+
+    /**
+     * 索引に登録したユーザーの語と役割のビットマスク。更新・削除時に古い語から登録を解除するために保持します。
+     */
+    private record Entry(List<String> nameTerms, List<String> emailTerms, int roleMask) {
+
+        static Entry of(UserRow user) {
+            return new Entry(nameTerms(user.nameKey()), emailTerms(user.emailKey()), user.roleMask());
+        }
+
+        boolean sameTerms(Entry other) {
+            return other != null && nameTerms.equals(other.nameTerms) && emailTerms.equals(other.emailTerms);
+        }
+
+        private static List<String> nameTerms(String name) {
+            if (name == null || name.isEmpty()) {
+                return List.of();
+            }
+            Set<String> terms = new LinkedHashSet<>();
+            terms.add(name);
+            for (String token : name.split("\\s+")) {
+                if (!token.isEmpty()) {
+                    terms.add(token);
+                }
+            }
+            return List.copyOf(terms);
+        }
+
+        private static List<String> emailTerms(String email) {
+            if (email == null || email.isEmpty()) {
+                return List.of();
+            }
+            int at = email.indexOf('@');
+            return at > 0 ? List.of(email, email.substring(0, at)) : List.of(email);
+        }
+    }
+
+    /**
+     * 名前とメールアドレスのBK木と、ユーザーIDごとの登録内容。
+     */
+    private static final class Index {
+
+        private BkTree<Long> names = new BkTree<>();
+        private BkTree<Long> emails = new BkTree<>();
+        private final Map<Long, Entry> entries;
+
+        Index(Map<Long, Entry> entries) {
+            this.entries = entries;
+            entries.forEach(this::addTerms);
+        }
+
+        void put(long id, Entry entry) {
+            Entry previous = entries.put(id, entry);
+            if (entry.sameTerms(previous)) {
+                return;
+            }
+            if (previous != null) {
+                removeTerms(id, previous);
+            }
+            addTerms(id, entry);
+        }
+
+        void remove(long id) {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                removeTerms(id, previous);
+            }
+        }
+
+        void changeRoles(long id, int roleMask) {
+            entries.computeIfPresent(id, (key, entry) -> new Entry(entry.nameTerms(), entry.emailTerms(), roleMask));
+        }
+
+        private void addTerms(long id, Entry entry) {
+            entry.nameTerms().forEach(term -> names.put(term, id));
+            entry.emailTerms().forEach(term -> emails.put(term, id));
+        }
+
+        private void removeTerms(long id, Entry entry) {
+            entry.nameTerms().forEach(term -> names.remove(term, id));
+            entry.emailTerms().forEach(term -> emails.remove(term, id));
+        }
+
+        /**
+         * 空の語が多くなった場合に、登録内容から木を構築し直します。
+         */
+        void compactIfNeeded() {
+            if (needsCompaction(names) || needsCompaction(emails)) {
+                names = new BkTree<>();
+                emails = new BkTree<>();
+                entries.forEach(this::addTerms);
+            }
+        }
+
+        private static boolean needsCompaction(BkTree<Long> tree) {
+            return tree.emptyTermCount() > MIN_EMPTY_TERMS_TO_COMPACT && tree.emptyTermCount() > tree.termCount() / 2;
+        }
+
+        int termCount() {
+            return names.termCount() + emails.termCount();
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    @Value("${app.fuzzy-search.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.fuzzy-search.max-distance:2}")
+    private int maxDistance;
+
+    @Value("${app.fuzzy-search.max-results:100}")
+    private int maxResults;
+
+    @Value("${app.fuzzy-search.max-visits:200000}")
+    private int maxVisits;
+
+    @Value("${app.change-bus.read-your-writes-timeout:PT0.5S}")
+    private Duration readYourWritesTimeout;
+
+    private final RebuildableIndex<Index> index = new RebuildableIndex<>("あいまい検索の索引", logger,
+        new RebuildableIndex.Updater<>() {
+            @Override
+            public void put(Index target, UserRow user) {
+                target.put(user.id(), Entry.of(user));
+            }
+
+            @Override
+            public void remove(Index target, long id) {
+                target.remove(id);
+            }
+
+            @Override
+            public void rolesChanged(Index target, long id, int roleMask) {
+                target.changeRoles(id, roleMask);
+            }
+
+            @Override
+            public void afterApply(Index target) {
+                target.compactIfNeeded();
+            }
+        });
+
+    private final LongAdder truncatedSearches = new LongAdder();
+
+    @PostConstruct
+    void subscribe() {
+        if (enabled) {
+            userChangeEventBus.subscribe(CONSUMER_NAME, this);
+        }
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    void onContextRefreshed() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Override
+    public void onEvents(List<UserChangeEvent> events) {
+        index.onEvents(events);
+    }
+
+    @Override
+    public void onOverflow() {
+        rebuild();
+    }
+
+    /**
+     * 名前・メールアドレスから編集距離 k 以内のユーザーを、距離の近い順（同じ距離はID順）に返します。
+     *
+     * @param name 正規化した名前（指定なしの場合はnull）
+     * @param email 正規化したメールアドレス（指定なしの場合はnull）
+     * @param distance 編集距離の上限 k
+     * @return 該当するユーザーのID。索引が利用できない場合や待機がタイムアウトした場合はnull
+     * @see #search(String, String, int, int, LongPredicate)
+     */
+    public List<Long> search(String name, String email, int distance) {
+        return search(name, email, distance, 0, null);
+    }
+
+    /**
+     * 名前・メールアドレスから編集距離 k 以内のユーザーを、距離の近い順（同じ距離はID順）に返します。
+     * 両方を指定した場合は両方が k 以内のユーザーを、距離の合計の近い順に返します。
+     * 役割のビットと条件は、件数の上限で切り詰める前に適用します。
+     * 呼び出し元が発行した変更イベントの適用を待ってから検索します。
+     *
+     * @param name 正規化した名前（指定なしの場合はnull）
+     * @param email 正規化したメールアドレス（指定なしの場合はnull）
+     * @param distance 編集距離の上限 k（{@code app.fuzzy-search.max-distance} までに制限する）
+     * @param roleBit 役割のビット（{@link RoleMask}）。このビットを持つユーザーに絞り込む。絞り込まない場合は0
+     * @param filter ユーザーIDの追加の条件。条件がない場合はnull
+     * @return 該当するユーザーのID（最大 {@code app.fuzzy-search.max-results} 件）。
+     *         索引が利用できない場合や待機がタイムアウトした場合はnull
+     */
+    public List<Long> search(String name, String email, int distance, int roleBit, LongPredicate filter) {
+        if (!enabled || !userChangeEventBus.awaitOwnWrites(CONSUMER_NAME, readYourWritesTimeout)) {
+            return null;
+        }
+        int k = Math.max(0, Math.min(distance, maxDistance));
+        Map<Long, Integer> hits = index.read(current -> {
+            if (current == null) {
+                return null;
+            }
+            Map<Long, Integer> nameHits = name == null ? null : closest(current.names, name, k);
+            Map<Long, Integer> emailHits = email == null ? null : closest(current.emails, email, k);
+            Map<Long, Integer> combined;
+            if (nameHits != null && emailHits != null) {
+                combined = new HashMap<>();
+                nameHits.forEach((id, nameDistance) -> {
+                    Integer emailDistance = emailHits.get(id);
+                    if (emailDistance != null) {
+                        combined.put(id, nameDistance + emailDistance);
+                    }
+                });
+            } else {
+                combined = nameHits != null ? nameHits : emailHits != null ? emailHits : new HashMap<>();
+            }
+            if (roleBit != 0) {
+                combined.keySet().removeIf(id -> !RoleMask.contains(current.entries.get(id).roleMask(), roleBit));
+            }
+            return combined;
+        });
+        if (hits == null) {
+            return null;
+        }
+        if (filter != null) {
+            hits.keySet().removeIf(id -> !filter.test(id));
+        }
+        return hits.entrySet().stream()
+            .sorted(Map.Entry.<Long, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+            .limit(maxResults)
+            .map(Map.Entry::getKey)
+            .toList();
+    }
+
+    /**
+     * 木を検索し、ユーザーごとに最も近い語との距離を返します。
+     */
+    private Map<Long, Integer> closest(BkTree<Long> tree, String query, int k) {
+        BkTree.Result<Long> result = tree.search(query, k, maxVisits);
+        if (result.truncated()) {
+            truncatedSearches.increment();
+            logger.debug("あいまい検索を打ち切りました: query={}, visited={}", query, result.visited());
+        }
+        Map<Long, Integer> distances = new HashMap<>();
+        for (BkTree.Match<Long> match : result.matches()) {
+            distances.merge(match.value(), match.distance(), Math::min);
+        }
+        return distances;
+    }
+
+    /**
+     * 索引に登録されているユーザー数を返します。
+     *
+     * @return ユーザー数。索引が構築されていない場合は0
+     */
+    public int size() {
+        return index.read(current -> current == null ? 0 : current.entries.size());
+    }
+
+    /**
+     * 直近の再構築に要した時間を返します。
+     *
+     * @return 所要時間（ミリ秒）。未実行の場合は-1
+     */
+    public long getLastRebuildMillis() {
+        return index.getLastRebuildMillis();
+    }
+
+    /**
+     * データベースを走査して索引を再構築します。
+     * 再構築中も既存の索引で検索し、再構築中に適用された変更は新しい索引に再適用します。
+     */
+    public void rebuild() {
+        Index rebuilt = index.rebuild(this::scan);
+        if (rebuilt != null) {
+            logger.info("あいまい検索の索引を構築しました: users={}, terms={}, duration={}ms",
+                rebuilt.entries.size(), rebuilt.termCount(), index.getLastRebuildMillis());
+        }
+    }
+
+    /**
+     * データベースをストリーミングで走査し、索引を構築します。
+     */
+    private Index scan() {
+        Map<Long, Entry> entries = new HashMap<>();
+        RebuildableIndex.scan(jdbcTemplate, user -> entries.put(user.id(), Entry.of(user)));
+        return new Index(entries);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.fuzzy.index.terms", this, FuzzyUserIndex::termCount)
+            .description("あいまい検索の索引の語の数（空の語を含む）")
+            .register(registry);
+        FunctionCounter.builder("user.fuzzy.search.truncated", truncatedSearches, LongAdder::sum)
+            .description("走査する語の上限に達して打ち切ったあいまい検索の数")
+            .register(registry);
+    }
+
+    private int termCount() {
+        return index.read(current -> current == null ? 0 : current.termCount());
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.javase17learningproject.search;
+
+import java.util.Arrays;
+
+/**
+ * 1つの文字列（パターン）と任意の文字列の編集距離（レーベンシュタイン距離）を計算します。
+ * パターンが64文字以下の場合はビット並列のアルゴリズム (Myers 1999、Hyyrö 2003) により、
+ * 比較する文字列の長さに比例した時間で計算します。それ以外は動的計画法で計算します。
+ *
+ * <p>同じパターンで多数の文字列と比較する場合に、パターンの前処理を使い回すためのクラスです。
+ * スレッドセーフではありません。
+ */
+public final class Levenshtein {
+
+    private static final int ASCII = 128;
+
+    private final String pattern;
+    // パターン中の文字の出現位置のビットマスク（ASCIIは表引き、それ以外は線形探索）
+    private final long[] asciiMasks;
+    private final char[] otherChars;
+    private final long[] otherMasks;
+
+    /**
+     * パターンの前処理をします。
+     *
+     * @param pattern パターン
+     */
+    public Levenshtein(String pattern) {
+        this.pattern = pattern;
+        int length = Math.min(pattern.length(), Long.SIZE);
+        long[] ascii = new long[ASCII];
+        char[] chars = new char[length];
+        long[] masks = new long[length];
+        int others = 0;
+        for (int i = 0; i < length; i++) {
+            char c = pattern.charAt(i);
+            if (c < ASCII) {
+                ascii[c] |= 1L << i;
+                continue;
+            }
+            int index = 0;
+            while (index < others && chars[index] != c) {
+                index++;
+            }
+            if (index == others) {
+                chars[others++] = c;
+            }
+            masks[index] |= 1L << i;
+        }
+        this.asciiMasks = ascii;
+        this.otherChars = Arrays.copyOf(chars, others);
+        this.otherMasks = Arrays.copyOf(masks, others);
+    }
+
+    /**
+     * 2つの文字列の編集距離を返します。
+     *
+     * @param a 文字列
+     * @param b 文字列
+     * @return 編集距離
+     */
+    public static int distance(String a, String b) {
+        return new Levenshtein(a).distance(b);
+    }
+
+    /**
+     * パターンと文字列の編集距離を返します。
+     *
+     * @param text 文字列
+     * @return 編集距離
+     */
+    public int distance(String text) {
+        int m = pattern.length();
+        if (m == 0) {
+            return text.length();
+        }
+        if (m > Long.SIZE) {
+            return dynamicProgramming(pattern, text);
+        }
+        long last = 1L << (m - 1);
+        long vp = -1L;
+        long vn = 0;
+        int score = m;
+        for (int j = 0; j < text.length(); j++) {
+            long eq = mask(text.charAt(j));
+            long d0 = (((eq & vp) + vp) ^ vp) | eq | vn;
+            long hp = vn | ~(d0 | vp);
+            long hn = d0 & vp;
+            if ((hp & last) != 0) {
+                score++;
+            } else if ((hn & last) != 0) {
+                score--;
+            }
+            hp = (hp << 1) | 1;
+            hn = hn << 1;
+            vp = hn | ~(d0 | hp);
+            vn = hp & d0;
+        }
+        return score;
+    }
+
+    private long mask(char c) {
+        if (c < ASCII) {
+            return asciiMasks[c];
+        }
+        for (int i = 0; i < otherChars.length; i++) {
+            if (otherChars[i] == c) {
+                return otherMasks[i];
+            }
+        }
+        return 0;
+    }
+
+    private static int dynamicProgramming(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
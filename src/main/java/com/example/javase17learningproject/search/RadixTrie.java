@@ -0,0 +1,321 @@
+package com.example.javase17learningproject.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 文字列のキーに値を対応付ける圧縮トライ（基数木）。
+ * 子が1つだけで値を持たないノードを作らず、辺に文字列のラベルを持たせて節点数をキーの数程度に抑えます。
+ * 1つのキーに複数の値を登録できます。
+ *
+ * <p>前方一致の検索 ({@link #collect(String, int)}) は接頭辞の末尾のノードまで降り、その部分木をキーの辞書順に
+ * 上限件数まで走査するため、登録数によらず接頭辞の長さと返す件数に比例した時間で処理します。
+ *
+ * <p>スレッドセーフではありません。呼び出し元で排他してください。
+ *
+ * @param <V> 値の型
+ */
+public final class RadixTrie<V> {
+
+    private static final char[] NO_CHARS = new char[0];
+
+    private static final class Node<V> {
+
+        // 親からの辺のラベル（根は空文字列）
+        private String label;
+        // 子の辺のラベルの先頭文字（昇順）と子ノード
+        private char[] firsts = NO_CHARS;
+        private Node<V>[] children = newArray(0);
+        // このノードで終わるキーの値。ない場合はnull
+        private List<V> values;
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        int indexOf(char first) {
+            return Arrays.binarySearch(firsts, first);
+        }
+
+        void insertChild(int insertionPoint, Node<V> child) {
+            int length = firsts.length;
+            char[] newFirsts = new char[length + 1];
+            Node<V>[] newChildren = newArray(length + 1);
+            System.arraycopy(firsts, 0, newFirsts, 0, insertionPoint);
+            System.arraycopy(children, 0, newChildren, 0, insertionPoint);
+            newFirsts[insertionPoint] = child.label.charAt(0);
+            newChildren[insertionPoint] = child;
+            System.arraycopy(firsts, insertionPoint, newFirsts, insertionPoint + 1, length - insertionPoint);
+            System.arraycopy(children, insertionPoint, newChildren, insertionPoint + 1, length - insertionPoint);
+            firsts = newFirsts;
+            children = newChildren;
+        }
+
+        void removeChild(int index) {
+            int length = firsts.length;
+            char[] newFirsts = new char[length - 1];
+            Node<V>[] newChildren = newArray(length - 1);
+            System.arraycopy(firsts, 0, newFirsts, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(firsts, index + 1, newFirsts, index, length - index - 1);
+            System.arraycopy(children, index + 1, newChildren, index, length - index - 1);
+            firsts = newFirsts;
+            children = newChildren;
+        }
+
+        void addValue(V value) {
+            if (values == null) {
+                values = new ArrayList<>(1);
+            }
+            values.add(value);
+        }
+
+        boolean isEmpty() {
+            return values == null && children.length == 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> Node<V>[] newArray(int length) {
+            return (Node<V>[]) new Node<?>[length];
+        }
+    }
+
+    private final Node<V> root = new Node<>("");
+    private int size;
+    private int nodeCount = 1;
+
+    /**
+     * キーと値の組から一括で構築します。
+     * キーを辞書順に並べ、同じ接頭辞を持つ範囲ごとにノードを作るため、ノードの分割は発生しません。
+     *
+     * @param entries キーと値の組（順序は問わない）
+     * @param <V> 値の型
+     * @return 構築したトライ
+     */
+    public static <V> RadixTrie<V> build(List<? extends Map.Entry<String, V>> entries) {
+        List<Map.Entry<String, V>> sorted = new ArrayList<>(entries);
+        sorted.sort(Map.Entry.comparingByKey());
+        RadixTrie<V> trie = new RadixTrie<>();
+        trie.buildChildren(trie.root, sorted, 0, sorted.size(), 0);
+        trie.size = sorted.size();
+        return trie;
+    }
+
+    /**
+     * 整列済みの範囲 [from, to) のうち、長さが depth のキーの値をノードに登録し、残りを先頭文字ごとの子にします。
+     * 範囲のキーは先頭 depth 文字が全て等しいものとします。
+     */
+    private void buildChildren(Node<V> node, List<Map.Entry<String, V>> sorted, int from, int to, int depth) {
+        int i = from;
+        // 接頭辞そのもののキーは、それを延長したキーより前に並ぶ
+        while (i < to && sorted.get(i).getKey().length() == depth) {
+            node.addValue(sorted.get(i++).getValue());
+        }
+        List<Node<V>> children = new ArrayList<>();
+        while (i < to) {
+            char first = sorted.get(i).getKey().charAt(depth);
+            int end = i + 1;
+            while (end < to && sorted.get(end).getKey().charAt(depth) == first) {
+                end++;
+            }
+            // 整列済みのため、範囲の共通接頭辞は先頭と末尾のキーの共通接頭辞に等しい
+            String firstKey = sorted.get(i).getKey();
+            String lastKey = sorted.get(end - 1).getKey();
+            int common = depth + 1;
+            while (common < lastKey.length() && common < firstKey.length()
+                    && firstKey.charAt(common) == lastKey.charAt(common)) {
+                common++;
+            }
+            Node<V> child = new Node<>(firstKey.substring(depth, common));
+            nodeCount++;
+            buildChildren(child, sorted, i, end, common);
+            children.add(child);
+            i = end;
+        }
+        node.firsts = new char[children.size()];
+        node.children = Node.newArray(children.size());
+        for (int c = 0; c < children.size(); c++) {
+            node.firsts[c] = children.get(c).label.charAt(0);
+            node.children[c] = children.get(c);
+        }
+    }
+
+    /**
+     * キーに値を登録します。
+     *
+     * @param key キー
+     * @param value 値
+     */
+    public void put(String key, V value) {
+        Node<V> node = root;
+        int offset = 0;
+        while (offset < key.length()) {
+            int index = node.indexOf(key.charAt(offset));
+            if (index < 0) {
+                node.insertChild(-index - 1, new Node<>(key.substring(offset)));
+                nodeCount++;
+                node = node.children[-index - 1];
+                offset = key.length();
+                break;
+            }
+            Node<V> child = node.children[index];
+            int common = commonPrefixLength(child.label, key, offset);
+            if (common < child.label.length()) {
+                // 辺の途中で分かれるため、共通部分のノードを挟む
+                Node<V> middle = new Node<>(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.firsts = new char[] {child.label.charAt(0)};
+                middle.children = Node.newArray(1);
+                middle.children[0] = child;
+                node.children[index] = middle;
+                nodeCount++;
+                child = middle;
+            }
+            node = child;
+            offset += common;
+        }
+        node.addValue(value);
+        size++;
+    }
+
+    /**
+     * キーから値の登録を解除します。
+     * 値を持たず子が1つになったノードは子と統合し、空になったノードは削除します。
+     *
+     * @param key キー
+     * @param value 値
+     * @return 登録されていた場合はtrue
+     */
+    public boolean remove(String key, V value) {
+        Node<V> parent = null;
+        int indexInParent = -1;
+        Node<V> node = root;
+        int offset = 0;
+        while (offset < key.length()) {
+            int index = node.indexOf(key.charAt(offset));
+            if (index < 0 || !key.startsWith(node.children[index].label, offset)) {
+                return false;
+            }
+            parent = node;
+            indexInParent = index;
+            node = node.children[index];
+            offset += node.label.length();
+        }
+        if (node.values == null || !node.values.remove(value)) {
+            return false;
+        }
+        if (node.values.isEmpty()) {
+            node.values = null;
+        }
+        size--;
+        if (parent == null) {
+            return true;
+        }
+        if (node.isEmpty()) {
+            parent.removeChild(indexInParent);
+            nodeCount--;
+            if (parent != root) {
+                mergeWithOnlyChild(parent);
+            }
+        } else {
+            mergeWithOnlyChild(node);
+        }
+        return true;
+    }
+
+    /**
+     * 値を持たず子が1つだけのノードを、子と1つのノードに統合します。
+     */
+    private void mergeWithOnlyChild(Node<V> node) {
+        if (node.values != null || node.children.length != 1) {
+            return;
+        }
+        Node<V> child = node.children[0];
+        node.label = node.label + child.label;
+        node.firsts = child.firsts;
+        node.children = child.children;
+        node.values = child.values;
+        nodeCount--;
+    }
+
+    /**
+     * 接頭辞で始まるキーの値を、キーの辞書順（同じキーの値は登録順）に返します。
+     *
+     * @param prefix 接頭辞
+     * @param limit 返す件数の上限
+     * @return 該当する値
+     */
+    public List<V> collect(String prefix, int limit) {
+        List<V> values = new ArrayList<>(Math.min(limit, 16));
+        if (limit <= 0) {
+            return values;
+        }
+        Node<V> node = root;
+        int offset = 0;
+        while (offset < prefix.length()) {
+            int index = node.indexOf(prefix.charAt(offset));
+            if (index < 0) {
+                return values;
+            }
+            Node<V> child = node.children[index];
+            int common = commonPrefixLength(child.label, prefix, offset);
+            if (common < child.label.length() && offset + common < prefix.length()) {
+                // 接頭辞が辺の途中で食い違う
+                return values;
+            }
+            node = child;
+            offset += common;
+        }
+        collect(node, values, limit);
+        return values;
+    }
+
+    private static <V> boolean collect(Node<V> node, List<V> values, int limit) {
+        if (node.values != null) {
+            for (V value : node.values) {
+                values.add(value);
+                if (values.size() >= limit) {
+                    return false;
+                }
+            }
+        }
+        for (Node<V> child : node.children) {
+            if (!collect(child, values, limit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 登録されている値の数を返します。
+     *
+     * @return 値の数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * ノードの数を返します（根を含む）。
+     *
+     * @return ノードの数
+     */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * label と key の offset 以降の共通接頭辞の長さを返します。
+     */
+    private static int commonPrefixLength(String label, String key, int offset) {
+        int max = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < max && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+}
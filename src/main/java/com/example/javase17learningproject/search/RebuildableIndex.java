@@ -0,0 +1,242 @@
+package com.example.javase17learningproject.search;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.javase17learningproject.event.UserChangeEvent;
+import com.example.javase17learningproject.event.UserChangeEvent.RolesChanged;
+import com.example.javase17learningproject.event.UserChangeEvent.UserCreated;
+import com.example.javase17learningproject.event.UserChangeEvent.UserDeleted;
+import com.example.javase17learningproject.event.UserChangeEvent.UserUpdated;
+import com.example.javase17learningproject.event.UserState;
+
+/**
+ * データベースの走査で構築し、変更イベントで更新するメモリ上のユーザーの索引。
+ * 入力補完 ({@link UserSuggestIndex}) とあいまい検索 ({@link FuzzyUserIndex}) の索引の保持と再構築を共通化します。
+ *
+ * <p>索引は読み書きロックで保護します。再構築中も既存の索引で読み取り、再構築中に適用された変更は新しい索引に再適用します。
+ *
+ * @param <I> 索引の型
+ */
+final class RebuildableIndex<I> {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String SCAN_QUERY = "SELECT id, name, email, name_normalized, email_normalized, role_mask "
+        + "FROM users WHERE deleted_at IS NULL";
+
+    /**
+     * 索引に登録するユーザーの値。走査した行と変更イベントのユーザーの状態から作成します。
+     *
+     * @param id ユーザーID
+     * @param name 名前
+     * @param email メールアドレス
+     * @param nameNormalized 正規化した名前（未設定の場合はnull）
+     * @param emailNormalized 正規化したメールアドレス（未設定の場合はnull）
+     * @param roleMask 役割のビットマスク
+     */
+    record UserRow(long id, String name, String email, String nameNormalized, String emailNormalized, int roleMask) {
+
+        static UserRow of(UserState user) {
+            return new UserRow(user.id(), user.name(), user.email(), user.nameNormalized(), user.emailNormalized(),
+                user.roleMask());
+        }
+
+        /**
+         * 正規化した名前を返します。未設定の場合は名前を正規化します。
+         */
+        String nameKey() {
+            return nameNormalized != null ? nameNormalized : SearchNormalizer.normalizeName(name);
+        }
+
+        /**
+         * 正規化したメールアドレスを返します。未設定の場合はメールアドレスを正規化します。
+         */
+        String emailKey() {
+            return emailNormalized != null ? emailNormalized : SearchNormalizer.normalizeEmail(email);
+        }
+    }
+
+    /**
+     * 変更イベントの索引への適用。
+     *
+     * @param <I> 索引の型
+     */
+    interface Updater<I> {
+
+        /**
+         * ユーザーを登録または更新します。
+         */
+        void put(I index, UserRow user);
+
+        /**
+         * ユーザーの登録を解除します。
+         */
+        void remove(I index, long id);
+
+        /**
+         * ユーザーの役割のビットマスクだけが変わった場合に呼び出されます。
+         */
+        default void rolesChanged(I index, long id, int roleMask) {
+        }
+
+        /**
+         * 変更イベントのまとまりを適用した後に呼び出されます。
+         */
+        default void afterApply(I index) {
+        }
+    }
+
+    private final String description;
+    private final Logger logger;
+    private final Updater<I> updater;
+
+    // 索引の読み取りと書き込み（変更の適用、差し替え）の排他
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 構築前はnull (lockで保護)
+    private I index;
+
+    // 再構築中に適用された変更。再構築後の索引に再適用する (lockの書き込みロックで保護)
+    private List<UserChangeEvent> eventsDuringRebuild;
+
+    private volatile long lastRebuildMillis = -1;
+
+    /**
+     * @param description ログに出力する索引の名前
+     * @param logger 索引を保持するクラスのロガー
+     * @param updater 変更イベントの適用
+     */
+    RebuildableIndex(String description, Logger logger, Updater<I> updater) {
+        this.description = description;
+        this.logger = logger;
+        this.updater = updater;
+    }
+
+    /**
+     * 変更イベントを索引に適用します。再構築中の場合は、再構築後の索引に再適用するために保持します。
+     *
+     * @param events 発行順の変更イベント
+     */
+    void onEvents(List<UserChangeEvent> events) {
+        lock.writeLock().lock();
+        try {
+            if (eventsDuringRebuild != null) {
+                eventsDuringRebuild.addAll(events);
+            }
+            if (index != null) {
+                apply(index, events);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(I target, List<UserChangeEvent> events) {
+        for (UserChangeEvent event : events) {
+            if (event instanceof UserCreated created) {
+                updater.put(target, UserRow.of(created.user()));
+            } else if (event instanceof UserUpdated updated) {
+                updater.put(target, UserRow.of(updated.user()));
+            } else if (event instanceof RolesChanged changed) {
+                updater.rolesChanged(target, changed.userId(), changed.newMask());
+            } else if (event instanceof UserDeleted deleted) {
+                updater.remove(target, deleted.userId());
+            }
+        }
+        updater.afterApply(target);
+    }
+
+    /**
+     * 読み取りロックを取得して索引を読み取ります。
+     *
+     * @param reader 索引の読み取り。構築前は索引としてnullを受け取る
+     * @return 読み取りの結果
+     */
+    <R> R read(Function<I, R> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.apply(index);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 索引を再構築します。既に再構築中の場合は何もしません。
+     *
+     * @param scan 新しい索引の構築（データベースの走査）
+     * @return 再構築した索引。再構築しなかった場合や失敗した場合はnull
+     */
+    I rebuild(Supplier<I> scan) {
+        lock.writeLock().lock();
+        try {
+            if (eventsDuringRebuild != null) {
+                logger.debug("{}は再構築中です", description);
+                return null;
+            }
+            eventsDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long start = System.nanoTime();
+        I rebuilt = null;
+        try {
+            rebuilt = scan.get();
+        } catch (RuntimeException e) {
+            logger.error("{}の構築に失敗しました", description, e);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (rebuilt != null) {
+                    apply(rebuilt, eventsDuringRebuild);
+                    index = rebuilt;
+                }
+                eventsDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        if (rebuilt != null) {
+            lastRebuildMillis = (System.nanoTime() - start) / 1_000_000;
+        }
+        return rebuilt;
+    }
+
+    /**
+     * 直近の再構築に要した時間を返します。
+     *
+     * @return 所要時間（ミリ秒）。未実行の場合は-1
+     */
+    long getLastRebuildMillis() {
+        return lastRebuildMillis;
+    }
+
+    /**
+     * 削除されていないユーザーをデータベースからストリーミングで走査します。
+     *
+     * @param jdbcTemplate JDBCテンプレート
+     * @param rows 走査した行の受け取り
+     */
+    static void scan(JdbcTemplate jdbcTemplate, Consumer<UserRow> rows) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SCAN_QUERY,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, resultSet -> {
+            rows.accept(new UserRow(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3),
+                resultSet.getString(4), resultSet.getString(5), resultSet.getInt(6)));
+        });
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.javase17learningproject.search;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * 検索用の正規化ユーティリティ。
+ * 検索キーと永続化する正規化カラムの両方に同じ変換を適用し、
+ * 完全一致・前方一致の検索をインデックスで処理できるようにします。
+ */
+public final class SearchNormalizer {
+
+    private static final char KATAKANA_FIRST = '\u30A1'; // ァ
+    private static final char KATAKANA_LAST = '\u30F6';  // ヶ
+    private static final int KATAKANA_TO_HIRAGANA = 0x60;
+
+    private SearchNormalizer() {}
+
+    /**
+     * メールアドレスを正規化します。
+     * 前後の空白を除去し、小文字に変換します。
+     *
+     * @param email メールアドレス
+     * @return 正規化したメールアドレス。nullの場合はnull
+     */
+    public static String normalizeEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        return email.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 名前を正規化します。
+     * NFKC正規化で全角英数字・半角カナを統一し、小文字化したうえでカタカナをひらがなに変換します。
+     *
+     * @param name 名前
+     * @return 正規化した名前。nullの場合はnull
+     */
+    public static String normalizeName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String normalized = Normalizer.normalize(name, Normalizer.Form.NFKC)
+            .strip()
+            .toLowerCase(Locale.ROOT);
+        StringBuilder builder = null;
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (c >= KATAKANA_FIRST && c <= KATAKANA_LAST) {
+                if (builder == null) {
+                    builder = new StringBuilder(normalized);
+                }
+                builder.setCharAt(i, (char) (c - KATAKANA_TO_HIRAGANA));
+            }
+        }
+        return builder == null ? normalized : builder.toString();
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.javase17learningproject.search;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * ユーザー検索結果のキャッシュ。
+ * 正規化した検索条件 ({@link UserSearchCriteria}) をキーに、検索結果のユーザーIDのリストを保持します。
+ * エンティティではなくIDを保持するため、キャッシュがエンティティの状態を古いまま保持することはありません。
+ *
+ * <p>最大件数を超えると最も長く参照されていないエントリを削除します (LRU)。
+ * ユーザーの作成・更新・削除がコミットされると世代番号を進め、それより前の世代のエントリは全て無効になります。
+ * 検索前に取得した世代番号でエントリを登録するため、検索中にコミットされた変更を含まない結果が有効になることはありません。
+ */
+@Component
+public class UserSearchCache implements MeterBinder {
+
+    private final int maxEntries;
+    private final int maxResultSize;
+    private final AtomicLong generation = new AtomicLong();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<UserSearchCriteria, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * キャッシュエントリ。
+     *
+     * @param generation 登録時の世代番号
+     * @param ids 検索結果のユーザーID（検索結果の順序）
+     */
+    private record Entry(long generation, List<Long> ids) {}
+
+    public UserSearchCache(@Value("${app.search-cache.max-entries:1000}") int maxEntries,
+                           @Value("${app.search-cache.max-result-size:5000}") int maxResultSize) {
+        this.maxEntries = maxEntries;
+        this.maxResultSize = maxResultSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UserSearchCriteria, Entry> eldest) {
+                if (size() > UserSearchCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 現在の世代番号を返します。
+     * 検索を実行する前に取得し、{@link #put(UserSearchCriteria, long, List)} に渡してください。
+     *
+     * @return 現在の世代番号
+     */
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * 検索条件に対応する検索結果のIDを取得します。
+     *
+     * @param criteria 検索条件
+     * @return 有効なエントリがある場合はユーザーIDのリスト、ない場合はnull
+     */
+    public List<Long> get(UserSearchCriteria criteria) {
+        long current = generation.get();
+        lock.lock();
+        try {
+            Entry entry = entries.get(criteria);
+            if (entry != null && entry.generation() == current) {
+                hits.increment();
+                return entry.ids();
+            }
+            if (entry != null) {
+                entries.remove(criteria);
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 検索結果のIDを登録します。
+     * 検索中に世代が進んでいた場合や、結果が大きすぎる場合は登録しません。
+     *
+     * @param criteria 検索条件
+     * @param searchGeneration 検索前に取得した世代番号
+     * @param ids 検索結果のユーザーID
+     */
+    public void put(UserSearchCriteria criteria, long searchGeneration, List<Long> ids) {
+        if (ids.size() > maxResultSize || searchGeneration != generation.get()) {
+            return;
+        }
+        Entry entry = new Entry(searchGeneration, List.copyOf(ids));
+        lock.lock();
+        try {
+            entries.put(criteria, entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 全てのエントリを無効にします。
+     * ユーザーの作成・更新・削除のコミット後に呼び出されます。
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.increment();
+    }
+
+    /**
+     * キャッシュのヒット率を返します。
+     *
+     * @return ヒット率（参照がない場合は0）
+     */
+    public double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.search.cache.gets", hits, LongAdder::sum)
+            .tag("result", "hit")
+            .description("検索結果キャッシュの参照回数")
+            .register(registry);
+        FunctionCounter.builder("user.search.cache.gets", misses, LongAdder::sum)
+            .tag("result", "miss")
+            .description("検索結果キャッシュの参照回数")
+            .register(registry);
+        FunctionCounter.builder("user.search.cache.evictions", evictions, LongAdder::sum)
+            .description("最大件数を超えたため削除されたエントリ数")
+            .register(registry);
+        FunctionCounter.builder("user.search.cache.invalidations", invalidations, LongAdder::sum)
+            .description("更新による世代の切り替え回数")
+            .register(registry);
+        Gauge.builder("user.search.cache.size", this, UserSearchCache::size)
+            .description("検索結果キャッシュのエントリ数")
+            .register(registry);
+        Gauge.builder("user.search.cache.hit.ratio", this, UserSearchCache::hitRatio)
+            .description("検索結果キャッシュのヒット率")
+            .register(registry);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.javase17learningproject.search;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.javase17learningproject.event.UserChangeConsumer;
+import com.example.javase17learningproject.event.UserChangeEvent;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 検索結果キャッシュを無効化する変更イベントの購読者。
+ * ユーザーと役割の変更イベントを受け取ると {@link UserSearchCache} の世代を進めます。
+ * まとめて配信されたイベントに対する無効化は1回だけです。
+ */
+@Component
+public class UserSearchCacheInvalidator implements UserChangeConsumer {
+
+    /** 変更イベントの購読者名 */
+    public static final String CONSUMER_NAME = "search-cache";
+
+    @Autowired
+    private UserSearchCache userSearchCache;
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    @PostConstruct
+    void subscribe() {
+        userChangeEventBus.subscribe(CONSUMER_NAME, this);
+    }
+
+    @Override
+    public void onEvents(List<UserChangeEvent> events) {
+        userSearchCache.invalidateAll();
+    }
+
+    @Override
+    public void onOverflow() {
+        userSearchCache.invalidateAll();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.javase17learningproject.search;
+
+import com.example.javase17learningproject.RoleMask;
+
+/**
+ * ユーザー検索条件。
+ * 入力された検索条件を正規化し、条件ごとの一致方法を保持します。
+ *
+ * <p>名前・メールアドレスは末尾に {@code *} を付けると前方一致、それ以外は部分一致で検索します。
+ * 役割は役割名の完全一致で検索します。空文字・空白のみの条件は指定なしとして扱います。
+ *
+ * @param name 正規化した名前（指定なしの場合はnull）
+ * @param nameMode 名前の一致方法（指定なしの場合はnull）
+ * @param email 正規化したメールアドレス（指定なしの場合はnull）
+ * @param emailMode メールアドレスの一致方法（指定なしの場合はnull）
+ * @param role 役割名（指定なしの場合はnull）
+ */
+public record UserSearchCriteria(String name, MatchMode nameMode, String email, MatchMode emailMode, String role) {
+
+    private static final String PREFIX_MARKER = "*";
+
+    /**
+     * 文字列条件の一致方法。
+     */
+    public enum MatchMode {
+        /** 前方一致。インデックスの範囲検索で処理されます。 */
+        PREFIX,
+        /** 部分一致。 */
+        CONTAINS
+    }
+
+    /**
+     * 役割の絞り込み方法。
+     */
+    public enum RoleFilter {
+        /** 定義済みの役割。{@code role_mask} の {@code IN} 条件で絞り込みます。 */
+        MASK,
+        /** 定義済み以外の役割。{@code user_roles} と結合して絞り込みます。 */
+        JOIN
+    }
+
+    /**
+     * 画面から入力された検索条件から検索条件を作成します。
+     *
+     * @param name ユーザー名
+     * @param email メールアドレス
+     * @param role 役割名
+     * @return 検索条件
+     */
+    public static UserSearchCriteria of(String name, String email, String role) {
+        String rawName = trimToNull(name);
+        String rawEmail = trimToNull(email);
+        MatchMode nameMode = matchMode(rawName);
+        MatchMode emailMode = matchMode(rawEmail);
+        String normalizedName = emptyToNull(SearchNormalizer.normalizeName(stripPrefixMarker(rawName, nameMode)));
+        String normalizedEmail = emptyToNull(SearchNormalizer.normalizeEmail(stripPrefixMarker(rawEmail, emailMode)));
+        return new UserSearchCriteria(
+            normalizedName, normalizedName == null ? null : nameMode,
+            normalizedEmail, normalizedEmail == null ? null : emailMode,
+            trimToNull(role));
+    }
+
+    /**
+     * 検索条件の形を返します。
+     * 値が異なっても形が同じ検索条件は、同じクエリで実行できます。
+     *
+     * @return 検索条件の形
+     */
+    public Shape shape() {
+        RoleFilter roleFilter = null;
+        if (role != null) {
+            roleFilter = RoleMask.bitOf(role) == RoleMask.OTHER ? RoleFilter.JOIN : RoleFilter.MASK;
+        }
+        return new Shape(nameMode, emailMode, roleFilter);
+    }
+
+    /**
+     * 検索条件の形。どの条件がどの一致方法で指定されているかを表します。
+     *
+     * @param nameMode 名前の一致方法（指定なしの場合はnull）
+     * @param emailMode メールアドレスの一致方法（指定なしの場合はnull）
+     * @param roleFilter 役割の絞り込み方法（指定なしの場合はnull）
+     */
+    public record Shape(MatchMode nameMode, MatchMode emailMode, RoleFilter roleFilter) {}
+
+    private static MatchMode matchMode(String value) {
+        return value != null && value.endsWith(PREFIX_MARKER) ? MatchMode.PREFIX : MatchMode.CONTAINS;
+    }
+
+    private static String stripPrefixMarker(String value, MatchMode mode) {
+        if (value == null || mode != MatchMode.PREFIX) {
+            return value;
+        }
+        return value.substring(0, value.length() - PREFIX_MARKER.length());
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.strip();
+    }
+}
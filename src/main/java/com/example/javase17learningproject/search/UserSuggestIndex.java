@@ -0,0 +1,259 @@
+package com.example.javase17learningproject.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.javase17learningproject.event.UserChangeConsumer;
+import com.example.javase17learningproject.event.UserChangeEvent;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+import com.example.javase17learningproject.search.RebuildableIndex.UserRow;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 検索フォームの入力補完 ({@code /users/suggest}) の索引。
+ * 正規化した名前とメールアドレスをそれぞれ圧縮トライ ({@link RadixTrie}) に保持し、
+ * 入力途中の文字列で始まるユーザーをデータベースを参照せずに返します。
+ *
+ * <p>コンテキストの初期化完了時にデータベースを走査して一括で構築し、その後は変更イベント ({@link UserChangeEventBus})
+ * を1件ずつ適用します。再構築中に適用された変更は、再構築後の索引に再適用します。
+ * 入力補完は最新の状態を厳密に反映する必要がないため、読み取りの前に変更イベントの適用を待ちません。
+ */
+@Component
+public class UserSuggestIndex implements UserChangeConsumer, MeterBinder {
+
+    /** 変更イベントの購読者名 */
+    public static final String CONSUMER_NAME = "user-suggest";
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSuggestIndex.class);
+
+    /**
+     * 補完する項目。
+     */
+    public enum Field {
+        /** 名前 */
+        NAME,
+        /** メールアドレス */
+        EMAIL
+    }
+
+    /**
+     * 補完の候補。
+     *
+     * @param id ユーザーID
+     * @param value 名前またはメールアドレス（正規化前）
+     */
+    public record Suggestion(long id, String value) {}
+
+    /**
+     * 索引に登録したユーザーの名前とメールアドレス。更新・削除時に古い候補を取り除くために保持します。
+     */
+    private record Entry(String name, String nameKey, String email, String emailKey) {
+
+        static Entry of(UserRow user) {
+            return new Entry(user.name(), user.nameKey(), user.email(), user.emailKey());
+        }
+    }
+
+    /**
+     * 名前とメールアドレスのトライと、ユーザーIDごとの登録内容。
+     */
+    private static final class Index {
+
+        private final RadixTrie<Suggestion> names;
+        private final RadixTrie<Suggestion> emails;
+        private final Map<Long, Entry> entries;
+
+        Index(RadixTrie<Suggestion> names, RadixTrie<Suggestion> emails, Map<Long, Entry> entries) {
+            this.names = names;
+            this.emails = emails;
+            this.entries = entries;
+        }
+
+        void put(long id, Entry entry) {
+            Entry previous = entries.put(id, entry);
+            if (entry.equals(previous)) {
+                return;
+            }
+            if (previous != null) {
+                removeKeys(id, previous);
+            }
+            if (entry.nameKey() != null) {
+                names.put(entry.nameKey(), new Suggestion(id, entry.name()));
+            }
+            if (entry.emailKey() != null) {
+                emails.put(entry.emailKey(), new Suggestion(id, entry.email()));
+            }
+        }
+
+        void remove(long id) {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                removeKeys(id, previous);
+            }
+        }
+
+        private void removeKeys(long id, Entry entry) {
+            if (entry.nameKey() != null) {
+                names.remove(entry.nameKey(), new Suggestion(id, entry.name()));
+            }
+            if (entry.emailKey() != null) {
+                emails.remove(entry.emailKey(), new Suggestion(id, entry.email()));
+            }
+        }
+
+        RadixTrie<Suggestion> trie(Field field) {
+            return field == Field.NAME ? names : emails;
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    @Value("${app.user-suggest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.user-suggest.max-limit:20}")
+    private int maxLimit;
+
+    private final RebuildableIndex<Index> index = new RebuildableIndex<>("入力補完の索引", logger,
+        new RebuildableIndex.Updater<>() {
+            @Override
+            public void put(Index target, UserRow user) {
+                target.put(user.id(), Entry.of(user));
+            }
+
+            @Override
+            public void remove(Index target, long id) {
+                target.remove(id);
+            }
+        });
+
+    @PostConstruct
+    void subscribe() {
+        if (enabled) {
+            userChangeEventBus.subscribe(CONSUMER_NAME, this);
+        }
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    void onContextRefreshed() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    @Override
+    public void onEvents(List<UserChangeEvent> events) {
+        index.onEvents(events);
+    }
+
+    @Override
+    public void onOverflow() {
+        rebuild();
+    }
+
+    /**
+     * 入力途中の文字列で始まる名前またはメールアドレスのユーザーを返します。
+     * 入力は項目に応じて {@link SearchNormalizer} で正規化し、正規化した値の辞書順に返します。
+     *
+     * @param field 補完する項目
+     * @param query 入力途中の文字列
+     * @param limit 返す件数の上限（{@code app.user-suggest.max-limit} までに制限する）
+     * @return 補完の候補。入力が空の場合や索引が構築されていない場合は空
+     */
+    public List<Suggestion> suggest(Field field, String query, int limit) {
+        String prefix = normalize(query, field);
+        if (prefix == null || prefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        return index.read(current -> current == null
+            ? List.of() : current.trie(field).collect(prefix, Math.min(limit, maxLimit)));
+    }
+
+    /**
+     * 索引に登録されているユーザー数を返します。
+     *
+     * @return ユーザー数。索引が構築されていない場合は0
+     */
+    public int size() {
+        return index.read(current -> current == null ? 0 : current.entries.size());
+    }
+
+    /**
+     * 直近の再構築に要した時間を返します。
+     *
+     * @return 所要時間（ミリ秒）。未実行の場合は-1
+     */
+    public long getLastRebuildMillis() {
+        return index.getLastRebuildMillis();
+    }
+
+    /**
+     * データベースを走査して索引を一括で再構築します。
+     * 再構築中も既存の索引で補完し、再構築中に適用された変更は新しい索引に再適用します。
+     */
+    public void rebuild() {
+        Index rebuilt = index.rebuild(this::scan);
+        if (rebuilt != null) {
+            logger.info("入力補完の索引を構築しました: users={}, nodes={}, duration={}ms",
+                rebuilt.entries.size(), rebuilt.names.nodeCount() + rebuilt.emails.nodeCount(),
+                index.getLastRebuildMillis());
+        }
+    }
+
+    /**
+     * データベースをストリーミングで走査し、名前とメールアドレスのトライを一括で構築します。
+     */
+    private Index scan() {
+        Map<Long, Entry> entries = new HashMap<>();
+        List<Map.Entry<String, Suggestion>> names = new ArrayList<>();
+        List<Map.Entry<String, Suggestion>> emails = new ArrayList<>();
+        RebuildableIndex.scan(jdbcTemplate, user -> {
+            Entry entry = Entry.of(user);
+            entries.put(user.id(), entry);
+            if (entry.nameKey() != null) {
+                names.add(Map.entry(entry.nameKey(), new Suggestion(user.id(), entry.name())));
+            }
+            if (entry.emailKey() != null) {
+                emails.add(Map.entry(entry.emailKey(), new Suggestion(user.id(), entry.email())));
+            }
+        });
+        return new Index(RadixTrie.build(names), RadixTrie.build(emails), entries);
+    }
+
+    private static String normalize(String value, Field field) {
+        return field == Field.NAME ? SearchNormalizer.normalizeName(value) : SearchNormalizer.normalizeEmail(value);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.suggest.size", this, UserSuggestIndex::size)
+            .description("入力補完の索引に登録されているユーザー数")
+            .register(registry);
+        Gauge.builder("user.suggest.nodes", this, UserSuggestIndex::nodeCount)
+            .description("入力補完の索引のトライのノード数")
+            .register(registry);
+    }
+
+    private int nodeCount() {
+        return index.read(current -> current == null ? 0 : current.names.nodeCount() + current.emails.nodeCount());
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.javase17learningproject.security;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.javase17learningproject.User;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * セッションの {@link UserPrincipal} を最新の状態に保つフィルター。
+ * セキュリティフィルターチェーンで、セキュリティコンテキストの読み込み後に実行します。
+ *
+ * <p>プリンシパルのバージョンを {@link PrincipalVersionTracker} の記録と比較し、古い場合だけデータベースから
+ * ユーザーを読み込んで作り直します（更新されていないユーザーのリクエストではエンティティを読み込みません）。
+ * 削除されたユーザーのセッションは認証を取り消します。
+ */
+public class PrincipalRefreshFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrincipalRefreshFilter.class);
+
+    private static final String VERIFIED_EPOCH_ATTRIBUTE = PrincipalRefreshFilter.class.getName() + ".VERIFIED_EPOCH";
+
+    private final PrincipalVersionTracker tracker;
+    private final UserAccountService userAccountService;
+    private final SecurityContextRepository securityContextRepository = new HttpSessionSecurityContextRepository();
+
+    public PrincipalRefreshFilter(PrincipalVersionTracker tracker, UserAccountService userAccountService) {
+        this.tracker = tracker;
+        this.userAccountService = userAccountService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            HttpSession session = request.getSession(false);
+            long verifiedEpoch = session == null ? tracker.currentEpoch() : verifiedEpoch(session);
+            if (tracker.isStale(principal, verifiedEpoch)) {
+                refresh(principal, authentication, request, response);
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static long verifiedEpoch(HttpSession session) {
+        Object epoch = session.getAttribute(VERIFIED_EPOCH_ATTRIBUTE);
+        return epoch instanceof Long value ? value : 0L;
+    }
+
+    private void refresh(UserPrincipal principal, Authentication authentication,
+                         HttpServletRequest request, HttpServletResponse response) {
+        long epoch = tracker.currentEpoch();
+        Optional<User> user = userAccountService.findAccount(principal.id());
+        SecurityContext refreshed = SecurityContextHolder.createEmptyContext();
+        if (user.isPresent()) {
+            UsernamePasswordAuthenticationToken token = UsernamePasswordAuthenticationToken.authenticated(
+                UserPrincipal.of(user.get()), null, user.get().getAuthorities());
+            token.setDetails(authentication.getDetails());
+            refreshed.setAuthentication(token);
+            logger.debug("セッションのユーザーを更新しました: id={}, version={}", principal.id(), user.get().getVersion());
+        } else {
+            logger.info("削除されたユーザーのセッションの認証を取り消しました: id={}", principal.id());
+        }
+        SecurityContextHolder.setContext(refreshed);
+        securityContextRepository.saveContext(refreshed, request, response);
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            session.setAttribute(VERIFIED_EPOCH_ATTRIBUTE, epoch);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.javase17learningproject.security;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.javase17learningproject.event.UserChangeConsumer;
+import com.example.javase17learningproject.event.UserChangeEvent;
+import com.example.javase17learningproject.event.UserChangeEvent.UserDeleted;
+import com.example.javase17learningproject.event.UserChangeEvent.UserUpdated;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * 起動後に更新・削除されたユーザーの最新のバージョンを記録する変更イベントの購読者。
+ * {@link PrincipalRefreshFilter} がセッションの {@link UserPrincipal} が古いかの判定に使用します。
+ *
+ * <p>記録するのはユーザーIDとバージョンだけで、更新されていないユーザーは記録しません。
+ * イベントを取りこぼした場合は世代を進め、全てのセッションのプリンシパルを1回ずつ作り直させます。
+ *
+ * <p>記録はセッションのタイムアウト ({@code server.servlet.session.timeout}) を過ぎたものから定期的に捨てます。
+ * 記録した時点のセッションは、その後にリクエストがあれば作り直され、なければタイムアウトで破棄されるため、
+ * タイムアウトの後は古いプリンシパルを持つセッションが残りません。
+ */
+@Component
+public class PrincipalVersionTracker implements UserChangeConsumer {
+
+    /** 変更イベントの購読者名 */
+    public static final String CONSUMER_NAME = "session-principals";
+
+    private static final long DELETED = Long.MAX_VALUE;
+
+    /**
+     * ユーザーの最新のバージョン。
+     *
+     * @param version 最新のバージョン（削除された場合は DELETED）
+     * @param recordedNanos 記録した時刻 ({@link System#nanoTime()})
+     */
+    private record Latest(long version, long recordedNanos) {
+
+        Latest merge(Latest other) {
+            return new Latest(Math.max(version, other.version), Math.max(recordedNanos, other.recordedNanos));
+        }
+    }
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    @Value("${server.servlet.session.timeout:PT30M}")
+    private Duration sessionTimeout;
+
+    // ユーザーID -> 最新のバージョン
+    private final Map<Long, Latest> latestVersions = new ConcurrentHashMap<>();
+
+    private final AtomicLong epoch = new AtomicLong();
+
+    @PostConstruct
+    void subscribe() {
+        userChangeEventBus.subscribe(CONSUMER_NAME, this);
+    }
+
+    @Override
+    public void onEvents(List<UserChangeEvent> events) {
+        long now = System.nanoTime();
+        for (UserChangeEvent event : events) {
+            if (event instanceof UserUpdated updated) {
+                latestVersions.merge(updated.user().id(), new Latest(updated.user().version(), now), Latest::merge);
+            } else if (event instanceof UserDeleted deleted) {
+                latestVersions.put(deleted.userId(), new Latest(DELETED, now));
+            }
+        }
+    }
+
+    @Override
+    public void onOverflow() {
+        // 取りこぼしたイベントのユーザーを特定できないため、記録を捨てて世代を進める
+        latestVersions.clear();
+        epoch.incrementAndGet();
+    }
+
+    /**
+     * セッションのタイムアウトを過ぎた記録を捨てます。
+     */
+    @Scheduled(fixedDelayString = "${app.session-principals.prune-interval:PT1M}")
+    public void prune() {
+        prune(System.nanoTime());
+    }
+
+    void prune(long nowNanos) {
+        long timeoutNanos = sessionTimeout.toNanos();
+        latestVersions.values().removeIf(latest -> nowNanos - latest.recordedNanos() > timeoutNanos);
+    }
+
+    /**
+     * 記録しているユーザーの数を返します。
+     *
+     * @return ユーザーの数
+     */
+    int trackedCount() {
+        return latestVersions.size();
+    }
+
+    /**
+     * 現在の世代を返します。
+     *
+     * @return 世代（イベントを取りこぼすたびに1増える）
+     */
+    public long currentEpoch() {
+        return epoch.get();
+    }
+
+    /**
+     * プリンシパルが古いかを判定します。
+     *
+     * @param principal プリンシパル
+     * @param verifiedEpoch プリンシパルを最後に確認した世代
+     * @return 作成後にユーザーが更新・削除された場合、または確認後にイベントを取りこぼした場合はtrue
+     */
+    public boolean isStale(UserPrincipal principal, long verifiedEpoch) {
+        if (verifiedEpoch < epoch.get()) {
+            return true;
+        }
+        Latest latest = latestVersions.get(principal.id());
+        return latest != null && latest.version() > principal.version();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.javase17learningproject.security;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.security.TokenService.VerifiedToken;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * {@code Authorization: Bearer <トークン>} のAPIトークンで認証するフィルター。
+ * トークンの検証はメモリ上で完結し、データベースやセッションを使用しません。
+ * トークンがない場合や無効な場合は認証せずに次のフィルターに進みます（認可で401になります）。
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final TokenService tokenService;
+
+    public TokenAuthenticationFilter(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            tokenService.verify(header.substring(BEARER_PREFIX.length()).trim()).ifPresent(this::authenticate);
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private void authenticate(VerifiedToken token) {
+        // 定義済み以外の役割は名前を持たないため、権限には含めない
+        UsernamePasswordAuthenticationToken authentication = UsernamePasswordAuthenticationToken.authenticated(
+            UserPrincipal.ofToken(token.userId(), token.roleMask()), null,
+            RoleMask.knownAuthorities(token.roleMask() & RoleMask.KNOWN));
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        context.setAuthentication(authentication);
+        SecurityContextHolder.setContext(context);
+    }
+}
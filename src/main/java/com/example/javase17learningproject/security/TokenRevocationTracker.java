@@ -0,0 +1,112 @@
+package com.example.javase17learningproject.security;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.javase17learningproject.event.UserChangeConsumer;
+import com.example.javase17learningproject.event.UserChangeEvent;
+import com.example.javase17learningproject.event.UserChangeEvent.UserDeleted;
+import com.example.javase17learningproject.event.UserChangeEvent.UserUpdated;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * APIトークンの失効を記録する変更イベントの購読者。
+ * トークンを失効させたユーザー（失効用のカウンターが0より大きいユーザー）のカウンターだけをメモリに保持し、
+ * {@link TokenService} がトークンの検証時にデータベースを参照せずに失効を判定できるようにします。
+ *
+ * <p>起動時とイベントの取りこぼし時にデータベースから読み込み、その後は変更イベントで更新します。
+ * 削除されたユーザーのトークンは、削除のイベントを受け取った後は無効です。
+ */
+@Component
+@ConditionalOnProperty(name = "app.token-auth.enabled", havingValue = "true")
+public class TokenRevocationTracker implements UserChangeConsumer {
+
+    /** 変更イベントの購読者名 */
+    public static final String CONSUMER_NAME = "api-token-revocations";
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationTracker.class);
+
+    private static final int DELETED = Integer.MAX_VALUE;
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // ユーザーID -> 有効なトークンの失効用のカウンター（これより小さい値のトークンは失効）
+    private final Map<Long, Integer> validVersions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void subscribe() {
+        userChangeEventBus.subscribe(CONSUMER_NAME, this);
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    void onContextRefreshed() {
+        load();
+    }
+
+    @Override
+    public void onEvents(List<UserChangeEvent> events) {
+        for (UserChangeEvent event : events) {
+            if (event instanceof UserUpdated updated && updated.user().tokenVersion() > 0) {
+                validVersions.merge(updated.user().id(), updated.user().tokenVersion(), Math::max);
+            } else if (event instanceof UserDeleted deleted) {
+                validVersions.put(deleted.userId(), DELETED);
+            }
+        }
+    }
+
+    @Override
+    public void onOverflow() {
+        load();
+    }
+
+    /**
+     * コミット済みの失効を記録します。
+     * 失効を要求したリクエストの応答より前に反映するため、変更イベントを待たずに呼び出します。
+     *
+     * @param userId ユーザーID
+     * @param tokenVersion 失効後の有効なトークンの失効用のカウンター
+     */
+    public void recordRevocation(long userId, int tokenVersion) {
+        validVersions.merge(userId, tokenVersion, Math::max);
+    }
+
+    /**
+     * トークンが失効しているかを判定します。
+     *
+     * @param userId ユーザーID
+     * @param tokenVersion トークンの失効用のカウンター
+     * @return 失効している場合はtrue
+     */
+    public boolean isRevoked(long userId, int tokenVersion) {
+        Integer valid = validVersions.get(userId);
+        return valid != null && tokenVersion < valid;
+    }
+
+    private void load() {
+        // 読み込み中に受け取ったイベントの値を戻さないよう、大きい方を残す
+        // 論理削除済み（物理削除前）のユーザーのトークンは全て無効
+        jdbcTemplate.query("SELECT id, token_version, deleted_at FROM users "
+                + "WHERE token_version > 0 OR deleted_at IS NOT NULL",
+            (resultSet) -> {
+                int valid = resultSet.getTimestamp(3) != null ? DELETED : resultSet.getInt(2);
+                validVersions.merge(resultSet.getLong(1), valid, Math::max);
+            });
+        logger.info("APIトークンの失効を読み込みました: users={}", validVersions.size());
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.javase17learningproject.security;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.example.javase17learningproject.User;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * APIトークンの発行・検証サービス。
+ * トークンはユーザーID、役割のビットマスク、失効用のカウンター、有効期限をHMAC-SHA256で署名したもので、
+ * 検証にデータベースやセッションを使用しません。
+ *
+ * <p>形式は {@code <鍵ID>.<ペイロード>.<署名>} (ペイロードと署名はパディングなしのBase64URL) です。
+ * 署名の鍵は鍵IDで選択するため、新しい鍵で発行しながら古い鍵で署名されたトークンも検証できます（鍵のローテーション）。
+ * 古い鍵は、その鍵で発行したトークンの有効期限が切れた後に設定から削除します。
+ */
+@Service
+@ConditionalOnProperty(name = "app.token-auth.enabled", havingValue = "true")
+public class TokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenService.class);
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    // ユーザーID (long)、役割のビットマスク (int)、失効用のカウンター (int)、有効期限のエポック秒 (long)
+    private static final int PAYLOAD_BYTES = Long.BYTES + Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private static final ThreadLocal<Mac> MACS = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    @Autowired
+    private TokenRevocationTracker tokenRevocationTracker;
+
+    // 鍵ID:Base64の鍵 をカンマ区切りで指定する
+    @Value("${app.token-auth.keys:}")
+    private String keys;
+
+    @Value("${app.token-auth.signing-key-id:}")
+    private String signingKeyId;
+
+    @Value("${app.token-auth.ttl:PT1H}")
+    private Duration ttl;
+
+    private final Map<String, SecretKeySpec> verificationKeys = new LinkedHashMap<>();
+
+    /**
+     * 発行したトークン。
+     *
+     * @param token トークン
+     * @param expiresAt 有効期限
+     */
+    public record IssuedToken(String token, Instant expiresAt) {}
+
+    /**
+     * 検証済みのトークンの内容。
+     *
+     * @param userId ユーザーID
+     * @param roleMask 役割のビットマスク
+     * @param tokenVersion 発行時点の失効用のカウンター
+     * @param expiresAt 有効期限
+     */
+    public record VerifiedToken(long userId, int roleMask, int tokenVersion, Instant expiresAt) {}
+
+    @PostConstruct
+    void loadKeys() {
+        for (String entry : keys.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("app.token-auth.keys は 鍵ID:Base64の鍵 の形式で指定してください");
+            }
+            String keyId = entry.substring(0, separator).trim();
+            byte[] secret = Base64.getDecoder().decode(entry.substring(separator + 1).trim());
+            if (secret.length < 32) {
+                throw new IllegalArgumentException("署名の鍵は32バイト以上にしてください: " + keyId);
+            }
+            verificationKeys.put(keyId, new SecretKeySpec(secret, ALGORITHM));
+        }
+        if (verificationKeys.isEmpty()) {
+            // 開発用。再起動すると発行済みのトークンは全て無効になる
+            byte[] secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+            verificationKeys.put("generated", new SecretKeySpec(secret, ALGORITHM));
+            logger.warn("app.token-auth.keys が設定されていないため、一時的な署名の鍵を生成しました");
+        }
+        if (signingKeyId.isBlank()) {
+            // 指定がない場合は最後に追加した鍵で署名する
+            signingKeyId = verificationKeys.keySet().stream().reduce((first, second) -> second).orElseThrow();
+        }
+        if (!verificationKeys.containsKey(signingKeyId)) {
+            throw new IllegalArgumentException("署名の鍵が見つかりません: " + signingKeyId);
+        }
+        logger.info("APIトークンの鍵を読み込みました: keys={}, signingKeyId={}", verificationKeys.keySet(), signingKeyId);
+    }
+
+    /**
+     * トークンを発行します。
+     *
+     * @param user ユーザー
+     * @return 発行したトークン
+     */
+    public IssuedToken issue(User user) {
+        return issue(user, Instant.now());
+    }
+
+    IssuedToken issue(User user, Instant now) {
+        Instant expiresAt = now.plus(ttl);
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_BYTES)
+            .putLong(user.getId())
+            .putInt(user.getRoleMask())
+            .putInt(user.getTokenVersion())
+            .putLong(expiresAt.getEpochSecond())
+            .array();
+        String signed = signingKeyId + "." + ENCODER.encodeToString(payload);
+        String signature = ENCODER.encodeToString(sign(verificationKeys.get(signingKeyId), signed));
+        return new IssuedToken(signed + "." + signature, Instant.ofEpochSecond(expiresAt.getEpochSecond()));
+    }
+
+    /**
+     * トークンを検証します。
+     * 署名、有効期限、失効を確認し、いずれかを満たさない場合は空を返します。
+     *
+     * @param token トークン
+     * @return トークンの内容。無効な場合は空
+     */
+    public Optional<VerifiedToken> verify(String token) {
+        return verify(token, Instant.now());
+    }
+
+    Optional<VerifiedToken> verify(String token, Instant now) {
+        int first = token.indexOf('.');
+        int last = token.lastIndexOf('.');
+        if (first <= 0 || last == first) {
+            return Optional.empty();
+        }
+        SecretKeySpec key = verificationKeys.get(token.substring(0, first));
+        if (key == null) {
+            return Optional.empty();
+        }
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(first + 1, last));
+            signature = DECODER.decode(token.substring(last + 1));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        // 比較時間から署名を推測されないよう、一定時間で比較する
+        if (payload.length != PAYLOAD_BYTES
+                || !MessageDigest.isEqual(signature, sign(key, token.substring(0, last)))) {
+            return Optional.empty();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        VerifiedToken verified = new VerifiedToken(buffer.getLong(), buffer.getInt(), buffer.getInt(),
+            Instant.ofEpochSecond(buffer.getLong()));
+        if (!now.isBefore(verified.expiresAt())
+                || tokenRevocationTracker.isRevoked(verified.userId(), verified.tokenVersion())) {
+            return Optional.empty();
+        }
+        return Optional.of(verified);
+    }
+
+    private static byte[] sign(SecretKeySpec key, String value) {
+        Mac mac = MACS.get();
+        try {
+            mac.init(key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        return mac.doFinal(value.getBytes(StandardCharsets.US_ASCII));
+    }
+}
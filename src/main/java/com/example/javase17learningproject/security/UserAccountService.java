@@ -0,0 +1,51 @@
+package com.example.javase17learningproject.security;
+
+import java.util.Optional;
+
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+
+/**
+ * ログイン用のユーザー読み込みサービス。
+ * メールアドレスをユーザー名としてユーザーを読み込みます。
+ * 読み込んだエンティティはパスワードの照合にのみ使用し、セッションには {@link UserPrincipal} を保持します。
+ */
+@Service
+public class UserAccountService implements UserDetailsService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public UserDetails loadUserByUsername(String username) {
+        User user = userRepository.findByEmail(username)
+            .orElseThrow(() -> new UsernameNotFoundException("ユーザーが見つかりません: " + username));
+        return initialized(user);
+    }
+
+    /**
+     * IDでユーザーを読み込みます。セッションのプリンシパルを作り直す場合に使用します。
+     *
+     * @param id ユーザーID
+     * @return ユーザー。存在しない場合は空
+     */
+    @Transactional(readOnly = true)
+    public Optional<User> findAccount(long id) {
+        return userRepository.findById(id).map(UserAccountService::initialized);
+    }
+
+    private static User initialized(User user) {
+        // 定義済み以外の役割の権限はトランザクションの外で役割の集合から作るため、ここで読み込んでおく
+        Hibernate.initialize(user.getRoles());
+        return user;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.javase17learningproject.security;
+
+import java.io.Serializable;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.User;
+
+/**
+ * セッションに保持する認証済みユーザー。
+ * エンティティ ({@link User}) の代わりに、認可の判定に必要な値だけを保持する不変の値です。
+ * パスワードのハッシュや役割の集合を持たないため、セッションのメモリ使用量が小さく、シリアライズできます。
+ *
+ * <p>役割は {@link RoleMask} のビットマスクで保持します。ユーザーが更新された場合は
+ * {@link PrincipalRefreshFilter} がバージョンを比較して作り直します。
+ * APIトークンで認証した場合 ({@link #ofToken(long, int)}) は、トークンに含まれないメールアドレスとバージョンを持ちません。
+ *
+ * @param id ユーザーID
+ * @param email メールアドレス（ユーザー名）。APIトークンで認証した場合はnull
+ * @param roleMask 役割のビットマスク
+ * @param version 作成時点のユーザーのバージョン。APIトークンで認証した場合は {@link #NO_VERSION}
+ */
+public record UserPrincipal(long id, String email, int roleMask, long version)
+        implements AuthenticatedPrincipal, Serializable {
+
+    /** バージョンを持たないことを表す値 */
+    public static final long NO_VERSION = -1;
+
+    /**
+     * エンティティから作成します。
+     *
+     * @param user ユーザー
+     * @return 認証済みユーザー
+     */
+    public static UserPrincipal of(User user) {
+        return new UserPrincipal(user.getId(), user.getEmail(), user.getRoleMask(), user.getVersion());
+    }
+
+    /**
+     * 検証済みのAPIトークンの内容から作成します。
+     *
+     * @param id ユーザーID
+     * @param roleMask 役割のビットマスク
+     * @return 認証済みユーザー
+     */
+    public static UserPrincipal ofToken(long id, int roleMask) {
+        return new UserPrincipal(id, null, roleMask, NO_VERSION);
+    }
+
+    /**
+     * 指定された定義済みの役割を持つかを判定します。
+     * 定義済み以外の役割は名前を保持しないため、常にfalseを返します。
+     *
+     * @param roleName 役割名
+     * @return 役割を持つ場合はtrue
+     */
+    public boolean hasRole(String roleName) {
+        int bit = RoleMask.bitOf(roleName);
+        return bit != RoleMask.OTHER && RoleMask.contains(roleMask, bit);
+    }
+
+    /**
+     * APIトークンで認証したかを判定します。
+     *
+     * @return APIトークンで認証した場合はtrue
+     */
+    public boolean isTokenAuthenticated() {
+        return email == null;
+    }
+
+    @Override
+    public String getName() {
+        return email != null ? email : Long.toString(id);
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.javase17learningproject.security;
+
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.example.javase17learningproject.User;
+
+/**
+ * パスワード認証のプロバイダー。
+ * 照合は {@link DaoAuthenticationProvider} と同じで、認証結果のプリンシパルをエンティティから {@link UserPrincipal} に置き換えます。
+ */
+public class UserPrincipalAuthenticationProvider extends DaoAuthenticationProvider {
+
+    public UserPrincipalAuthenticationProvider(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder) {
+        super(passwordEncoder);
+        setUserDetailsService(userDetailsService);
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication,
+                                                         UserDetails user) {
+        Authentication result = super.createSuccessAuthentication(principal, authentication, user);
+        if (!(user instanceof User entity)) {
+            return result;
+        }
+        UsernamePasswordAuthenticationToken token = UsernamePasswordAuthenticationToken.authenticated(
+            UserPrincipal.of(entity), null, result.getAuthorities());
+        token.setDetails(result.getDetails());
+        return token;
+    }
+}
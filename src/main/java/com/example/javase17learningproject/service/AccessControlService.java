@@ -8,12 +8,16 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+import com.example.javase17learningproject.RoleMask;
 import com.example.javase17learningproject.User;
-import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.diagnostics.AccessDecisionEvent;
+import com.example.javase17learningproject.security.UserPrincipal;
 
 /**
  * アクセス制御サービス。
  * ユーザーの役割に基づいて操作の可否を判断します。
+ * 役割の判定は役割のビットマスク ({@link RoleMask}) のビット演算で行います。
+ * 判定はJFRの記録中に {@link AccessDecisionEvent} として記録されます。
  */
 @Service
 public class AccessControlService {
@@ -21,16 +25,45 @@ public class AccessControlService {
     private static final Logger logger = LoggerFactory.getLogger(AccessControlService.class);
 
     @Autowired
-    private UserRepository userRepository;
+    private UserResolver userResolver;
 
     /**
      * 指定されたIDのユーザーを取得します。
+     * 同じリクエストのコントローラーは、ここで読み込んだユーザーを再利用します。
      * 
      * @param id ユーザーID
      * @return 該当するユーザー、存在しない場合はnull
      */
     private User getUserById(Long id) {
-        return userRepository.findById(id).orElse(null);
+        return userResolver.findById(id).orElse(null);
+    }
+
+    /**
+     * 現在のユーザーを取得します。
+     * セッションには {@link UserPrincipal} を保持するため、エンティティは読み込みません。
+     * プリンシパルがエンティティの場合（テストなどで直接設定された場合）は変換します。
+     *
+     * @return 現在のユーザー
+     */
+    private static UserPrincipal currentPrincipal() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        Object principal = auth.getPrincipal();
+        if (principal instanceof User user) {
+            return UserPrincipal.of(user);
+        }
+        return (UserPrincipal) principal;
+    }
+
+    /**
+     * ユーザーの最も優先度の高い役割が指定された役割かを判定します。
+     * 役割のビットマスクで判定するため、役割の集合は参照しません。
+     *
+     * @param user 判定対象のユーザー
+     * @param bit 役割のビット
+     * @return 主要な役割が指定された役割の場合はtrue
+     */
+    private static boolean hasPrimaryRole(User user, int bit) {
+        return RoleMask.primary(user.getRoleMask()) == bit;
     }
 
     /**
@@ -40,31 +73,34 @@ public class AccessControlService {
      * @return 編集可能な場合はtrue
      */
     public boolean canEditUser(User targetUser) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) auth.getPrincipal();
+        UserPrincipal currentUser = currentPrincipal();
+        return AccessDecisionEvent.record(currentUser, "edit", () -> isEditAllowed(currentUser, targetUser));
+    }
+
+    private boolean isEditAllowed(UserPrincipal currentUser, User targetUser) {
 
         // 管理者は全てのユーザーを編集可能
-        if (currentUser.getRole().getName().equals("ADMIN")) {
+        if (currentUser.hasRole("ADMIN")) {
             logger.debug("管理者によるユーザー編集: target={}", targetUser.getEmail());
             return true;
         }
 
         // 管理補助者は一般ユーザーのみ編集可能
-        if (currentUser.getRole().getName().equals("MODERATOR") &&
-            targetUser.getRole().getName().equals("USER")) {
+        if (currentUser.hasRole("MODERATOR") &&
+            hasPrimaryRole(targetUser, RoleMask.USER)) {
             logger.debug("管理補助者によるユーザー編集: target={}", targetUser.getEmail());
             return true;
         }
 
         // 一般ユーザーは自分自身のみ編集可能
-        if (currentUser.getRole().getName().equals("USER") &&
-            currentUser.getId().equals(targetUser.getId())) {
-            logger.debug("ユーザーによる自身の編集: user={}", currentUser.getEmail());
+        if (currentUser.hasRole("USER") &&
+            targetUser.getId() != null && currentUser.id() == targetUser.getId()) {
+            logger.debug("ユーザーによる自身の編集: user={}", currentUser.email());
             return true;
         }
 
         logger.warn("不正なユーザー編集の試行: user={}, target={}", 
-                   currentUser.getEmail(), targetUser.getEmail());
+                   currentUser.email(), targetUser.getEmail());
         return false;
     }
 
@@ -90,24 +126,27 @@ public class AccessControlService {
      * @return 削除可能な場合はtrue
      */
     public boolean canDeleteUser(User targetUser) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) auth.getPrincipal();
+        UserPrincipal currentUser = currentPrincipal();
+        return AccessDecisionEvent.record(currentUser, "delete", () -> isDeleteAllowed(currentUser, targetUser));
+    }
+
+    private boolean isDeleteAllowed(UserPrincipal currentUser, User targetUser) {
 
         // 管理者は全てのユーザーを削除可能
-        if (currentUser.getRole().getName().equals("ADMIN")) {
+        if (currentUser.hasRole("ADMIN")) {
             logger.info("管理者によるユーザー削除: target={}", targetUser.getEmail());
             return true;
         }
 
         // 管理補助者は一般ユーザーのみ削除可能
-        if (currentUser.getRole().getName().equals("MODERATOR") &&
-            targetUser.getRole().getName().equals("USER")) {
+        if (currentUser.hasRole("MODERATOR") &&
+            hasPrimaryRole(targetUser, RoleMask.USER)) {
             logger.info("管理補助者によるユーザー削除: target={}", targetUser.getEmail());
             return true;
         }
 
         logger.warn("不正なユーザー削除の試行: user={}, target={}", 
-                   currentUser.getEmail(), targetUser.getEmail());
+                   currentUser.email(), targetUser.getEmail());
         return false;
     }
 
@@ -132,31 +171,34 @@ public class AccessControlService {
      * @return 表示可能な場合はtrue
      */
     public boolean canViewUsersByRole(String role) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) auth.getPrincipal();
+        UserPrincipal currentUser = currentPrincipal();
+        return AccessDecisionEvent.record(currentUser, "view-by-role", () -> isViewByRoleAllowed(currentUser, role));
+    }
+
+    private boolean isViewByRoleAllowed(UserPrincipal currentUser, String role) {
 
         // 管理者は全ての役割のユーザーを表示可能
-        if (currentUser.getRole().getName().equals("ADMIN")) {
+        if (currentUser.hasRole("ADMIN")) {
             logger.debug("管理者によるユーザー一覧表示: role={}", role);
             return true;
         }
 
         // 管理補助者は一般ユーザーのみ表示可能
-        if (currentUser.getRole().getName().equals("MODERATOR") &&
+        if (currentUser.hasRole("MODERATOR") &&
             role.equals("USER")) {
             logger.debug("管理補助者による一般ユーザー一覧表示");
             return true;
         }
 
         // 一般ユーザーは一般ユーザーのみ表示可能
-        if (currentUser.getRole().getName().equals("USER") &&
+        if (currentUser.hasRole("USER") &&
             role.equals("USER")) {
             logger.debug("一般ユーザーによる一般ユーザー一覧表示");
             return true;
         }
 
         logger.warn("不正なユーザー一覧表示の試行: user={}, role={}",
-                   currentUser.getEmail(), role);
+                   currentUser.email(), role);
         return false;
     }
 
@@ -167,24 +209,27 @@ public class AccessControlService {
      * @return 作成可能な場合はtrue
      */
     public boolean canCreateUserWithRole(String role) {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        User currentUser = (User) auth.getPrincipal();
+        UserPrincipal currentUser = currentPrincipal();
+        return AccessDecisionEvent.record(currentUser, "create-with-role", () -> isCreateWithRoleAllowed(currentUser, role));
+    }
+
+    private boolean isCreateWithRoleAllowed(UserPrincipal currentUser, String role) {
 
         // 管理者は全ての役割のユーザーを作成可能
-        if (currentUser.getRole().getName().equals("ADMIN")) {
+        if (currentUser.hasRole("ADMIN")) {
             logger.info("管理者によるユーザー作成: role={}", role);
             return true;
         }
 
         // 管理補助者は一般ユーザーのみ作成可能
-        if (currentUser.getRole().getName().equals("MODERATOR") &&
+        if (currentUser.hasRole("MODERATOR") &&
             role.equals("USER")) {
             logger.info("管理補助者による一般ユーザー作成");
             return true;
         }
 
         logger.warn("不正なユーザー作成の試行: user={}, role={}",
-                   currentUser.getEmail(), role);
+                   currentUser.email(), role);
         return false;
     }
 }
\ No newline at end of file
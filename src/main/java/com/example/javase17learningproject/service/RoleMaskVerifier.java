@@ -0,0 +1,154 @@
+package com.example.javase17learningproject.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.event.UserChangeEvent.RolesChanged;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * 役割のビットマスクの整合性検証サービス。
+ * {@code users.role_mask} と、役割の正である {@code user_roles} から計算したビットマスクを比較し、
+ * 不一致のユーザーを検出します。修復が有効な場合は {@code user_roles} に合わせてビットマスクを更新します。
+ *
+ * <p>エンティティを経由しない更新（SQLでの直接更新など）や、役割の集合を直接変更した場合の不整合を検出するため、
+ * 定期的に実行されます。
+ */
+@Service
+public class RoleMaskVerifier implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoleMaskVerifier.class);
+
+    /**
+     * 不一致の検出クエリ。ビットの値はRoleMaskの定義から組み立てる。
+     */
+    private static final String MISMATCH_QUERY = "SELECT u.id, u.role_mask, COALESCE(m.mask, 0) AS expected, u.version "
+        + "FROM users u LEFT JOIN ("
+        + "SELECT ur.user_id, BIT_OR_AGG(" + roleBitExpression() + ") AS mask "
+        + "FROM user_roles ur JOIN roles r ON r.id = ur.role_id GROUP BY ur.user_id"
+        + ") m ON m.user_id = u.id "
+        + "WHERE u.deleted_at IS NULL AND u.role_mask <> COALESCE(m.mask, 0) ORDER BY u.id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    @Value("${app.role-mask.verifier.repair:true}")
+    private boolean repair;
+
+    private final AtomicInteger lastMismatches = new AtomicInteger();
+    private final LongAdder repaired = new LongAdder();
+
+    /**
+     * 不一致のユーザー。
+     *
+     * @param userId ユーザーID
+     * @param actual {@code users.role_mask} の値
+     * @param expected {@code user_roles} から計算したビットマスク
+     * @param version 検出時のユーザーのバージョン
+     */
+    public record Mismatch(long userId, int actual, int expected, long version) {}
+
+    /**
+     * 定期的に整合性を検証します。
+     * 自身のメソッドの呼び出しはプロキシを経由しないため、{@link #verify()} と同じトランザクションをここで開始します。
+     */
+    @Scheduled(initialDelayString = "${app.role-mask.verifier.initial-delay:PT5M}",
+               fixedDelayString = "${app.role-mask.verifier.interval:PT1H}")
+    @Transactional
+    public void scheduledVerify() {
+        verify();
+    }
+
+    /**
+     * 整合性を検証し、修復が有効な場合は不一致のビットマスクを更新します。
+     *
+     * @return 検出した不一致のユーザー
+     */
+    @Transactional
+    public List<Mismatch> verify() {
+        List<Mismatch> mismatches = jdbcTemplate.query(MISMATCH_QUERY,
+            (resultSet, rowNum) -> new Mismatch(resultSet.getLong(1), resultSet.getInt(2), resultSet.getInt(3),
+                resultSet.getLong(4)));
+        lastMismatches.set(mismatches.size());
+        if (mismatches.isEmpty()) {
+            logger.debug("役割のビットマスクは整合しています");
+            return mismatches;
+        }
+        logger.warn("役割のビットマスクの不一致を検出しました: count={}, first={}", mismatches.size(), mismatches.get(0));
+        if (repair) {
+            List<Mismatch> applied = repair(mismatches);
+            logger.info("役割のビットマスクを修復しました: count={}, skipped={}",
+                applied.size(), mismatches.size() - applied.size());
+        }
+        return mismatches;
+    }
+
+    /**
+     * 不一致のビットマスクを {@code user_roles} に合わせて更新します。
+     * 検出後に他のトランザクションが同じユーザーを更新した場合は、その値を上書きしないよう更新しません
+     * (検出時のビットマスクとバージョンを条件とします。不一致が残れば次回の検証で検出されます)。
+     *
+     * @param mismatches 検出した不一致のユーザー
+     * @return 実際に更新したユーザー
+     */
+    List<Mismatch> repair(List<Mismatch> mismatches) {
+        // バージョンを進め、修復より前にコミットされた変更のイベントが後から届いても古いものとして破棄させる
+        int[] counts = jdbcTemplate.batchUpdate(
+            "UPDATE users SET role_mask = ?, version = version + 1 WHERE id = ? AND role_mask = ? AND version = ?",
+            mismatches.stream().map(m -> new Object[] {m.expected(), m.userId(), m.actual(), m.version()}).toList());
+        List<Mismatch> applied = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                applied.add(mismatches.get(i));
+            }
+        }
+        repaired.add(applied.size());
+        // SQLで更新したためエンティティリスナーは呼ばれない。読み取りモデルとキャッシュにはコミット後に変更イベントで伝える
+        applied.forEach(m -> userChangeEventBus.publishAfterCommit(
+            new RolesChanged(m.userId(), m.actual(), m.expected(), m.version() + 1)));
+        return applied;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.role.mask.mismatches", lastMismatches, AtomicInteger::get)
+            .description("直近の検証で検出した役割のビットマスクの不一致数")
+            .register(registry);
+        FunctionCounter.builder("user.role.mask.repaired", repaired, LongAdder::sum)
+            .description("修復した役割のビットマスクの数")
+            .register(registry);
+    }
+
+    /**
+     * 役割名をビットに変換するSQLの式を返します。
+     *
+     * @return CASE式
+     */
+    private static String roleBitExpression() {
+        StringBuilder expression = new StringBuilder("CASE r.name");
+        for (int bit = 1; bit <= RoleMask.KNOWN; bit <<= 1) {
+            expression.append(" WHEN '").append(RoleMask.nameOf(bit)).append("' THEN ").append(bit);
+        }
+        return expression.append(" ELSE ").append(RoleMask.OTHER).append(" END").toString();
+    }
+}
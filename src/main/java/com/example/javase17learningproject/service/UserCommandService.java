@@ -0,0 +1,167 @@
+package com.example.javase17learningproject.service;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * ユーザー更新サービス。
+ * ユーザーの更新を楽観的ロック ({@code User} の {@code @Version}) で保護します。
+ *
+ * <p>編集画面で表示したバージョンが指定された場合は、そのバージョンからの更新に限り受け付け、
+ * 他の更新が先にコミットされていれば {@link UserUpdateConflictException} で競合を通知します（後勝ちで上書きしません）。
+ * バージョンが指定されない場合は、同時更新で失敗したときに最新の状態を読み直して上限回数まで再試行します。
+ */
+@Service
+public class UserCommandService implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserCommandService.class);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.user-update.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.user-update.backoff:PT0.01S}")
+    private Duration backoff;
+
+    private volatile Counter retries;
+    private volatile Counter conflicts;
+
+    /**
+     * ユーザーを更新します。
+     * 呼び出し元のトランザクション内で呼び出された場合は、再試行せずに1回だけ更新します。
+     *
+     * @param id ユーザーID
+     * @param expectedVersion 更新の前提とするバージョン。指定しない場合はnull
+     * @param name ユーザー名
+     * @param email メールアドレス
+     * @param roleName 役割名。存在しない役割の場合は役割を変更しない。役割が変わった場合は発行済みのAPIトークンを失効させる
+     * @return 更新したユーザー。存在しない場合は空
+     * @throws UserUpdateConflictException 他の更新と競合した場合
+     */
+    public Optional<User> updateUser(long id, Long expectedVersion, String name, String email, String roleName) {
+        return withRetry(id, expectedVersion, () -> update(id, expectedVersion, name, email, roleName));
+    }
+
+    /**
+     * ユーザーの発行済みのAPIトークンを全て失効させます。
+     *
+     * @param id ユーザーID
+     * @return 更新したユーザー。存在しない場合は空
+     * @throws UserUpdateConflictException 再試行の上限まで他の更新と競合した場合
+     */
+    public Optional<User> revokeTokens(long id) {
+        return withRetry(id, null, () -> userRepository.findById(id).map(user -> {
+            user.revokeTokens();
+            return userRepository.saveAndFlush(user);
+        }));
+    }
+
+    /**
+     * 更新をトランザクション内で実行し、同時更新で失敗した場合は上限回数まで再試行します。
+     */
+    private Optional<User> withRetry(long id, Long expectedVersion, Supplier<Optional<User>> update) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int attempts = TransactionSynchronizationManager.isActualTransactionActive() ? 1 : Math.max(1, maxAttempts);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> update.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= attempts) {
+                    count(conflicts);
+                    long currentVersion = userRepository.findById(id).map(User::getVersion).orElse(-1L);
+                    logger.warn("ユーザーの更新が競合しました: id={}, attempts={}", id, attempt);
+                    throw new UserUpdateConflictException(id, expectedVersion, currentVersion);
+                }
+                count(retries);
+                logger.debug("ユーザーの更新を再試行します: id={}, attempt={}", id, attempt);
+                pause(attempt);
+            } catch (UserUpdateConflictException e) {
+                count(conflicts);
+                throw e;
+            }
+        }
+    }
+
+    private Optional<User> update(long id, Long expectedVersion, String name, String email, String roleName) {
+        Optional<User> found = userRepository.findById(id);
+        if (found.isEmpty()) {
+            return found;
+        }
+        User user = found.get();
+        if (expectedVersion != null && user.getVersion() != expectedVersion) {
+            throw new UserUpdateConflictException(id, expectedVersion, user.getVersion());
+        }
+        int previousRoleMask = user.getRoleMask();
+        user.setName(name);
+        user.setEmail(email);
+        roleRepository.findByName(roleName).ifPresent(role -> {
+            Set<Role> roles = new HashSet<>();
+            roles.add(role);
+            user.setRoles(roles);
+        });
+        // APIトークンは発行時の役割で認証するため、役割が変わった場合は発行済みのトークンを失効させる
+        if (user.getRoleMask() != previousRoleMask) {
+            user.revokeTokens();
+        }
+        // 競合はコミットではなくここで検出し、再試行の対象にする
+        return Optional.of(userRepository.saveAndFlush(user));
+    }
+
+    /**
+     * 再試行の前に待機します。同時に失敗した更新が同じ間隔で再衝突しないよう、待機時間に揺らぎを加えます。
+     */
+    private void pause(int attempt) {
+        long maxNanos = backoff.toNanos() * attempt;
+        if (maxNanos > 0) {
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(maxNanos / 2, maxNanos + 1));
+        }
+    }
+
+    private static void count(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        retries = Counter.builder("user.update.retries")
+            .description("同時更新の失敗により再試行したユーザーの更新の数")
+            .register(registry);
+        conflicts = Counter.builder("user.update.conflicts")
+            .description("競合により失敗したユーザーの更新の数")
+            .register(registry);
+    }
+}
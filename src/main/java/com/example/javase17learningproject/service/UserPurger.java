@@ -0,0 +1,166 @@
+package com.example.javase17learningproject.service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * 論理削除したユーザーの物理削除サービス。
+ * 削除してから保持期間が過ぎたユーザーと、その役割の関連 ({@code user_roles}) を小さなバッチで物理削除します。
+ *
+ * <p>1回の実行で削除するバッチ数に上限を設け、バッチの間に待機するため、
+ * 1つのトランザクションが多数の行のロックを長時間保持することはありません。
+ * 実行する時間帯 ({@code app.user-purge.quiet-hours}) を指定した場合は、その時間帯以外は何もしません。
+ */
+@Service
+public class UserPurger implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserPurger.class);
+
+    private static final String SELECT_BATCH = "SELECT id FROM users WHERE deleted_at <= ? "
+        + "ORDER BY deleted_at FETCH FIRST ? ROWS ONLY";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.user-purge.retention:PT1H}")
+    private Duration retention;
+
+    @Value("${app.user-purge.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.user-purge.max-batches:20}")
+    private int maxBatches;
+
+    @Value("${app.user-purge.pause:PT0.1S}")
+    private Duration pause;
+
+    @Value("${app.user-purge.quiet-hours:}")
+    private String quietHours;
+
+    private final AtomicLong backlog = new AtomicLong();
+
+    private volatile Counter purged;
+    private volatile Timer batchTimer;
+
+    /**
+     * 定期的に物理削除します。
+     */
+    @Scheduled(initialDelayString = "${app.user-purge.initial-delay:PT5M}",
+               fixedDelayString = "${app.user-purge.interval:PT5M}")
+    public void scheduledPurge() {
+        if (!isQuietTime(LocalTime.now())) {
+            logger.debug("物理削除の時間帯ではありません: quietHours={}", quietHours);
+            return;
+        }
+        purge();
+    }
+
+    /**
+     * 保持期間が過ぎたユーザーを、上限のバッチ数まで物理削除します。
+     *
+     * @return 物理削除したユーザー数
+     */
+    public int purge() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(retention));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            long start = System.nanoTime();
+            Integer count = transactionTemplate.execute(status -> purgeBatch(cutoff));
+            record(batchTimer, System.nanoTime() - start);
+            total += count;
+            if (count < batchSize) {
+                break;
+            }
+            if (!pause.isZero()) {
+                LockSupport.parkNanos(pause.toNanos());
+            }
+        }
+        backlog.set(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE deleted_at IS NOT NULL", Long.class));
+        if (total > 0) {
+            logger.info("論理削除したユーザーを物理削除しました: count={}, backlog={}", total, backlog.get());
+        }
+        return total;
+    }
+
+    private int purgeBatch(Timestamp cutoff) {
+        List<Long> ids = jdbcTemplate.queryForList(SELECT_BATCH, Long.class, cutoff, batchSize);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        // 選択の後に論理削除が取り消された行は、役割の関連も含めて削除しない
+        jdbcTemplate.batchUpdate("DELETE FROM user_roles WHERE user_id = ? "
+            + "AND EXISTS (SELECT 1 FROM users WHERE id = ? AND deleted_at IS NOT NULL)",
+            ids.stream().map(id -> new Object[] {id, id}).toList());
+        jdbcTemplate.batchUpdate("DELETE FROM users WHERE id = ? AND deleted_at IS NOT NULL",
+            ids.stream().map(id -> new Object[] {id}).toList());
+        if (purged != null) {
+            purged.increment(ids.size());
+        }
+        return ids.size();
+    }
+
+    /**
+     * 物理削除を実行する時間帯かを判定します。
+     * 時間帯は {@code HH:mm-HH:mm} で指定し、終了が開始より前の場合は日付をまたぐ時間帯です。未指定の場合は常に実行します。
+     *
+     * @param now 現在時刻
+     * @return 実行する時間帯の場合はtrue
+     */
+    boolean isQuietTime(LocalTime now) {
+        if (quietHours == null || quietHours.isBlank()) {
+            return true;
+        }
+        String[] range = quietHours.strip().split("-");
+        LocalTime from = LocalTime.parse(range[0].strip());
+        LocalTime to = LocalTime.parse(range[1].strip());
+        if (from.isBefore(to)) {
+            return !now.isBefore(from) && now.isBefore(to);
+        }
+        return !now.isBefore(from) || now.isBefore(to);
+    }
+
+    private static void record(Timer timer, long nanos) {
+        if (timer != null) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        purged = Counter.builder("user.purge.purged")
+            .description("物理削除したユーザーの数")
+            .register(registry);
+        batchTimer = Timer.builder("user.purge.batch")
+            .description("物理削除の1バッチの処理時間")
+            .register(registry);
+        Gauge.builder("user.purge.backlog", backlog, AtomicLong::get)
+            .description("論理削除済みで物理削除されていないユーザーの数（直近の実行時点）")
+            .register(registry);
+    }
+}
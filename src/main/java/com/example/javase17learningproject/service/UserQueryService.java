@@ -0,0 +1,152 @@
+package com.example.javase17learningproject.service;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.directory.UserDirectory;
+import com.example.javase17learningproject.directory.UserSummary;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+import com.example.javase17learningproject.search.FuzzyUserIndex;
+import com.example.javase17learningproject.search.UserSearchCache;
+import com.example.javase17learningproject.search.UserSearchCacheInvalidator;
+import com.example.javase17learningproject.search.UserSearchCriteria;
+
+/**
+ * ユーザー参照サービス。
+ * ユーザー一覧と検索の参照処理を提供します。
+ *
+ * <p>読み取りモデル ({@link UserDirectory}) が利用できる場合はJPAを経由せずに処理し、
+ * 利用できない場合（起動直後など）はリポジトリで検索します。
+ * 読み取り専用のトランザクションはリポジトリで検索する場合だけ開始し、読み取りモデルから返す場合は接続を取得しません。
+ */
+@Service
+public class UserQueryService {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Autowired
+    private UserSearchCache userSearchCache;
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    @Autowired
+    private FuzzyUserIndex fuzzyUserIndex;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.change-bus.read-your-writes-timeout:PT0.5S}")
+    private Duration readYourWritesTimeout;
+
+    /**
+     * 全てのユーザーをID順に取得します。
+     *
+     * @return 全てのユーザー
+     */
+    public List<UserSummary> getAllUsers() {
+        List<UserSummary> users = userDirectory.findAll();
+        if (users != null) {
+            return users;
+        }
+        return fromRepository(() -> userRepository.findAll(Sort.by("id")));
+    }
+
+    /**
+     * 条件に一致するユーザーを検索します。
+     * 同じ検索条件の結果がキャッシュにある場合は、キャッシュしたIDでユーザーを取得します。
+     * 呼び出し元が発行した変更イベントによるキャッシュの無効化を待ち切れない場合は、キャッシュを使用しません。
+     *
+     * @param name ユーザー名
+     * @param email メールアドレス
+     * @param role 役割名
+     * @return 該当するユーザー
+     */
+    public List<UserSummary> searchUsers(String name, String email, String role) {
+        UserSearchCriteria criteria = UserSearchCriteria.of(name, email, role);
+        if (!userChangeEventBus.awaitOwnWrites(UserSearchCacheInvalidator.CONSUMER_NAME, readYourWritesTimeout)) {
+            return search(criteria);
+        }
+        List<Long> cachedIds = userSearchCache.get(criteria);
+        if (cachedIds != null) {
+            List<UserSummary> users = userDirectory.findAllById(cachedIds);
+            return users != null ? users : fromRepository(() -> userRepository.findAllByIdInOrder(cachedIds));
+        }
+        // 世代番号は検索より前に取得する（検索中にコミットされた変更を含まない結果をキャッシュしないため）
+        long generation = userSearchCache.currentGeneration();
+        List<UserSummary> users = search(criteria);
+        userSearchCache.put(criteria, generation, users.stream().map(UserSummary::getId).toList());
+        return users;
+    }
+
+    /**
+     * 名前・メールアドレスから編集距離 k 以内のユーザーを、距離の近い順に検索します（あいまい検索）。
+     * 入力は通常の検索と同じく正規化し、役割は完全一致で絞り込みます（件数の上限で切り詰める前に索引で絞り込む）。
+     * 名前・メールアドレスの指定がない場合や、索引 ({@link FuzzyUserIndex}) が利用できない場合は通常の検索をします。
+     *
+     * @param name ユーザー名
+     * @param email メールアドレス
+     * @param role 役割名
+     * @param distance 編集距離の上限 k
+     * @return 該当するユーザー（距離の近い順）
+     */
+    public List<UserSummary> fuzzySearchUsers(String name, String email, String role, int distance) {
+        UserSearchCriteria criteria = UserSearchCriteria.of(name, email, role);
+        if (criteria.name() == null && criteria.email() == null) {
+            return searchUsers(name, email, role);
+        }
+        int roleBit = criteria.role() == null ? 0 : RoleMask.bitOf(criteria.role());
+        LongPredicate inRole = null;
+        if (roleBit == RoleMask.OTHER) {
+            // 定義済み以外の役割は、役割だけの検索結果（検索結果キャッシュの対象）と突き合わせる
+            Set<Long> members = new HashSet<>();
+            searchUsers(null, null, role).forEach(user -> members.add(user.getId()));
+            inRole = members::contains;
+        }
+        List<Long> ids = fuzzyUserIndex.search(criteria.name(), criteria.email(), distance, roleBit, inRole);
+        if (ids == null) {
+            return searchUsers(name, email, role);
+        }
+        List<UserSummary> users = userDirectory.findAllById(ids);
+        if (users == null) {
+            users = fromRepository(() -> userRepository.findAllByIdInOrder(ids));
+        }
+        if (roleBit == 0 || roleBit == RoleMask.OTHER) {
+            return users;
+        }
+        // 索引より新しい役割で読み込んだユーザーを除く
+        return users.stream().filter(user -> RoleMask.contains(user.getRoleMask(), roleBit)).toList();
+    }
+
+    private List<UserSummary> search(UserSearchCriteria criteria) {
+        List<UserSummary> users = userDirectory.search(criteria);
+        return users != null ? users : fromRepository(() -> userRepository.search(criteria));
+    }
+
+    /**
+     * リポジトリの検索を読み取り専用のトランザクションで実行し、ユーザーの要約に変換します。
+     */
+    private List<UserSummary> fromRepository(Supplier<List<User>> query) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate.execute(status -> query.get().stream().map(UserSummary::of).toList());
+    }
+}
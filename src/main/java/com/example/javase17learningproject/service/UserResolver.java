@@ -0,0 +1,77 @@
+package com.example.javase17learningproject.service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+
+/**
+ * リクエスト単位のユーザーの解決。
+ * 1回のリクエストの中で同じIDのユーザーを読み込むのは1回だけにし、
+ * 認可の判定 ({@link AccessControlService}) とコントローラーで同じエンティティを共有します。
+ *
+ * <p>読み込んだ結果（存在しないことを含む）はリクエスト属性に保持するため、リクエストの終了とともに破棄されます。
+ * リクエストの外（バッチやテスト）から呼び出された場合は保持せずに毎回読み込みます。
+ */
+@Component
+public class UserResolver {
+
+    private static final String ATTRIBUTE = UserResolver.class.getName() + ".users";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * 指定されたIDのユーザーを取得します。
+     *
+     * @param id ユーザーID
+     * @return 該当するユーザー。存在しない場合は空
+     */
+    public Optional<User> findById(Long id) {
+        Map<Long, Optional<User>> resolved = resolved(true);
+        if (resolved == null) {
+            return userRepository.findById(id);
+        }
+        return resolved.computeIfAbsent(id, userRepository::findById);
+    }
+
+    /**
+     * 指定されたユーザーを論理削除し、このリクエストで保持している結果を破棄します。
+     * 取得済みのエンティティを削除するため、存在の確認や削除のための読み込みを行いません。
+     * 役割の関連の削除と物理削除は {@link UserPurger} が後で行います。
+     *
+     * @param user 削除するユーザー
+     */
+    public void delete(User user) {
+        user.markDeleted(LocalDateTime.now());
+        userRepository.save(user);
+        Map<Long, Optional<User>> resolved = resolved(false);
+        if (resolved != null) {
+            resolved.put(user.getId(), Optional.empty());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, Optional<User>> resolved(boolean create) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Map<Long, Optional<User>> resolved =
+            (Map<Long, Optional<User>>) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (resolved == null && create) {
+            // 1つのリクエストは1つのスレッドで処理するため、同期しない
+            resolved = new HashMap<>();
+            attributes.setAttribute(ATTRIBUTE, resolved, RequestAttributes.SCOPE_REQUEST);
+        }
+        return resolved;
+    }
+}
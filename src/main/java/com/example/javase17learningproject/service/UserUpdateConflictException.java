@@ -0,0 +1,37 @@
+package com.example.javase17learningproject.service;
+
+/**
+ * ユーザーの更新が他の更新と競合した場合の例外。
+ * 編集画面で表示したバージョンが最新でない場合や、再試行の上限に達した場合に発生します。
+ */
+public class UserUpdateConflictException extends RuntimeException {
+
+    private final long userId;
+    private final Long expectedVersion;
+    private final long currentVersion;
+
+    /**
+     * @param userId ユーザーID
+     * @param expectedVersion 更新の前提としたバージョン（指定されていない場合はnull）
+     * @param currentVersion 現在のバージョン
+     */
+    public UserUpdateConflictException(long userId, Long expectedVersion, long currentVersion) {
+        super(String.format("ユーザーは他の操作で更新されています: id=%d, expectedVersion=%s, currentVersion=%d",
+            userId, expectedVersion, currentVersion));
+        this.userId = userId;
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public Long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -0,0 +1,363 @@
+package com.example.javase17learningproject.shard;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserSearchRepositoryImpl;
+import com.example.javase17learningproject.directory.UserSummary;
+import com.example.javase17learningproject.search.UserSearchCriteria;
+import com.example.javase17learningproject.search.UserSearchCriteria.MatchMode;
+import com.example.javase17learningproject.search.UserSearchCriteria.RoleFilter;
+import com.example.javase17learningproject.search.UserSearchCriteria.Shape;
+
+/**
+ * ユーザーを複数のデータベース（シャード）に分割して保存するリポジトリ。
+ * 各シャードは単一のデータベースと同じスキーマ (Flywayのマイグレーション) を持ち、
+ * {@code users} と {@code user_roles} の行はユーザーIDで決まる1つのシャードにだけ保存します。
+ * {@code roles} は参照データのため、全てのシャードに同じIDで保存します。
+ *
+ * <p><b>分割の方法</b>: シャードの番号はユーザーIDをシャード数で割った余りです ({@link #shardOf(long)})。
+ * IDは保存先のシャードの連番から {@code 連番 * シャード数 + シャードの番号} で採番するため、
+ * IDだけで保存先が決まり、ID以外の対応表を必要としません。保存先のシャードは順番に選択します。
+ * シャード数を変更する場合は、全ての行の再配置が必要です。
+ *
+ * <p><b>参照</b>: IDによる参照と削除は1つのシャードだけにアクセスします。
+ * 検索と一覧は全てのシャードに並列に問い合わせ（各シャードでID順に上限件数まで）、
+ * 結果をID順にマージして全体の上限件数で打ち切ります。
+ *
+ * <p>メールアドレスの一意性はシャードごとにしか保証されません。
+ *
+ * <p><b>位置付け</b>: 分割と scatter-gather の検証用のプロトタイプです。Beanとして登録しておらず、
+ * {@code UserRepository} や {@code UserQueryService} の背後では使用しません。アプリケーションの経路に組み込むには、
+ * メールアドレスの全体での一意性（メールアドレスのハッシュによる振り分けや対応表）が必要です。
+ */
+public class ShardedUserRepository {
+
+    private static final String SEQUENCE = "user_shard_seq";
+
+    // 定義済みの役割を持たないユーザーだけ、一覧に表示する役割名を user_roles から読み込む
+    private static final String SELECT_COLUMNS = "SELECT u.id, u.name, u.email, u.role_mask, u.updated_at, "
+        + "CASE WHEN BITAND(u.role_mask, " + RoleMask.KNOWN + ") = 0 AND u.role_mask <> 0 THEN ("
+        + "SELECT MIN(r.name) FROM user_roles ur JOIN roles r ON r.id = ur.role_id WHERE ur.user_id = u.id"
+        + ") END AS other_role FROM users u";
+
+    // どの役割のビットも同じ数のビットマスクに含まれるため、役割の条件のプレースホルダーの数は役割によらない
+    private static final int ROLE_MASK_PARAMETERS = RoleMask.masksContaining(RoleMask.OTHER).size();
+
+    private static final Map<Shape, String> QUERY_CACHE = new ConcurrentHashMap<>();
+
+    private final List<JdbcTemplate> shards;
+    private final List<TransactionTemplate> transactionTemplates;
+    private final List<DataSource> dataSources;
+    private final Executor executor;
+
+    private final AtomicLong nextShard = new AtomicLong();
+
+    // 役割名 -> 一覧に表示する参照専用の役割
+    private final Map<String, Role> roles = new ConcurrentHashMap<>();
+
+    private final RowMapper<UserSummary> summaryMapper = this::mapSummary;
+
+    /**
+     * @param dataSources シャードのデータソース（順序がシャードの番号になるため、変更しないこと）
+     * @param executor 全てのシャードへの問い合わせを並列に実行するエグゼキュータ
+     */
+    public ShardedUserRepository(List<DataSource> dataSources, Executor executor) {
+        if (dataSources.isEmpty()) {
+            throw new IllegalArgumentException("シャードがありません");
+        }
+        this.dataSources = List.copyOf(dataSources);
+        this.shards = dataSources.stream().map(JdbcTemplate::new).toList();
+        this.transactionTemplates = dataSources.stream()
+            .map(dataSource -> new TransactionTemplate(new DataSourceTransactionManager(dataSource)))
+            .toList();
+        this.executor = executor;
+    }
+
+    /**
+     * シャード数を返します。
+     *
+     * @return シャード数
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * ユーザーIDの保存先のシャードの番号を返します。
+     *
+     * @param userId ユーザーID
+     * @return シャードの番号
+     */
+    public int shardOf(long userId) {
+        return (int) Math.floorMod(userId, (long) shards.size());
+    }
+
+    /**
+     * 全てのシャードにマイグレーションを適用し、IDの採番に使用する連番を作成します。
+     */
+    public void migrate() {
+        for (int i = 0; i < shards.size(); i++) {
+            Flyway.configure()
+                .dataSource(dataSources.get(i))
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+            shards.get(i).execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE);
+        }
+    }
+
+    /**
+     * 役割を全てのシャードに保存します（保存済みの場合は何もしません）。
+     *
+     * @param role 役割（IDが必要）
+     */
+    public void saveRole(Role role) {
+        if (roles.containsKey(role.getName())) {
+            return;
+        }
+        for (JdbcTemplate shard : shards) {
+            shard.update("INSERT INTO roles (id, name) SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM roles WHERE id = ?)",
+                role.getId(), role.getName(), role.getId());
+        }
+        Role shared = new Role(role.getName());
+        shared.setId(role.getId());
+        roles.putIfAbsent(role.getName(), shared);
+    }
+
+    /**
+     * ユーザーを保存します。
+     * 保存先のシャードで採番したIDを返します。渡されたユーザーのIDは変更しません。
+     *
+     * @param user ユーザー（パスワードのハッシュと、IDのある役割が必要）
+     * @return 採番したユーザーID
+     */
+    public long insert(User user) {
+        user.getRoles().forEach(this::saveRole);
+        int shard = (int) Math.floorMod(nextShard.getAndIncrement(), (long) shards.size());
+        JdbcTemplate jdbcTemplate = shards.get(shard);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return transactionTemplates.get(shard).execute(status -> {
+            long sequence = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + SEQUENCE, Long.class);
+            long id = sequence * shards.size() + shard;
+            jdbcTemplate.update("INSERT INTO users (id, name, email, password, name_normalized, email_normalized, "
+                + "role_mask, created_at, updated_at, account_non_expired, account_non_locked, "
+                + "credentials_non_expired, enabled) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                id, user.getName(), user.getEmail(), user.getPassword(), user.getNameNormalized(),
+                user.getEmailNormalized(), user.getRoleMask(), now, now, user.isAccountNonExpired(),
+                user.isAccountNonLocked(), user.isCredentialsNonExpired(), user.isEnabled());
+            jdbcTemplate.batchUpdate("INSERT INTO user_roles (user_id, role_id) VALUES (?, ?)",
+                user.getRoles().stream().map(role -> new Object[] {id, role.getId()}).toList());
+            return id;
+        });
+    }
+
+    /**
+     * 指定されたIDのユーザーを取得します。保存先のシャードだけにアクセスします。
+     *
+     * @param id ユーザーID
+     * @return 該当するユーザー。存在しない場合は空
+     */
+    public Optional<UserSummary> findById(long id) {
+        return shards.get(shardOf(id)).query(SELECT_COLUMNS + " WHERE u.id = ?", summaryMapper, id)
+            .stream().findFirst();
+    }
+
+    /**
+     * 指定されたIDのユーザーを削除します。保存先のシャードだけにアクセスします。
+     *
+     * @param id ユーザーID
+     * @return 削除した場合はtrue
+     */
+    public boolean deleteById(long id) {
+        int shard = shardOf(id);
+        JdbcTemplate jdbcTemplate = shards.get(shard);
+        return transactionTemplates.get(shard).execute(status -> {
+            jdbcTemplate.update("DELETE FROM user_roles WHERE user_id = ?", id);
+            return jdbcTemplate.update("DELETE FROM users WHERE id = ?", id) > 0;
+        });
+    }
+
+    /**
+     * 全てのシャードのユーザー数の合計を返します。
+     *
+     * @return ユーザー数
+     */
+    public long count() {
+        return scatter(shard -> shard.queryForObject("SELECT COUNT(*) FROM users", Long.class))
+            .stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * 全てのユーザーをID順に上限件数まで取得します。
+     *
+     * @param limit 上限件数
+     * @return ユーザー
+     */
+    public List<UserSummary> findAll(int limit) {
+        return search(UserSearchCriteria.of(null, null, null), limit);
+    }
+
+    /**
+     * 条件に一致するユーザーをID順に上限件数まで検索します。
+     * 全てのシャードに並列に問い合わせ、結果をマージします。
+     *
+     * @param criteria 検索条件
+     * @param limit 上限件数
+     * @return 該当するユーザー
+     */
+    public List<UserSummary> search(UserSearchCriteria criteria, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        String sql = QUERY_CACHE.computeIfAbsent(criteria.shape(), ShardedUserRepository::buildQuery);
+        Object[] parameters = parameters(criteria, limit);
+        return merge(scatter(shard -> shard.query(sql, summaryMapper, parameters)), limit);
+    }
+
+    /**
+     * 全てのシャードに並列に問い合わせます。
+     *
+     * @param query シャードへの問い合わせ
+     * @return シャードの番号順の結果
+     */
+    private <T> List<T> scatter(Function<JdbcTemplate, T> query) {
+        if (shards.size() == 1) {
+            return List.of(query.apply(shards.get(0)));
+        }
+        List<CompletableFuture<T>> futures = shards.stream()
+            .map(shard -> CompletableFuture.supplyAsync(() -> query.apply(shard), executor))
+            .toList();
+        try {
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * ID順に並んだシャードごとの結果を、ID順に上限件数までマージします。
+     *
+     * @param results シャードごとの結果
+     * @param limit 上限件数
+     * @return マージした結果
+     */
+    static List<UserSummary> merge(List<List<UserSummary>> results, int limit) {
+        record Cursor(List<UserSummary> rows, int index) {
+            UserSummary current() {
+                return rows.get(index);
+            }
+        }
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(
+            Math.max(1, results.size()), (a, b) -> Long.compare(a.current().getId(), b.current().getId()));
+        for (List<UserSummary> rows : results) {
+            if (!rows.isEmpty()) {
+                queue.add(new Cursor(rows, 0));
+            }
+        }
+        List<UserSummary> merged = new ArrayList<>(Math.min(limit, results.stream().mapToInt(List::size).sum()));
+        while (merged.size() < limit && !queue.isEmpty()) {
+            Cursor cursor = queue.poll();
+            merged.add(cursor.current());
+            if (cursor.index() + 1 < cursor.rows().size()) {
+                queue.add(new Cursor(cursor.rows(), cursor.index() + 1));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 検索条件の形に対応するSQLを組み立てます。
+     * 各シャードはID順に上限件数まで返します（全体の上位は、各シャードの上位に必ず含まれるため）。
+     *
+     * @param shape 検索条件の形
+     * @return SQL
+     */
+    static String buildQuery(Shape shape) {
+        List<String> conditions = new ArrayList<>();
+        appendMatch(conditions, "u.name_normalized", shape.nameMode());
+        appendMatch(conditions, "u.email_normalized", shape.emailMode());
+        if (shape.roleFilter() == RoleFilter.MASK) {
+            conditions.add("u.role_mask IN (" + String.join(", ", Collections.nCopies(ROLE_MASK_PARAMETERS, "?")) + ")");
+        } else if (shape.roleFilter() == RoleFilter.JOIN) {
+            conditions.add("EXISTS (SELECT 1 FROM user_roles ur JOIN roles r ON r.id = ur.role_id "
+                + "WHERE ur.user_id = u.id AND r.name = ?)");
+        }
+        StringBuilder sql = new StringBuilder(SELECT_COLUMNS);
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        return sql.append(" ORDER BY u.id FETCH FIRST ? ROWS ONLY").toString();
+    }
+
+    private static void appendMatch(List<String> conditions, String column, MatchMode mode) {
+        if (mode == MatchMode.PREFIX) {
+            conditions.add(column + " >= ? AND " + column + " < ?");
+        } else if (mode == MatchMode.CONTAINS) {
+            conditions.add(column + " LIKE ? ESCAPE '\\'");
+        }
+    }
+
+    private static Object[] parameters(UserSearchCriteria criteria, int limit) {
+        List<Object> parameters = new ArrayList<>();
+        bindMatch(parameters, criteria.name(), criteria.nameMode());
+        bindMatch(parameters, criteria.email(), criteria.emailMode());
+        RoleFilter roleFilter = criteria.shape().roleFilter();
+        if (roleFilter == RoleFilter.MASK) {
+            parameters.addAll(RoleMask.masksContaining(RoleMask.bitOf(criteria.role())));
+        } else if (roleFilter == RoleFilter.JOIN) {
+            parameters.add(criteria.role());
+        }
+        parameters.add(limit);
+        return parameters.toArray();
+    }
+
+    private static void bindMatch(List<Object> parameters, String value, MatchMode mode) {
+        if (mode == MatchMode.PREFIX) {
+            parameters.add(value);
+            parameters.add(UserSearchRepositoryImpl.prefixUpperBound(value));
+        } else if (mode == MatchMode.CONTAINS) {
+            parameters.add("%" + UserSearchRepositoryImpl.escapeLike(value) + "%");
+        }
+    }
+
+    private UserSummary mapSummary(ResultSet resultSet, int rowNum) throws SQLException {
+        int roleMask = resultSet.getInt(4);
+        String roleName = RoleMask.nameOf(RoleMask.primary(roleMask));
+        if (roleName == null) {
+            roleName = resultSet.getString(6);
+        }
+        Role role = roleName == null ? null : roles.computeIfAbsent(roleName, Role::new);
+        Timestamp updatedAt = resultSet.getTimestamp(5);
+        return UserSummary.of(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3), role, roleMask,
+            updatedAt == null ? null : updatedAt.toLocalDateTime());
+    }
+}
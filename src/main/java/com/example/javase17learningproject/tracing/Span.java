@@ -0,0 +1,112 @@
+package com.example.javase17learningproject.tracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * トレースの区間。
+ * {@link Tracer#start(String)} で開始し、{@link #close()} で終了します。区間は開始したスレッドだけが操作します。
+ *
+ * <p>トレース中でない場合は何も記録しない区間 ({@link #NOOP}) が返されるため、呼び出し元は常に
+ * try-with-resources で囲むだけで済みます。
+ */
+public class Span implements AutoCloseable {
+
+    /** 何も記録しない区間。 */
+    static final Span NOOP = new Span(null, null, null, 0) {
+        @Override
+        public void close() {
+        }
+    };
+
+    private final Tracer.ActiveTrace trace;
+    private final Span parent;
+    private final String name;
+    private final long startNanos;
+    private long endNanos = -1;
+    private List<Span> children = List.of();
+
+    Span(Tracer.ActiveTrace trace, Span parent, String name, long startNanos) {
+        this.trace = trace;
+        this.parent = parent;
+        this.name = name;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * 区間を終了します。
+     * 終了していない子の区間がある場合は、それらも同じ時刻で終了します。
+     */
+    @Override
+    public void close() {
+        if (endNanos >= 0) {
+            return;
+        }
+        trace.end(this, System.nanoTime());
+    }
+
+    void end(long nanos) {
+        for (Span child : children) {
+            if (child.endNanos < 0) {
+                child.end(nanos);
+            }
+        }
+        endNanos = nanos;
+    }
+
+    void addChild(Span child) {
+        if (children.isEmpty()) {
+            children = new ArrayList<>();
+        }
+        children.add(child);
+    }
+
+    /**
+     * 指定された時刻以降に開始した子の区間を取り除いて返します。
+     */
+    List<Span> removeChildrenSince(long nanos) {
+        if (children.isEmpty()) {
+            return List.of();
+        }
+        List<Span> moved = new ArrayList<>();
+        children.removeIf(child -> {
+            if (child.startNanos >= nanos) {
+                moved.add(child);
+                return true;
+            }
+            return false;
+        });
+        return moved;
+    }
+
+    Span getParent() {
+        return parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * 区間の長さを返します。終了していない場合は現在までの長さです。
+     *
+     * @return 区間の長さ（ナノ秒）
+     */
+    public long getDurationNanos() {
+        return (endNanos < 0 ? System.nanoTime() : endNanos) - startNanos;
+    }
+
+    /**
+     * 子の区間を開始順に返します。
+     *
+     * @return 子の区間
+     */
+    public List<Span> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.javase17learningproject.tracing;
+
+import java.time.Instant;
+
+/**
+ * 終了したトレース。
+ *
+ * @param name トレースの名前（リクエストのメソッドとパスのパターン）
+ * @param startedAt 開始日時
+ * @param root ルートの区間
+ * @param spanCount 記録した区間の数
+ * @param droppedSpans 上限を超えたため記録しなかった区間の数
+ */
+public record Trace(String name, Instant startedAt, Span root, int spanCount, int droppedSpans) {
+
+    /**
+     * トレースの長さを返します。
+     *
+     * @return トレースの長さ（ナノ秒）
+     */
+    public long durationNanos() {
+        return root.getDurationNanos();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.javase17learningproject.tracing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * トレースをテキストに整形するユーティリティ。
+ * <ul>
+ *   <li>{@link #tree(Trace)}: 区間の木を、同じ親の下の同じ名前の区間をまとめてフレームグラフ風に表示する</li>
+ *   <li>{@link #folded(List)}: flamegraph.pl などで読み込める折り畳み形式 ({@code a;b;c 自身の時間(µs)})</li>
+ * </ul>
+ */
+public final class TraceFormatter {
+
+    /** 割合を表すバーの最大の長さ。 */
+    private static final int BAR_WIDTH = 40;
+
+    private TraceFormatter() {
+    }
+
+    /**
+     * 同じ名前の区間をまとめたノード。
+     */
+    private static final class Node {
+
+        private final String name;
+        private long totalNanos;
+        private int count;
+        private final List<Span> spans = new ArrayList<>();
+
+        Node(String name) {
+            this.name = name;
+        }
+
+        long selfNanos() {
+            long children = 0;
+            for (Span span : spans) {
+                for (Span child : span.getChildren()) {
+                    children += child.getDurationNanos();
+                }
+            }
+            return Math.max(0, totalNanos - children);
+        }
+
+        List<Node> children() {
+            List<Span> children = new ArrayList<>();
+            for (Span span : spans) {
+                children.addAll(span.getChildren());
+            }
+            return group(children);
+        }
+    }
+
+    private static List<Node> group(List<Span> spans) {
+        Map<String, Node> nodes = new LinkedHashMap<>();
+        for (Span span : spans) {
+            Node node = nodes.computeIfAbsent(span.getName(), Node::new);
+            node.totalNanos += span.getDurationNanos();
+            node.count++;
+            node.spans.add(span);
+        }
+        return new ArrayList<>(nodes.values());
+    }
+
+    private static Node rootOf(Trace trace) {
+        Node root = new Node(trace.name());
+        root.totalNanos = trace.durationNanos();
+        root.count = 1;
+        root.spans.add(trace.root());
+        return root;
+    }
+
+    /**
+     * トレースを区間の木として整形します。
+     * 各行は 合計時間・自身の時間・トレース全体に対する割合・呼び出し回数・名前 です。
+     *
+     * @param trace トレース
+     * @return 整形したテキスト
+     */
+    public static String tree(Trace trace) {
+        StringBuilder text = new StringBuilder(String.format("%s  %.1f ms  %s  spans=%d%s%n",
+            trace.name(), trace.durationNanos() / 1_000_000.0, trace.startedAt(), trace.spanCount(),
+            trace.droppedSpans() > 0 ? " (dropped=" + trace.droppedSpans() + ")" : ""));
+        text.append(String.format("%10s %10s %7s %6s  %s%n", "total(ms)", "self(ms)", "%", "calls", "span"));
+        appendNode(text, rootOf(trace), trace.durationNanos(), 0);
+        return text.toString();
+    }
+
+    private static void appendNode(StringBuilder text, Node node, long traceNanos, int depth) {
+        double ratio = traceNanos == 0 ? 0.0 : (double) node.totalNanos / traceNanos;
+        text.append(String.format("%10.2f %10.2f %6.1f%% %6d  %s%s %s%n",
+            node.totalNanos / 1_000_000.0, node.selfNanos() / 1_000_000.0, ratio * 100, node.count,
+            "  ".repeat(depth), "#".repeat((int) Math.round(Math.min(1.0, ratio) * BAR_WIDTH)), node.name));
+        for (Node child : node.children()) {
+            appendNode(text, child, traceNanos, depth + 1);
+        }
+    }
+
+    /**
+     * トレースを折り畳み形式に整形します。同じ経路の区間の自身の時間は合計します。
+     *
+     * @param traces トレース
+     * @return 1行に1経路の折り畳み形式のテキスト
+     */
+    public static String folded(List<Trace> traces) {
+        Map<String, Long> stacks = new LinkedHashMap<>();
+        for (Trace trace : traces) {
+            collect(stacks, rootOf(trace), "");
+        }
+        StringBuilder text = new StringBuilder();
+        stacks.forEach((stack, micros) -> text.append(stack).append(' ').append(micros).append('\n'));
+        return text.toString();
+    }
+
+    private static void collect(Map<String, Long> stacks, Node node, String prefix) {
+        // 折り畳み形式では ; が区切り文字のため、名前の中の ; は置き換える
+        String stack = prefix + node.name.replace(';', ',');
+        stacks.merge(stack, node.selfNanos() / 1_000, Long::sum);
+        for (Node child : node.children()) {
+            collect(stacks, child, stack + ";");
+        }
+    }
+}
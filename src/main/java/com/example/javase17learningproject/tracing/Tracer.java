@@ -0,0 +1,217 @@
+package com.example.javase17learningproject.tracing;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * プロセス内のリクエストのトレーサー。
+ * 抽出したリクエスト ({@code app.tracing.sample-rate}) について、フィルタ・認可の判定・リポジトリ・SQL・テンプレートの描画の
+ * 区間を木構造で記録します。外部のコレクターは使用しません。
+ *
+ * <p>トレースはリクエストを処理するスレッドに結び付けます。抽出されなかったリクエストや、リクエスト以外のスレッド
+ * (変更イベントの購読者など) では、{@link #start(String)} は何も記録しない区間を返します。
+ *
+ * <p>しきい値 ({@code app.tracing.slow-threshold}) 以上かかったトレースは、直近の
+ * {@code app.tracing.buffer-size} 件をリングバッファに保持し、管理画面 ({@code /admin/traces}) で参照できます。
+ */
+@Component
+public class Tracer implements MeterBinder {
+
+    @Value("${app.tracing.sample-rate:0.1}")
+    private double sampleRate;
+
+    @Value("${app.tracing.slow-threshold:PT0.2S}")
+    private Duration slowThreshold;
+
+    @Value("${app.tracing.max-spans:2000}")
+    private int maxSpans;
+
+    private final ThreadLocal<ActiveTrace> current = new ThreadLocal<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Trace[] slowTraces;
+    private long recorded;
+
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+
+    public Tracer(@Value("${app.tracing.buffer-size:50}") int bufferSize) {
+        this.slowTraces = new Trace[Math.max(1, bufferSize)];
+    }
+
+    /**
+     * リクエストのトレースを開始します。
+     * 抽出されなかった場合や、このスレッドで既にトレース中の場合はnullを返します。
+     *
+     * @param name ルートの区間の名前
+     * @return 開始したトレース。開始しなかった場合はnull
+     */
+    public ActiveTrace begin(String name) {
+        if (current.get() != null || !sample()) {
+            return null;
+        }
+        ActiveTrace trace = new ActiveTrace(name);
+        current.set(trace);
+        sampled.increment();
+        return trace;
+    }
+
+    private boolean sample() {
+        return sampleRate >= 1.0 || (sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    /**
+     * このスレッドのトレースに区間を開始します。
+     *
+     * @param name 区間の名前
+     * @return 開始した区間。トレース中でない場合は何も記録しない区間
+     */
+    public Span start(String name) {
+        ActiveTrace trace = current.get();
+        return trace == null ? Span.NOOP : trace.start(name);
+    }
+
+    /**
+     * 指定された時刻から現在までの区間を、現在の区間の子として後から記録します。
+     * その時刻以降に開始した子の区間は、記録した区間の子に移します。
+     * 開始と終了を同じ場所で囲めない処理 (フィルタチェーンの前半など) に使用します。
+     *
+     * @param name 区間の名前
+     * @param startNanos 開始時刻 ({@link System#nanoTime()})
+     */
+    public void enclose(String name, long startNanos) {
+        ActiveTrace trace = current.get();
+        if (trace != null) {
+            trace.enclose(name, startNanos);
+        }
+    }
+
+    /**
+     * このスレッドがトレース中かどうかを返します。
+     *
+     * @return トレース中の場合はtrue
+     */
+    public boolean isTracing() {
+        return current.get() != null;
+    }
+
+    /**
+     * 保持している遅いトレースを新しい順に返します。
+     *
+     * @return 遅いトレース
+     */
+    public List<Trace> getSlowTraces() {
+        lock.lock();
+        try {
+            int size = (int) Math.min(recorded, slowTraces.length);
+            List<Trace> traces = new ArrayList<>(size);
+            for (int i = 1; i <= size; i++) {
+                traces.add(slowTraces[(int) ((recorded - i) % slowTraces.length)]);
+            }
+            return traces;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(Trace trace) {
+        if (trace.durationNanos() < slowThreshold.toNanos()) {
+            return;
+        }
+        slow.increment();
+        lock.lock();
+        try {
+            slowTraces[(int) (recorded % slowTraces.length)] = trace;
+            recorded++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("tracing.traces", sampled, LongAdder::sum)
+            .description("抽出してトレースしたリクエストの数")
+            .register(registry);
+        FunctionCounter.builder("tracing.slow", slow, LongAdder::sum)
+            .description("しきい値以上かかったトレースの数")
+            .register(registry);
+    }
+
+    /**
+     * スレッドで実行中のトレース。
+     */
+    public final class ActiveTrace {
+
+        private final Instant startedAt = Instant.now();
+        private final Span root;
+        private Span currentSpan;
+        private int spanCount = 1;
+        private int droppedSpans;
+
+        private ActiveTrace(String name) {
+            this.root = new Span(this, null, name, System.nanoTime());
+            this.currentSpan = root;
+        }
+
+        Span start(String name) {
+            if (spanCount >= maxSpans) {
+                droppedSpans++;
+                return Span.NOOP;
+            }
+            Span span = new Span(this, currentSpan, name, System.nanoTime());
+            currentSpan.addChild(span);
+            currentSpan = span;
+            spanCount++;
+            return span;
+        }
+
+        void enclose(String name, long startNanos) {
+            Span span = new Span(this, currentSpan, name, startNanos);
+            for (Span child : currentSpan.removeChildrenSince(startNanos)) {
+                span.addChild(child);
+            }
+            span.end(System.nanoTime());
+            currentSpan.addChild(span);
+            spanCount++;
+        }
+
+        void end(Span span, long nanos) {
+            span.end(nanos);
+            // 子より先に親が閉じられた場合も、閉じた区間の親に戻る
+            for (Span s = currentSpan; s != null; s = s.getParent()) {
+                if (s == span) {
+                    currentSpan = span.getParent() == null ? root : span.getParent();
+                    break;
+                }
+            }
+        }
+
+        /**
+         * トレースを終了します。
+         * しきい値以上かかった場合は遅いトレースとして保持します。
+         *
+         * @param name トレースの名前
+         * @return 終了したトレース
+         */
+        public Trace finish(String name) {
+            current.remove();
+            root.close();
+            Trace trace = new Trace(name, startedAt, root, spanCount, droppedSpans);
+            record(trace);
+            return trace;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.javase17learningproject.tracing;
+
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import com.example.javase17learningproject.service.AccessControlService;
+
+/**
+ * トレースの区間を記録するようにBeanを包むポストプロセッサ。
+ * <ul>
+ *   <li>データソース: SQLの実行 ({@link TracingDataSource})</li>
+ *   <li>Spring Dataのリポジトリ: メソッドの呼び出し ({@code repository UserRepository.findById} など)</li>
+ *   <li>{@link AccessControlService}: 認可の判定 ({@code access AccessControlService.canEditUser} など)</li>
+ * </ul>
+ * ポストプロセッサは他のBeanより先に作成されるため、トレーサーは最初に使用するときに取得します。
+ */
+public class TracingBeanPostProcessor implements BeanPostProcessor {
+
+    private final Supplier<Tracer> tracer;
+
+    public TracingBeanPostProcessor(Supplier<Tracer> tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        // リポジトリはファクトリの初期化時に作成されるため、初期化の前にプロキシへの追加を登録する
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+            factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                (proxyFactory, information) -> proxyFactory.addAdvice(
+                    interceptor("repository " + information.getRepositoryInterface().getSimpleName() + "."))));
+        }
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof TracingDataSource)) {
+            return new TracingDataSource(dataSource, tracer);
+        }
+        if (bean instanceof AccessControlService) {
+            ProxyFactory proxyFactory = new ProxyFactory(bean);
+            proxyFactory.setProxyTargetClass(true);
+            proxyFactory.addAdvice(interceptor("access AccessControlService."));
+            return proxyFactory.getProxy(bean.getClass().getClassLoader());
+        }
+        return bean;
+    }
+
+    private MethodInterceptor interceptor(String prefix) {
+        return invocation -> {
+            Tracer current = tracer.get();
+            if (!current.isTracing()) {
+                return invocation.proceed();
+            }
+            try (Span span = current.start(prefix + invocation.getMethod().getName())) {
+                return invocation.proceed();
+            }
+        };
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.javase17learningproject.tracing;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * SQLの実行を区間として記録するデータソース。
+ * 接続とステートメントをプロキシで包み、{@code execute*} の呼び出しをSQL文を名前にした区間にします。
+ * プロキシで包むのはトレース中のスレッドが取得した接続と作成したステートメントだけで、
+ * 抽出されなかったリクエストでは元の接続とステートメントをそのまま返します。
+ *
+ * <p>{@link DelegatingDataSource} を継承するため、接続プールのメトリクスなどは {@code unwrap} で元のデータソースを参照できます。
+ * データソースのBeanを置き換えるため、コンテキストの終了時には {@link #close()} で元のデータソース（接続プール）を閉じます。
+ */
+public class TracingDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    /** 区間の名前に含めるSQL文の最大文字数。 */
+    private static final int MAX_SQL_LENGTH = 200;
+
+    private final Supplier<Tracer> tracer;
+
+    public TracingDataSource(DataSource targetDataSource, Supplier<Tracer> tracer) {
+        super(targetDataSource);
+        this.tracer = tracer;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return traced(obtainTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return traced(obtainTargetDataSource().getConnection(username, password));
+    }
+
+    /**
+     * 元のデータソースが閉じられる場合（接続プールなど）は閉じます。
+     *
+     * @throws Exception 元のデータソースを閉じるのに失敗した場合
+     */
+    @Override
+    public void close() throws Exception {
+        if (obtainTargetDataSource() instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private Connection traced(Connection connection) {
+        return tracer.get().isTracing() ? wrap(Connection.class, connection, new ConnectionHandler()) : connection;
+    }
+
+    private static <T> T wrap(Class<T> type, Object target, TargetHandler handler) {
+        handler.target = target;
+        return type.cast(Proxy.newProxyInstance(TracingDataSource.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    static String spanName(String sql) {
+        if (sql == null) {
+            return "sql";
+        }
+        String normalized = sql.strip().replaceAll("\\s+", " ");
+        return "sql " + (normalized.length() > MAX_SQL_LENGTH ? normalized.substring(0, MAX_SQL_LENGTH) + "..." : normalized);
+    }
+
+    private abstract static class TargetHandler implements InvocationHandler {
+
+        Object target;
+
+        @Override
+        public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            // プロキシ同士の比較は同一性で行う（委譲先に渡すとプロキシ自身と等しくならない）
+            return switch (method.getName()) {
+                case "equals" -> args != null && args.length == 1 && proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> handle(method, args);
+            };
+        }
+
+        abstract Object handle(Method method, Object[] args) throws Throwable;
+    }
+
+    /**
+     * 接続のプロキシ。トレース中に作成したステートメントをSQL文と共に包みます。
+     */
+    private final class ConnectionHandler extends TargetHandler {
+
+        @Override
+        Object handle(Method method, Object[] args) throws Throwable {
+            Object result = TracingDataSource.invoke(method, target, args);
+            if (!tracer.get().isTracing()) {
+                return result;
+            }
+            String name = method.getName();
+            if (name.equals("prepareStatement") && result instanceof PreparedStatement) {
+                return wrap(PreparedStatement.class, result, new StatementHandler((String) args[0]));
+            }
+            if (name.equals("prepareCall") && result instanceof CallableStatement) {
+                return wrap(CallableStatement.class, result, new StatementHandler((String) args[0]));
+            }
+            if (name.equals("createStatement") && result instanceof Statement) {
+                return wrap(Statement.class, result, new StatementHandler(null));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * ステートメントのプロキシ。実行を区間として記録します。
+     */
+    private final class StatementHandler extends TargetHandler {
+
+        private final String sql;
+
+        StatementHandler(String sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        Object handle(Method method, Object[] args) throws Throwable {
+            Tracer current = tracer.get();
+            if (!method.getName().startsWith("execute") || !current.isTracing()) {
+                return TracingDataSource.invoke(method, target, args);
+            }
+            // Statement#execute(String) などはSQL文を引数で受け取る
+            String statement = args != null && args.length > 0 && args[0] instanceof String s ? s : sql;
+            try (Span span = current.start(spanName(statement))) {
+                return TracingDataSource.invoke(method, target, args);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.javase17learningproject.tracing;
+
+import java.io.IOException;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * リクエストのトレースを開始・終了するフィルタ。
+ * セキュリティのフィルタより前に登録し、抽出したリクエストのルートの区間を記録します。
+ *
+ * <p>セキュリティのフィルタの直後に {@link #securityBoundary(Tracer)} を登録すると、
+ * リクエストの開始からそこまでを {@code security} の区間として記録します（認可の判定はその子になります）。
+ * セキュリティのフィルタで応答した場合 (ログイン画面へのリダイレクトなど) は、リクエスト全体を {@code security} とします。
+ */
+public class TracingFilter extends OncePerRequestFilter {
+
+    /** フィルタチェーンの区間の名前。 */
+    public static final String SECURITY_SPAN = "security";
+
+    private static final String START_ATTRIBUTE = TracingFilter.class.getName() + ".START";
+    private static final String BOUNDARY_ATTRIBUTE = TracingFilter.class.getName() + ".BOUNDARY";
+
+    private final Tracer tracer;
+
+    public TracingFilter(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Tracer.ActiveTrace trace = tracer.begin(request.getMethod() + " " + request.getRequestURI());
+        if (trace == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        long start = System.nanoTime();
+        request.setAttribute(START_ATTRIBUTE, start);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.getAttribute(BOUNDARY_ATTRIBUTE) == null) {
+                tracer.enclose(SECURITY_SPAN, start);
+            }
+            trace.finish(nameOf(request));
+        }
+    }
+
+    /**
+     * トレースの名前を返します。ハンドラーが決まった場合はパスのパターン ({@code /users/{id}/edit}) を使用します。
+     */
+    private static String nameOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+    }
+
+    /**
+     * セキュリティのフィルタの直後に登録するフィルタを返します。
+     *
+     * @param tracer トレーサー
+     * @return フィルタ
+     */
+    public static Filter securityBoundary(Tracer tracer) {
+        return (request, response, chain) -> {
+            Object start = request.getAttribute(START_ATTRIBUTE);
+            if (start != null && request.getAttribute(BOUNDARY_ATTRIBUTE) == null) {
+                request.setAttribute(BOUNDARY_ATTRIBUTE, Boolean.TRUE);
+                tracer.enclose(SECURITY_SPAN, (Long) start);
+            }
+            chain.doFilter(request, response);
+        };
+    }
+}
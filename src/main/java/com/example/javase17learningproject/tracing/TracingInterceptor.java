@@ -0,0 +1,69 @@
+package com.example.javase17learningproject.tracing;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * コントローラーの処理とビューの描画の区間を記録するインターセプタ。
+ * ハンドラーの呼び出し ({@code handler ...}) と、Thymeleafによる描画 ({@code render ...}) を別々の区間にします。
+ *
+ * <p>非同期に処理するハンドラーでは、ハンドラーが戻った時点で区間を閉じます。
+ * 非同期ディスパッチはトレースの対象外のため、その後の処理と描画は記録しません。
+ */
+public class TracingInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String SPAN_ATTRIBUTE = TracingInterceptor.class.getName() + ".SPAN";
+
+    private final Tracer tracer;
+
+    public TracingInterceptor(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (tracer.isTracing()) {
+            request.setAttribute(SPAN_ATTRIBUTE, tracer.start("handler " + nameOf(handler)));
+        }
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                           ModelAndView modelAndView) {
+        closeSpan(request);
+        if (tracer.isTracing() && modelAndView != null && modelAndView.getViewName() != null) {
+            request.setAttribute(SPAN_ATTRIBUTE, tracer.start("render " + modelAndView.getViewName()));
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        closeSpan(request);
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        closeSpan(request);
+    }
+
+    private static void closeSpan(HttpServletRequest request) {
+        if (request.getAttribute(SPAN_ATTRIBUTE) instanceof Span span) {
+            request.removeAttribute(SPAN_ATTRIBUTE);
+            span.close();
+        }
+    }
+
+    private static String nameOf(Object handler) {
+        if (handler instanceof HandlerMethod method) {
+            return method.getBeanType().getSimpleName() + "." + method.getMethod().getName();
+        }
+        return handler.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.javase17learningproject.view;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.ui.ExtendedModelMap;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * コントローラーが返した {@link UserListView.Users} からユーザー一覧画面を組み立てる戻り値のハンドラー。
+ * {@code DeferredResult} の結果として返した場合は、非同期ディスパッチのスレッドで組み立てます。
+ */
+public class UserListReturnValueHandler implements HandlerMethodReturnValueHandler {
+
+    private final UserListView userListView;
+
+    public UserListReturnValueHandler(UserListView userListView) {
+        this.userListView = userListView;
+    }
+
+    @Override
+    public boolean supportsReturnType(MethodParameter returnType) {
+        return UserListView.Users.class.isAssignableFrom(returnType.getParameterType());
+    }
+
+    @Override
+    public void handleReturnValue(Object returnValue, MethodParameter returnType,
+                                  ModelAndViewContainer mavContainer, NativeWebRequest webRequest) {
+        ExtendedModelMap model = new ExtendedModelMap();
+        String viewName = userListView.render(((UserListView.Users) returnValue).users(), model,
+            webRequest.getNativeRequest(HttpServletRequest.class), webRequest.getNativeResponse(HttpServletResponse.class));
+        mavContainer.addAllAttributes(model);
+        mavContainer.setViewName(viewName);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.javase17learningproject.view;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.ui.Model;
+
+import com.example.javase17learningproject.directory.UserRoleCounts;
+import com.example.javase17learningproject.directory.UserSummary;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * ユーザー一覧画面 ({@code users.html}) のモデルを組み立てます。
+ * 一覧・検索のコントローラー（同期・非同期）で共通に使用します。
+ */
+@Component
+public class UserListView {
+
+    /**
+     * 一覧画面に表示するユーザー。コントローラーの戻り値にすると、
+     * {@link UserListReturnValueHandler} が一覧画面を組み立てます。
+     *
+     * @param users 表示するユーザー
+     */
+    public record Users(List<UserSummary> users) {}
+
+    /** 一覧画面のテンプレート名。 */
+    public static final String VIEW_NAME = "users";
+
+    @Autowired
+    private UserRowCache userRowCache;
+
+    @Autowired
+    private UserRoleCounts userRoleCounts;
+
+    /**
+     * ユーザー一覧画面のモデルを設定します。 行のキャッシュが有効な場合は、描画済みの行のHTMLを埋め込みます。
+     * 絞り込みボタンには、集計済みの役割ごとのユーザー数を表示します。
+     *
+     * @param users 表示するユーザー
+     * @param model モデル
+     * @param request リクエスト
+     * @param response レスポンス
+     * @return ユーザー一覧画面のテンプレート名
+     */
+    public String render(List<UserSummary> users, Model model, HttpServletRequest request, HttpServletResponse response) {
+        model.addAttribute("users", users);
+        model.addAttribute("roleCounts", userRoleCounts.getCounts());
+        if (userRowCache.isEnabled()) {
+            model.addAttribute("userRows", userRowCache.render(users, request, response));
+        }
+        return VIEW_NAME;
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.javase17learningproject.view;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.support.RequestContextUtils;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.web.IWebExchange;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import com.example.javase17learningproject.directory.UserSummary;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * ユーザー一覧の行のキャッシュ。
+ * ユーザー一覧画面 ({@code users.html}) の1行 ({@code fragments/user_row.html}) を描画したHTMLを保持し、
+ * 一覧画面では行ごとに式 (役割の {@code th:switch} とリンクの {@code th:href}) を評価せずに埋め込みます。
+ *
+ * <p>キーは (ユーザーID, 更新日時, 役割のビットマスク, ロケール) です。ユーザーが更新されると更新日時が変わるため、
+ * 古い行が表示されることはありません。役割のビットマスクは、整合性の修復 ({@code RoleMaskVerifier}) のように
+ * 更新日時を変えずに役割だけが変わる場合に備えてキーに含めます。
+ * 更新前の行は参照されなくなり、最大件数を超えると最も長く参照されていないものから削除されます (LRU)。
+ *
+ * <p>リンクにはコンテキストパスが含まれますが、アプリケーション内で一定のためキーには含めません。
+ * 行は全ての閲覧者で共有するため、リンクはURLの書き換え ({@code response.encodeURL}) をせずに描画します
+ * (Cookieのないリクエストで描画すると、そのセッションID ({@code ;jsessionid=...}) が他の閲覧者に配信されるため)。
+ * 無効にした場合 ({@code app.user-row-cache.enabled=false})、一覧画面は行ごとにテンプレートを評価します。
+ */
+@Component
+public class UserRowCache implements MeterBinder {
+
+    /** 行のテンプレート。 */
+    private static final String TEMPLATE = "fragments/user_row";
+
+    private static final Set<String> FRAGMENT = Set.of("row");
+
+    @Autowired
+    private ITemplateEngine templateEngine;
+
+    @Value("${app.user-row-cache.enabled:true}")
+    private boolean enabled;
+
+    private final int maxEntries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Key, String> rows;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * キャッシュのキー。
+     *
+     * @param id ユーザーID
+     * @param updatedAt 更新日時
+     * @param roleMask 役割のビットマスク
+     * @param locale ロケール
+     */
+    private record Key(long id, LocalDateTime updatedAt, int roleMask, Locale locale) {}
+
+    public UserRowCache(@Value("${app.user-row-cache.max-entries:10000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.rows = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+                if (size() > UserRowCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * キャッシュが有効かどうかを返します。
+     *
+     * @return 有効な場合はtrue
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * ユーザー一覧の行を描画します。
+     * キャッシュにない行だけをテンプレートで描画し、キャッシュに登録します。
+     *
+     * @param users ユーザーの一覧
+     * @param request 一覧画面のリクエスト
+     * @param response 一覧画面のレスポンス
+     * @return 行のHTML（ユーザーの一覧と同じ順序）
+     */
+    public List<String> render(List<UserSummary> users, HttpServletRequest request, HttpServletResponse response) {
+        Locale locale = RequestContextUtils.getLocale(request);
+        IWebExchange exchange = null;
+        List<String> result = new ArrayList<>(users.size());
+        for (UserSummary user : users) {
+            Key key = new Key(user.getId(), user.getUpdatedAt(), user.getRoleMask(), locale);
+            String row = get(key);
+            if (row == null) {
+                if (exchange == null) {
+                    exchange = JakartaServletWebApplication.buildApplication(request.getServletContext())
+                        .buildExchange(request, new NonEncodingResponse(response));
+                }
+                row = renderRow(user, exchange, locale);
+                put(key, row);
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    private String renderRow(UserSummary user, IWebExchange exchange, Locale locale) {
+        WebContext context = new WebContext(exchange, locale);
+        context.setVariable("user", user);
+        return templateEngine.process(TEMPLATE, FRAGMENT, context);
+    }
+
+    /**
+     * URLにセッションIDを付けないレスポンス。共有する行のリンクの描画に使用します。
+     */
+    private static final class NonEncodingResponse extends HttpServletResponseWrapper {
+
+        NonEncodingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public String encodeURL(String url) {
+            return url;
+        }
+
+        @Override
+        public String encodeRedirectURL(String url) {
+            return url;
+        }
+    }
+
+    private String get(Key key) {
+        lock.lock();
+        try {
+            String row = rows.get(key);
+            if (row != null) {
+                hits.increment();
+                return row;
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return null;
+    }
+
+    private void put(Key key, String row) {
+        lock.lock();
+        try {
+            rows.put(key, row);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 全ての行を削除します。
+     * テンプレートを変更した場合などに使用します。
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            rows.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return rows.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.row.cache.gets", hits, LongAdder::sum)
+            .tag("result", "hit")
+            .description("ユーザー一覧の行のキャッシュの参照回数")
+            .register(registry);
+        FunctionCounter.builder("user.row.cache.gets", misses, LongAdder::sum)
+            .tag("result", "miss")
+            .description("ユーザー一覧の行のキャッシュの参照回数")
+            .register(registry);
+        FunctionCounter.builder("user.row.cache.evictions", evictions, LongAdder::sum)
+            .description("最大件数を超えたため削除された行の数")
+            .register(registry);
+        Gauge.builder("user.row.cache.size", this, UserRowCache::size)
+            .description("ユーザー一覧の行のキャッシュの行数")
+            .register(registry);
+    }
+}
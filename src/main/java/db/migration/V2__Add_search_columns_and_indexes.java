@@ -0,0 +1,116 @@
+package db.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.Normalizer;
+import java.util.Locale;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+/**
+ * 検索用の正規化カラムとインデックスを追加するマイグレーション。
+ * 名前の正規化 (NFKC、カナの統一) はSQLで表現できないため、Javaで既存行を埋め戻します。
+ * インデックスは埋め戻しの後に作成し、大量行の更新でインデックス更新のコストがかからないようにします。
+ *
+ * <p>正規化はこのバージョン時点の {@code SearchNormalizer} の処理を複製したものです。
+ * 適用済みのマイグレーションの結果が変わらないよう、アプリケーションのクラスは参照しません
+ * (正規化を変更する場合は、新しいマイグレーションで埋め戻します)。
+ */
+public class V2__Add_search_columns_and_indexes extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final char KATAKANA_FIRST = '\u30A1'; // ァ
+    private static final char KATAKANA_LAST = '\u30F6';  // ヶ
+    private static final int KATAKANA_TO_HIRAGANA = 0x60;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE users ADD COLUMN name_normalized VARCHAR(255)");
+            statement.execute("ALTER TABLE users ADD COLUMN email_normalized VARCHAR(255)");
+        }
+
+        backfill(connection);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE INDEX idx_user_name ON users (name)");
+            statement.execute("CREATE INDEX idx_user_name_normalized ON users (name_normalized)");
+            statement.execute("CREATE UNIQUE INDEX idx_user_email ON users (email_normalized)");
+            statement.execute("CREATE INDEX idx_user_role ON user_roles (user_id, role_id)");
+            statement.execute("ALTER TABLE roles DROP CONSTRAINT uk_roles_name");
+            statement.execute("CREATE UNIQUE INDEX idx_role_name ON roles (name)");
+        }
+    }
+
+    /**
+     * 既存のユーザーの正規化カラムをIDの昇順にバッチで埋め戻します。
+     *
+     * @param connection マイグレーション用の接続
+     * @throws SQLException SQLの実行に失敗した場合
+     */
+    private void backfill(Connection connection) throws SQLException {
+        long lastId = Long.MIN_VALUE;
+        try (PreparedStatement select = connection.prepareStatement(
+                 "SELECT id, name, email FROM users WHERE id > ? ORDER BY id FETCH FIRST " + BATCH_SIZE + " ROWS ONLY");
+             PreparedStatement update = connection.prepareStatement(
+                 "UPDATE users SET name_normalized = ?, email_normalized = ? WHERE id = ?")) {
+            while (true) {
+                int rows = 0;
+                select.setLong(1, lastId);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        lastId = resultSet.getLong(1);
+                        update.setString(1, normalizeName(resultSet.getString(2)));
+                        update.setString(2, normalizeEmail(resultSet.getString(3)));
+                        update.setLong(3, lastId);
+                        update.addBatch();
+                        rows++;
+                    }
+                }
+                if (rows == 0) {
+                    return;
+                }
+                update.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * メールアドレスを正規化します（前後の空白の除去、小文字化）。
+     */
+    private static String normalizeEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        return email.strip().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 名前を正規化します（NFKC正規化、前後の空白の除去、小文字化、カタカナからひらがなへの変換）。
+     */
+    private static String normalizeName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String normalized = Normalizer.normalize(name, Normalizer.Form.NFKC)
+            .strip()
+            .toLowerCase(Locale.ROOT);
+        StringBuilder builder = null;
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (c >= KATAKANA_FIRST && c <= KATAKANA_LAST) {
+                if (builder == null) {
+                    builder = new StringBuilder(normalized);
+                }
+                builder.setCharAt(i, (char) (c - KATAKANA_TO_HIRAGANA));
+            }
+        }
+        return builder == null ? normalized : builder.toString();
+    }
+}
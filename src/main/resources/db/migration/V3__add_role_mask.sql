@@ -0,0 +1,20 @@
+-- 役割のビットマスク (RoleMask) を users に非正規化する
+-- 役割の正は user_roles であり、ビットの値は RoleMask の定義と一致させること
+-- (ADMIN=1, MODERATOR=2, USER=4, それ以外=8)
+
+ALTER TABLE users ADD COLUMN role_mask INTEGER DEFAULT 0 NOT NULL;
+
+UPDATE users u SET role_mask = COALESCE((
+    SELECT BIT_OR_AGG(CASE r.name
+                          WHEN 'ADMIN' THEN 1
+                          WHEN 'MODERATOR' THEN 2
+                          WHEN 'USER' THEN 4
+                          ELSE 8
+                      END)
+    FROM user_roles ur
+    JOIN roles r ON r.id = ur.role_id
+    WHERE ur.user_id = u.id
+), 0);
+
+-- 役割の絞り込みは role_mask IN (...) で行うため、インデックスは埋め戻しの後に作成する
+CREATE INDEX idx_user_role_mask ON users (role_mask);
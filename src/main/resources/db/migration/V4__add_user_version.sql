@@ -0,0 +1,4 @@
+-- 楽観的ロック (User の @Version) 用のバージョン列
+-- 既存の行は0から開始し、更新のたびにHibernateが1ずつ増やす
+
+ALTER TABLE users ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
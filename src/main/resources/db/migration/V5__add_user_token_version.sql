@@ -0,0 +1,4 @@
+-- APIトークンの失効用のカウンター
+-- トークンには発行時点の値を含め、値を増やすとそのユーザーの発行済みのトークンは全て無効になる
+
+ALTER TABLE users ADD COLUMN token_version INTEGER DEFAULT 0 NOT NULL;
@@ -0,0 +1,7 @@
+-- ユーザーの論理削除 (User の deletedAt)
+-- 削除済みのユーザーはアプリケーションのクエリから除外され、UserPurger がバッチで物理削除する
+
+ALTER TABLE users ADD COLUMN deleted_at TIMESTAMP(6);
+
+-- 物理削除の対象 (deleted_at が一定時間より前) の範囲検索用
+CREATE INDEX idx_user_deleted_at ON users (deleted_at);
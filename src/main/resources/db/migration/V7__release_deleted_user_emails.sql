@@ -0,0 +1,5 @@
+-- 論理削除したユーザーのメールアドレスを一意インデックス (idx_user_email) から外す
+-- 削除済みのユーザーは email_normalized を持たず (User の updateDerivedColumns)、同じメールアドレスで物理削除の前に再登録できる
+-- 元のメールアドレスは email に残る
+
+UPDATE users SET email_normalized = NULL WHERE deleted_at IS NOT NULL;
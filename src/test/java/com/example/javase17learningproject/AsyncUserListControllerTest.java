@@ -0,0 +1,186 @@
+package com.example.javase17learningproject;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.is;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MvcResult;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrlPattern;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+import com.example.javase17learningproject.directory.UserDirectory;
+import com.example.javase17learningproject.service.AccessControlService;
+import com.example.javase17learningproject.view.UserListView;
+
+/**
+ * 非同期モードのユーザー一覧・検索 ({@code app.async-users.enabled=true}) のテストクラス。
+ * 検索を専用のスレッドプールで実行して一覧画面を描画すること、検索のスレッドに認証情報と自身の書き込みが引き継がれることを検証します。
+ */
+@SpringBootTest(properties = {
+    "app.async-users.enabled=true",
+    // このコンテキストの起動 (ddl-auto=create-drop) で、他のテストのコンテキストと共有するデータベースを作り直さない
+    "spring.datasource.url=jdbc:h2:mem:asyncusers"
+})
+@AutoConfigureMockMvc
+public class AsyncUserListControllerTest {
+
+    private static final String PASSWORD = "password123";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private AccessControlService accessControlService;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Autowired
+    @Qualifier("userQueryExecutor")
+    private AsyncTaskExecutor userQueryExecutor;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.clearContext();
+        userRepository.deleteAll();
+        Role userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+        user = userRepository.save(new User("asyncUser", "async-user@example.com", userRole, PASSWORD));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testListUsersAsync() throws Exception {
+        MvcResult result = mockMvc.perform(get("/users"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        // 検索のスレッドは検索結果だけを設定し、一覧画面は非同期ディスパッチで組み立てる
+        assertThat(result.getAsyncResult()).isInstanceOf(UserListView.Users.class);
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(view().name("users"))
+            .andExpect(model().attribute("users", hasItem(hasProperty("id", is(user.getId())))))
+            .andExpect(model().attributeExists("userRows", "roleCounts"));
+    }
+
+    @Test
+    void testSearchUsersAsync() throws Exception {
+        MockHttpSession session = (MockHttpSession) mockMvc.perform(
+                formLogin("/login").user(user.getEmail()).password(PASSWORD))
+            .andExpect(status().is3xxRedirection())
+            .andReturn().getRequest().getSession(false);
+
+        MvcResult result = mockMvc.perform(get("/users/search").param("name", "asyncUser").session(session))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(view().name("users"))
+            .andExpect(model().attribute("users", contains(hasProperty("id", is(user.getId())))));
+    }
+
+    @Test
+    void testListReflectsOwnWriteWhileDirectoryLags() throws Exception {
+        Role adminRole = roleRepository.findByName("ADMIN").orElseGet(() -> roleRepository.save(new Role("ADMIN")));
+        User admin = userRepository.save(new User("asyncAdmin", "async-admin@example.com", adminRole, PASSWORD));
+        MockHttpSession session = (MockHttpSession) mockMvc.perform(
+                formLogin("/login").user(admin.getEmail()).password(PASSWORD))
+            .andExpect(status().is3xxRedirection())
+            .andReturn().getRequest().getSession(false);
+
+        // 読み取りモデルへの変更の適用を止め、読み取りモデルの遅れを再現する
+        ReentrantLock directoryWriteLock = (ReentrantLock) ReflectionTestUtils.getField(userDirectory, "writeLock");
+        directoryWriteLock.lock();
+        try {
+            mockMvc.perform(post("/users/" + user.getId()).session(session).with(csrf())
+                    .param("name", "asyncRenamed").param("email", user.getEmail()).param("role", "USER"))
+                .andExpect(redirectedUrl("/users"));
+
+            MvcResult result = mockMvc.perform(get("/users").session(session))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+            mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("users",
+                    hasItem(allOf(hasProperty("id", is(user.getId())), hasProperty("name", is("asyncRenamed"))))));
+        } finally {
+            directoryWriteLock.unlock();
+        }
+    }
+
+    @Test
+    void testSearchRequiresLogin() throws Exception {
+        mockMvc.perform(get("/users/search").param("name", "asyncUser"))
+            .andExpect(status().is3xxRedirection())
+            .andExpect(redirectedUrlPattern("**/login"))
+            .andExpect(request().asyncNotStarted());
+    }
+
+    @Test
+    void testExecutorPropagatesSecurityContext() throws Exception {
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        Authentication auth = new UsernamePasswordAuthenticationToken(
+            user, null, List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        context.setAuthentication(auth);
+        SecurityContextHolder.setContext(context);
+
+        // 登録したスレッドの認証情報で、検索のスレッドから認可の判定ができる
+        boolean allowed = userQueryExecutor.submit(() -> accessControlService.canViewUsersByRole("USER"))
+            .get(5, TimeUnit.SECONDS);
+        boolean denied = userQueryExecutor.submit(() -> accessControlService.canViewUsersByRole("ADMIN"))
+            .get(5, TimeUnit.SECONDS);
+        assertThat(allowed).isTrue();
+        assertThat(denied).isFalse();
+
+        // 認証情報のないスレッドから登録した検索には、前の検索の認証情報が残らない
+        SecurityContextHolder.clearContext();
+        Authentication leaked = userQueryExecutor.submit(() -> SecurityContextHolder.getContext().getAuthentication())
+            .get(5, TimeUnit.SECONDS);
+        assertThat(leaked).isNull();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.javase17learningproject;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * AuthoritySetsのテストクラス。
+ * 同じ役割の組み合わせで同じ権限リストが共有されることを検証します。
+ */
+public class AuthoritySetsTest {
+
+    @Test
+    void testKnownRolesUseMaskTable() {
+        Set<Role> roles = Set.of(new Role("ADMIN"), new Role("USER"));
+        assertThat(AuthoritySets.of(RoleMask.of(roles), roles))
+            .isSameAs(RoleMask.knownAuthorities(RoleMask.ADMIN | RoleMask.USER));
+        assertThat(AuthoritySets.authority("USER")).isSameAs(RoleMask.knownAuthorities(RoleMask.USER).get(0));
+    }
+
+    @Test
+    void testUndefinedRoleCombinationsAreShared() {
+        Set<Role> first = Set.of(new Role("SETS_AUDITOR"), new Role("USER"), new Role("SETS_OPERATOR"));
+        Set<Role> second = Set.of(new Role("SETS_OPERATOR"), new Role("SETS_AUDITOR"), new Role("USER"));
+
+        int interned = AuthoritySets.internedCount();
+        List<GrantedAuthority> authorities = AuthoritySets.of(RoleMask.of(first), first);
+        assertThat(AuthoritySets.of(RoleMask.of(second), second)).isSameAs(authorities);
+        assertThat(AuthoritySets.internedCount()).isEqualTo(interned + 1);
+        // 定義済みの役割を先に、定義済み以外の役割を名前の順に並べる
+        assertThat(authorities).extracting(GrantedAuthority::getAuthority)
+            .containsExactly("ROLE_USER", "ROLE_SETS_AUDITOR", "ROLE_SETS_OPERATOR");
+        assertThat(authorities.get(0)).isSameAs(AuthoritySets.authority("USER"));
+        assertThat(authorities.get(1)).isSameAs(AuthoritySets.authority("SETS_AUDITOR"));
+
+        Set<Role> other = Set.of(new Role("SETS_AUDITOR"));
+        assertThat(AuthoritySets.of(RoleMask.of(other), other))
+            .extracting(GrantedAuthority::getAuthority).containsExactly("ROLE_SETS_AUDITOR");
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.javase17learningproject;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * persistentプロファイルのテストクラス。
+ * Flywayのマイグレーションで作成したスキーマがエンティティのマッピングと一致することを検証します。
+ */
+@SpringBootTest
+@ActiveProfiles("persistent")
+public class PersistentProfileTest {
+
+    @TempDir
+    static Path dataDir;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("APP_DATA_DIR", () -> dataDir.toString());
+        // マイグレーションとエンティティの不一致を検出するため、テストではスキーマ検証を行う
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Test
+    void testMigrationsApplied() {
+        Integer failed = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM \"flyway_schema_history\" WHERE \"success\" = FALSE", Integer.class);
+        Integer applied = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM \"flyway_schema_history\"", Integer.class);
+
+        assertThat(failed).isZero();
+        assertThat(applied).isPositive();
+    }
+
+    @Test
+    void testSearchIndexesCreated() {
+        Integer indexes = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME IN "
+                + "('IDX_USER_NAME', 'IDX_USER_NAME_NORMALIZED', 'IDX_USER_EMAIL', 'IDX_USER_ROLE', 'IDX_ROLE_NAME', 'IDX_USER_ROLE_MASK', "
+                + "'IDX_USER_DELETED_AT')",
+            Integer.class);
+
+        assertThat(indexes).isEqualTo(7);
+    }
+
+    @Test
+    void testSaveAndFindUser() {
+        // テストデータの準備
+        Role role = roleRepository.findByName("persistentRole")
+            .orElseGet(() -> roleRepository.save(new Role("persistentRole")));
+        User user = userRepository.save(new User("persistentUser", "persistent@example.com", role, "password123"));
+
+        // 検証
+        assertThat(userRepository.findById(user.getId())).isPresent();
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM users WHERE email = 'persistent@example.com'", Integer.class)).isEqualTo(1);
+    }
+}
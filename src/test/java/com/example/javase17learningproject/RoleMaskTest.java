@@ -0,0 +1,57 @@
+package com.example.javase17learningproject;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+
+/**
+ * RoleMaskのテストクラス。
+ * 役割名とビットの対応、ビットマスクの計算を検証します。
+ */
+public class RoleMaskTest {
+
+    @Test
+    void testBitOf() {
+        assertThat(RoleMask.bitOf("ADMIN")).isEqualTo(RoleMask.ADMIN);
+        assertThat(RoleMask.bitOf("MODERATOR")).isEqualTo(RoleMask.MODERATOR);
+        assertThat(RoleMask.bitOf("USER")).isEqualTo(RoleMask.USER);
+        assertThat(RoleMask.bitOf("AUDITOR")).isEqualTo(RoleMask.OTHER);
+        assertThat(RoleMask.bitOf(null)).isEqualTo(RoleMask.OTHER);
+        assertThat(RoleMask.nameOf(RoleMask.MODERATOR)).isEqualTo("MODERATOR");
+        assertThat(RoleMask.nameOf(RoleMask.OTHER)).isNull();
+    }
+
+    @Test
+    void testOf() {
+        assertThat(RoleMask.of(Set.of(new Role("ADMIN"), new Role("USER")))).isEqualTo(RoleMask.ADMIN | RoleMask.USER);
+        assertThat(RoleMask.of(Set.of(new Role("AUDITOR"), new Role("OPERATOR")))).isEqualTo(RoleMask.OTHER);
+        assertThat(RoleMask.of(Set.of())).isZero();
+        assertThat(RoleMask.of(null)).isZero();
+    }
+
+    @Test
+    void testPrimary() {
+        assertThat(RoleMask.primary(RoleMask.USER | RoleMask.MODERATOR)).isEqualTo(RoleMask.MODERATOR);
+        assertThat(RoleMask.primary(RoleMask.USER | RoleMask.OTHER)).isEqualTo(RoleMask.USER);
+        assertThat(RoleMask.primary(0)).isZero();
+    }
+
+    @Test
+    void testMasksContaining() {
+        List<Integer> masks = RoleMask.masksContaining(RoleMask.MODERATOR);
+
+        assertThat(masks).hasSize(8).allMatch(mask -> RoleMask.contains(mask, RoleMask.MODERATOR));
+        assertThat(masks).contains(RoleMask.MODERATOR, RoleMask.MODERATOR | RoleMask.USER | RoleMask.OTHER);
+    }
+
+    @Test
+    void testKnownAuthorities() {
+        assertThat(RoleMask.knownAuthorities(RoleMask.ADMIN | RoleMask.MODERATOR))
+            .extracting("authority").containsExactly("ROLE_ADMIN", "ROLE_MODERATOR");
+        assertThat(RoleMask.knownAuthorities(RoleMask.USER))
+            .isSameAs(RoleMask.knownAuthorities(RoleMask.USER));
+        assertThat(RoleMask.knownAuthorities(RoleMask.USER | RoleMask.OTHER)).isNull();
+    }
+}
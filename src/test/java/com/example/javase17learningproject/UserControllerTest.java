@@ -144,6 +144,27 @@ public class UserControllerTest {
         assertThat(updatedUser.getRole().getName()).isEqualTo("ADMIN");
     }
 
+    @Test
+    public void testUpdateUserWithStaleVersionReturnsConflict() throws Exception {
+        long staleVersion = userRepository.findById(userId).orElseThrow().getVersion();
+        User user = userRepository.findById(userId).orElseThrow();
+        user.setName("concurrentEdit");
+        userRepository.save(user);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/users/" + userId)
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .param("name", "staleEdit")
+                .param("email", "test@example.com")
+                .param("role", "ADMIN")
+                .param("version", String.valueOf(staleVersion))
+                .with(csrf()))
+                .andExpect(status().isConflict())
+                .andExpect(view().name("user_edit"))
+                .andExpect(model().attribute("conflict", true));
+
+        assertThat(userRepository.findById(userId).orElseThrow().getName()).isEqualTo("concurrentEdit");
+    }
+
     @Test
     public void testSearchUsers() throws Exception {
         // テスト前にデータをクリア
@@ -205,6 +226,19 @@ public class UserControllerTest {
                 .andExpect(model().attributeExists("users"))
                 .andExpect(model().attribute("users", hasSize(1)));
 
+        // あいまい検索（編集距離以内の名前を近い順に表示する）
+        mockMvc.perform(get("/users/search")
+                .param("name", "testUsr1")
+                .param("fuzzy", "1"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("users"))
+                .andExpect(model().attribute("users", hasSize(1)));
+        mockMvc.perform(get("/users/search")
+                .param("name", "testUsr1")
+                .param("fuzzy", "2"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("users", hasSize(2)));
+
         // 検索結果がない場合
         mockMvc.perform(get("/users/search")
                 .param("name", "nonExistingUser"))
@@ -2,6 +2,7 @@ package com.example.javase17learningproject;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import org.junit.jupiter.api.AfterEach;
@@ -68,6 +69,37 @@ public class UserRepositoryTest {
         assertThat(foundUser.get().getName()).isEqualTo("testUser");
     }
 
+    @Test
+    void testFindByEmailIgnoresCase() {
+        // テストデータの準備
+        User user = new User("testUser", "Test.User@Example.com", userRole, "password123");
+        userRepository.save(user);
+
+        // 検索の実行
+        Optional<User> foundUser = userRepository.findByEmail(" test.user@EXAMPLE.COM");
+
+        // 検証
+        assertThat(foundUser).isPresent();
+        assertThat(foundUser.get().getEmailNormalized()).isEqualTo("test.user@example.com");
+    }
+
+    @Test
+    void testFindByNamePrefixFoldsWidthAndKana() {
+        // テストデータの準備
+        User user1 = new User("ヤマダ タロウ", "yamada@example.com", userRole, "password123");
+        User user2 = new User("Ｙａｍａｍｏｔｏ", "yamamoto@example.com", userRole, "password123");
+        User user3 = new User("やまだ はなこ", "hanako@example.com", userRole, "password123");
+        userRepository.saveAll(List.of(user1, user2, user3));
+
+        // 検索の実行（半角カナ・全角英字の違いを区別しない）
+        List<User> kanaUsers = userRepository.findByNamePrefix("ﾔﾏﾀﾞ");
+        List<User> latinUsers = userRepository.findByNamePrefix("yama");
+
+        // 検証
+        assertThat(kanaUsers).extracting("name").containsExactlyInAnyOrder("ヤマダ タロウ", "やまだ はなこ");
+        assertThat(latinUsers).extracting("name").containsExactly("Ｙａｍａｍｏｔｏ");
+    }
+
     @Test
     void testFindByNameContaining() {
         // テストデータの準備
@@ -103,6 +135,59 @@ public class UserRepositoryTest {
         assertThat(adminRoleUsers).extracting("name").containsExactly("testUser2");
     }
 
+    @Test
+    void testSearchUsers() {
+        // テストデータの準備
+        User user1 = new User("testUser1", "test1@example.com", userRole, "password123");
+        User user2 = new User("testUser2", "test2@example.com", adminRole, "password123");
+        User user3 = new User("otherTest", "other@example.com", userRole, "password123");
+        userRepository.saveAll(List.of(user1, user2, user3));
+
+        // 検証（部分一致・前方一致・役割・条件なし）
+        assertThat(userRepository.searchUsers("test", null, null))
+            .extracting("name").containsExactly("testUser1", "testUser2", "otherTest");
+        assertThat(userRepository.searchUsers("test*", null, null))
+            .extracting("name").containsExactly("testUser1", "testUser2");
+        assertThat(userRepository.searchUsers("TEST*", "example.com", "USER"))
+            .extracting("name").containsExactly("testUser1");
+        assertThat(userRepository.searchUsers(null, "test2@*", null))
+            .extracting("name").containsExactly("testUser2");
+        assertThat(userRepository.searchUsers(" ", "", null)).hasSize(3);
+    }
+
+    @Test
+    void testFindByRoleUsesRoleMask() {
+        // テストデータの準備（定義済みの役割と定義済み以外の役割を併せ持つユーザーを含む）
+        Role auditorRole = roleRepository.save(new Role("AUDITOR"));
+        User user1 = new User("testUser1", "test1@example.com", Set.of(adminRole, userRole), "password123");
+        User user2 = new User("testUser2", "test2@example.com", Set.of(auditorRole, userRole), "password123");
+        User user3 = new User("testUser3", "test3@example.com", adminRole, "password123");
+        userRepository.saveAll(List.of(user1, user2, user3));
+
+        // 検証
+        assertThat(user1.getRoleMask()).isEqualTo(RoleMask.ADMIN | RoleMask.USER);
+        assertThat(user2.getRoleMask()).isEqualTo(RoleMask.USER | RoleMask.OTHER);
+        assertThat(userRepository.findByRoles(userRole))
+            .extracting("name").containsExactlyInAnyOrder("testUser1", "testUser2");
+        assertThat(userRepository.findByRoles(auditorRole)).extracting("name").containsExactly("testUser2");
+        assertThat(userRepository.searchUsers(null, null, "ADMIN"))
+            .extracting("name").containsExactly("testUser1", "testUser3");
+        assertThat(userRepository.searchUsers(null, null, "AUDITOR")).extracting("name").containsExactly("testUser2");
+    }
+
+    @Test
+    void testSearchUsersEscapesWildcards() {
+        // テストデータの準備
+        User user1 = new User("100%Ok", "percent@example.com", userRole, "password123");
+        User user2 = new User("100 Ok", "space@example.com", userRole, "password123");
+        userRepository.saveAll(List.of(user1, user2));
+
+        // 検証
+        assertThat(userRepository.searchUsers("0%o", null, null))
+            .extracting("name").containsExactly("100%Ok");
+        assertThat(userRepository.searchUsers(null, "_", null)).isEmpty();
+    }
+
     @Test
     void testDeleteUser() {
         // テストデータの準備
@@ -1,5 +1,6 @@
 package com.example.javase17learningproject;
 
+import java.util.HashSet;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -109,6 +110,57 @@ public class UserTest {
         assertThat(user1.hashCode()).isEqualTo(user2.hashCode());
     }
 
+    @Test
+    void testRoleMaskFollowsRoles() {
+        // ユーザーを作成
+        User user = new User("testUser", "test@example.com", userRole, "password123");
+        assertThat(user.getRoleMask()).isEqualTo(RoleMask.USER);
+        assertThat(user.hasRole("USER")).isTrue();
+        assertThat(user.hasRole("ADMIN")).isFalse();
+
+        // 役割の変更
+        Role adminRole = new Role("ADMIN");
+        user.setRoles(Set.of(userRole, adminRole));
+
+        // 検証（主要な役割は優先度の高い役割）
+        assertThat(user.getRoleMask()).isEqualTo(RoleMask.ADMIN | RoleMask.USER);
+        assertThat(user.getRole()).isSameAs(adminRole);
+        assertThat(user.getAuthorities()).extracting("authority").containsExactly("ROLE_ADMIN", "ROLE_USER");
+    }
+
+    @Test
+    void testUndefinedRoleAuthorities() {
+        // 定義済み以外の役割を持つユーザーを作成
+        User user = new User("testUser", "test@example.com", new Role("AUDITOR"), "password123");
+
+        // 検証
+        assertThat(user.getRoleMask()).isEqualTo(RoleMask.OTHER);
+        assertThat(user.hasRole("AUDITOR")).isTrue();
+        assertThat(user.hasRole("OPERATOR")).isFalse();
+        assertThat(user.getAuthorities()).extracting("authority").containsExactly("ROLE_AUDITOR");
+    }
+
+    @Test
+    void testAuthoritiesAreCachedUntilRolesChange() {
+        // 同じ役割の組み合わせのユーザーは権限リストを共有する
+        User user = new User("testUser", "test@example.com", new Role("AUDITOR"), "password123");
+        User other = new User("otherUser", "other@example.com", new Role("AUDITOR"), "password123");
+        var authorities = user.getAuthorities();
+        assertThat(user.getAuthorities()).isSameAs(authorities);
+        assertThat(other.getAuthorities()).isSameAs(authorities);
+
+        // 役割を変更すると解決し直す
+        user.setRoles(Set.of(userRole));
+        assertThat(user.getAuthorities()).extracting("authority").containsExactly("ROLE_USER");
+
+        // 役割の集合を直接変更した場合は、保存時に解決し直す
+        user.setRoles(new HashSet<>(Set.of(userRole)));
+        user.getAuthorities();
+        user.getRoles().add(new Role("AUDITOR"));
+        user.updateDerivedColumns();
+        assertThat(user.getAuthorities()).extracting("authority").containsExactly("ROLE_USER", "ROLE_AUDITOR");
+    }
+
     @Test
     void testToString() {
         // ユーザーを作成
@@ -0,0 +1,160 @@
+package com.example.javase17learningproject.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.Ordered;
+
+import com.example.javase17learningproject.Javase17learningprojectApplication;
+
+/**
+ * 遅い検索の同時実行数のベンチマーク。
+ * Tomcatのワーカースレッド数を固定し ({@code benchmark.tomcat-threads}、既定8)、検索に一定の遅延
+ * ({@code benchmark.query-delay-ms}、既定200ms) を加えたアプリケーションを起動して、同時に送った一覧の要求
+ * ({@code GET /users}) が全て返るまでの時間と、その間に送った軽い要求 ({@code GET /login}) の応答時間を計測します。
+ *
+ * <ul>
+ *   <li>sync: 検索をワーカースレッドで実行する（既定）。同時に処理できる検索はワーカースレッド数まで</li>
+ *   <li>async: 検索を専用のスレッドプールで実行する ({@code app.async-users.enabled=true})。
+ *       ワーカースレッドは検索の待ち時間に解放される</li>
+ * </ul>
+ *
+ * <p>実行方法: {@code mvn -Pbenchmark test -Dtest=AsyncSearchCapacityBenchmark -Dbenchmark.tomcat-threads=8}
+ */
+@Tag("benchmark")
+public class AsyncSearchCapacityBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncSearchCapacityBenchmark.class);
+
+    private static final int TOMCAT_THREADS = Integer.getInteger("benchmark.tomcat-threads", 8);
+    private static final long QUERY_DELAY_MILLIS = Long.getLong("benchmark.query-delay-ms", 200);
+    private static final int[] CONCURRENCY = {8, 32, 128};
+    private static final int ASYNC_POOL_SIZE = 256;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    void benchmarkCapacity() throws Exception {
+        StringBuilder report = new StringBuilder(String.format(
+            "%n遅い検索の同時実行 (tomcat threads=%d, query delay=%d ms)%n%-6s %11s %10s %10s %10s %10s %12s%n",
+            TOMCAT_THREADS, QUERY_DELAY_MILLIS,
+            "mode", "concurrent", "wall(ms)", "req/s", "p50(ms)", "p99(ms)", "probe(ms)"));
+        for (boolean async : new boolean[] {false, true}) {
+            try (ConfigurableApplicationContext context = start(async)) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                // 最初の計測にJITコンパイルと接続の確立の時間が含まれないよう、結果を捨てて実行する
+                run(port, TOMCAT_THREADS);
+                for (int concurrency : CONCURRENCY) {
+                    report.append(row(async ? "async" : "sync", concurrency, run(port, concurrency)));
+                }
+            }
+        }
+        logger.info(report.toString());
+    }
+
+    private static ConfigurableApplicationContext start(boolean async) {
+        // application.properties より優先させるため、コマンドライン引数で指定する
+        return new SpringApplicationBuilder(Javase17learningprojectApplication.class)
+            .initializers(context -> ((GenericApplicationContext) context)
+                .registerBean("slowQueries", SlowQueries.class))
+            .run(
+                "--server.port=0",
+                "--server.tomcat.threads.max=" + TOMCAT_THREADS,
+                "--server.tomcat.threads.min-spare=" + TOMCAT_THREADS,
+                "--app.async-users.enabled=" + async,
+                "--app.async-users.pool-size=" + ASYNC_POOL_SIZE,
+                "--app.async-users.queue-capacity=1000",
+                "--app.tracing.enabled=false");
+    }
+
+    /**
+     * 計測結果。
+     *
+     * @param wallNanos 全ての要求が返るまでの時間
+     * @param latencies 要求ごとの応答時間（ナノ秒）
+     * @param probeNanos 軽い要求の応答時間
+     */
+    private record Result(long wallNanos, long[] latencies, long probeNanos) {}
+
+    private Result run(int port, int concurrency) throws Exception {
+        HttpRequest list = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/users"))
+            .timeout(Duration.ofMinutes(1)).build();
+        HttpRequest probe = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/login"))
+            .timeout(Duration.ofMinutes(1)).build();
+        long start = System.nanoTime();
+        List<CompletableFuture<Long>> requests = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            long sent = System.nanoTime();
+            requests.add(client.sendAsync(list, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("status " + response.statusCode());
+                    }
+                    return System.nanoTime() - sent;
+                }));
+        }
+        // 遅い検索がワーカースレッドを占有した状態で、検索を伴わない要求を送る
+        Thread.sleep(QUERY_DELAY_MILLIS / 4);
+        long probeStart = System.nanoTime();
+        client.send(probe, HttpResponse.BodyHandlers.discarding());
+        long probeNanos = System.nanoTime() - probeStart;
+
+        long[] latencies = new long[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            latencies[i] = requests.get(i).join();
+        }
+        return new Result(System.nanoTime() - start, latencies, probeNanos);
+    }
+
+    private static String row(String mode, int concurrency, Result result) {
+        long[] sorted = result.latencies().clone();
+        Arrays.sort(sorted);
+        long p50 = sorted[sorted.length / 2];
+        long p99 = sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)];
+        return String.format("%-6s %11d %10.0f %10.1f %10.0f %10.0f %12.1f%n",
+            mode, concurrency, result.wallNanos() / 1_000_000.0,
+            concurrency / (result.wallNanos() / 1_000_000_000.0),
+            p50 / 1_000_000.0, p99 / 1_000_000.0, result.probeNanos() / 1_000_000.0);
+    }
+
+    /**
+     * 一覧・検索の参照サービスの呼び出しに遅延を加えるポストプロセッサ（遅いデータベースの代わり）。
+     * トランザクションのプロキシを作成した後に、その先頭に遅延のアドバイスを追加します。
+     */
+    static class SlowQueries implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if ("userQueryService".equals(beanName) && bean instanceof Advised advised) {
+                advised.addAdvice(0, (MethodInterceptor) invocation -> {
+                    Thread.sleep(QUERY_DELAY_MILLIS);
+                    return invocation.proceed();
+                });
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+}
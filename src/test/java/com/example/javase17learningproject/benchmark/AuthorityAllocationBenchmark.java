@@ -0,0 +1,139 @@
+package com.example.javase17learningproject.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import com.example.javase17learningproject.AuthoritySets;
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.User;
+
+/**
+ * 権限の判定の割り当て量のベンチマーク。
+ * ユーザーの権限リストを取得して権限名を照合する処理 (Spring Securityの {@code hasAnyAuthority} と同じ走査) について、
+ * 1回あたりの時間とヒープの割り当て量を計測します。割り当て量はスレッドごとの割り当てバイト数
+ * ({@code com.sun.management.ThreadMXBean}) の差から求めます。
+ *
+ * <ul>
+ *   <li>stream: 呼び出しのたびに役割から権限を作成してリストに集める（共有する権限リストの導入前と同じ）</li>
+ *   <li>shared: 役割の組み合わせごとに共有する権限リストを、呼び出しのたびに引く ({@link AuthoritySets})</li>
+ *   <li>cached: エンティティが解決済みの権限リストを保持する ({@link User#getAuthorities()})</li>
+ * </ul>
+ * 役割は定義済みの役割だけ (USER) と、定義済み以外の役割を含む組み合わせ (USER, AUDITOR) の2通りです。
+ *
+ * <p>実行方法: {@code mvn -Pbenchmark test -Dtest=AuthorityAllocationBenchmark -Dbenchmark.iterations=5000000}
+ */
+@Tag("benchmark")
+public class AuthorityAllocationBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthorityAllocationBenchmark.class);
+
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 5_000_000);
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // 照合の結果を捨てないよう、一致した回数を集計する
+    private long matches;
+
+    @Test
+    void benchmarkAuthorities() {
+        StringBuilder report = new StringBuilder(String.format(
+            "%n権限の判定 (iterations=%d)%n%-8s %-14s %10s %12s%n",
+            ITERATIONS, "mode", "roles", "ns/op", "bytes/op"));
+        for (Set<Role> roles : List.of(Set.of(new Role("USER")), Set.of(new Role("USER"), new Role("AUDITOR")))) {
+            User user = new User("benchUser", "bench@bench.invalid", roles, null);
+            String label = roles.stream().map(Role::getName).sorted().collect(Collectors.joining(","));
+            report.append(row("stream", label, measure(() -> runStream(user))));
+            report.append(row("shared", label, measure(() -> runShared(user))));
+            report.append(row("cached", label, measure(() -> runCached(user))));
+        }
+        logger.info(report.toString());
+        if (matches == 0) {
+            throw new IllegalStateException("権限が照合されていません");
+        }
+    }
+
+    private static Collection<? extends GrantedAuthority> stream(User user) {
+        return user.getRoles().stream()
+            .map(role -> new SimpleGrantedAuthority(RoleMask.authorityOf(role.getName())))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 計測結果。
+     *
+     * @param nanosPerOp 1回あたりの時間
+     * @param bytesPerOp 1回あたりの割り当てバイト数
+     */
+    private record Result(double nanosPerOp, double bytesPerOp) {}
+
+    /**
+     * 処理を2回実行し、2回目の時間と割り当て量を返します（1回目はJITコンパイルのため捨てる）。
+     */
+    private Result measure(Runnable run) {
+        run.run();
+        long thread = Thread.currentThread().getId();
+        long allocated = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        run.run();
+        long elapsed = System.nanoTime() - start;
+        allocated = THREADS.getThreadAllocatedBytes(thread) - allocated;
+        return new Result((double) elapsed / ITERATIONS, (double) allocated / ITERATIONS);
+    }
+
+    // 照合の走査は方式ごとのループに書く。共通のメソッドにすると型のプロファイルが混ざり、JITコンパイラーが反復子の割り当てを除去できない
+
+    private void runStream(User user) {
+        long found = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (GrantedAuthority authority : stream(user)) {
+                if ("ROLE_USER".equals(authority.getAuthority())) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        matches += found;
+    }
+
+    private void runShared(User user) {
+        long found = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (GrantedAuthority authority : AuthoritySets.of(user.getRoleMask(), user.getRoles())) {
+                if ("ROLE_USER".equals(authority.getAuthority())) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        matches += found;
+    }
+
+    private void runCached(User user) {
+        long found = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (GrantedAuthority authority : user.getAuthorities()) {
+                if ("ROLE_USER".equals(authority.getAuthority())) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        matches += found;
+    }
+
+    private static String row(String mode, String roles, Result result) {
+        return String.format("%-8s %-14s %10.1f %12.1f%n", mode, roles, result.nanosPerOp(), result.bytesPerOp());
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.javase17learningproject.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.javase17learningproject.search.BkTree;
+import com.example.javase17learningproject.search.FuzzyUserIndex;
+import com.example.javase17learningproject.search.Levenshtein;
+
+/**
+ * あいまい検索のベンチマーク。
+ * 合成した100万人の名前（姓と名の組み合わせ）を {@link FuzzyUserIndex} と同じく全体と各語でBK木に登録し、
+ * 名前に k 文字の誤りを加えた検索語で、編集距離 k 以内のユーザーを探す時間を全件の線形走査と比較します。
+ *
+ * <ul>
+ *   <li>linear scan: 全ての語との編集距離をビット並列のアルゴリズムで計算する（索引なしの下限）</li>
+ *   <li>bk-tree: BK木で検索する。距離を計算した語の数 (visited) と、上限で打ち切った割合も表示する</li>
+ * </ul>
+ *
+ * <p>実行方法: {@code mvn -Pbenchmark test -Dtest=FuzzySearchBenchmark -Dbenchmark.users=1000000}
+ */
+@Tag("benchmark")
+public class FuzzySearchBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(FuzzySearchBenchmark.class);
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 1_000_000);
+    private static final int QUERIES = Integer.getInteger("benchmark.queries", 200);
+    private static final int SCAN_QUERIES = Integer.getInteger("benchmark.scan-queries", 20);
+    // FuzzyUserIndex の既定値 (app.fuzzy-search.max-visits)
+    private static final int MAX_VISITS = Integer.getInteger("benchmark.max-visits", 200_000);
+    private static final String[] SYLLABLES = {
+        "ka", "sa", "ta", "na", "ha", "ma", "ya", "ra", "wa", "ki", "shi", "chi", "ni", "mi", "ri",
+        "ku", "su", "tsu", "nu", "fu", "mu", "yu", "ru", "ko", "so", "to", "no", "ho", "mo", "yo", "ro"};
+
+    @Test
+    void benchmarkFuzzySearch() {
+        Random random = new Random(42);
+        String[] families = names(random, 1500);
+        String[] givens = names(random, 1500);
+        List<String> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(families[random.nextInt(families.length)] + " " + givens[random.nextInt(givens.length)]);
+        }
+
+        long buildStart = System.nanoTime();
+        BkTree<Integer> tree = new BkTree<>();
+        List<String> terms = new ArrayList<>();
+        for (int id = 0; id < users.size(); id++) {
+            String name = users.get(id);
+            for (String term : terms(name)) {
+                tree.put(term, id);
+            }
+        }
+        long buildNanos = System.nanoTime() - buildStart;
+        Set<String> distinct = new LinkedHashSet<>();
+        users.forEach(name -> distinct.addAll(terms(name)));
+        terms.addAll(distinct);
+
+        StringBuilder report = new StringBuilder(String.format(
+            "%nあいまい検索 (users=%d, terms=%d, build=%.0f ms, max-visits=%d)%n%-14s %3s %12s %12s %12s %10s %9s%n",
+            USERS, tree.termCount(), buildNanos / 1_000_000.0, MAX_VISITS,
+            "mode", "k", "avg(µs)", "p99(µs)", "visited", "matches", "truncated"));
+        for (int k = 1; k <= 2; k++) {
+            List<String> queries = new ArrayList<>(QUERIES);
+            for (int i = 0; i < QUERIES; i++) {
+                queries.add(misspell(users.get(random.nextInt(users.size())), k, random));
+            }
+            // 最初の計測にJITコンパイルの時間が含まれないよう、結果を捨てて実行する
+            searchTree(tree, queries, k);
+            scan(terms, queries.subList(0, Math.min(5, SCAN_QUERIES)), k);
+
+            report.append(scan(terms, queries.subList(0, SCAN_QUERIES), k));
+            report.append(searchTree(tree, queries, k));
+        }
+        logger.info(report.toString());
+    }
+
+    private static String searchTree(BkTree<Integer> tree, List<String> queries, int k) {
+        long[] nanos = new long[queries.size()];
+        long visited = 0;
+        long matches = 0;
+        int truncated = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            long start = System.nanoTime();
+            BkTree.Result<Integer> result = tree.search(queries.get(i), k, MAX_VISITS);
+            nanos[i] = System.nanoTime() - start;
+            visited += result.visited();
+            matches += result.matches().size();
+            truncated += result.truncated() ? 1 : 0;
+        }
+        return row("bk-tree", k, nanos, (double) visited / queries.size(), (double) matches / queries.size(),
+            (double) truncated / queries.size());
+    }
+
+    private static String scan(List<String> terms, List<String> queries, int k) {
+        long[] nanos = new long[queries.size()];
+        long matches = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            long start = System.nanoTime();
+            Levenshtein levenshtein = new Levenshtein(queries.get(i));
+            for (String term : terms) {
+                if (levenshtein.distance(term) <= k) {
+                    matches++;
+                }
+            }
+            nanos[i] = System.nanoTime() - start;
+        }
+        return row("linear scan", k, nanos, terms.size(), (double) matches / queries.size(), 0);
+    }
+
+    private static String row(String mode, int k, long[] nanos, double visited, double matches, double truncated) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double average = Arrays.stream(sorted).average().orElse(0);
+        long p99 = sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)];
+        return String.format("%-14s %3d %12.0f %12.0f %12.0f %10.1f %8.0f%%%n",
+            mode, k, average / 1_000, p99 / 1_000.0, visited, matches, truncated * 100);
+    }
+
+    /**
+     * FuzzyUserIndex と同じく、名前の全体と空白で区切った各語を返します。
+     */
+    private static Set<String> terms(String name) {
+        Set<String> terms = new LinkedHashSet<>();
+        terms.add(name);
+        terms.addAll(Arrays.asList(name.split(" ")));
+        return terms;
+    }
+
+    private static String[] names(Random random, int count) {
+        Set<String> names = new LinkedHashSet<>();
+        while (names.size() < count) {
+            StringBuilder name = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int i = 0; i < syllables; i++) {
+                name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            names.add(name.toString());
+        }
+        return names.toArray(String[]::new);
+    }
+
+    /**
+     * 置換・挿入・削除のいずれかを k 回加えます。
+     */
+    private static String misspell(String name, int k, Random random) {
+        StringBuilder text = new StringBuilder(name);
+        for (int i = 0; i < k; i++) {
+            int position = random.nextInt(text.length());
+            char c = (char) ('a' + random.nextInt(26));
+            switch (random.nextInt(3)) {
+                case 0 -> text.setCharAt(position, c);
+                case 1 -> text.insert(position, c);
+                default -> text.deleteCharAt(position);
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.javase17learningproject.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.security.UserPrincipal;
+
+/**
+ * セッションのメモリ使用量のベンチマーク。
+ * セッションに保持するセキュリティコンテキストについて、プリンシパルがエンティティ ({@link User}) の場合と
+ * {@link UserPrincipal} の場合の1セッションあたりのヒープ使用量とシリアライズ後のサイズを比較します。
+ *
+ * <p>ヒープ使用量は、セッション数分のコンテキストを保持した状態とGC後の使用量の差から求める概算です。
+ *
+ * <p>実行方法: {@code mvn -Pbenchmark test -Dtest=SessionFootprintBenchmark -Dbenchmark.sessions=20000}
+ */
+@Tag("benchmark")
+public class SessionFootprintBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionFootprintBenchmark.class);
+
+    private static final int SESSIONS = Integer.getInteger("benchmark.sessions", 20_000);
+
+    // ハッシュの計算は遅いため1回だけ行い、ユーザーごとに文字列を複製する（読み込んだエンティティと同じく別の文字列になる）
+    private static final String PASSWORD_HASH = new BCryptPasswordEncoder().encode("password123");
+
+    @Test
+    void benchmarkSessionFootprint() {
+        StringBuilder report = new StringBuilder(String.format(
+            "%nセッションのメモリ使用量 (sessions=%d)%n%-10s %16s %16s%n",
+            SESSIONS, "principal", "heap(bytes)", "serialized"));
+        report.append(row("entity", SessionFootprintBenchmark::entityContext));
+        report.append(row("record", SessionFootprintBenchmark::principalContext));
+        logger.info(report.toString());
+    }
+
+    private static String row(String label, IntFunction<SecurityContext> factory) {
+        String serialized;
+        try {
+            serialized = String.valueOf(serializedSize(factory.apply(0)));
+        } catch (NotSerializableException e) {
+            serialized = "不可 (" + e.getMessage() + ")";
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return String.format("%-10s %16.0f %16s%n", label, heapPerSession(factory), serialized);
+    }
+
+    /**
+     * ログイン時と同じ構成のエンティティをプリンシパルにしたコンテキストを作成します。
+     */
+    private static SecurityContext entityContext(int i) {
+        Role role = new Role("USER");
+        role.setId(3L);
+        User user = new User("sessionUser" + i, "session" + i + "@example.com", role);
+        user.setId((long) i);
+        user.setRoles(new HashSet<>(Set.of(role)));
+        ReflectionTestUtils.setField(user, "password", new String(PASSWORD_HASH));
+        return new SecurityContextImpl(
+            UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities()));
+    }
+
+    private static SecurityContext principalContext(int i) {
+        SecurityContext entity = entityContext(i);
+        User user = (User) entity.getAuthentication().getPrincipal();
+        return new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(
+            UserPrincipal.of(user), null, entity.getAuthentication().getAuthorities()));
+    }
+
+    private static double heapPerSession(IntFunction<SecurityContext> factory) {
+        // 作成途中の一時オブジェクトを含めないよう、保持するコンテキストだけを残してから計測する
+        List<SecurityContext> sessions = new ArrayList<>(SESSIONS);
+        long before = usedHeap();
+        for (int i = 0; i < SESSIONS; i++) {
+            sessions.add(factory.apply(i));
+        }
+        long after = usedHeap();
+        double perSession = (double) (after - before) / sessions.size();
+        sessions.clear();
+        return perSession;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static int serializedSize(SecurityContext context) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(context);
+        }
+        return bytes.size();
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.javase17learningproject.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.search.UserSearchCriteria;
+import com.example.javase17learningproject.shard.ShardedUserRepository;
+
+/**
+ * シャーディングのスケーリングベンチマーク。
+ * 同じユーザー数をシャード数を変えて分割し、次の処理の1秒あたりの実行回数を計測します。
+ * <ul>
+ *   <li>point: IDによる参照（1つのシャードだけにアクセス）</li>
+ *   <li>top: 全件のID順の先頭100件（各シャードの先頭100件をマージ）</li>
+ *   <li>scan: 部分一致で該当しない検索（全てのシャードで全件を走査）</li>
+ * </ul>
+ * シャードは同じJVMの組み込みH2のため、並列に問い合わせる効果はCPUのコア数までです。
+ *
+ * <p>実行方法: {@code mvn -Pbenchmark test -Dtest=ShardScatterGatherBenchmark -Dbenchmark.users=40000}
+ */
+@Tag("benchmark")
+public class ShardScatterGatherBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardScatterGatherBenchmark.class);
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 40_000);
+    private static final int[] SHARDS = {1, 2, 4, 8};
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+
+    private static final UserSearchCriteria TOP = UserSearchCriteria.of(null, null, null);
+    private static final UserSearchCriteria SCAN = UserSearchCriteria.of("no-such-user", null, null);
+
+    @Test
+    void benchmarkScaling() {
+        StringBuilder report = new StringBuilder(String.format(
+            "%nシャーディングのスケーリング (users=%d, cores=%d)%n%-8s %12s %12s %12s%n",
+            USERS, Runtime.getRuntime().availableProcessors(), "shards", "point/s", "top/s", "scan/s"));
+        for (int shards : SHARDS) {
+            report.append(run(shards));
+        }
+        logger.info(report.toString());
+    }
+
+    private static String run(int shardCount) {
+        List<DataSource> dataSources = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            dataSources.add(new DriverManagerDataSource(
+                "jdbc:h2:mem:shard-bench-" + shardCount + "-" + i + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(shardCount);
+        try {
+            ShardedUserRepository repository = new ShardedUserRepository(dataSources, executor);
+            repository.migrate();
+            Role role = new Role("USER");
+            role.setId(3L);
+            List<Long> ids = new ArrayList<>(USERS);
+            for (int i = 0; i < USERS; i++) {
+                User user = new User("benchUser" + i, "bench" + i + "@bench.invalid", role);
+                ReflectionTestUtils.setField(user, "password", "{noop}password");
+                ids.add(repository.insert(user));
+            }
+
+            int[] next = {0};
+            double point = measure(() -> repository.findById(ids.get(next[0]++ % ids.size())).isPresent() ? 1 : 0);
+            double top = measure(() -> repository.search(TOP, 100).size());
+            double scan = measure(() -> repository.search(SCAN, 100).size());
+            return String.format("%-8d %12.0f %12.0f %12.0f%n", shardCount, point, top, scan);
+        } finally {
+            executor.shutdownNow();
+            dataSources.forEach(dataSource -> new JdbcTemplate(dataSource).execute("DROP ALL OBJECTS"));
+        }
+    }
+
+    /**
+     * 処理を一定時間繰り返し、1秒あたりの実行回数を返します。最初の1/4の時間はウォームアップとして計測しません。
+     */
+    private static double measure(LongSupplier operation) {
+        long sink = 0;
+        long warmupEnd = System.nanoTime() + MEASURE_NANOS / 4;
+        while (System.nanoTime() < warmupEnd) {
+            sink += operation.getAsLong();
+        }
+        long count = 0;
+        long start = System.nanoTime();
+        long end = start + MEASURE_NANOS;
+        while (System.nanoTime() < end) {
+            sink += operation.getAsLong();
+            count++;
+        }
+        if (sink == Long.MIN_VALUE) {
+            logger.trace("sink={}", sink);
+        }
+        return count * 1_000_000_000.0 / (System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.javase17learningproject.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.directory.UserSummary;
+import com.example.javase17learningproject.view.UserRowCache;
+
+/**
+ * ユーザー一覧画面の描画のベンチマーク。
+ * 行のキャッシュ ({@link UserRowCache}) を使わない場合と使う場合について、一覧画面 ({@code users.html}) の
+ * 1行あたりの描画時間を計測します。
+ *
+ * <ul>
+ *   <li>uncached: キャッシュを無効にし、一覧画面の中で行ごとにテンプレートを評価する（キャッシュ導入前と同じ）</li>
+ *   <li>cold: 毎回キャッシュが空の状態から描画する（全ての行を評価して登録する）</li>
+ *   <li>warm: 全ての行がキャッシュにある状態で描画する</li>
+ * </ul>
+ * 1行あたりの時間は、行の描画と一覧画面全体の描画の合計を行数で割った値です。
+ *
+ * <p>実行方法: {@code mvn -Pbenchmark test -Dtest=UserRowRenderBenchmark -Dbenchmark.rows=500}
+ */
+@Tag("benchmark")
+@SpringBootTest
+public class UserRowRenderBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserRowRenderBenchmark.class);
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 500);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 200);
+    private static final String[] ROLES = {"ADMIN", "MODERATOR", "USER"};
+
+    @Autowired
+    private ITemplateEngine templateEngine;
+
+    @Autowired
+    private UserRowCache userRowCache;
+
+    @AfterEach
+    void restore() {
+        ReflectionTestUtils.setField(userRowCache, "enabled", true);
+        userRowCache.clear();
+    }
+
+    @Test
+    void benchmarkRowRendering() {
+        List<UserSummary> users = users();
+        // 最初の計測にJITコンパイルの時間が含まれないよう、結果を捨てて実行する
+        measure(users, false, false);
+        measure(users, true, true);
+        measure(users, true, false);
+
+        StringBuilder report = new StringBuilder(String.format(
+            "%nユーザー一覧画面の描画 (rows=%d, iterations=%d)%n%-10s %14s %14s%n",
+            ROWS, ITERATIONS, "mode", "ns/row", "pages/s"));
+        report.append(row("uncached", measure(users, false, false)));
+        report.append(row("cold", measure(users, true, true)));
+        report.append(row("warm", measure(users, true, false)));
+        logger.info(report.toString());
+    }
+
+    private static String row(String mode, double nanosPerPage) {
+        return String.format("%-10s %14.0f %14.1f%n", mode, nanosPerPage / ROWS, 1_000_000_000.0 / nanosPerPage);
+    }
+
+    /**
+     * 一覧画面を描画し、1ページあたりの時間を返します。
+     * 計測の前にキャッシュを空にし、{@code cold} の場合は描画のたびに空にします（空にする時間は含めません）。
+     */
+    private double measure(List<UserSummary> users, boolean cached, boolean cold) {
+        ReflectionTestUtils.setField(userRowCache, "enabled", cached);
+        userRowCache.clear();
+        long length = 0;
+        long elapsed = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            if (cold) {
+                userRowCache.clear();
+            }
+            long start = System.nanoTime();
+            length += renderPage(users).length();
+            elapsed += System.nanoTime() - start;
+        }
+        if (length == 0) {
+            throw new IllegalStateException("一覧画面が描画されていません");
+        }
+        return (double) elapsed / ITERATIONS;
+    }
+
+    private String renderPage(List<UserSummary> users) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/users");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        WebContext context = new WebContext(JakartaServletWebApplication.buildApplication(request.getServletContext())
+            .buildExchange(request, response), request.getLocale());
+        context.setVariable("users", users);
+        if (userRowCache.isEnabled()) {
+            context.setVariable("userRows", userRowCache.render(users, request, response));
+        }
+        return templateEngine.process("users", context);
+    }
+
+    private static List<UserSummary> users() {
+        List<UserSummary> users = new ArrayList<>(ROWS);
+        LocalDateTime updatedAt = LocalDateTime.now();
+        for (int i = 0; i < ROWS; i++) {
+            Role role = new Role(ROLES[i % ROLES.length]);
+            role.setId((long) (i % ROLES.length) + 1);
+            users.add(UserSummary.of(i + 1, "benchUser" + i, "bench" + i + "@bench.invalid", role,
+                RoleMask.of(Set.of(role)), updatedAt));
+        }
+        return users;
+    }
+}
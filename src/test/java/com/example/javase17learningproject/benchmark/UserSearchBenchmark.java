@@ -0,0 +1,161 @@
+package com.example.javase17learningproject.benchmark;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.search.SearchNormalizer;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.TypedQuery;
+
+/**
+ * ユーザー検索のベンチマーク。
+ * 検索条件の全ての組み合わせについて、従来の固定JPQL（{@code :x is null or ...}、{@code DISTINCT}、役割テーブルとの外部結合）と
+ * 条件に応じて組み立てるクエリの平均実行時間を比較します。
+ *
+ * <p>実行方法: {@code mvn -Pbenchmark test -Dtest=UserSearchBenchmark -Dbenchmark.users=10000}
+ */
+@Tag("benchmark")
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class UserSearchBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchBenchmark.class);
+
+    private static final String LEGACY_QUERY = "SELECT DISTINCT u FROM User u LEFT JOIN u.roles r WHERE "
+        + "(:name is null or u.nameNormalized LIKE CONCAT('%', :name, '%')) AND "
+        + "(:email is null or u.emailNormalized LIKE CONCAT('%', :email, '%')) AND "
+        + "(:role is null or r.name LIKE CONCAT('%', :role, '%'))";
+
+    private static final String EMAIL_DOMAIN = "@bench.invalid";
+    private static final String[] ROLE_NAMES = {"ADMIN", "MODERATOR", "USER"};
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 10_000);
+    private static final int WARMUP_RUNS = 20;
+    private static final int MEASURED_RUNS = 50;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeAll
+    void insertUsers() {
+        List<Long> roleIds = new ArrayList<>();
+        for (String roleName : ROLE_NAMES) {
+            Role role = roleRepository.findByName(roleName).orElseGet(() -> roleRepository.save(new Role(roleName)));
+            roleIds.add(role.getId());
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            String name = "benchUser" + i;
+            String email = "bench" + i + EMAIL_DOMAIN;
+            rows.add(new Object[] {name, SearchNormalizer.normalizeName(name), email,
+                SearchNormalizer.normalizeEmail(email), "{noop}benchmark", now, now});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (name, name_normalized, email, email_normalized, password, "
+            + "created_at, updated_at, account_non_expired, account_non_locked, credentials_non_expired, enabled) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, TRUE, TRUE, TRUE, TRUE)", rows);
+        List<Long> userIds = jdbcTemplate.queryForList(
+            "SELECT id FROM users WHERE email LIKE '%" + EMAIL_DOMAIN + "' ORDER BY id", Long.class);
+        List<Object[]> userRoles = new ArrayList<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            userRoles.add(new Object[] {userIds.get(i), roleIds.get(i % roleIds.size())});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO user_roles (user_id, role_id) VALUES (?, ?)", userRoles);
+    }
+
+    @AfterAll
+    void deleteUsers() {
+        jdbcTemplate.update("DELETE FROM user_roles WHERE user_id IN "
+            + "(SELECT id FROM users WHERE email LIKE '%" + EMAIL_DOMAIN + "')");
+        jdbcTemplate.update("DELETE FROM users WHERE email LIKE '%" + EMAIL_DOMAIN + "'");
+    }
+
+    @Test
+    void benchmarkSearchCombinations() {
+        String[] names = {null, "benchuser12*", "user12"};
+        String[] emails = {null, "bench34*", "34@bench"};
+        String[] roles = {null, "ADMIN"};
+
+        StringBuilder report = new StringBuilder(String.format(
+            "%nユーザー検索ベンチマーク (users=%d, runs=%d)%n%-14s %-10s %-6s %8s %12s %12s%n",
+            USERS, MEASURED_RUNS, "name", "email", "role", "rows", "legacy(us)", "builder(us)"));
+        for (String name : names) {
+            for (String email : emails) {
+                for (String role : roles) {
+                    int rows = userRepository.searchUsers(name, email, role).size();
+                    double legacy = measure(() -> legacySearch(name, email, role));
+                    double builder = measure(() -> userRepository.searchUsers(name, email, role));
+                    report.append(String.format("%-14s %-10s %-6s %8d %12.1f %12.1f%n",
+                        name, email, role, rows, legacy, builder));
+                }
+            }
+        }
+        logger.info(report.toString());
+    }
+
+    /**
+     * 検索を繰り返し実行し、1回あたりの平均実行時間を返します。
+     *
+     * @param search 検索処理
+     * @return 平均実行時間（マイクロ秒）
+     */
+    private double measure(Supplier<List<User>> search) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            search.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            search.get();
+        }
+        return (System.nanoTime() - start) / 1_000.0 / MEASURED_RUNS;
+    }
+
+    /**
+     * 従来の固定JPQLで検索します。前方一致指定の {@code *} は取り除いて部分一致として扱います。
+     */
+    private List<User> legacySearch(String name, String email, String role) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            TypedQuery<User> query = entityManager.createQuery(LEGACY_QUERY, User.class);
+            query.setParameter("name", SearchNormalizer.normalizeName(stripMarker(name)));
+            query.setParameter("email", SearchNormalizer.normalizeEmail(stripMarker(email)));
+            query.setParameter("role", role);
+            return query.getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static String stripMarker(String value) {
+        return value == null ? null : value.replace("*", "");
+    }
+}
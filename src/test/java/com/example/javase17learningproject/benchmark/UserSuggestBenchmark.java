@@ -0,0 +1,119 @@
+package com.example.javase17learningproject.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.example.javase17learningproject.search.RadixTrie;
+import com.example.javase17learningproject.search.SearchNormalizer;
+
+/**
+ * 入力補完のベンチマーク。
+ * 入力途中の文字列（1〜4文字）で始まる名前を上限10件返す時間を、全件の線形走査 ({@code startsWith}) と
+ * 圧縮トライ ({@link RadixTrie}) で比較します。あわせてトライの一括構築と1件の更新（削除と登録）の時間を計測します。
+ *
+ * <p>実行方法: {@code mvn -Pbenchmark test -Dtest=UserSuggestBenchmark -Dbenchmark.users=100000}
+ */
+@Tag("benchmark")
+public class UserSuggestBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSuggestBenchmark.class);
+
+    private static final int USERS = Integer.getInteger("benchmark.users", 100_000);
+    private static final int QUERIES = Integer.getInteger("benchmark.queries", 20_000);
+    private static final int LIMIT = 10;
+    private static final String[] SYLLABLES = {"ka", "sa", "ta", "na", "ha", "ma", "ya", "ra", "wa", "ki", "shi", "to"};
+
+    @Test
+    void benchmarkSuggest() {
+        Random random = new Random(42);
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(USERS);
+        for (long id = 1; id <= USERS; id++) {
+            entries.add(Map.entry(SearchNormalizer.normalizeName(randomName(random)), id));
+        }
+        List<String> queries = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            String name = entries.get(random.nextInt(USERS)).getKey();
+            queries.add(name.substring(0, Math.min(name.length(), 1 + random.nextInt(4))));
+        }
+
+        long buildStart = System.nanoTime();
+        RadixTrie<Long> trie = RadixTrie.build(entries);
+        long buildNanos = System.nanoTime() - buildStart;
+
+        // 最初の計測にJITコンパイルの時間が含まれないよう、結果を捨てて実行する
+        scan(entries, queries);
+        collect(trie, queries);
+
+        long scanNanos = scan(entries, queries);
+        long trieNanos = collect(trie, queries);
+        long updateNanos = update(trie, entries, random);
+
+        logger.info(String.format(
+            "%n入力補完 (users=%d, queries=%d, limit=%d, nodes=%d)%n%-24s %14s%n%-24s %14.0f%n%-24s %14.0f%n"
+                + "%-24s %14.0f%n%-24s %14.1f%n",
+            USERS, QUERIES, LIMIT, trie.nodeCount(), "operation", "ns/op",
+            "linear scan", (double) scanNanos / QUERIES,
+            "radix trie", (double) trieNanos / QUERIES,
+            "update (remove + put)", (double) updateNanos / QUERIES,
+            "bulk build (ms)", buildNanos / 1_000_000.0));
+    }
+
+    private static long scan(List<Map.Entry<String, Long>> entries, List<String> queries) {
+        long found = 0;
+        long start = System.nanoTime();
+        for (String query : queries) {
+            // 辞書順の上位を返すには全件を走査する必要があるが、線形走査の下限として最初のLIMIT件で打ち切る
+            int count = 0;
+            for (Map.Entry<String, Long> entry : entries) {
+                if (entry.getKey().startsWith(query) && ++count >= LIMIT) {
+                    break;
+                }
+            }
+            found += count;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (found == 0) {
+            throw new IllegalStateException("候補が見つかりません");
+        }
+        return elapsed;
+    }
+
+    private static long collect(RadixTrie<Long> trie, List<String> queries) {
+        long found = 0;
+        long start = System.nanoTime();
+        for (String query : queries) {
+            found += trie.collect(query, LIMIT).size();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (found == 0) {
+            throw new IllegalStateException("候補が見つかりません");
+        }
+        return elapsed;
+    }
+
+    private static long update(RadixTrie<Long> trie, List<Map.Entry<String, Long>> entries, Random random) {
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            Map.Entry<String, Long> entry = entries.get(random.nextInt(entries.size()));
+            trie.remove(entry.getKey(), entry.getValue());
+            trie.put(entry.getKey(), entry.getValue());
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        int syllables = 2 + random.nextInt(4);
+        for (int i = 0; i < syllables; i++) {
+            name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return name.append(random.nextInt(1000)).toString();
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.javase17learningproject.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.service.UserCommandService;
+import com.example.javase17learningproject.service.UserUpdateConflictException;
+
+/**
+ * ユーザー更新の競合ベンチマーク。
+ * 同時に更新するスレッド数を増やしながら、同じユーザーと別々のユーザーへの読み取り・変更・書き込みのスループットと、
+ * 失われた更新の数を計測します。
+ *
+ * <p>各スレッドはユーザー名の末尾の数値を読み取り、1増やして書き込みます。
+ * <ul>
+ *   <li>checked: 読み取ったバージョンを指定して更新し、競合した場合は読み直してやり直す</li>
+ *   <li>blind: バージョンを指定せずに更新する（楽観的ロック導入前の編集画面と同じ後勝ち）</li>
+ * </ul>
+ * 失われた更新の数は、成功した更新の数と最終的な数値の合計の差です。
+ *
+ * <p>実行方法: {@code mvn -Pbenchmark test -Dtest=UserUpdateContentionBenchmark -Dbenchmark.updates=200}
+ */
+@Tag("benchmark")
+@SpringBootTest
+public class UserUpdateContentionBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserUpdateContentionBenchmark.class);
+
+    private static final String PREFIX = "counter-";
+    private static final int[] WRITERS = {1, 2, 4, 8, 16};
+    private static final int UPDATES_PER_WRITER = Integer.getInteger("benchmark.updates", 200);
+
+    @Autowired
+    private UserCommandService userCommandService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    /**
+     * 計測結果。
+     *
+     * @param updates 成功した更新の数
+     * @param conflicts 競合の数
+     * @param lostUpdates 失われた更新の数
+     * @param throughput 1秒あたりの成功した更新の数
+     */
+    private record Result(long updates, long conflicts, long lostUpdates, double throughput) {}
+
+    @AfterEach
+    void deleteUsers() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void benchmarkContention() throws Exception {
+        // 最初の計測にJITコンパイルの時間が含まれないよう、結果を捨てて1回実行する
+        run(4, false, true);
+        StringBuilder report = new StringBuilder(String.format(
+            "%nユーザー更新の競合ベンチマーク (updates/writer=%d)%n%-10s %-8s %8s %10s %10s %10s %12s%n",
+            UPDATES_PER_WRITER, "target", "mode", "writers", "updates", "conflicts", "lost", "updates/s"));
+        for (boolean sameUser : new boolean[] {true, false}) {
+            for (boolean checked : new boolean[] {true, false}) {
+                for (int writers : WRITERS) {
+                    Result result = run(writers, sameUser, checked);
+                    report.append(String.format("%-10s %-8s %8d %10d %10d %10d %12.0f%n",
+                        sameUser ? "same" : "different", checked ? "checked" : "blind", writers,
+                        result.updates(), result.conflicts(), result.lostUpdates(), result.throughput()));
+                }
+            }
+        }
+        logger.info(report.toString());
+    }
+
+    private Result run(int writers, boolean sameUser, boolean checked) throws Exception {
+        userRepository.deleteAll();
+        Role userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < (sameUser ? 1 : writers); i++) {
+            userIds.add(userRepository.save(
+                new User(PREFIX + 0, "contention" + i + "@bench.invalid", userRole, "password123")).getId());
+        }
+
+        AtomicLong updates = new AtomicLong();
+        AtomicLong conflicts = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        long start;
+        try {
+            CountDownLatch ready = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                long userId = userIds.get(sameUser ? 0 : w);
+                futures.add(executor.submit(() -> {
+                    ready.await();
+                    for (int i = 0; i < UPDATES_PER_WRITER; i++) {
+                        conflicts.addAndGet(increment(userId, checked));
+                        updates.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start = System.nanoTime();
+            ready.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        long total = 0;
+        for (long userId : userIds) {
+            total += counterOf(userRepository.findById(userId).orElseThrow());
+        }
+        return new Result(updates.get(), conflicts.get(), updates.get() - total, updates.get() / seconds);
+    }
+
+    /**
+     * ユーザー名の数値を1増やします。
+     *
+     * @return 成功するまでに競合した回数
+     */
+    private long increment(long userId, boolean checked) {
+        long conflicts = 0;
+        while (true) {
+            User current = userRepository.findById(userId).orElseThrow();
+            try {
+                userCommandService.updateUser(userId, checked ? current.getVersion() : null,
+                    PREFIX + (counterOf(current) + 1), current.getEmail(), "USER");
+                return conflicts;
+            } catch (UserUpdateConflictException e) {
+                conflicts++;
+            }
+        }
+    }
+
+    private static long counterOf(User user) {
+        return Long.parseLong(user.getName().substring(PREFIX.length()));
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.javase17learningproject.benchmark;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.example.javase17learningproject.Javase17learningprojectApplication;
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.diagnostics.VirtualThreadPinningMonitor;
+
+/**
+ * プラットフォームスレッドと仮想スレッドの検索のスループットのベンチマーク。
+ * SELECT文の準備に一定の遅延 ({@code benchmark.query-delay-ms}、既定50ms) を加えたアプリケーションを起動して、
+ * 同時に送ったユーザー検索の要求 ({@code GET /users/search}) が全て返るまでの時間と応答時間を計測します。
+ * 検索は毎回異なる条件で行い、検索結果のキャッシュとメモリ上のディレクトリ ({@code app.user-directory.enabled=false})
+ * を使わずにデータベースへ問い合わせます。
+ *
+ * <ul>
+ *   <li>platform: Tomcatのワーカースレッド（既定200）で検索を実行する</li>
+ *   <li>virtual: 要求ごとの仮想スレッドで検索を実行する ({@code spring.threads.virtual.enabled=true})。
+ *       Java 21以降でだけ計測し、検出したピン留めの回数も出力する</li>
+ * </ul>
+ * 接続プールが上限にならないよう、接続数は {@code benchmark.pool-size}（既定1000）に広げます。
+ *
+ * <p>実行方法: {@code mvn -Pbenchmark,java21 test -Dtest=VirtualThreadSearchBenchmark}
+ */
+@Tag("benchmark")
+public class VirtualThreadSearchBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadSearchBenchmark.class);
+
+    private static final long QUERY_DELAY_MILLIS = Long.getLong("benchmark.query-delay-ms", 50);
+    private static final int POOL_SIZE = Integer.getInteger("benchmark.pool-size", 1000);
+    private static final int[] CONCURRENCY = {200, 800, 1600};
+    private static final String PASSWORD = "password123";
+    private static final Pattern CSRF_TOKEN = Pattern.compile("name=\"_csrf\" value=\"([^\"]+)\"");
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final AtomicInteger queries = new AtomicInteger();
+
+    @Test
+    void benchmarkSearch() throws Exception {
+        StringBuilder report = new StringBuilder(String.format(
+            "%n検索のスループット (query delay=%d ms, pool size=%d, Java %d)%n%-9s %11s %10s %10s %10s %10s %8s%n",
+            QUERY_DELAY_MILLIS, POOL_SIZE, Runtime.version().feature(),
+            "mode", "concurrent", "wall(ms)", "req/s", "p50(ms)", "p99(ms)", "pinned"));
+        for (boolean virtual : new boolean[] {false, true}) {
+            if (virtual && Runtime.version().feature() < 21) {
+                report.append("virtual: 仮想スレッドはJava 21以降で計測します (-Pjava21 で実行してください)")
+                    .append(System.lineSeparator());
+                continue;
+            }
+            try (ConfigurableApplicationContext context = start(virtual)) {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                String session = login(context, port);
+                // 最初の計測にJITコンパイルと接続の確立の時間が含まれないよう、結果を捨てて実行する
+                run(session, port, CONCURRENCY[0]);
+                for (int concurrency : CONCURRENCY) {
+                    Result result = run(session, port, concurrency);
+                    long pinned = context.getBeanProvider(VirtualThreadPinningMonitor.class)
+                        .stream().mapToLong(VirtualThreadPinningMonitor::getPinnedCount).sum();
+                    report.append(row(virtual ? "virtual" : "platform", concurrency, result, pinned));
+                }
+            }
+        }
+        logger.info(report.toString());
+    }
+
+    private static ConfigurableApplicationContext start(boolean virtual) {
+        // application.properties より優先させるため、コマンドライン引数で指定する
+        return new SpringApplicationBuilder(Javase17learningprojectApplication.class)
+            .initializers(context -> {
+                ((GenericApplicationContext) context).registerBean("slowDatabase", SlowDatabase.class);
+                // ログイン画面はフォームログインの設定だけで表示するコントローラーがないため、CSRFトークンを得るために表示する
+                ((GenericApplicationContext) context).registerBean("loginView", WebMvcConfigurer.class,
+                    () -> new WebMvcConfigurer() {
+                        @Override
+                        public void addViewControllers(ViewControllerRegistry registry) {
+                            registry.addViewController("/login").setViewName("login");
+                        }
+                    });
+            })
+            .run(
+                "--server.port=0",
+                "--server.tomcat.accept-count=" + CONCURRENCY[CONCURRENCY.length - 1],
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "--app.user-directory.enabled=false",
+                "--app.warmup.enabled=false",
+                "--app.tracing.enabled=false");
+    }
+
+    /**
+     * ベンチマーク用のユーザーを登録してログインし、セッションのCookieを返します。
+     */
+    private String login(ConfigurableApplicationContext context, int port) throws Exception {
+        RoleRepository roleRepository = context.getBean(RoleRepository.class);
+        Role userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+        context.getBean(UserRepository.class)
+            .save(new User("benchmarkUser", "benchmark-user@example.com", userRole, PASSWORD));
+
+        HttpResponse<String> page = client.send(HttpRequest.newBuilder(uri(port, "/login")).build(),
+            HttpResponse.BodyHandlers.ofString());
+        String session = sessionCookie(page);
+        Matcher token = CSRF_TOKEN.matcher(page.body());
+        if (!token.find()) {
+            throw new IllegalStateException("ログイン画面にCSRFトークンがありません");
+        }
+        String form = "username=" + encode("benchmark-user@example.com") + "&password=" + encode(PASSWORD)
+            + "&_csrf=" + encode(token.group(1));
+        HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri(port, "/login"))
+            .header("Cookie", session)
+            .header("Content-Type", "application/x-www-form-urlencoded")
+            .POST(HttpRequest.BodyPublishers.ofString(form))
+            .build(), HttpResponse.BodyHandlers.discarding());
+        String location = response.headers().firstValue("Location").orElse("");
+        if (response.statusCode() != 302 || location.contains("error")) {
+            throw new IllegalStateException("ログインに失敗しました: " + response.statusCode() + " " + location);
+        }
+        // ログインでセッションIDが変わる
+        return sessionCookie(response);
+    }
+
+    private static String sessionCookie(HttpResponse<?> response) {
+        return response.headers().allValues("Set-Cookie").stream()
+            .filter(cookie -> cookie.startsWith("JSESSIONID="))
+            .map(cookie -> cookie.substring(0, cookie.indexOf(';')))
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("セッションのCookieがありません"));
+    }
+
+    /**
+     * 計測結果。
+     *
+     * @param wallNanos 全ての要求が返るまでの時間
+     * @param latencies 要求ごとの応答時間（ナノ秒）
+     */
+    private record Result(long wallNanos, long[] latencies) {}
+
+    private Result run(String session, int port, int concurrency) {
+        long start = System.nanoTime();
+        List<CompletableFuture<Long>> requests = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            // 検索結果のキャッシュに当たらないよう、要求ごとに異なる条件で検索する
+            HttpRequest search = HttpRequest.newBuilder(
+                    uri(port, "/users/search?name=bench" + queries.incrementAndGet()))
+                .header("Cookie", session)
+                .timeout(Duration.ofMinutes(1)).build();
+            long sent = System.nanoTime();
+            requests.add(client.sendAsync(search, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new IllegalStateException("status " + response.statusCode());
+                    }
+                    return System.nanoTime() - sent;
+                }));
+        }
+        long[] latencies = new long[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            latencies[i] = requests.get(i).join();
+        }
+        return new Result(System.nanoTime() - start, latencies);
+    }
+
+    private static String row(String mode, int concurrency, Result result, long pinned) {
+        long[] sorted = result.latencies().clone();
+        Arrays.sort(sorted);
+        long p50 = sorted[sorted.length / 2];
+        long p99 = sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.99) - 1)];
+        return String.format("%-9s %11d %10.0f %10.1f %10.0f %10.0f %8d%n",
+            mode, concurrency, result.wallNanos() / 1_000_000.0,
+            concurrency / (result.wallNanos() / 1_000_000_000.0),
+            p50 / 1_000_000.0, p99 / 1_000_000.0, pinned);
+    }
+
+    private static URI uri(int port, String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * SELECT文の準備に遅延を加えるポストプロセッサ（遅いデータベースの代わり）。
+     * 遅延の間は接続を保持したまま待つため、接続プールの大きさと実行スレッドの数の両方が同時実行数に影響します。
+     */
+    static class SlowDatabase implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if ("dataSource".equals(beanName) && bean instanceof DataSource dataSource) {
+                return new DelegatingDataSource(dataSource) {
+                    @Override
+                    public Connection getConnection() throws SQLException {
+                        return slow(obtainTargetDataSource().getConnection());
+                    }
+                };
+            }
+            return bean;
+        }
+
+        private static Connection slow(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(SlowDatabase.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement") && args != null
+                            && args[0] instanceof String sql && sql.strip().toLowerCase(Locale.ROOT).startsWith("select")) {
+                        Thread.sleep(QUERY_DELAY_MILLIS);
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.javase17learningproject.config;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.diagnostics.WarmupHealthIndicator;
+
+/**
+ * WarmupRunnerのテストクラス。
+ * ウォームアップの完了、データが残らないこと、送るリクエストを検証します。
+ */
+@SpringBootTest
+public class WarmupRunnerTest {
+
+    @Autowired
+    private WarmupRunner warmupRunner;
+
+    @Autowired
+    private WarmupHealthIndicator warmupHealthIndicator;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void testWarmupCompletedBeforeReady() {
+        assertThat(warmupRunner.isCompleted()).isTrue();
+        assertThat(warmupHealthIndicator.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    void testSyntheticDataRolledBack() {
+        assertThat(userRepository.findByEmail("warmup0@warmup.invalid")).isEmpty();
+        assertThat(userRepository.findByNameContaining("warmup")).isEmpty();
+    }
+
+    @Test
+    void testHttpWarmupSkipsAuthenticatedPathsAndCapsList() {
+        List<String> paths = WarmupRunner.requestPaths(20);
+
+        assertThat(paths).noneMatch(path -> path.startsWith("/users/") || path.equals("/login"));
+        assertThat(paths).filteredOn("/users"::equals).hasSize(WarmupRunner.MAX_LIST_REQUESTS);
+        assertThat(paths).filteredOn("/"::equals).hasSize(20);
+    }
+}
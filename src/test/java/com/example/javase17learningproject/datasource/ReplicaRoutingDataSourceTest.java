@@ -0,0 +1,133 @@
+package com.example.javase17learningproject.datasource;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+
+/**
+ * ReplicaRoutingDataSourceのテストクラス。
+ * 2つのH2（プライマリとレプリカ）を使用し、読み取り専用のトランザクションの振り分け、
+ * 遅延したレプリカからのフォールバック、セッションの自身の書き込みの読み取りを検証します。
+ *
+ * <p>H2は複製しないため、レプリカにはプライマリのスキーマだけを複製し、ユーザーは複製しません。
+ * レプリカで読み取った場合はユーザーが0件になることで、振り分け先を判定します。
+ * 複製されたハートビートは、テストがレプリカに直接書き込みます。
+ */
+@SpringBootTest(properties = {
+    "app.datasource.replica.urls=jdbc:h2:mem:replica1;DB_CLOSE_DELAY=-1",
+    "app.datasource.replica.max-lag=PT5S",
+    // 自動のハートビートはテストが明示的に実行する
+    "app.datasource.replica.heartbeat-interval=PT1H"
+})
+public class ReplicaRoutingDataSourceTest {
+
+    @Autowired
+    private ReplicaSet replicaSet;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        Role userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+        userRepository.save(new User("replicaUser", "replica@example.com", userRole, "password123"));
+
+        replica = new JdbcTemplate(replicaSet.getReplicas().get("replica-1"));
+        copySchemaToReplica(replicaSet.getPrimary());
+        setReplicatedHeartbeat(System.currentTimeMillis());
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testReadOnlyTransactionUsesReplica() {
+        assertThat(countUsers(true)).isZero();
+        assertThat(countUsers(false)).isEqualTo(1);
+    }
+
+    @Test
+    void testLaggingReplicaFallsBackToPrimary() {
+        setReplicatedHeartbeat(System.currentTimeMillis() - 60_000);
+
+        assertThat(countUsers(true)).isEqualTo(1);
+
+        replica.execute("DROP TABLE replica_heartbeat");
+        replicaSet.refresh();
+        assertThat(replicaSet.getLagMillis("replica-1")).isEqualTo(-1);
+        assertThat(countUsers(true)).isEqualTo(1);
+    }
+
+    @Test
+    void testSessionReadsItsOwnWrites() {
+        MockHttpSession session = new MockHttpSession();
+        inRequest(session);
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+            userRepository.findAll().forEach(user -> user.setName("renamedUser")));
+
+        // 書き込み後のリクエストは、書き込みが複製されるまでプライマリで読み取る
+        inRequest(session);
+        assertThat(countUsers(true)).isEqualTo(1);
+        inRequest(new MockHttpSession());
+        assertThat(countUsers(true)).isZero();
+
+        setReplicatedHeartbeat(System.currentTimeMillis());
+        inRequest(session);
+        assertThat(countUsers(true)).isZero();
+    }
+
+    private long countUsers(boolean readOnly) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status -> userRepository.count());
+    }
+
+    private void copySchemaToReplica(DataSource primary) {
+        List<String> script = new JdbcTemplate(primary).queryForList("SCRIPT NODATA", String.class);
+        replica.execute("DROP ALL OBJECTS");
+        script.forEach(replica::execute);
+    }
+
+    private void setReplicatedHeartbeat(long millis) {
+        replica.update("DELETE FROM replica_heartbeat");
+        replica.update("INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, ?)", millis);
+        replicaSet.refresh();
+    }
+
+    private static void inRequest(MockHttpSession session) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setSession(session);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+}
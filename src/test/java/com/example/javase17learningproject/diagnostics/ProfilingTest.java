@@ -0,0 +1,148 @@
+package com.example.javase17learningproject.diagnostics;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.startsWith;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.context.SecurityContextHolder;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * JFRイベントとオンデマンドの記録のテストクラス。
+ * 管理画面から開始した記録に、認可の判定・リポジトリのクエリ・パスワードの照合・テンプレートの描画の
+ * イベントが含まれることを検証します。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ProfilingTest {
+
+    private static final String PASSWORD = "password123";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProfilingService profilingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private User admin;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.clearContext();
+        userRepository.deleteAll();
+        Role adminRole = roleRepository.findByName("ADMIN").orElseGet(() -> roleRepository.save(new Role("ADMIN")));
+        Role userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+        admin = userRepository.save(new User("profilingAdmin", "profiling-admin@example.com", adminRole, PASSWORD));
+        user = userRepository.save(new User("profilingUser", "profiling-user@example.com", userRole, PASSWORD));
+    }
+
+    @AfterEach
+    void tearDown() {
+        // 失敗したテストの記録を残さない
+        profilingService.destroy();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testRecordingContainsApplicationEvents() throws Exception {
+        MockHttpSession session = login(admin);
+        mockMvc.perform(post("/admin/profiling/start").param("duration", "PT1M").with(csrf()).session(session))
+            .andExpect(status().isOk());
+        mockMvc.perform(post("/admin/profiling/start").with(csrf()).session(session))
+            .andExpect(status().isConflict());
+
+        login(user);
+        mockMvc.perform(get("/users/" + user.getId() + "/edit").session(session)).andExpect(status().isOk());
+
+        byte[] recording = mockMvc.perform(post("/admin/profiling/stop").with(csrf()).session(session))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Disposition", endsWith(".jfr\"")))
+            .andReturn().getResponse().getContentAsByteArray();
+        List<RecordedEvent> events = read(recording);
+
+        assertThat(events).anyMatch(event -> is(event, "AccessDecision")
+            && event.getString("actorRole").equals("ADMIN")
+            && event.getString("action").equals("edit")
+            && event.getBoolean("allowed"));
+        assertThat(events).anyMatch(event -> is(event, "RepositoryQuery")
+            && event.getString("method").equals("UserRepository.findById")
+            && event.getInt("rows") == 1);
+        assertThat(events).anyMatch(event -> is(event, "PasswordHash")
+            && event.getString("operation").equals("matches")
+            && event.getBoolean("matched"));
+        assertThat(events).anyMatch(event -> is(event, "TemplateRender")
+            && event.getString("view").equals("user_edit"));
+        assertThat(profilingService.status()).isEmpty();
+    }
+
+    @Test
+    void testStopWithoutRecordingIsConflict() throws Exception {
+        mockMvc.perform(post("/admin/profiling/stop").with(csrf()).session(login(admin)))
+            .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testProfilingRequiresAdmin() throws Exception {
+        mockMvc.perform(post("/admin/profiling/start").with(csrf()).session(login(user)))
+            .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void testPinningWithoutVirtualThreads() throws Exception {
+        mockMvc.perform(get("/admin/pinning").session(login(admin)))
+            .andExpect(status().isOk())
+            .andExpect(content().string(startsWith("仮想スレッドは有効ではありません")));
+    }
+
+    private static boolean is(RecordedEvent event, String name) {
+        return event.getEventType().getName().equals("javase17learningproject." + name);
+    }
+
+    private static List<RecordedEvent> read(byte[] recording) throws Exception {
+        Path file = Files.createTempFile("profiling-test-", ".jfr");
+        try {
+            Files.write(file, recording);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private MockHttpSession login(User account) throws Exception {
+        return (MockHttpSession) mockMvc.perform(formLogin("/login").user(account.getEmail()).password(PASSWORD))
+            .andExpect(status().is3xxRedirection())
+            .andReturn().getRequest().getSession(false);
+    }
+}
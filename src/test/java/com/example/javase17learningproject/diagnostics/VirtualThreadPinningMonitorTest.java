@@ -0,0 +1,82 @@
+package com.example.javase17learningproject.diagnostics;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import org.junit.jupiter.api.Test;
+
+import com.example.javase17learningproject.diagnostics.VirtualThreadPinningMonitor.PinningSite;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 仮想スレッドのピン留めの集計のテストクラス。
+ * JFRのイベントの購読は仮想スレッドが有効な場合 (Java 21以降) だけ行うため、ここでは集計だけを検証します。
+ */
+public class VirtualThreadPinningMonitorTest {
+
+    private static final List<String> H2_STACK = List.of(
+        "java.lang.VirtualThread.parkOnCarrierThread:675",
+        "java.lang.VirtualThread.parkNanos:634",
+        "java.lang.Thread.sleep:509",
+        "org.h2.engine.SessionLocal.waitForLock:1205",
+        "org.h2.command.Command.executeQuery:190");
+
+    private static final List<String> POOL_STACK = List.of(
+        "jdk.internal.misc.Unsafe.park:-1",
+        "com.zaxxer.hikari.pool.HikariPool.getConnection:162");
+
+    @Test
+    void testSitesAreGroupedByFirstNonJdkFrame() {
+        VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(Duration.ofMillis(20), 100);
+        monitor.record(Duration.ofMillis(30), H2_STACK);
+        monitor.record(Duration.ofMillis(50), H2_STACK);
+        monitor.record(Duration.ofMillis(25), POOL_STACK);
+
+        List<PinningSite> sites = monitor.getSites();
+        assertThat(sites).extracting(PinningSite::frame)
+            .containsExactly("org.h2.engine.SessionLocal.waitForLock:1205",
+                "com.zaxxer.hikari.pool.HikariPool.getConnection:162");
+        PinningSite h2 = sites.get(0);
+        assertThat(h2.count()).isEqualTo(2);
+        assertThat(h2.total()).isEqualTo(Duration.ofMillis(80));
+        assertThat(h2.max()).isEqualTo(Duration.ofMillis(50));
+        assertThat(h2.stack()).isEqualTo(H2_STACK);
+        assertThat(monitor.getPinnedCount()).isEqualTo(3);
+    }
+
+    @Test
+    void testJdkOnlyStackUsesTopFrame() {
+        assertThat(VirtualThreadPinningMonitor.siteOf(List.of("java.lang.Object.wait0:-2", "java.lang.Object.wait:366")))
+            .isEqualTo("java.lang.Object.wait0:-2");
+        assertThat(VirtualThreadPinningMonitor.siteOf(List.of())).isEqualTo("(スタックなし)");
+    }
+
+    @Test
+    void testSitesBeyondLimitAreCountedAsOther() {
+        VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(Duration.ofMillis(20), 1);
+        monitor.record(Duration.ofMillis(30), H2_STACK);
+        monitor.record(Duration.ofMillis(30), POOL_STACK);
+        monitor.record(Duration.ofMillis(40), List.of("com.example.Other.run:1"));
+
+        assertThat(monitor.getSites()).extracting(PinningSite::frame, PinningSite::count)
+            .containsExactly(
+                tuple(VirtualThreadPinningMonitor.OTHER_SITES, 2L),
+                tuple("org.h2.engine.SessionLocal.waitForLock:1205", 1L));
+        assertThat(monitor.getPinnedCount()).isEqualTo(3);
+    }
+
+    @Test
+    void testMetrics() {
+        VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(Duration.ofMillis(20), 100);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        monitor.bindTo(registry);
+        monitor.record(Duration.ofMillis(30), H2_STACK);
+        monitor.record(Duration.ofMillis(30), POOL_STACK);
+
+        assertThat(registry.get("virtual.threads.pinned").functionCounter().count()).isEqualTo(2.0);
+        assertThat(registry.get("virtual.threads.pinned.sites").gauge().value()).isEqualTo(2.0);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.javase17learningproject.directory;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.event.UserState;
+import com.example.javase17learningproject.event.UserState.RoleRef;
+
+/**
+ * DirectorySnapshotのテストクラス。
+ * 列の構築、オーバーレイの適用と統合を検証します。
+ */
+public class DirectorySnapshotTest {
+
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2024, 1, 2, 3, 4, 5, 678_901_000);
+
+    private DirectorySnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        DirectorySnapshot.Builder builder = new DirectorySnapshot.Builder(0);
+        builder.addRole(1, "ADMIN");
+        builder.addRole(2, "USER");
+        builder.addUser(10, "alice", "alice@example.com", "alice", "alice@example.com", RoleMask.ADMIN,
+            DirectorySnapshot.toMicros(UPDATED_AT));
+        builder.addUser(20, "bob", "bob@example.com", "bob", "bob@example.com", RoleMask.USER,
+            DirectorySnapshot.toMicros(UPDATED_AT));
+        builder.addUserRole(10, 1);
+        builder.addUserRole(20, 2);
+        snapshot = builder.build();
+    }
+
+    @Test
+    void testBuild() {
+        UserSummary alice = snapshot.find(10);
+
+        assertThat(snapshot.size()).isEqualTo(2);
+        assertThat(alice.getName()).isEqualTo("alice");
+        assertThat(alice.getRole().getName()).isEqualTo("ADMIN");
+        assertThat(alice.getUpdatedAt()).isEqualTo(UPDATED_AT);
+        // 正規化前後で同じ文字列は共有される
+        assertThat(alice.getEmail()).isSameAs("alice@example.com".intern());
+        assertThat(snapshot.find(15)).isNull();
+    }
+
+    @Test
+    void testChangesKeepIdOrder() {
+        DirectorySnapshot changed = snapshot.withChanges(List.of(
+            change(15, "carol", RoleMask.USER, List.of(new RoleRef(2, "USER"))),
+            change(20, "bobby", RoleMask.USER, null),
+            UserChange.delete(10)), 100);
+
+        assertThat(changed.collect((name, email, roleMask, roleSet) -> true))
+            .extracting("name").containsExactly("carol", "bobby");
+        // 役割の集合が未読み込みの変更は、既存の役割を引き継ぐ
+        assertThat(changed.find(20).getRole().getName()).isEqualTo("USER");
+        assertThat(changed.size()).isEqualTo(2);
+        assertThat(changed.version()).isEqualTo(snapshot.version() + 1);
+        // 元のスナップショットは変更されない
+        assertThat(snapshot.collect((name, email, roleMask, roleSet) -> true))
+            .extracting("name").containsExactly("alice", "bob");
+    }
+
+    @Test
+    void testCompaction() {
+        DirectorySnapshot changed = snapshot.withChanges(List.of(
+            change(30, "dave", RoleMask.OTHER, List.of(new RoleRef(3, "AUDITOR"))),
+            UserChange.delete(20)), 1);
+
+        assertThat(changed.overlaySize()).isZero();
+        assertThat(changed.collect((name, email, roleMask, roleSet) -> true))
+            .extracting("name").containsExactly("alice", "dave");
+        assertThat(changed.roleIndex("AUDITOR")).isEqualTo(2);
+        assertThat(changed.find(30).getRole().getName()).isEqualTo("AUDITOR");
+    }
+
+    @Test
+    void testRoleDictionaryLimit() {
+        DirectorySnapshot.Builder builder = new DirectorySnapshot.Builder(0);
+        for (int i = 0; i < DirectorySnapshot.MAX_ROLES; i++) {
+            builder.addRole(i, "ROLE" + i);
+        }
+
+        assertThatThrownBy(() -> builder.addRole(DirectorySnapshot.MAX_ROLES, "ONE_TOO_MANY"))
+            .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static UserChange change(long id, String name, int roleMask, List<RoleRef> roles) {
+        return UserChange.upsert(new UserState(id, name, name + "@example.com", name, name + "@example.com", roleMask,
+            roles, UPDATED_AT, 0, 0));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.javase17learningproject.directory;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.search.UserSearchCriteria;
+
+/**
+ * UserDirectoryのテストクラス。
+ * データベースからの構築と、コミットされた変更の反映を検証します。
+ */
+@SpringBootTest
+public class UserDirectoryTest {
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Role adminRole;
+    private Role userRole;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        adminRole = roleRepository.findByName("ADMIN").orElseGet(() -> roleRepository.save(new Role("ADMIN")));
+        userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testRebuildLoadsUsers() {
+        userRepository.save(new User("directoryUser1", "dir1@example.com", adminRole, "password123"));
+        userRepository.save(new User("directoryUser2", "dir2@example.com", userRole, "password123"));
+
+        userDirectory.rebuild();
+
+        assertThat(userDirectory.findAll()).extracting("name").containsExactly("directoryUser1", "directoryUser2");
+        assertThat(userDirectory.findAll()).extracting("role.name").containsExactly("ADMIN", "USER");
+    }
+
+    @Test
+    void testCommittedChangesAreApplied() {
+        User user = userRepository.save(new User("directoryUser", "dir@example.com", userRole, "password123"));
+        assertThat(userDirectory.findById(user.getId())).isPresent();
+
+        user.setName("renamedUser");
+        user.setRoles(Collections.singleton(adminRole));
+        userRepository.save(user);
+        UserSummary renamed = userDirectory.findById(user.getId()).orElseThrow();
+        assertThat(renamed.getName()).isEqualTo("renamedUser");
+        assertThat(renamed.getRole().getName()).isEqualTo("ADMIN");
+
+        userRepository.deleteById(user.getId());
+        assertThat(userDirectory.findById(user.getId())).isEmpty();
+    }
+
+    @Test
+    void testRolledBackChangesAreNotApplied() {
+        int size = userDirectory.size();
+
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.executeWithoutResult(status -> {
+            userRepository.save(new User("rolledBack", "rollback@example.com", userRole, "password123"));
+            status.setRollbackOnly();
+        });
+
+        assertThat(userDirectory.size()).isEqualTo(size);
+    }
+
+    @Test
+    void testSearchMatchesRepository() {
+        userRepository.save(new User("テストユーザー", "Test1@Example.com", adminRole, "password123"));
+        userRepository.save(new User("testUser2", "test2@example.com", userRole, "password123"));
+        userRepository.save(new User("otherUser", "other@example.com", userRole, "password123"));
+
+        String[][] conditions = {
+            {"てすと*", null, null}, {"user", null, "USER"}, {null, "TEST*", null}, {null, null, "ADMIN"},
+            {null, null, "AUDITOR"}, {null, null, null}
+        };
+        for (String[] condition : conditions) {
+            UserSearchCriteria criteria = UserSearchCriteria.of(condition[0], condition[1], condition[2]);
+            assertThat(userDirectory.search(criteria)).extracting("id")
+                .containsExactlyElementsOf(userRepository.search(criteria).stream().map(User::getId).toList());
+        }
+    }
+}
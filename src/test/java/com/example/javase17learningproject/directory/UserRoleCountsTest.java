@@ -0,0 +1,126 @@
+package com.example.javase17learningproject.directory;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.directory.UserRoleCounts.Counts;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+
+/**
+ * UserRoleCountsのテストクラス。
+ * 作成・役割の変更・削除による件数の増減と、データベースとの突き合わせによる修正を検証します。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class UserRoleCountsTest {
+
+    private static final String PASSWORD = "password123";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRoleCounts userRoleCounts;
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Role adminRole;
+    private Role userRole;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        adminRole = roleRepository.findByName("ADMIN").orElseGet(() -> roleRepository.save(new Role("ADMIN")));
+        userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testCountsFollowUserChanges() {
+        Counts before = counts();
+        User admin = userRepository.save(new User("countAdmin", "count-admin@example.com", adminRole, PASSWORD));
+        User user = userRepository.save(new User("countUser", "count-user@example.com", userRole, PASSWORD));
+
+        Counts created = counts();
+        assertThat(created.total()).isEqualTo(before.total() + 2);
+        assertThat(created.admin()).isEqualTo(before.admin() + 1);
+        assertThat(created.user()).isEqualTo(before.user() + 1);
+
+        // 役割を追加すると、両方の役割で数える
+        user.setRoles(Set.of(userRole, adminRole));
+        userRepository.save(user);
+        Counts changed = counts();
+        assertThat(changed.total()).isEqualTo(created.total());
+        assertThat(changed.admin()).isEqualTo(created.admin() + 1);
+        assertThat(changed.user()).isEqualTo(created.user());
+
+        userRepository.delete(admin);
+        Counts deleted = counts();
+        assertThat(deleted.total()).isEqualTo(changed.total() - 1);
+        assertThat(deleted.admin()).isEqualTo(changed.admin() - 1);
+    }
+
+    @Test
+    void testReconcileCorrectsDrift() {
+        User user = userRepository.save(new User("driftUser", "drift-user@example.com", userRole, PASSWORD));
+        Counts before = counts();
+        assertThat(userRoleCounts.reconcile()).isFalse();
+
+        // エンティティを経由しない更新は変更イベントが発行されないため、件数がずれる
+        jdbcTemplate.update("UPDATE users SET role_mask = ? WHERE id = ?", RoleMask.MODERATOR, user.getId());
+        assertThat(counts()).isEqualTo(before);
+
+        assertThat(userRoleCounts.reconcile()).isTrue();
+        Counts corrected = counts();
+        assertThat(corrected.user()).isEqualTo(before.user() - 1);
+        assertThat(corrected.moderator()).isEqualTo(before.moderator() + 1);
+        assertThat(userRoleCounts.reconcile()).isFalse();
+    }
+
+    @Test
+    void testCountsShownOnUsersPage() throws Exception {
+        userRepository.save(new User("pageUser", "page-user@example.com", userRole, PASSWORD));
+        Counts expected = counts();
+
+        mockMvc.perform(get("/users"))
+            .andExpect(status().isOk())
+            .andExpect(model().attribute("roleCounts", expected));
+    }
+
+    private Counts counts() {
+        assertThat(userChangeEventBus.awaitProcessed(UserRoleCounts.CONSUMER_NAME, Duration.ofSeconds(5))).isTrue();
+        return userRoleCounts.getCounts();
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.javase17learningproject.event;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.example.javase17learningproject.event.UserChangeEvent.RolesChanged;
+import com.example.javase17learningproject.event.UserChangeEvent.UserDeleted;
+import com.example.javase17learningproject.event.UserChangeEvent.UserUpdated;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * UserChangeEventBusのテストクラス。
+ * 配信順序、古いバージョンのイベントの破棄、コミット後の発行、キューのあふれと待機、自身の書き込みの待機を検証します。
+ */
+public class UserChangeEventBusTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private UserChangeEventBus bus;
+
+    @BeforeEach
+    void setUp() {
+        bus = new UserChangeEventBus();
+        ReflectionTestUtils.setField(bus, "queueCapacity", 4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bus.destroy();
+        RequestContextHolder.resetRequestAttributes();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testEventsAreDeliveredInPublishOrder() {
+        List<UserChangeEvent> received = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("test", received::addAll);
+
+        bus.publish(List.of(new UserDeleted(1, 0), new UserDeleted(2, 0)));
+        bus.publish(List.of(new UserDeleted(3, 0)));
+
+        assertThat(bus.awaitProcessed("test", TIMEOUT)).isTrue();
+        assertThat(received).containsExactly(new UserDeleted(1, 0), new UserDeleted(2, 0), new UserDeleted(3, 0));
+        assertThat(bus.getLag("test")).isZero();
+    }
+
+    @Test
+    void testEventsArePublishedOnlyAfterCommit() {
+        List<UserChangeEvent> received = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("test", received::addAll);
+
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK, new UserDeleted(1, 0));
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED, new UserDeleted(2, 0));
+
+        assertThat(bus.awaitProcessed("test", TIMEOUT)).isTrue();
+        assertThat(received).containsExactly(new UserDeleted(2, 0));
+    }
+
+    @Test
+    void testStaleUserEventsAreDropped() {
+        List<UserChangeEvent> received = Collections.synchronizedList(new ArrayList<>());
+        bus.subscribe("test", received::addAll);
+
+        // 同じユーザーの変更が、コミットと逆の順に発行される
+        bus.publish(List.of(new UserUpdated(state(1, 2)), new RolesChanged(1, 1, 2, 2)));
+        bus.publish(List.of(new UserUpdated(state(1, 1)), new RolesChanged(1, 2, 1, 1)));
+        bus.publish(List.of(new UserDeleted(1, 3)));
+        bus.publish(List.of(new UserUpdated(state(1, 3))));
+        // 削除の後に復元された（バージョンが進んだ）更新は配信する
+        bus.publish(List.of(new UserUpdated(state(1, 4))));
+
+        assertThat(bus.awaitProcessed("test", TIMEOUT)).isTrue();
+        assertThat(received).containsExactly(new UserUpdated(state(1, 2)), new RolesChanged(1, 1, 2, 2),
+            new UserDeleted(1, 3), new UserUpdated(state(1, 4)));
+        assertThat(bus.getStaleCount()).isEqualTo(3);
+    }
+
+    @Test
+    void testOverflowTriggersResynchronization() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger resynchronized = new AtomicInteger();
+        bus.subscribe("slow", new UserChangeConsumer() {
+            @Override
+            public void onEvents(List<UserChangeEvent> events) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void onOverflow() {
+                resynchronized.incrementAndGet();
+            }
+        });
+
+        // 配信スレッドが1件目で止まっている間に、容量 (4) を超えるイベントを発行する
+        for (long id = 1; id <= 10; id++) {
+            bus.publish(List.of(new UserDeleted(id, 0)));
+        }
+        assertThat(bus.awaitProcessed("slow", Duration.ofMillis(50))).isFalse();
+        assertThat(bus.getDroppedCount("slow")).isGreaterThan(0);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        bus.bindTo(registry);
+        assertThat(registry.get("user.change.bus.lag").tag("consumer", "slow").gauge().value()).isGreaterThan(0);
+
+        release.countDown();
+        assertThat(bus.awaitProcessed("slow", TIMEOUT)).isTrue();
+        assertThat(resynchronized.get()).isEqualTo(1);
+        assertThat(bus.getLag("slow")).isZero();
+    }
+
+    @Test
+    void testFailedDeliveryTriggersResynchronization() throws InterruptedException {
+        CountDownLatch resynchronized = new CountDownLatch(1);
+        bus.subscribe("failing", new UserChangeConsumer() {
+            @Override
+            public void onEvents(List<UserChangeEvent> events) {
+                throw new IllegalStateException("failure");
+            }
+
+            @Override
+            public void onOverflow() {
+                resynchronized.countDown();
+            }
+        });
+
+        bus.publish(List.of(new UserDeleted(1, 0)));
+
+        assertThat(resynchronized.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(bus.awaitProcessed("failing", TIMEOUT)).isTrue();
+    }
+
+    @Test
+    void testAwaitOwnWritesWaitsOnlyForCallersEvents() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        bus.subscribe("slow", events -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // 他のスレッドが発行したイベントは待たない
+        Thread other = new Thread(() -> bus.publish(List.of(new UserDeleted(1, 0))));
+        other.start();
+        other.join();
+        assertThat(bus.awaitOwnWrites("slow", Duration.ofMillis(50))).isTrue();
+
+        bus.publish(List.of(new UserDeleted(2, 0)));
+        assertThat(bus.awaitOwnWrites("slow", Duration.ofMillis(50))).isFalse();
+
+        release.countDown();
+        assertThat(bus.awaitOwnWrites("slow", TIMEOUT)).isTrue();
+    }
+
+    @Test
+    void testAwaitOwnWritesFollowsSession() {
+        CountDownLatch release = new CountDownLatch(1);
+        bus.subscribe("slow", events -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        MockHttpSession session = new MockHttpSession();
+
+        startRequest(session);
+        bus.publish(List.of(new UserDeleted(1, 0)));
+
+        // 同じセッションの次のリクエストは待ち、別のセッションのリクエストは待たない
+        startRequest(session);
+        assertThat(bus.awaitOwnWrites("slow", Duration.ofMillis(50))).isFalse();
+        startRequest(new MockHttpSession());
+        assertThat(bus.awaitOwnWrites("slow", Duration.ofMillis(50))).isTrue();
+
+        release.countDown();
+        startRequest(session);
+        assertThat(bus.awaitOwnWrites("slow", TIMEOUT)).isTrue();
+    }
+
+    private static void startRequest(MockHttpSession session) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setSession(session);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    private void completeTransaction(int status, UserChangeEvent event) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            bus.publishAfterCommit(event);
+            TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(status));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static UserState state(long id, long version) {
+        return new UserState(id, "user" + id, "user" + id + "@example.com", "user" + id, "user" + id + "@example.com",
+            1, null, LocalDateTime.of(2024, 1, 1, 0, 0), version, 0);
+    }
+}
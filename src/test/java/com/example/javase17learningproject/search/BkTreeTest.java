@@ -0,0 +1,107 @@
+package com.example.javase17learningproject.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+
+/**
+ * BkTreeのテストクラス。
+ * 編集距離 k 以内の語を漏れなく距離の順に返すこと、値の登録解除、走査の上限による打ち切りを検証します。
+ */
+public class BkTreeTest {
+
+    @Test
+    void testSearchWithinDistance() {
+        BkTree<Integer> tree = new BkTree<>();
+        tree.put("tanaka", 1);
+        tree.put("tanabe", 2);
+        tree.put("takahashi", 3);
+        tree.put("nakata", 4);
+        tree.put("tanaka", 5);
+
+        BkTree.Result<Integer> result = tree.search("tanaak", 2, Integer.MAX_VALUE);
+
+        // tanaka は隣接文字の入れ替え（距離2）、tanabe は2文字の置換
+        assertThat(result.matches()).extracting(BkTree.Match::value).containsExactlyInAnyOrder(1, 2, 5);
+        assertThat(tree.search("tanake", 1, Integer.MAX_VALUE).matches())
+            .extracting(BkTree.Match::distance).containsExactly(1, 1, 1);
+        assertThat(tree.search("tanabe", 1, Integer.MAX_VALUE).matches())
+            .extracting(BkTree.Match::value).first().isEqualTo(2);
+        assertThat(result.truncated()).isFalse();
+    }
+
+    @Test
+    void testMatchesLinearScan() {
+        Random random = new Random(11);
+        BkTree<Integer> tree = new BkTree<>();
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            String term = randomTerm(random);
+            terms.add(term);
+            tree.put(term, i);
+        }
+        for (int q = 0; q < 50; q++) {
+            String query = randomTerm(random);
+            for (int k = 0; k <= 2; k++) {
+                List<Integer> expected = new ArrayList<>();
+                for (int i = 0; i < terms.size(); i++) {
+                    if (Levenshtein.distance(query, terms.get(i)) <= k) {
+                        expected.add(i);
+                    }
+                }
+                BkTree.Result<Integer> result = tree.search(query, k, Integer.MAX_VALUE);
+                assertThat(result.matches()).extracting(BkTree.Match::value)
+                    .as("%s k=%d", query, k).containsExactlyInAnyOrderElementsOf(expected);
+                assertThat(result.matches()).extracting(BkTree.Match::distance).isSorted();
+                if (k == 0) {
+                    // 三角不等式による枝刈りで、全ての語との距離は計算しない
+                    assertThat(result.visited()).isLessThan(tree.termCount());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testRemoveLeavesEmptyTerm() {
+        BkTree<Integer> tree = new BkTree<>();
+        tree.put("yamada", 1);
+        tree.put("yamata", 2);
+
+        assertThat(tree.remove("yamada", 1)).isTrue();
+        assertThat(tree.remove("yamada", 1)).isFalse();
+
+        // 空の語のノードを残したまま、その子の語は検索できる
+        assertThat(tree.emptyTermCount()).isEqualTo(1);
+        assertThat(tree.search("yamada", 1, Integer.MAX_VALUE).matches())
+            .extracting(BkTree.Match::value).containsExactly(2);
+
+        tree.put("yamada", 3);
+        assertThat(tree.emptyTermCount()).isZero();
+        assertThat(tree.size()).isEqualTo(2);
+    }
+
+    @Test
+    void testSearchStopsAtMaxVisits() {
+        BkTree<Integer> tree = new BkTree<>();
+        for (int i = 0; i < 100; i++) {
+            tree.put("user" + i, i);
+        }
+
+        BkTree.Result<Integer> result = tree.search("user1", 5, 10);
+
+        assertThat(result.truncated()).isTrue();
+        assertThat(result.visited()).isEqualTo(10);
+    }
+
+    private static String randomTerm(Random random) {
+        int length = 3 + random.nextInt(6);
+        StringBuilder term = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            term.append((char) ('a' + random.nextInt(6)));
+        }
+        return term.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.javase17learningproject.search;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.directory.UserSummary;
+import com.example.javase17learningproject.service.UserQueryService;
+
+/**
+ * FuzzyUserIndexのテストクラス。
+ * 編集距離による検索の順位、変更イベントによる索引の更新、役割による絞り込みを検証します。
+ */
+@SpringBootTest
+public class FuzzyUserIndexTest {
+
+    private static final String PASSWORD = "password123";
+
+    @Autowired
+    private FuzzyUserIndex fuzzyUserIndex;
+
+    @Autowired
+    private UserQueryService userQueryService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private Role adminRole;
+    private Role userRole;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        adminRole = roleRepository.findByName("ADMIN").orElseGet(() -> roleRepository.save(new Role("ADMIN")));
+        userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testRankedByDistance() {
+        User exact = userRepository.save(new User("Fuzzy Tanaka", "tanaka@fuzzy.example.com", userRole, PASSWORD));
+        User oneOff = userRepository.save(new User("Fuzzy Tanaki", "tanaki@fuzzy.example.com", userRole, PASSWORD));
+        userRepository.save(new User("Fuzzy Suzuki", "suzuki@fuzzy.example.com", userRole, PASSWORD));
+
+        // 名前の語 (tanaka) との距離で比較する
+        assertThat(fuzzyUserIndex.search("tanaka", null, 1)).containsExactly(exact.getId(), oneOff.getId());
+        // 隣接文字の入れ替えは距離2
+        assertThat(fuzzyUserIndex.search("tanaak", null, 1)).isEmpty();
+        assertThat(fuzzyUserIndex.search("tanaak", null, 2)).startsWith(exact.getId());
+        // メールアドレスは @ より前の部分でも比較する。名前と両方を指定した場合は両方が距離以内のユーザー
+        assertThat(fuzzyUserIndex.search(null, "tanakii", 1)).containsExactly(oneOff.getId());
+        assertThat(fuzzyUserIndex.search("tanaka", "tanakii", 1)).containsExactly(oneOff.getId());
+    }
+
+    @Test
+    void testIndexFollowsUserChanges() {
+        User user = userRepository.save(new User("Fuzzy Yamamoto", "yamamoto@fuzzy.example.com", userRole, PASSWORD));
+        assertThat(fuzzyUserIndex.search("yamamot", null, 1)).containsExactly(user.getId());
+
+        user.setName("Fuzzy Watanabe");
+        user = userRepository.save(user);
+        assertThat(fuzzyUserIndex.search("yamamot", null, 1)).isEmpty();
+        assertThat(fuzzyUserIndex.search("watanab", null, 1)).containsExactly(user.getId());
+
+        userRepository.delete(user);
+        assertThat(fuzzyUserIndex.search("watanab", null, 1)).isEmpty();
+    }
+
+    @Test
+    void testFuzzySearchUsersFiltersByRole() {
+        User admin = userRepository.save(new User("Fuzzy Sato", "sato-admin@fuzzy.example.com", adminRole, PASSWORD));
+        User user = userRepository.save(new User("Fuzzy Saito", "saito-user@fuzzy.example.com", userRole, PASSWORD));
+
+        List<UserSummary> all = userQueryService.fuzzySearchUsers("sato", null, null, 1);
+        List<UserSummary> admins = userQueryService.fuzzySearchUsers("sato", null, "ADMIN", 1);
+
+        assertThat(all).extracting(UserSummary::getId).containsExactly(admin.getId(), user.getId());
+        assertThat(admins).extracting(UserSummary::getId).containsExactly(admin.getId());
+    }
+
+    @Test
+    void testRoleIsFilteredBeforeLimit() {
+        userRepository.save(new User("Fuzzy Kato", "kato-user@fuzzy.example.com", userRole, PASSWORD));
+        User admin = userRepository.save(new User("Fuzzy Kito", "kito-admin@fuzzy.example.com", adminRole, PASSWORD));
+        Object maxResults = ReflectionTestUtils.getField(fuzzyUserIndex, "maxResults");
+        ReflectionTestUtils.setField(fuzzyUserIndex, "maxResults", 1);
+        try {
+            // より近いUSERのユーザーで上限に達しても、ADMINのユーザーを返す
+            assertThat(userQueryService.fuzzySearchUsers("kato", null, "ADMIN", 1))
+                .extracting(UserSummary::getId).containsExactly(admin.getId());
+        } finally {
+            ReflectionTestUtils.setField(fuzzyUserIndex, "maxResults", maxResults);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.javase17learningproject.search;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Levenshteinのテストクラス。
+ * ビット並列のアルゴリズムによる編集距離が、動的計画法による値と一致することを検証します。
+ */
+public class LevenshteinTest {
+
+    @ParameterizedTest
+    @CsvSource({
+        "kitten, sitting, 3",
+        "tanaka, tanaka, 0",
+        "tanaka, tanaak, 2",
+        "suzuki, suzki, 1",
+        "'', abc, 3",
+        "abc, '', 3",
+        "やまだ, やまた, 1",
+        "山田太郎, 山田花子, 2"
+    })
+    void testDistance(String a, String b, int expected) {
+        assertThat(Levenshtein.distance(a, b)).isEqualTo(expected);
+        assertThat(Levenshtein.distance(b, a)).isEqualTo(expected);
+    }
+
+    @Test
+    void testMatchesDynamicProgramming() {
+        Random random = new Random(7);
+        String alphabet = "abcあい";
+        for (int i = 0; i < 2000; i++) {
+            // 64文字を超えるパターンは動的計画法で計算する
+            String a = randomString(random, alphabet, random.nextInt(i % 10 == 0 ? 80 : 12));
+            String b = randomString(random, alphabet, random.nextInt(12));
+            assertThat(new Levenshtein(a).distance(b)).as("%s / %s", a, b).isEqualTo(reference(a, b));
+        }
+    }
+
+    private static String randomString(Random random, String alphabet, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+
+    private static int reference(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(d[i - 1][j - 1] + cost, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.javase17learningproject.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+
+/**
+ * RadixTrieのテストクラス。
+ * 辺の分割と統合、前方一致の順序と件数の上限、一括構築と逐次登録の一致を検証します。
+ */
+public class RadixTrieTest {
+
+    @Test
+    void testCollectInKeyOrder() {
+        RadixTrie<String> trie = new RadixTrie<>();
+        trie.put("tanaka", "tanaka");
+        trie.put("tan", "tan");
+        trie.put("takahashi", "takahashi");
+        trie.put("tanabe", "tanabe");
+        trie.put("suzuki", "suzuki");
+
+        // 接頭辞そのもののキーが先頭で、以降は辞書順
+        assertThat(trie.collect("ta", 10)).containsExactly("takahashi", "tan", "tanabe", "tanaka");
+        assertThat(trie.collect("tan", 2)).containsExactly("tan", "tanabe");
+        // 辺の途中で終わる接頭辞
+        assertThat(trie.collect("tana", 10)).containsExactly("tanabe", "tanaka");
+        // 辺の途中で食い違う接頭辞
+        assertThat(trie.collect("tanx", 10)).isEmpty();
+        assertThat(trie.collect("x", 10)).isEmpty();
+        assertThat(trie.size()).isEqualTo(5);
+    }
+
+    @Test
+    void testMultipleValuesForSameKey() {
+        RadixTrie<Integer> trie = new RadixTrie<>();
+        trie.put("yamada", 1);
+        trie.put("yamada", 2);
+
+        assertThat(trie.collect("yama", 10)).containsExactly(1, 2);
+        assertThat(trie.remove("yamada", 1)).isTrue();
+        assertThat(trie.collect("yama", 10)).containsExactly(2);
+        assertThat(trie.remove("yamada", 1)).isFalse();
+    }
+
+    @Test
+    void testRemoveMergesNodes() {
+        RadixTrie<String> trie = new RadixTrie<>();
+        trie.put("abc", "abc");
+        trie.put("abd", "abd");
+        trie.put("ab", "ab");
+        // 根、"ab"、"c"、"d"
+        assertThat(trie.nodeCount()).isEqualTo(4);
+
+        assertThat(trie.remove("abd", "abd")).isTrue();
+        assertThat(trie.remove("ab", "ab")).isTrue();
+
+        // 値を持たず子が1つのノードは統合され、根と "abc" だけになる
+        assertThat(trie.nodeCount()).isEqualTo(2);
+        assertThat(trie.collect("a", 10)).containsExactly("abc");
+        assertThat(trie.remove("ab", "ab")).isFalse();
+        assertThat(trie.remove("abcd", "abc")).isFalse();
+    }
+
+    @Test
+    void testBuildMatchesIncrementalPut() {
+        Random random = new Random(42);
+        TreeMap<String, Integer> expected = new TreeMap<>();
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+        RadixTrie<Integer> incremental = new RadixTrie<>();
+        for (int i = 0; i < 2000; i++) {
+            String key = randomKey(random);
+            if (expected.putIfAbsent(key, i) == null) {
+                entries.add(Map.entry(key, i));
+                incremental.put(key, i);
+            }
+        }
+        RadixTrie<Integer> built = RadixTrie.build(entries);
+
+        assertThat(built.size()).isEqualTo(expected.size());
+        assertThat(built.nodeCount()).isEqualTo(incremental.nodeCount());
+        for (String prefix : List.of("", "a", "ab", "bca", "cc", "abca")) {
+            List<Integer> matches = new ArrayList<>(expected.subMap(prefix, prefix + Character.MAX_VALUE).values());
+            assertThat(built.collect(prefix, Integer.MAX_VALUE)).as(prefix).isEqualTo(matches);
+            assertThat(incremental.collect(prefix, Integer.MAX_VALUE)).as(prefix).isEqualTo(matches);
+        }
+
+        // 半分を削除しても、残りのキーの検索結果と節点数は一括構築したものと一致する
+        List<Map.Entry<String, Integer>> remaining = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            if (entry.getValue() % 2 == 0) {
+                assertThat(incremental.remove(entry.getKey(), entry.getValue())).isTrue();
+                expected.remove(entry.getKey());
+            } else {
+                remaining.add(entry);
+            }
+        }
+        RadixTrie<Integer> rebuilt = RadixTrie.build(remaining);
+        assertThat(incremental.nodeCount()).isEqualTo(rebuilt.nodeCount());
+        assertThat(incremental.collect("", Integer.MAX_VALUE)).isEqualTo(new ArrayList<>(expected.values()));
+    }
+
+    private static String randomKey(Random random) {
+        int length = 1 + random.nextInt(8);
+        StringBuilder key = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            key.append((char) ('a' + random.nextInt(3)));
+        }
+        return key.toString();
+    }
+}
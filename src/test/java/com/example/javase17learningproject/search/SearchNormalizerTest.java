@@ -0,0 +1,40 @@
+package com.example.javase17learningproject.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * SearchNormalizerのテストクラス。
+ * 検索用の正規化ルールを検証します。
+ */
+public class SearchNormalizerTest {
+
+    @ParameterizedTest
+    @CsvSource({
+        "Test@Example.COM, test@example.com",
+        "'  user@example.com ', user@example.com"
+    })
+    void testNormalizeEmail(String input, String expected) {
+        assertThat(SearchNormalizer.normalizeEmail(input)).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "ﾔﾏﾀﾞ, やまだ",
+        "ヤマダ, やまだ",
+        "Ｔａｒｏ１２３, taro123",
+        "ヴァイオリン, ゔぁいおりん",
+        "山田 太郎, 山田 太郎"
+    })
+    void testNormalizeName(String input, String expected) {
+        assertThat(SearchNormalizer.normalizeName(input)).isEqualTo(expected);
+    }
+
+    @Test
+    void testNullValues() {
+        assertThat(SearchNormalizer.normalizeName(null)).isNull();
+        assertThat(SearchNormalizer.normalizeEmail(null)).isNull();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.javase17learningproject.search;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * UserSearchCacheのテストクラス。
+ * LRUによる削除、世代番号による無効化、統計値を検証します。
+ */
+public class UserSearchCacheTest {
+
+    private UserSearchCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new UserSearchCache(2, 3);
+    }
+
+    @Test
+    void testHitAndMiss() {
+        UserSearchCriteria criteria = UserSearchCriteria.of("test", null, null);
+
+        assertThat(cache.get(criteria)).isNull();
+        cache.put(criteria, cache.currentGeneration(), List.of(1L, 2L));
+
+        // 正規化後に同じ条件になる検索はヒットする
+        assertThat(cache.get(UserSearchCriteria.of(" TEST ", "", null))).containsExactly(1L, 2L);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.hitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        UserSearchCriteria first = UserSearchCriteria.of("a", null, null);
+        UserSearchCriteria second = UserSearchCriteria.of("b", null, null);
+        UserSearchCriteria third = UserSearchCriteria.of("c", null, null);
+        cache.put(first, cache.currentGeneration(), List.of(1L));
+        cache.put(second, cache.currentGeneration(), List.of(2L));
+        cache.get(first);
+        cache.put(third, cache.currentGeneration(), List.of(3L));
+
+        assertThat(cache.get(second)).isNull();
+        assertThat(cache.get(first)).containsExactly(1L);
+        assertThat(cache.get(third)).containsExactly(3L);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    void testInvalidateAll() {
+        UserSearchCriteria criteria = UserSearchCriteria.of(null, null, "ADMIN");
+        cache.put(criteria, cache.currentGeneration(), List.of(1L));
+
+        cache.invalidateAll();
+
+        assertThat(cache.get(criteria)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void testResultFromPreviousGenerationIsNotCached() {
+        UserSearchCriteria criteria = UserSearchCriteria.of(null, null, "ADMIN");
+        long generation = cache.currentGeneration();
+
+        // 検索中に更新がコミットされた場合
+        cache.invalidateAll();
+        cache.put(criteria, generation, List.of(1L));
+
+        assertThat(cache.get(criteria)).isNull();
+    }
+
+    @Test
+    void testLargeResultIsNotCached() {
+        UserSearchCriteria criteria = UserSearchCriteria.of(null, null, null);
+        cache.put(criteria, cache.currentGeneration(), List.of(1L, 2L, 3L, 4L));
+
+        assertThat(cache.get(criteria)).isNull();
+    }
+}
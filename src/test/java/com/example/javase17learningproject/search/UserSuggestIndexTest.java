@@ -0,0 +1,129 @@
+package com.example.javase17learningproject.search;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.context.SecurityContextHolder;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+import com.example.javase17learningproject.search.UserSuggestIndex.Field;
+import com.example.javase17learningproject.search.UserSuggestIndex.Suggestion;
+
+/**
+ * UserSuggestIndexのテストクラス。
+ * 変更イベントによる索引の更新、再構築、入力補完のエンドポイントを検証します。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class UserSuggestIndexTest {
+
+    private static final String PASSWORD = "password123";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserSuggestIndex userSuggestIndex;
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private Role userRole;
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.clearContext();
+        userRepository.deleteAll();
+        userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testIndexFollowsUserChanges() {
+        User yamada = userRepository.save(new User("ヤマダ太郎", "yamada@suggest.example.com", userRole, PASSWORD));
+        User yamamoto = userRepository.save(new User("山本花子", "yamamoto@suggest.example.com", userRole, PASSWORD));
+        awaitIndexed();
+
+        // 名前は正規化してから検索する（カタカナはひらがなに変換される）
+        assertThat(userSuggestIndex.suggest(Field.NAME, "やまだ", 10))
+            .containsExactly(new Suggestion(yamada.getId(), "ヤマダ太郎"));
+        assertThat(userSuggestIndex.suggest(Field.EMAIL, "YAMA", 10)).extracting(Suggestion::id)
+            .containsExactly(yamada.getId(), yamamoto.getId());
+        assertThat(userSuggestIndex.suggest(Field.EMAIL, "yama", 1)).hasSize(1);
+
+        yamada.setName("佐藤太郎");
+        userRepository.save(yamada);
+        userRepository.delete(yamamoto);
+        awaitIndexed();
+
+        assertThat(userSuggestIndex.suggest(Field.NAME, "やまだ", 10)).isEmpty();
+        assertThat(userSuggestIndex.suggest(Field.NAME, "佐藤", 10))
+            .containsExactly(new Suggestion(yamada.getId(), "佐藤太郎"));
+        assertThat(userSuggestIndex.suggest(Field.EMAIL, "yama", 10)).extracting(Suggestion::id)
+            .containsExactly(yamada.getId());
+    }
+
+    @Test
+    void testRebuild() {
+        User user = userRepository.save(new User("rebuildUser", "rebuild@suggest.example.com", userRole, PASSWORD));
+        awaitIndexed();
+
+        userSuggestIndex.rebuild();
+
+        assertThat(userSuggestIndex.suggest(Field.NAME, "REBUILD", 10))
+            .containsExactly(new Suggestion(user.getId(), "rebuildUser"));
+        assertThat(userSuggestIndex.suggest(Field.NAME, " ", 10)).isEmpty();
+        assertThat(userSuggestIndex.getLastRebuildMillis()).isNotNegative();
+    }
+
+    @Test
+    void testSuggestEndpoint() throws Exception {
+        User user = userRepository.save(new User("suggestUser", "suggest-user@example.com", userRole, PASSWORD));
+        awaitIndexed();
+        MockHttpSession session = (MockHttpSession) mockMvc.perform(
+                formLogin("/login").user(user.getEmail()).password(PASSWORD))
+            .andExpect(status().is3xxRedirection())
+            .andReturn().getRequest().getSession(false);
+
+        mockMvc.perform(get("/users/suggest").param("q", "suggest-u").param("field", "email").session(session))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id").value(user.getId()))
+            .andExpect(jsonPath("$[0].value").value("suggest-user@example.com"));
+        mockMvc.perform(get("/users/suggest").param("q", "suggestu").session(session))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].value").value("suggestUser"));
+        // 未ログインの場合はログイン画面に転送する
+        mockMvc.perform(get("/users/suggest").param("q", "suggest"))
+            .andExpect(status().is3xxRedirection());
+    }
+
+    private void awaitIndexed() {
+        assertThat(userChangeEventBus.awaitProcessed(UserSuggestIndex.CONSUMER_NAME, Duration.ofSeconds(5))).isTrue();
+    }
+}
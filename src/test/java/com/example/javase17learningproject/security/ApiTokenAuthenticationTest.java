@@ -0,0 +1,135 @@
+package com.example.javase17learningproject.security;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContextHolder;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+import com.example.javase17learningproject.service.UserCommandService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * ステートレス認証モードのテストクラス。
+ * トークンの発行（パスワードでのみ発行できること）、トークンによる認証（セッションを作成しないこと）、失効を検証します。
+ */
+@SpringBootTest(properties = "app.token-auth.enabled=true")
+@AutoConfigureMockMvc
+public class ApiTokenAuthenticationTest {
+
+    private static final String EMAIL = "api@example.com";
+    private static final String PASSWORD = "password123";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    @Autowired
+    private UserCommandService userCommandService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.clearContext();
+        userRepository.deleteAll();
+        Role userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+        userRepository.save(new User("apiUser", EMAIL, userRole, PASSWORD));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testTokenAuthenticatesWithoutSession() throws Exception {
+        String token = issueToken();
+
+        MvcResult result = mockMvc.perform(get("/api/users").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].email").value(EMAIL))
+            .andReturn();
+
+        assertThat(result.getRequest().getSession(false)).isNull();
+    }
+
+    @Test
+    void testMissingOrInvalidTokenIsRejected() throws Exception {
+        mockMvc.perform(get("/api/users")).andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/users").header(HttpHeaders.AUTHORIZATION, "Bearer invalid.token.value"))
+            .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testRevokedTokenIsRejected() throws Exception {
+        String token = issueToken();
+
+        // 変更イベントの反映を待たずに、応答した時点で失効している
+        mockMvc.perform(post("/api/tokens/revoke").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+            .andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/users").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+            .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/users").header(HttpHeaders.AUTHORIZATION, "Bearer " + issueToken()))
+            .andExpect(status().isOk());
+    }
+
+    @Test
+    void testTokenCannotIssueToken() throws Exception {
+        String token = issueToken();
+
+        mockMvc.perform(post("/api/tokens").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+            .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void testTokenIsRevokedWhenRolesChange() throws Exception {
+        User user = userRepository.findByEmail(EMAIL).orElseThrow();
+        roleRepository.findByName("GUEST").orElseGet(() -> roleRepository.save(new Role("GUEST")));
+        String token = issueToken();
+
+        userCommandService.updateUser(user.getId(), null, user.getName(), EMAIL, "GUEST");
+        assertThat(userChangeEventBus.awaitProcessed(TokenRevocationTracker.CONSUMER_NAME, Duration.ofSeconds(5)))
+            .isTrue();
+
+        // 変更前の役割のトークンは失効し、変更後の役割で発行したトークンは権限がない
+        mockMvc.perform(get("/api/users").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+            .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/users").header(HttpHeaders.AUTHORIZATION, "Bearer " + issueToken()))
+            .andExpect(status().isForbidden());
+    }
+
+    private String issueToken() throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/tokens").with(httpBasic(EMAIL, PASSWORD)))
+            .andExpect(status().isOk())
+            .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString()).get("token").asText();
+    }
+}
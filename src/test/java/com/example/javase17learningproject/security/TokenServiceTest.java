@@ -0,0 +1,104 @@
+package com.example.javase17learningproject.security;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.event.UserChangeEvent.UserUpdated;
+import com.example.javase17learningproject.event.UserState;
+
+/**
+ * TokenServiceのテストクラス。
+ * トークンの署名と検証、有効期限、鍵のローテーション、失効を検証します。
+ */
+public class TokenServiceTest {
+
+    private static final String KEY1 = "key1:" + Base64.getEncoder().encodeToString(new byte[32]);
+    private static final String KEY2 = "key2:" + Base64.getEncoder().encodeToString("0123456789abcdef0123456789abcdef".getBytes());
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    private TokenRevocationTracker tracker;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new TokenRevocationTracker();
+        Role admin = new Role("ADMIN");
+        admin.setId(1L);
+        user = new User("tokenUser", "token@example.com", admin);
+        user.setId(42L);
+    }
+
+    @Test
+    void testIssuedTokenIsVerified() {
+        TokenService service = service(KEY1, "");
+
+        TokenService.IssuedToken issued = service.issue(user, NOW);
+
+        assertThat(issued.expiresAt()).isEqualTo(NOW.plus(Duration.ofHours(1)));
+        assertThat(service.verify(issued.token(), NOW)).hasValueSatisfying(token -> {
+            assertThat(token.userId()).isEqualTo(42L);
+            assertThat(token.roleMask()).isEqualTo(RoleMask.ADMIN);
+        });
+    }
+
+    @Test
+    void testTamperedOrExpiredTokenIsRejected() {
+        TokenService service = service(KEY1, "");
+        String token = service.issue(user, NOW).token();
+        int payloadStart = token.indexOf('.') + 1;
+        char replaced = token.charAt(payloadStart) == 'A' ? 'B' : 'A';
+        String tampered = token.substring(0, payloadStart) + replaced + token.substring(payloadStart + 1);
+
+        assertThat(service.verify(tampered, NOW)).isEmpty();
+        assertThat(service.verify("not-a-token", NOW)).isEmpty();
+        assertThat(service.verify(token, NOW.plus(Duration.ofHours(1)))).isEmpty();
+    }
+
+    @Test
+    void testKeyRotation() {
+        String oldToken = service(KEY1, "").issue(user, NOW).token();
+
+        // 新しい鍵で署名しながら、古い鍵で署名されたトークンも受け付ける
+        TokenService rotating = service(KEY1 + "," + KEY2, "key2");
+        assertThat(rotating.verify(oldToken, NOW)).isPresent();
+        String newToken = rotating.issue(user, NOW).token();
+        assertThat(newToken).startsWith("key2.");
+
+        // 古い鍵を削除した後は、古い鍵で署名されたトークンは無効
+        TokenService rotated = service(KEY2, "");
+        assertThat(rotated.verify(oldToken, NOW)).isEmpty();
+        assertThat(rotated.verify(newToken, NOW)).isPresent();
+    }
+
+    @Test
+    void testRevokedTokenIsRejected() {
+        TokenService service = service(KEY1, "");
+        String token = service.issue(user, NOW).token();
+
+        user.revokeTokens();
+        tracker.onEvents(List.of(new UserUpdated(UserState.of(user))));
+
+        assertThat(service.verify(token, NOW)).isEmpty();
+        assertThat(service.verify(service.issue(user, NOW).token(), NOW)).isPresent();
+    }
+
+    private TokenService service(String keys, String signingKeyId) {
+        TokenService service = new TokenService();
+        ReflectionTestUtils.setField(service, "tokenRevocationTracker", tracker);
+        ReflectionTestUtils.setField(service, "keys", keys);
+        ReflectionTestUtils.setField(service, "signingKeyId", signingKeyId);
+        ReflectionTestUtils.setField(service, "ttl", Duration.ofHours(1));
+        service.loadKeys();
+        return service;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.javase17learningproject.security;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import org.springframework.security.web.context.HttpSessionSecurityContextRepository;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+import com.example.javase17learningproject.service.UserCommandService;
+
+/**
+ * UserPrincipalのテストクラス。
+ * ログイン後のセッションにエンティティではなくプリンシパルが保持されることと、
+ * ユーザーの更新・削除がセッションに反映されること、更新の記録がセッションのタイムアウト後に捨てられることを検証します。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class UserPrincipalTest {
+
+    private static final String EMAIL = "principal@example.com";
+    private static final String PASSWORD = "password123";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private UserCommandService userCommandService;
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    @Autowired
+    private PrincipalVersionTracker principalVersionTracker;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        // 他のテストが設定したセキュリティコンテキストを引き継がない
+        SecurityContextHolder.clearContext();
+        userRepository.deleteAll();
+        roleRepository.findByName("ADMIN").orElseGet(() -> roleRepository.save(new Role("ADMIN")));
+        Role userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+        user = userRepository.save(new User("principalUser", EMAIL, userRole, PASSWORD));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testLoginStoresPrincipal() throws Exception {
+        UserPrincipal principal = principalOf(login());
+
+        assertThat(principal).isEqualTo(new UserPrincipal(user.getId(), EMAIL, RoleMask.USER, user.getVersion()));
+    }
+
+    @Test
+    void testRoleChangeRefreshesPrincipal() throws Exception {
+        MockHttpSession session = login();
+
+        userCommandService.updateUser(user.getId(), null, "principalUser", EMAIL, "ADMIN");
+        assertThat(userChangeEventBus.awaitProcessed(PrincipalVersionTracker.CONSUMER_NAME, Duration.ofSeconds(5)))
+            .isTrue();
+        mockMvc.perform(get("/users/" + user.getId()).session(session)).andExpect(status().isOk());
+
+        UserPrincipal refreshed = principalOf(session);
+        assertThat(refreshed.roleMask()).isEqualTo(RoleMask.ADMIN);
+        assertThat(refreshed.version()).isEqualTo(user.getVersion() + 1);
+    }
+
+    @Test
+    void testDeletedUserIsLoggedOut() throws Exception {
+        MockHttpSession session = login();
+
+        userRepository.deleteById(user.getId());
+        assertThat(userChangeEventBus.awaitProcessed(PrincipalVersionTracker.CONSUMER_NAME, Duration.ofSeconds(5)))
+            .isTrue();
+
+        mockMvc.perform(get("/users/" + user.getId()).session(session)).andExpect(status().is3xxRedirection());
+        assertThat(contextOf(session)).isNull();
+    }
+
+    @Test
+    void testTrackedVersionsArePrunedAfterSessionTimeout() throws Exception {
+        UserPrincipal principal = principalOf(login());
+        userCommandService.updateUser(user.getId(), null, "principalUser", EMAIL, "ADMIN");
+        assertThat(userChangeEventBus.awaitProcessed(PrincipalVersionTracker.CONSUMER_NAME, Duration.ofSeconds(5)))
+            .isTrue();
+        long epoch = principalVersionTracker.currentEpoch();
+        assertThat(principalVersionTracker.isStale(principal, epoch)).isTrue();
+
+        // タイムアウトまでは残す
+        principalVersionTracker.prune(System.nanoTime());
+        assertThat(principalVersionTracker.isStale(principal, epoch)).isTrue();
+
+        // タイムアウトを過ぎた記録は捨てる（その時点で古いプリンシパルを持つセッションは破棄されている）
+        principalVersionTracker.prune(System.nanoTime() + Duration.ofMinutes(31).toNanos());
+        assertThat(principalVersionTracker.isStale(principal, epoch)).isFalse();
+        assertThat(principalVersionTracker.trackedCount()).isZero();
+    }
+
+    private MockHttpSession login() throws Exception {
+        return (MockHttpSession) mockMvc.perform(formLogin("/login").user(EMAIL).password(PASSWORD))
+            .andExpect(status().is3xxRedirection())
+            .andReturn().getRequest().getSession(false);
+    }
+
+    private static UserPrincipal principalOf(MockHttpSession session) {
+        return (UserPrincipal) contextOf(session).getAuthentication().getPrincipal();
+    }
+
+    private static SecurityContext contextOf(MockHttpSession session) {
+        return (SecurityContext) session.getAttribute(
+            HttpSessionSecurityContextRepository.SPRING_SECURITY_CONTEXT_KEY);
+    }
+}
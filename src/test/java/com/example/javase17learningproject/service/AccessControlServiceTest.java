@@ -2,6 +2,7 @@ package com.example.javase17learningproject.service;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -16,6 +17,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 
 import com.example.javase17learningproject.Role;
 import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.security.UserPrincipal;
 
 @ExtendWith(MockitoExtension.class)
 class AccessControlServiceTest {
@@ -71,6 +73,11 @@ class AccessControlServiceTest {
         SecurityContextHolder.setContext(securityContext);
     }
 
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
     @Test
     @DisplayName("管理者は全てのユーザーを編集可能")
     void adminCanEditAnyUser() {
@@ -102,6 +109,16 @@ class AccessControlServiceTest {
         assertFalse(accessControlService.canEditUser(normalUser2));
     }
 
+    @Test
+    @DisplayName("セッションのプリンシパルで判定する")
+    void principalIsUsedWithoutEntity() {
+        when(authentication.getPrincipal()).thenReturn(UserPrincipal.of(normalUser1));
+
+        assertTrue(accessControlService.canEditUser(normalUser1));
+        assertFalse(accessControlService.canEditUser(normalUser2));
+        assertFalse(accessControlService.canDeleteUser(normalUser2));
+    }
+
     @Test
     @DisplayName("管理者は全てのユーザーを削除可能")
     void adminCanDeleteAnyUser() {
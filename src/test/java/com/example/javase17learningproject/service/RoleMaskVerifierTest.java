@@ -0,0 +1,81 @@
+package com.example.javase17learningproject.service;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleMask;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+
+/**
+ * RoleMaskVerifierのテストクラス。
+ * user_rolesとの不一致の検出と修復を検証します。
+ */
+@SpringBootTest
+public class RoleMaskVerifierTest {
+
+    @Autowired
+    private RoleMaskVerifier roleMaskVerifier;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testDetectsAndRepairsMismatch() {
+        // テストデータの準備
+        Role moderatorRole = roleRepository.findByName("MODERATOR")
+            .orElseGet(() -> roleRepository.save(new Role("MODERATOR")));
+        User user = userRepository.save(new User("maskUser", "mask@example.com", moderatorRole, "password123"));
+        assertThat(roleMaskVerifier.verify()).isEmpty();
+
+        // エンティティを経由せずにビットマスクを壊す
+        jdbcTemplate.update("UPDATE users SET role_mask = ? WHERE id = ?", RoleMask.ADMIN, user.getId());
+
+        // 検証
+        List<RoleMaskVerifier.Mismatch> mismatches = roleMaskVerifier.verify();
+        assertThat(mismatches).containsExactly(
+            new RoleMaskVerifier.Mismatch(user.getId(), RoleMask.ADMIN, RoleMask.MODERATOR, user.getVersion()));
+        assertThat(jdbcTemplate.queryForObject("SELECT role_mask FROM users WHERE id = ?", Integer.class, user.getId()))
+            .isEqualTo(RoleMask.MODERATOR);
+        assertThat(roleMaskVerifier.verify()).isEmpty();
+    }
+
+    @Test
+    void testRepairSkipsUsersChangedAfterDetection() {
+        // テストデータの準備
+        Role moderatorRole = roleRepository.findByName("MODERATOR")
+            .orElseGet(() -> roleRepository.save(new Role("MODERATOR")));
+        User user = userRepository.save(new User("raceUser", "race@example.com", moderatorRole, "password123"));
+        jdbcTemplate.update("UPDATE users SET role_mask = ? WHERE id = ?", RoleMask.ADMIN, user.getId());
+        RoleMaskVerifier.Mismatch detected =
+            new RoleMaskVerifier.Mismatch(user.getId(), RoleMask.ADMIN, RoleMask.MODERATOR, user.getVersion());
+
+        // 検出後に他のトランザクションがビットマスクを変更した
+        jdbcTemplate.update("UPDATE users SET role_mask = ?, version = version + 1 WHERE id = ?",
+            RoleMask.USER, user.getId());
+
+        // 検証
+        assertThat(roleMaskVerifier.repair(List.of(detected))).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT role_mask FROM users WHERE id = ?", Integer.class, user.getId()))
+            .isEqualTo(RoleMask.USER);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.javase17learningproject.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+
+/**
+ * UserCommandServiceのテストクラス。
+ * 楽観的ロックによる競合の検出と、同じユーザーへの同時更新で更新が失われないことを検証します。
+ */
+@SpringBootTest
+public class UserCommandServiceTest {
+
+    private static final int WRITERS = 8;
+    private static final int UPDATES_PER_WRITER = 5;
+
+    @Autowired
+    private UserCommandService userCommandService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        Role userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+        userId = userRepository.save(new User("counter-0", "counter@example.com", userRole, "password123")).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testStaleVersionIsRejected() {
+        long version = userRepository.findById(userId).orElseThrow().getVersion();
+        userCommandService.updateUser(userId, version, "firstEditor", "counter@example.com", "USER");
+
+        assertThatThrownBy(() ->
+            userCommandService.updateUser(userId, version, "secondEditor", "counter@example.com", "USER"))
+            .isInstanceOf(UserUpdateConflictException.class);
+        assertThat(userRepository.findById(userId).orElseThrow().getName()).isEqualTo("firstEditor");
+    }
+
+    @Test
+    void testConcurrentReadModifyWriteLosesNoUpdates() throws Exception {
+        AtomicInteger conflicts = new AtomicInteger();
+        runConcurrently(() -> {
+            for (int i = 0; i < UPDATES_PER_WRITER; i++) {
+                // 競合した場合は読み直して同じ増分をやり直す
+                while (true) {
+                    User current = userRepository.findById(userId).orElseThrow();
+                    int counter = Integer.parseInt(current.getName().substring("counter-".length()));
+                    try {
+                        userCommandService.updateUser(userId, current.getVersion(), "counter-" + (counter + 1),
+                            "counter@example.com", "USER");
+                        break;
+                    } catch (UserUpdateConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                }
+            }
+            return null;
+        });
+
+        User updated = userRepository.findById(userId).orElseThrow();
+        assertThat(updated.getName()).isEqualTo("counter-" + WRITERS * UPDATES_PER_WRITER);
+        assertThat(updated.getVersion()).isEqualTo(WRITERS * UPDATES_PER_WRITER);
+    }
+
+    @Test
+    void testConcurrentUpdatesWithoutVersionAreRetried() throws Exception {
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        runConcurrently(() -> {
+            for (int i = 0; i < UPDATES_PER_WRITER; i++) {
+                try {
+                    userCommandService.updateUser(userId, null, "writer-" + Thread.currentThread().getId(),
+                        "counter@example.com", "USER");
+                    succeeded.incrementAndGet();
+                } catch (UserUpdateConflictException e) {
+                    failed.incrementAndGet();
+                }
+            }
+            return null;
+        });
+
+        // 成功した更新はそれぞれ1回ずつコミットされている（失敗した更新は通知されている）
+        assertThat(succeeded.get() + failed.get()).isEqualTo(WRITERS * UPDATES_PER_WRITER);
+        assertThat(userRepository.findById(userId).orElseThrow().getVersion()).isEqualTo(succeeded.get());
+    }
+
+    private static void runConcurrently(Callable<Void> writer) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < WRITERS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return writer.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
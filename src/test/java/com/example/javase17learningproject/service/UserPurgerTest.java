@@ -0,0 +1,115 @@
+package com.example.javase17learningproject.service;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+
+/**
+ * UserPurgerのテストクラス。
+ * 論理削除したユーザーがリポジトリのクエリから除外されることと、バッチ単位の物理削除を検証します。
+ */
+@SpringBootTest(properties = {
+    "app.user-purge.retention=PT0S",
+    "app.user-purge.batch-size=2",
+    "app.user-purge.max-batches=2",
+    "app.user-purge.pause=PT0S"
+})
+public class UserPurgerTest {
+
+    @Autowired
+    private UserPurger userPurger;
+
+    @Autowired
+    private UserResolver userResolver;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Role userRole;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        while (userPurger.purge() > 0) {
+            // 論理削除したユーザーが残らないよう、全て物理削除する
+        }
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testSoftDeletedUserIsHiddenUntilPurged() {
+        User user = userRepository.save(new User("purgeUser", "purge@example.com", userRole, "password123"));
+
+        userResolver.delete(user);
+
+        assertThat(userRepository.findById(user.getId())).isEmpty();
+        assertThat(userRepository.findByEmail("purge@example.com")).isEmpty();
+        assertThat(userRepository.searchUsers("purgeUser", null, null)).isEmpty();
+        assertThat(userRepository.count()).isZero();
+        assertThat(rows("users", "id", user.getId())).isEqualTo(1);
+        assertThat(rows("user_roles", "user_id", user.getId())).isEqualTo(1);
+
+        assertThat(userPurger.purge()).isEqualTo(1);
+
+        assertThat(rows("users", "id", user.getId())).isZero();
+        assertThat(rows("user_roles", "user_id", user.getId())).isZero();
+    }
+
+    @Test
+    void testPurgeIsBoundedByBatches() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(userRepository.save(new User("purgeUser" + i, "purge" + i + "@example.com", userRole, "password123")));
+        }
+        User active = userRepository.save(new User("activeUser", "active@example.com", userRole, "password123"));
+        users.forEach(userResolver::delete);
+
+        // バッチサイズ2、最大2バッチのため、1回の実行で4件まで
+        assertThat(userPurger.purge()).isEqualTo(4);
+        assertThat(userPurger.purge()).isEqualTo(1);
+        assertThat(userPurger.purge()).isZero();
+        assertThat(userRepository.findById(active.getId())).isPresent();
+    }
+
+    @Test
+    void testQuietHours() {
+        ReflectionTestUtils.setField(userPurger, "quietHours", "22:00-05:00");
+        try {
+            assertThat(userPurger.isQuietTime(LocalTime.of(23, 0))).isTrue();
+            assertThat(userPurger.isQuietTime(LocalTime.of(4, 59))).isTrue();
+            assertThat(userPurger.isQuietTime(LocalTime.of(12, 0))).isFalse();
+        } finally {
+            ReflectionTestUtils.setField(userPurger, "quietHours", "");
+        }
+    }
+
+    private int rows(String table, String column, long id) {
+        return jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM " + table + " WHERE " + column + " = ?", Integer.class, id);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.javase17learningproject.service;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.directory.UserDirectory;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+import com.example.javase17learningproject.search.UserSearchCache;
+import com.example.javase17learningproject.search.UserSearchCacheInvalidator;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * UserQueryServiceのテストクラス。
+ * 検索結果キャッシュの利用と、更新による無効化、読み取りモデルから返す場合に接続を取得しないことを検証します。
+ */
+@SpringBootTest
+public class UserQueryServiceTest {
+
+    @Autowired
+    private UserQueryService userQueryService;
+
+    @Autowired
+    private UserSearchCache userSearchCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Role adminRole;
+    private Role userRole;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        adminRole = roleRepository.findByName("ADMIN").orElseGet(() -> roleRepository.save(new Role("ADMIN")));
+        userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+        userRepository.save(new User("cacheUser1", "cache1@example.com", adminRole, "password123"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testRepeatedSearchHitsCache() {
+        // 検索は自身の書き込みだけを待つため、他のテストの書き込みによる無効化が検索の間に届かないよう先に適用させる
+        assertThat(userChangeEventBus.awaitProcessed(UserSearchCacheInvalidator.CONSUMER_NAME, Duration.ofSeconds(5)))
+            .isTrue();
+        long hits = userSearchCache.getHitCount();
+
+        assertThat(userQueryService.searchUsers(null, null, "ADMIN")).hasSize(1);
+        assertThat(userQueryService.searchUsers(null, null, "ADMIN"))
+            .extracting("name").containsExactly("cacheUser1");
+
+        assertThat(userSearchCache.getHitCount()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    void testCreateInvalidatesCache() {
+        assertThat(userQueryService.searchUsers("cacheUser", null, null)).hasSize(1);
+
+        userRepository.save(new User("cacheUser2", "cache2@example.com", adminRole, "password123"));
+
+        assertThat(userQueryService.searchUsers("cacheUser", null, null)).hasSize(2);
+    }
+
+    @Test
+    void testRoleUpdateInvalidatesCache() {
+        assertThat(userQueryService.searchUsers(null, null, "ADMIN")).hasSize(1);
+
+        User user = userRepository.findByEmail("cache1@example.com").orElseThrow();
+        user.setRoles(Collections.singleton(userRole));
+        userRepository.save(user);
+
+        assertThat(userQueryService.searchUsers(null, null, "ADMIN")).isEmpty();
+        assertThat(userQueryService.searchUsers(null, null, "USER")).hasSize(1);
+    }
+
+    @Test
+    void testDeleteInvalidatesCache() {
+        assertThat(userQueryService.searchUsers("cacheUser", null, null)).hasSize(1);
+
+        userRepository.deleteAll();
+
+        assertThat(userQueryService.searchUsers("cacheUser", null, null)).isEmpty();
+    }
+
+    @Test
+    void testDirectoryReadsDoNotAcquireConnection() {
+        assertThat(userDirectory.findAll()).isNotNull();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        boolean enabled = statistics.isStatisticsEnabled();
+        statistics.setStatisticsEnabled(true);
+        try {
+            statistics.clear();
+
+            assertThat(userQueryService.getAllUsers()).extracting("name").contains("cacheUser1");
+            assertThat(userQueryService.searchUsers("cacheUser", null, null)).hasSize(1);
+
+            assertThat(statistics.getConnectCount()).isZero();
+            assertThat(statistics.getTransactionCount()).isZero();
+        } finally {
+            statistics.setStatisticsEnabled(enabled);
+        }
+    }
+}
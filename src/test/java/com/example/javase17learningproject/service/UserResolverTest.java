@@ -0,0 +1,117 @@
+package com.example.javase17learningproject.service;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.security.UserPrincipal;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * UserResolverのテストクラス。
+ * 認可の判定とコントローラーが同じユーザーを共有し、1回のリクエストでユーザーを1回だけ読み込むことを検証します。
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+public class UserResolverTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        Role adminRole = roleRepository.findByName("ADMIN").orElseGet(() -> roleRepository.save(new Role("ADMIN")));
+        User admin = userRepository.save(new User("resolverAdmin", "resolver-admin@example.com", adminRole, "password123"));
+        Role userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+        userId = userRepository.save(new User("resolverUser", "resolver@example.com", userRole, "password123")).getId();
+
+        SecurityContextHolder.getContext().setAuthentication(UsernamePasswordAuthenticationToken.authenticated(
+            UserPrincipal.of(admin), null, List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testEditFormLoadsUserOnce() throws Exception {
+        mockMvc.perform(get("/users/" + userId + "/edit"))
+            .andExpect(status().isOk())
+            .andExpect(view().name("user_edit"));
+
+        assertThat(userLoads()).isEqualTo(1);
+    }
+
+    @Test
+    void testDeleteLoadsUserOnceAndSoftDeletes() throws Exception {
+        mockMvc.perform(post("/users/" + userId + "/delete").with(csrf()))
+            .andExpect(status().is3xxRedirection())
+            .andExpect(redirectedUrl("/users"));
+
+        assertThat(userLoads()).isEqualTo(1);
+        assertThat(statistics.getQueryExecutionCount()).isZero();
+        assertThat(userRepository.findById(userId)).isEmpty();
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM users WHERE id = ? AND deleted_at IS NOT NULL", Integer.class, userId)).isEqualTo(1);
+    }
+
+    @Test
+    void testDeletedUsersEmailCanBeReused() throws Exception {
+        mockMvc.perform(post("/users/" + userId + "/delete").with(csrf()))
+            .andExpect(status().is3xxRedirection());
+
+        Role userRole = roleRepository.findByName("USER").orElseThrow();
+        User recreated = userRepository.save(new User("resolverUser", "Resolver@example.com", userRole, "password123"));
+
+        assertThat(recreated.getId()).isNotEqualTo(userId);
+        assertThat(userRepository.findByEmail("resolver@example.com")).map(User::getId).contains(recreated.getId());
+    }
+
+    private long userLoads() {
+        return statistics.getEntityStatistics(User.class.getName()).getLoadCount();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.javase17learningproject.shard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.directory.UserSummary;
+import com.example.javase17learningproject.search.UserSearchCriteria;
+
+/**
+ * ShardedUserRepositoryのテストクラス。
+ * 3つの組み込みH2をシャードとして使用し、IDによる振り分けと、全てのシャードの検索結果のマージを検証します。
+ */
+public class ShardedUserRepositoryTest {
+
+    private static final int SHARDS = 3;
+    private static final int USERS = 30;
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private final List<DataSource> dataSources = new ArrayList<>();
+    private ExecutorService executor;
+    private ShardedUserRepository repository;
+    private List<Long> ids;
+
+    @BeforeEach
+    void setUp() {
+        int database = DATABASES.incrementAndGet();
+        for (int i = 0; i < SHARDS; i++) {
+            dataSources.add(new DriverManagerDataSource(
+                "jdbc:h2:mem:shard-test-" + database + "-" + i + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        }
+        executor = Executors.newFixedThreadPool(SHARDS);
+        repository = new ShardedUserRepository(dataSources, executor);
+        repository.migrate();
+
+        Role admin = role(1L, "ADMIN");
+        Role user = role(3L, "USER");
+        Role auditor = role(10L, "AUDITOR");
+        ids = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            Role role = i % 10 == 0 ? admin : i % 10 == 1 ? auditor : user;
+            ids.add(repository.insert(user(String.format("shardUser%02d", i), "shard" + i + "@example.com", role)));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        dataSources.forEach(dataSource -> new JdbcTemplate(dataSource).execute("DROP ALL OBJECTS"));
+    }
+
+    @Test
+    void testUsersAreDistributedAndRoutedById() {
+        assertThat(repository.count()).isEqualTo(USERS);
+        for (int shard = 0; shard < SHARDS; shard++) {
+            long rows = new JdbcTemplate(dataSources.get(shard)).queryForObject("SELECT COUNT(*) FROM users", Long.class);
+            assertThat(rows).isEqualTo(USERS / SHARDS);
+        }
+
+        long id = ids.get(7);
+        assertThat(repository.shardOf(id)).isEqualTo((int) (id % SHARDS));
+        assertThat(repository.findById(id)).hasValueSatisfying(found -> {
+            assertThat(found.getName()).isEqualTo("shardUser07");
+            assertThat(found.getRole().getName()).isEqualTo("USER");
+        });
+
+        assertThat(repository.deleteById(id)).isTrue();
+        assertThat(repository.findById(id)).isEmpty();
+        assertThat(repository.deleteById(id)).isFalse();
+    }
+
+    @Test
+    void testSearchMergesShardsInIdOrderUnderGlobalLimit() {
+        List<Long> sortedIds = ids.stream().sorted().toList();
+
+        assertThat(repository.findAll(12)).extracting(UserSummary::getId).containsExactlyElementsOf(sortedIds.subList(0, 12));
+        assertThat(repository.findAll(USERS * 2)).hasSize(USERS);
+
+        List<UserSummary> users = repository.search(UserSearchCriteria.of(null, null, "USER"), 5);
+        assertThat(users).hasSize(5).isSortedAccordingTo(Comparator.comparing(UserSummary::getId));
+        assertThat(users).allSatisfy(found -> assertThat(found.getRole().getName()).isEqualTo("USER"));
+    }
+
+    @Test
+    void testSearchConditionsMatchSingleDatabaseSemantics() {
+        assertThat(repository.search(UserSearchCriteria.of("shardUser1*", null, null), USERS))
+            .extracting(UserSummary::getName)
+            .containsExactlyInAnyOrder("shardUser10", "shardUser11", "shardUser12", "shardUser13", "shardUser14",
+                "shardUser15", "shardUser16", "shardUser17", "shardUser18", "shardUser19");
+        assertThat(repository.search(UserSearchCriteria.of(null, "3@EXAMPLE", null), USERS))
+            .extracting(UserSummary::getEmail)
+            .containsExactlyInAnyOrder("shard3@example.com", "shard13@example.com", "shard23@example.com");
+        assertThat(repository.search(UserSearchCriteria.of(null, null, "AUDITOR"), USERS))
+            .extracting(found -> found.getRole().getName())
+            .containsExactly("AUDITOR", "AUDITOR", "AUDITOR");
+        assertThat(repository.search(UserSearchCriteria.of(null, null, "ADMIN"), USERS)).hasSize(3);
+    }
+
+    private static Role role(long id, String name) {
+        Role role = new Role(name);
+        role.setId(id);
+        return role;
+    }
+
+    private static User user(String name, String email, Role role) {
+        User user = new User(name, email, role);
+        // パスワードを指定しないコンストラクタではnullになるため、ハッシュ済みの値を直接設定する（ハッシュの計算は遅い）
+        ReflectionTestUtils.setField(user, "password", "{noop}password");
+        return user;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.javase17learningproject.tracing;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.context.SecurityContextHolder;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+
+/**
+ * Tracerのテストクラス。
+ * 全てのリクエストを抽出する設定で、フィルタチェーン・認可の判定・リポジトリ・SQL・描画の区間が
+ * 1つのトレースに記録され、管理画面で参照できることを検証します。
+ */
+@SpringBootTest(properties = {
+    "app.tracing.sample-rate=1.0",
+    "app.tracing.slow-threshold=PT0S"
+})
+@AutoConfigureMockMvc
+public class TracerTest {
+
+    private static final String PASSWORD = "password123";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private Tracer tracer;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private User admin;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.clearContext();
+        userRepository.deleteAll();
+        Role adminRole = roleRepository.findByName("ADMIN").orElseGet(() -> roleRepository.save(new Role("ADMIN")));
+        Role userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+        admin = userRepository.save(new User("traceAdmin", "trace-admin@example.com", adminRole, PASSWORD));
+        user = userRepository.save(new User("traceUser", "trace-user@example.com", userRole, PASSWORD));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testRequestIsTracedAsSpanTree() throws Exception {
+        MockHttpSession session = login(admin);
+
+        mockMvc.perform(get("/users/" + user.getId() + "/edit").session(session)).andExpect(status().isOk());
+
+        Trace trace = tracer.getSlowTraces().get(0);
+        assertThat(trace.name()).isEqualTo("GET /users/{id}/edit");
+        List<String> names = trace.root().getChildren().stream().map(Span::getName).toList();
+        assertThat(names).containsSubsequence("security", "handler UserController.editUser", "render user_edit");
+
+        Span security = trace.root().getChildren().get(names.indexOf("security"));
+        assertThat(security.getChildren()).extracting(Span::getName)
+            .contains("access AccessControlService.canEditUser");
+
+        String tree = TraceFormatter.tree(trace);
+        assertThat(tree)
+            .contains("repository UserRepository.findById")
+            .contains("sql select");
+    }
+
+    @Test
+    void testAdminEndpointShowsSlowTraces() throws Exception {
+        MockHttpSession session = login(admin);
+        mockMvc.perform(get("/users/" + user.getId()).session(session)).andExpect(status().isOk());
+
+        String tree = mockMvc.perform(get("/admin/traces").session(session))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        assertThat(tree).contains("GET /users/{id}").contains("handler UserController.getUserById");
+
+        String folded = mockMvc.perform(get("/admin/traces").param("format", "folded").session(session))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        assertThat(folded.lines())
+            .allMatch(line -> line.matches(".+ \\d+"))
+            .anyMatch(line -> line.startsWith("GET /users/{id};handler UserController.getUserById"));
+    }
+
+    @Test
+    void testAdminEndpointRequiresAdmin() throws Exception {
+        mockMvc.perform(get("/admin/traces").session(login(user))).andExpect(status().isForbidden());
+    }
+
+    private MockHttpSession login(User account) throws Exception {
+        return (MockHttpSession) mockMvc.perform(formLogin("/login").user(account.getEmail()).password(PASSWORD))
+            .andExpect(status().is3xxRedirection())
+            .andReturn().getRequest().getSession(false);
+    }
+}
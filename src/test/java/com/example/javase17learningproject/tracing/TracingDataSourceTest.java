@@ -0,0 +1,65 @@
+package com.example.javase17learningproject.tracing;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * TracingDataSourceのテストクラス。
+ * トレース中だけ接続とステートメントを包むこと、閉じると接続プールが閉じられることを検証します。
+ */
+public class TracingDataSourceTest {
+
+    private HikariDataSource pool;
+    private Tracer tracer;
+    private TracingDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:tracing");
+        tracer = new Tracer(10);
+        ReflectionTestUtils.setField(tracer, "sampleRate", 1.0);
+        ReflectionTestUtils.setField(tracer, "slowThreshold", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(tracer, "maxSpans", 100);
+        dataSource = new TracingDataSource(pool, () -> tracer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    void testOnlyTracedConnectionsAreWrapped() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+            assertThat(Proxy.isProxyClass(connection.getClass())).isFalse();
+            assertThat(Proxy.isProxyClass(statement.getClass())).isFalse();
+        }
+
+        Tracer.ActiveTrace trace = tracer.begin("test");
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT 1")) {
+            assertThat(Proxy.isProxyClass(statement.getClass())).isTrue();
+            statement.executeQuery().close();
+        }
+        assertThat(trace.finish("test").root().getChildren()).extracting(Span::getName).containsExactly("sql SELECT 1");
+    }
+
+    @Test
+    void testCloseShutsDownPool() throws Exception {
+        dataSource.close();
+
+        assertThat(pool.isClosed()).isTrue();
+    }
+}
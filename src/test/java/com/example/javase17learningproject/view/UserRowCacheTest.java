@@ -0,0 +1,136 @@
+package com.example.javase17learningproject.view;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.example.javase17learningproject.Role;
+import com.example.javase17learningproject.RoleRepository;
+import com.example.javase17learningproject.User;
+import com.example.javase17learningproject.UserRepository;
+import com.example.javase17learningproject.directory.UserDirectory;
+import com.example.javase17learningproject.directory.UserSummary;
+import com.example.javase17learningproject.event.UserChangeEventBus;
+import com.example.javase17learningproject.service.UserCommandService;
+
+/**
+ * UserRowCacheのテストクラス。
+ * ユーザー一覧の行が描画済みのHTMLとして再利用されること、ユーザーの更新後は描画し直されること、
+ * 共有する行にセッションIDが含まれないことを検証します。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class UserRowCacheTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRowCache userRowCache;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private UserCommandService userCommandService;
+
+    @Autowired
+    private UserChangeEventBus userChangeEventBus;
+
+    private User admin;
+
+    @BeforeEach
+    void setUp() {
+        SecurityContextHolder.clearContext();
+        userRepository.deleteAll();
+        userRowCache.clear();
+        Role adminRole = roleRepository.findByName("ADMIN").orElseGet(() -> roleRepository.save(new Role("ADMIN")));
+        Role userRole = roleRepository.findByName("USER").orElseGet(() -> roleRepository.save(new Role("USER")));
+        admin = userRepository.save(new User("rowAdmin", "row-admin@example.com", adminRole, "password123"));
+        userRepository.save(new User("<b>rowUser</b>", "row-user@example.com", userRole, "password123"));
+        awaitDirectory();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void testCachedRowsContainNoSessionId() {
+        // URLの書き換えでセッションを追跡するレスポンス（Cookieのない最初のリクエスト）
+        MockHttpServletResponse rewriting = new MockHttpServletResponse() {
+            @Override
+            public String encodeURL(String url) {
+                return url + ";jsessionid=LEAKED";
+            }
+        };
+        UserSummary user = UserSummary.of(admin);
+
+        List<String> rows = userRowCache.render(List.of(user), new MockHttpServletRequest(), rewriting);
+        List<String> cached = userRowCache.render(List.of(user), new MockHttpServletRequest(), new MockHttpServletResponse());
+
+        assertThat(rows.get(0)).contains("href=\"/users/" + admin.getId() + "/edit\"").doesNotContain("jsessionid");
+        assertThat(cached).isEqualTo(rows);
+    }
+
+    @Test
+    void testRowsAreReused() throws Exception {
+        long misses = userRowCache.getMissCount();
+        String first = list();
+        // 他のテストのコンテキストが残したユーザーが含まれる場合があるため、行数は最初の描画の件数から求める
+        long rows = userRowCache.getMissCount() - misses;
+        assertThat(rows).isGreaterThanOrEqualTo(2);
+        assertThat(first)
+            .contains("href=\"/users/" + admin.getId() + "/edit\"")
+            .contains("badge badge-danger")
+            .contains("badge badge-info")
+            .contains("&lt;b&gt;rowUser&lt;/b&gt;");
+
+        long hits = userRowCache.getHitCount();
+        misses = userRowCache.getMissCount();
+        String second = list();
+        assertThat(userRowCache.getHitCount() - hits).isEqualTo(rows);
+        assertThat(userRowCache.getMissCount()).isEqualTo(misses);
+        assertThat(second).isEqualTo(first);
+    }
+
+    @Test
+    void testUpdatedUserIsRerendered() throws Exception {
+        list();
+
+        userCommandService.updateUser(admin.getId(), null, "renamedAdmin", "row-admin@example.com", "USER");
+        awaitDirectory();
+        long misses = userRowCache.getMissCount();
+        String html = list();
+
+        assertThat(userRowCache.getMissCount() - misses).isEqualTo(1);
+        assertThat(html).contains("renamedAdmin").doesNotContain("rowAdmin");
+    }
+
+    private String list() throws Exception {
+        return mockMvc.perform(get("/users"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+    }
+
+    private void awaitDirectory() {
+        assertThat(userChangeEventBus.awaitProcessed(UserDirectory.CONSUMER_NAME, Duration.ofSeconds(5))).isTrue();
+    }
+}